@@ -0,0 +1,158 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.cache;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * A snapshot of the usage of one cache region, as returned by
+ * {@link org.pentaho.platform.api.engine.ICacheManager#getRegionStatistics(String)}. Counters are cumulative since the
+ * region was created. Values that the underlying cache provider cannot report are <code>-1</code>.
+ */
+@XmlRootElement
+public class CacheRegionStatistics implements Serializable {
+
+  private static final long serialVersionUID = -3305727513718207641L;
+
+  private String regionName;
+  private long hitCount;
+  private long missCount;
+  private long putCount;
+  private long removeCount;
+  private long clearCount;
+  private long elementCountInMemory = -1;
+  private long elementCountOnDisk = -1;
+  private long sizeInMemory = -1;
+
+  public CacheRegionStatistics() {
+    super();
+  }
+
+  public CacheRegionStatistics( final String regionName ) {
+    this.regionName = regionName;
+  }
+
+  public String getRegionName() {
+    return regionName;
+  }
+
+  public void setRegionName( String regionName ) {
+    this.regionName = regionName;
+  }
+
+  /**
+   * @return the number of lookups that found a value
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public void setHitCount( long hitCount ) {
+    this.hitCount = hitCount;
+  }
+
+  /**
+   * @return the number of lookups that found no value
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void setMissCount( long missCount ) {
+    this.missCount = missCount;
+  }
+
+  public long getPutCount() {
+    return putCount;
+  }
+
+  public void setPutCount( long putCount ) {
+    this.putCount = putCount;
+  }
+
+  /**
+   * @return the number of entries explicitly removed from the region. Entries expired or evicted by the cache
+   *         provider itself are not included.
+   */
+  public long getRemoveCount() {
+    return removeCount;
+  }
+
+  public void setRemoveCount( long removeCount ) {
+    this.removeCount = removeCount;
+  }
+
+  /**
+   * @return the number of times the whole region was cleared
+   */
+  public long getClearCount() {
+    return clearCount;
+  }
+
+  public void setClearCount( long clearCount ) {
+    this.clearCount = clearCount;
+  }
+
+  public long getElementCountInMemory() {
+    return elementCountInMemory;
+  }
+
+  public void setElementCountInMemory( long elementCountInMemory ) {
+    this.elementCountInMemory = elementCountInMemory;
+  }
+
+  public long getElementCountOnDisk() {
+    return elementCountOnDisk;
+  }
+
+  public void setElementCountOnDisk( long elementCountOnDisk ) {
+    this.elementCountOnDisk = elementCountOnDisk;
+  }
+
+  /**
+   * @return the approximate size of the in-memory entries in bytes, as estimated by the cache provider
+   */
+  public long getSizeInMemory() {
+    return sizeInMemory;
+  }
+
+  public void setSizeInMemory( long sizeInMemory ) {
+    this.sizeInMemory = sizeInMemory;
+  }
+
+  /**
+   * @return hits divided by lookups, or 0 if there have been no lookups
+   */
+  public double getHitRatio() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  @SuppressWarnings( "nls" )
+  @Override
+  public String toString() {
+    return "CacheRegionStatistics [regionName=" + regionName + ", hitCount=" + hitCount + ", missCount=" + missCount
+        + ", putCount=" + putCount + ", removeCount=" + removeCount + ", clearCount=" + clearCount
+        + ", elementCountInMemory=" + elementCountInMemory + ", elementCountOnDisk=" + elementCountOnDisk
+        + ", sizeInMemory=" + sizeInMemory + "]";
+  }
+}
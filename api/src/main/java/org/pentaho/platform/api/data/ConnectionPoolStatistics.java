@@ -0,0 +1,170 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.data;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * A snapshot of the usage of one JDBC connection pool. Counters are cumulative since the pool was created. Values
+ * that the pool backend cannot report are <code>-1</code>.
+ */
+@XmlRootElement
+public class ConnectionPoolStatistics implements Serializable {
+
+  private static final long serialVersionUID = 2874329570912375561L;
+
+  private String name;
+  private String backend;
+  private int activeConnections = -1;
+  private int idleConnections = -1;
+  private int threadsAwaitingConnection = -1;
+  private int maxConnections = -1;
+  private long borrowCount;
+  private long timeoutCount;
+  private double averageWaitTime;
+  private double maxWaitTime;
+
+  public ConnectionPoolStatistics() {
+    super();
+  }
+
+  public ConnectionPoolStatistics( final String name ) {
+    this.name = name;
+  }
+
+  /**
+   * @return the name of the datasource the pool belongs to
+   */
+  public String getName() {
+    return name;
+  }
+
+  public void setName( String name ) {
+    this.name = name;
+  }
+
+  /**
+   * @return the pool implementation, <code>dbcp</code> or <code>hikari</code>
+   */
+  public String getBackend() {
+    return backend;
+  }
+
+  public void setBackend( String backend ) {
+    this.backend = backend;
+  }
+
+  /**
+   * @return the number of connections currently borrowed from the pool
+   */
+  public int getActiveConnections() {
+    return activeConnections;
+  }
+
+  public void setActiveConnections( int activeConnections ) {
+    this.activeConnections = activeConnections;
+  }
+
+  public int getIdleConnections() {
+    return idleConnections;
+  }
+
+  public void setIdleConnections( int idleConnections ) {
+    this.idleConnections = idleConnections;
+  }
+
+  /**
+   * @return the number of threads currently waiting for a connection
+   */
+  public int getThreadsAwaitingConnection() {
+    return threadsAwaitingConnection;
+  }
+
+  public void setThreadsAwaitingConnection( int threadsAwaitingConnection ) {
+    this.threadsAwaitingConnection = threadsAwaitingConnection;
+  }
+
+  /**
+   * @return the most connections the pool opens at the same time, or <code>-1</code> if unlimited
+   */
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections( int maxConnections ) {
+    this.maxConnections = maxConnections;
+  }
+
+  /**
+   * @return the number of connections borrowed from the pool
+   */
+  public long getBorrowCount() {
+    return borrowCount;
+  }
+
+  public void setBorrowCount( long borrowCount ) {
+    this.borrowCount = borrowCount;
+  }
+
+  /**
+   * @return the number of times no connection became available within the configured wait time
+   */
+  public long getTimeoutCount() {
+    return timeoutCount;
+  }
+
+  public void setTimeoutCount( long timeoutCount ) {
+    this.timeoutCount = timeoutCount;
+  }
+
+  /**
+   * @return the average time in milliseconds it took to borrow a connection
+   */
+  public double getAverageWaitTime() {
+    return averageWaitTime;
+  }
+
+  public void setAverageWaitTime( double averageWaitTime ) {
+    this.averageWaitTime = averageWaitTime;
+  }
+
+  /**
+   * @return the longest time in milliseconds it took to borrow a connection
+   */
+  public double getMaxWaitTime() {
+    return maxWaitTime;
+  }
+
+  public void setMaxWaitTime( double maxWaitTime ) {
+    this.maxWaitTime = maxWaitTime;
+  }
+
+  @SuppressWarnings( "nls" )
+  @Override
+  public String toString() {
+    return "ConnectionPoolStatistics [name=" + name + ", backend=" + backend + ", activeConnections="
+        + activeConnections + ", idleConnections=" + idleConnections + ", threadsAwaitingConnection="
+        + threadsAwaitingConnection + ", maxConnections=" + maxConnections + ", borrowCount=" + borrowCount
+        + ", timeoutCount=" + timeoutCount + ", averageWaitTime=" + averageWaitTime + ", maxWaitTime="
+        + maxWaitTime + "]";
+  }
+}
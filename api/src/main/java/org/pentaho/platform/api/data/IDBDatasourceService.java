@@ -54,6 +54,9 @@ public interface IDBDatasourceService {
   public static final String REMOVE_ABANDONED_TIMEOUT = "removeAbandonedTimeout";
   public static final String LOG_ABANDONED = "logAbandoned";
   public static final String INITIAL_SIZE = "initialSize";
+  public static final String POOL_BACKEND = "poolBackend";
+  public static final String POOL_BACKEND_DBCP = "dbcp";
+  public static final String POOL_BACKEND_HIKARI = "hikari";
 
   /**
    * This method clears the whole JNDI data source cache. The need exists because after a JNDI connection is edited the old data source must be
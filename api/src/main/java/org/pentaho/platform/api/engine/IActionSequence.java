@@ -59,6 +59,26 @@ public interface IActionSequence extends ISequenceDefinition {
    */
   public boolean hasLoop();
 
+  /**
+   * Returns the maximum number of loop iterations that may execute concurrently. Values of one or less mean the loop
+   * executes sequentially, which is the default.
+   * 
+   * @return the maximum number of concurrent loop iterations
+   */
+  public default int getLoopParallelism() {
+    return 1;
+  }
+
+  /**
+   * When the loop executes in parallel, returns whether the results of the iterations (outputs, progress
+   * notifications and failures) are applied in loop order rather than in order of completion.
+   * 
+   * @return true if iteration results are applied in loop order
+   */
+  public default boolean isLoopOrdered() {
+    return true;
+  }
+
   /**
    * @return The conditional execution object that determines whether a set of actions will be executed.
    */
@@ -20,6 +20,9 @@
 
 package org.pentaho.platform.api.engine;
 
+import org.pentaho.platform.api.cache.CacheRegionStatistics;
+
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -256,4 +259,25 @@ public interface ICacheManager extends ILogoutListener {
    */
   public long getElementCountInGlobalCache();
 
+  /**
+   * Returns usage statistics for a cache region
+   * 
+   * @param region
+   *          the name of the region
+   * @return the statistics of the region, or <code>null</code> if the region does not exist or the implementation
+   *         does not collect statistics
+   */
+  public default CacheRegionStatistics getRegionStatistics( String region ) {
+    return null;
+  }
+
+  /**
+   * Returns usage statistics for all cache regions
+   * 
+   * @return the statistics of every region, empty if the implementation does not collect statistics
+   */
+  public default List<CacheRegionStatistics> getAllRegionStatistics() {
+    return Collections.emptyList();
+  }
+
 }
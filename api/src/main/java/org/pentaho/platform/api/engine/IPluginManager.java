@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -247,6 +247,20 @@ public interface IPluginManager {
   @Deprecated
   public InputStream getStaticResource( String path );
 
+  /**
+   * Returns when the static resource at the specified path was last modified, so that it can be validated without being
+   * read. Resources that are not found in the plugin folder, such as those loaded from a jar, are not dated.
+   *
+   * @param path the path to the plugin resource
+   * @return the modification time in milliseconds, or <code>0</code> if it is not known
+   * @deprecated Like {@link #getStaticResource(String)}, this method may not work correctly for plugins in Sugar or later
+   * releases.
+   */
+  @Deprecated
+  public default long getStaticResourceLastModified( String path ) {
+    return 0L;
+  }
+
   /**
    * Lists the ids of available plugins. From the id, you can get lots of information about a plugin, such as the bean
    * factory which gives you access to information on all specified beans for that plugin.
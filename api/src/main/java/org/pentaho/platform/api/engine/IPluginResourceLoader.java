@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -113,6 +113,20 @@ public interface IPluginResourceLoader {
    */
   public InputStream getResourceAsStream( ClassLoader classLoader, String resourcePath );
 
+  /**
+   * Gets the modification time of a plugin-related resource without opening it. Only resources found on the
+   * filesystem are dated; resources served by the ClassLoader, e.g. from a jar, are not.
+   * 
+   * @param classLoader
+   *          the ClassLoader which was used to load a plugin
+   * @param resourcePath
+   *          the (relative) path to a resource
+   * @return the modification time in milliseconds, or 0 if the resource is not found or its time is not known
+   */
+  public default long getResourceLastModified( ClassLoader classLoader, String resourcePath ) {
+    return 0L;
+  }
+
   /**
    * A searching method, yielding a list of plugin-related resources as URLs. This method allows advanced searching
    * by using the namePattern argument. namePattern supports '?' and '*' characters, representing single and
@@ -0,0 +1,56 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.repository2.unified;
+
+import java.util.List;
+
+/**
+ * Finds the content generated from a file or by a schedule through an index of the file metadata, instead of reading
+ * the metadata of every file in a folder. Generated content is recognized by the metadata its creator sets on it, such
+ * as {@code contentCreator}, the id of the file it was generated from, or {@code lineage-id}, the lineage of the
+ * schedule which generated it.
+ */
+public interface IGeneratedContentIndex {
+
+  /**
+   * Returns the files directly in a folder which have the given value for a metadata key.
+   *
+   * @param folderPath
+   *          path of the folder to search in, for example the home folder of a user
+   * @param metadataKey
+   *          metadata key, for example {@code contentCreator}
+   * @param value
+   *          the value of the metadata key
+   * @return the files, sorted, or an empty list if there are none or the folder does not exist
+   */
+  List<RepositoryFile> getGeneratedContent( String folderPath, String metadataKey, String value );
+
+  /**
+   * Returns the files anywhere below a folder which have a value for a metadata key.
+   *
+   * @param folderPath
+   *          path of the folder to search in
+   * @param metadataKey
+   *          metadata key, for example {@code lineage-id}
+   * @return the files, or an empty list if there are none or the folder does not exist
+   */
+  List<RepositoryFile> getAllGeneratedContent( String folderPath, String metadataKey );
+}
@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -64,6 +64,7 @@ import org.pentaho.platform.api.engine.ISessionStartupAction;
 import org.pentaho.platform.api.engine.ISolutionEngine;
 import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.api.engine.ISystemSettingsListener;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.engine.PentahoSystemException;
 import org.pentaho.platform.engine.core.messages.Messages;
@@ -1168,6 +1169,19 @@ public class PentahoSystem {
     return PentahoSystem.systemSettingsService;
   }
 
+  /**
+   * Drops values derived from the system settings when a settings file changes on disk.
+   */
+  private static final ISystemSettingsListener settingsChangeListener = new ISystemSettingsListener() {
+    @Override
+    public void onSettingsChange( final String path ) {
+      ICacheManager cacheManager = getCacheManager( null );
+      if ( cacheManager != null ) {
+        cacheManager.removeFromGlobalCache( WAIT_SECONDS );
+      }
+    }
+  };
+
   public static void refreshSettings() {
     PentahoSystem.systemSettingsService.resetSettingsCache();
     ICacheManager cacheManager = getCacheManager( null );
@@ -1403,6 +1417,9 @@ public class PentahoSystem {
    */
   public static void setSystemSettingsService( ISystemSettings systemSettingsService ) {
     PentahoSystem.systemSettingsService = systemSettingsService;
+    if ( systemSettingsService instanceof SystemSettings ) {
+      ( (SystemSettings) systemSettingsService ).addSettingsListener( PentahoSystem.settingsChangeListener );
+    }
   }
 
   // TODO: move this to a helper
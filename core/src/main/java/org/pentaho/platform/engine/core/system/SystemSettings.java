@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -25,7 +25,9 @@ import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Node;
+import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.api.engine.ISystemSettingsListener;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 
@@ -35,16 +37,32 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * Provides system settings data for system configuration files located in the system folder of the repository.
  * System settings for </code>PentahoSystem</code> are hardcoded to exist in <repository>/system/pentaho.xml.
  * Provides a settings cache so that settings are read from the file once, and the associated DOM document is
  * cached in memory for future lookups.
+ * <p/>
+ * Each document is also compiled into a {@link SystemSettingsSnapshot} when it is read, which answers
+ * {@link #getSystemSetting(String, String, String)} for plain element paths without evaluating an XPath. With
+ * {@link #setWatchForChanges(boolean) watchForChanges} on, documents are read again when their file changes on disk
+ * and {@link ISystemSettingsListener}s are told about it.
  *
  * @author unknown
  *
@@ -64,7 +82,37 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
 
   private static final Log logger = LogFactory.getLog( SystemSettings.class );
 
-  private final Map settingsDocumentMap = new ConcurrentHashMap();
+  /**
+   * A settings document as read from its file, swapped as a whole when the file is read again.
+   */
+  private static final class LoadedSettings implements Serializable {
+    private static final long serialVersionUID = -4526358187209351637L;
+
+    private static final LoadedSettings MISSING = new LoadedSettings( null );
+
+    private final Document document;
+
+    private final SystemSettingsSnapshot snapshot;
+
+    private final Map<String, List> sections = new ConcurrentHashMap<String, List>();
+
+    private LoadedSettings( final Document document ) {
+      this.document = document;
+      this.snapshot = document != null ? SystemSettingsSnapshot.compile( document ) : SystemSettingsSnapshot.EMPTY;
+    }
+  }
+
+  private final Map<String, LoadedSettings> settingsDocumentMap = new ConcurrentHashMap<String, LoadedSettings>();
+
+  private final transient Set<ISystemSettingsListener> listeners = new CopyOnWriteArraySet<ISystemSettingsListener>();
+
+  private volatile boolean watchForChanges;
+
+  private transient WatchService watchService;
+
+  private final transient Map<Path, String> watchedFiles = new ConcurrentHashMap<Path, String>();
+
+  private final transient Set<Path> watchedFolders = ConcurrentHashMap.newKeySet();
 
   String logId;
 
@@ -79,12 +127,17 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
   }
 
   public String getSystemSetting( final String path, final String settingName, final String defaultValue ) {
-    debug( Messages.getInstance().getString( "SYSTEMSETTINGS.DEBUG_GET_SYSTEM_SETTING_PATH", File.separator + path ) ); //$NON-NLS-1$
-    Document doc = getSystemSettingsDocument( path );
-    if ( doc == null ) {
+    if ( getLoggingLevel() <= ILogger.DEBUG ) {
+      debug( Messages.getInstance().getString( "SYSTEMSETTINGS.DEBUG_GET_SYSTEM_SETTING_PATH", File.separator + path ) ); //$NON-NLS-1$
+    }
+    LoadedSettings settings = getLoadedSettings( path );
+    if ( settings.document == null ) {
       return defaultValue;
     }
-    Node node = doc.selectSingleNode( "//" + settingName ); //$NON-NLS-1$
+    if ( SystemSettingsSnapshot.isSimplePath( settingName ) ) {
+      return settings.snapshot.getString( settingName, defaultValue );
+    }
+    Node node = settings.document.selectSingleNode( "//" + settingName ); //$NON-NLS-1$
     if ( node == null ) {
       return defaultValue;
     }
@@ -96,23 +149,40 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
   }
 
   public List getSystemSettings( final String path, final String settingName ) {
-    List settings = (List) settingsDocumentMap.get( path + settingName );
-    if ( settings != null ) {
-      return settings;
-    }
-    Document doc = getSystemSettingsDocument( path );
-    if ( doc == null ) {
+    LoadedSettings settings = getLoadedSettings( path );
+    if ( settings.document == null ) {
       return null;
     }
-    settings = doc.selectNodes( "//" + settingName ); //$NON-NLS-1$
-    settingsDocumentMap.put( path + settingName, settings );
-    return settings;
+    List section = settings.sections.get( settingName );
+    if ( section == null ) {
+      section = settings.document.selectNodes( "//" + settingName ); //$NON-NLS-1$
+      settings.sections.put( settingName, section );
+    }
+    return section;
   }
 
   public List getSystemSettings( final String settingName ) {
     return getSystemSettings( SystemSettings.PENTAHOSETTINGSFILENAME, settingName );
   }
 
+  /**
+   * Returns the settings of a document compiled for fast lookups by element path.
+   *
+   * @param path
+   *          the settings document, relative to the system folder
+   * @return the snapshot, empty if the document does not exist or cannot be read
+   */
+  public SystemSettingsSnapshot getSettingsSnapshot( final String path ) {
+    return getLoadedSettings( path ).snapshot;
+  }
+
+  /**
+   * Returns the snapshot of the system settings document, see {@link #getSettingsSnapshot(String)}.
+   */
+  public SystemSettingsSnapshot getSettingsSnapshot() {
+    return getSettingsSnapshot( SystemSettings.PENTAHOSETTINGSFILENAME );
+  }
+
   public Document getSettingsDocumentFromFile( File f ) throws IOException, DocumentException {
     return XmlDom4JHelper.getDocFromFile( f, null );
   }
@@ -123,26 +193,188 @@ public class SystemSettings extends PentahoBase implements ISystemSettings {
    * document. If this is not the first time the document has been requested, return the document from the cache.
    */
   public Document getSystemSettingsDocument( final String actionPath ) {
-    // S logId =
-    // runtimeContext.getInstanceId()+":"+LOG_NAME+":"+runtimeContext.getActionName(); //$NON-NLS-1$ //$NON-NLS-2$
-    Document systemSettingsDocument = (Document) settingsDocumentMap.get( actionPath );
-    if ( systemSettingsDocument == null ) {
-      File f = getFile( actionPath );
-      if ( f == null ) {
-        return null;
+    return getLoadedSettings( actionPath ).document;
+  }
+
+  private LoadedSettings getLoadedSettings( final String path ) {
+    LoadedSettings settings = settingsDocumentMap.get( path );
+    if ( settings == null ) {
+      settings = readSettings( path, false );
+      if ( settings == null ) {
+        return LoadedSettings.MISSING;
+      }
+      // a missing file is only remembered while watching, which notices when it shows up
+      if ( settings.document != null || watchForChanges ) {
+        LoadedSettings current = settingsDocumentMap.putIfAbsent( path, settings );
+        if ( current != null ) {
+          settings = current;
+        }
       }
+    }
+    return settings;
+  }
+
+  /**
+   * Reads a settings document from its file and starts watching the file if asked to.
+   *
+   * @param reload
+   *          <code>true</code> if the file is read again because it changed
+   * @return the settings read, {@link LoadedSettings#MISSING} if there is no such file or <code>null</code> if it
+   *         could not be read
+   */
+  private LoadedSettings readSettings( final String path, final boolean reload ) {
+    if ( watchForChanges ) {
+      watch( path, new File( getAbsolutePath( path ) ) );
+    }
+    File f = getFile( path );
+    if ( f == null ) {
+      return LoadedSettings.MISSING;
+    }
+    Exception failure;
+    try {
+      return new LoadedSettings( getSettingsDocumentFromFile( f ) );
+    } catch ( DocumentException | IOException e ) {
+      failure = e;
+    }
+    String message =
+        Messages.getInstance().getErrorString( "SYSTEMSETTINGS.ERROR_0004_COULD_NOT_READ_FILE", f.getAbsolutePath() ); //$NON-NLS-1$
+    if ( reload ) {
+      // most likely caught halfway through being written; the next change event reads it again
+      warn( message, failure );
+    } else {
+      error( message, failure );
+    }
+    return null;
+  }
+
+  /**
+   * Reads a settings document again and replaces the cached one with it, then tells the listeners. If the file
+   * cannot be read, for instance because it is being written, the settings read before are kept.
+   *
+   * @param path
+   *          the settings document, relative to the system folder
+   */
+  public void reloadSettings( final String path ) {
+    LoadedSettings settings = readSettings( path, true );
+    if ( settings == null ) {
+      return;
+    }
+    settingsDocumentMap.put( path, settings );
+    info( Messages.getInstance().getString( "SYSTEMSETTINGS.INFO_SETTINGS_RELOADED", path ) ); //$NON-NLS-1$
+    for ( ISystemSettingsListener listener : listeners ) {
       try {
-        systemSettingsDocument = getSettingsDocumentFromFile( f );
-        settingsDocumentMap.put( actionPath, systemSettingsDocument );
-      } catch ( DocumentException e ) {
-        // todo log this
-        e.printStackTrace();
+        listener.onSettingsChange( path );
+      } catch ( RuntimeException e ) {
+        error( Messages.getInstance().getErrorString( "SYSTEMSETTINGS.ERROR_0006_LISTENER_FAILED", path ), e ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  public void addSettingsListener( final ISystemSettingsListener listener ) {
+    listeners.add( listener );
+  }
+
+  public void removeSettingsListener( final ISystemSettingsListener listener ) {
+    listeners.remove( listener );
+  }
+
+  public boolean isWatchForChanges() {
+    return watchForChanges;
+  }
+
+  /**
+   * @param watchForChanges
+   *          <code>true</code> to read settings documents again when their files change on disk
+   */
+  public void setWatchForChanges( final boolean watchForChanges ) {
+    this.watchForChanges = watchForChanges;
+    if ( watchForChanges ) {
+      for ( String path : settingsDocumentMap.keySet() ) {
+        watch( path, new File( getAbsolutePath( path ) ) );
+      }
+    } else {
+      stopWatching();
+    }
+  }
+
+  /**
+   * Stops watching the settings files. Documents already read stay cached.
+   */
+  public synchronized void stopWatching() {
+    watchForChanges = false;
+    if ( watchService != null ) {
+      try {
+        watchService.close();
       } catch ( IOException e ) {
-        // todo log this
-        e.printStackTrace();
+        debug( e.getMessage(), e );
+      }
+      watchService = null;
+    }
+    watchedFiles.clear();
+    watchedFolders.clear();
+  }
+
+  private void watch( final String path, final File file ) {
+    Path filePath = file.toPath().toAbsolutePath().normalize();
+    watchedFiles.put( filePath, path );
+    Path folder = filePath.getParent();
+    if ( folder == null || !folder.toFile().isDirectory() || !watchedFolders.add( folder ) ) {
+      return;
+    }
+    try {
+      folder.register( getWatchService(), StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.ENTRY_DELETE );
+    } catch ( IOException | ClosedWatchServiceException e ) {
+      watchedFolders.remove( folder );
+      error( Messages.getInstance().getErrorString( "SYSTEMSETTINGS.ERROR_0005_COULD_NOT_WATCH_FOLDER", folder.toString() ), e ); //$NON-NLS-1$
+    }
+  }
+
+  private synchronized WatchService getWatchService() throws IOException {
+    if ( watchService == null ) {
+      final WatchService service = FileSystems.getDefault().newWatchService();
+      Thread watcher = new Thread( new Runnable() {
+        @Override
+        public void run() {
+          processEvents( service );
+        }
+      }, "system-settings-watcher" ); //$NON-NLS-1$
+      watcher.setDaemon( true );
+      watcher.start();
+      watchService = service;
+    }
+    return watchService;
+  }
+
+  private void processEvents( final WatchService service ) {
+    while ( true ) {
+      WatchKey key;
+      try {
+        key = service.take();
+      } catch ( InterruptedException | ClosedWatchServiceException e ) {
+        return;
+      }
+      Path folder = (Path) key.watchable();
+      Set<String> changed = new LinkedHashSet<String>();
+      for ( WatchEvent<?> event : key.pollEvents() ) {
+        if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+          changed.addAll( watchedFiles.values() );
+        } else {
+          String path = watchedFiles.get( folder.resolve( (Path) event.context() ) );
+          if ( path != null ) {
+            changed.add( path );
+          }
+        }
+      }
+      key.reset();
+      for ( String path : changed ) {
+        try {
+          reloadSettings( path );
+        } catch ( RuntimeException e ) {
+          error( Messages.getInstance().getErrorString( "SYSTEMSETTINGS.ERROR_0004_COULD_NOT_READ_FILE", path ), e ); //$NON-NLS-1$
+        }
       }
     }
-    return systemSettingsDocument;
   }
 
   /**
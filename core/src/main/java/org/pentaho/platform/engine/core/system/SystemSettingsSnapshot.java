@@ -0,0 +1,177 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of a settings document, read once into a map so that looking a setting up does not evaluate an XPath.
+ * <p/>
+ * Every element is stored under its name and under each path of ancestor names leading to it, e.g.
+ * <code>audit/auditLogFile</code>, so {@link #get(String)} gives the same answer as
+ * <code>document.selectSingleNode( "//" + key ).getText()</code> for keys made of plain element names: the text of the
+ * first matching element in document order. Other XPath expressions are not covered, see
+ * {@link #isSimplePath(String)}.
+ */
+public final class SystemSettingsSnapshot implements Serializable {
+
+  private static final long serialVersionUID = 7395804467215513250L;
+
+  public static final SystemSettingsSnapshot EMPTY =
+      new SystemSettingsSnapshot( Collections.<String, String>emptyMap() );
+
+  private final Map<String, String> values;
+
+  private SystemSettingsSnapshot( final Map<String, String> values ) {
+    this.values = values;
+  }
+
+  public static SystemSettingsSnapshot compile( final Document document ) {
+    Element root = document.getRootElement();
+    if ( root == null ) {
+      return EMPTY;
+    }
+    Map<String, String> values = new HashMap<String, String>();
+    compile( root, new ArrayList<String>(), values );
+    return new SystemSettingsSnapshot( Collections.unmodifiableMap( values ) );
+  }
+
+  private static void compile( final Element element, final List<String> ancestors,
+      final Map<String, String> values ) {
+    // an XPath name test without a prefix only matches elements outside of any namespace
+    String name = element.getNamespaceURI().length() == 0 ? element.getName() : null;
+    if ( name != null ) {
+      String text = element.getText();
+      StringBuilder key = new StringBuilder( name );
+      putIfAbsent( values, key.toString(), text );
+      for ( int i = ancestors.size() - 1; i >= 0 && ancestors.get( i ) != null; i-- ) {
+        key.insert( 0, '/' ).insert( 0, ancestors.get( i ) );
+        putIfAbsent( values, key.toString(), text );
+      }
+    }
+    ancestors.add( name );
+    for ( Iterator<?> children = element.elementIterator(); children.hasNext(); ) {
+      compile( (Element) children.next(), ancestors, values );
+    }
+    ancestors.remove( ancestors.size() - 1 );
+  }
+
+  private static void putIfAbsent( final Map<String, String> values, final String key, final String value ) {
+    if ( !values.containsKey( key ) ) {
+      values.put( key, value );
+    }
+  }
+
+  /**
+   * @return <code>true</code> if <code>key</code> is a list of element names separated by slashes, the only kind of
+   *         key a snapshot can answer for
+   */
+  public static boolean isSimplePath( final String key ) {
+    if ( key == null || key.length() == 0 ) {
+      return false;
+    }
+    boolean segmentStart = true;
+    for ( int i = 0; i < key.length(); i++ ) {
+      char c = key.charAt( i );
+      if ( c == '/' ) {
+        if ( segmentStart ) {
+          return false;
+        }
+        segmentStart = true;
+      } else if ( segmentStart ) {
+        if ( !Character.isLetter( c ) && c != '_' ) {
+          return false;
+        }
+        segmentStart = false;
+      } else if ( !Character.isLetterOrDigit( c ) && c != '_' && c != '-' && c != '.' ) {
+        return false;
+      }
+    }
+    return !segmentStart;
+  }
+
+  /**
+   * @return the text of the setting, or <code>null</code> if the document does not have it
+   */
+  public String get( final String key ) {
+    return values.get( key );
+  }
+
+  public boolean contains( final String key ) {
+    return values.containsKey( key );
+  }
+
+  public String getString( final String key, final String defaultValue ) {
+    String value = values.get( key );
+    return value != null ? value : defaultValue;
+  }
+
+  /**
+   * @return the setting as an int, or <code>defaultValue</code> if it is missing or not a number
+   */
+  public int getInt( final String key, final int defaultValue ) {
+    String value = values.get( key );
+    if ( value != null ) {
+      try {
+        return Integer.parseInt( value.trim() );
+      } catch ( NumberFormatException e ) {
+        // fall back to the default
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * @return the setting as a long, or <code>defaultValue</code> if it is missing or not a number
+   */
+  public long getLong( final String key, final long defaultValue ) {
+    String value = values.get( key );
+    if ( value != null ) {
+      try {
+        return Long.parseLong( value.trim() );
+      } catch ( NumberFormatException e ) {
+        // fall back to the default
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * @return <code>true</code> if the setting is <code>true</code> ignoring case, <code>defaultValue</code> if it is
+   *         missing or blank
+   */
+  public boolean getBoolean( final String key, final boolean defaultValue ) {
+    String value = values.get( key );
+    if ( value == null || value.trim().length() == 0 ) {
+      return defaultValue;
+    }
+    return Boolean.parseBoolean( value.trim() );
+  }
+}
@@ -55,12 +55,13 @@ import java.util.Map;
  * @author Aaron Phillips
  * @see IPentahoObjectFactory
  */
-public abstract class AbstractSpringPentahoObjectFactory implements IPentahoObjectFactory {
+public abstract class AbstractSpringPentahoObjectFactory implements IObservableObjectFactory {
 
   protected ConfigurableApplicationContext beanFactory;
   protected static final Log logger = LogFactory.getLog( AbstractSpringPentahoObjectFactory.class );
   protected static final String PRIORITY = "priority";
   private BeanDefinitionPriorityComparitor priorityComparitor = new BeanDefinitionPriorityComparitor();
+  private final ObjectFactoryChangeSupport changeSupport = new ObjectFactoryChangeSupport();
   private String name;
 
   protected AbstractSpringPentahoObjectFactory() {
@@ -312,6 +313,26 @@ public abstract class AbstractSpringPentahoObjectFactory implements IPentahoObje
 
   protected void setBeanFactory( ConfigurableApplicationContext context ) {
     beanFactory = context;
+    changeSupport.fireChanged();
+  }
+
+  /**
+   * The bean definitions are fixed once the application context is set, so listeners are only notified when this
+   * factory is (re)initialized with a new context.
+   * <p/>
+   * {@inheritDoc}
+   */
+  @Override
+  public void addChangeListener( Runnable listener ) {
+    changeSupport.addChangeListener( listener );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeChangeListener( Runnable listener ) {
+    changeSupport.removeChangeListener( listener );
   }
 
   @Override
@@ -32,10 +32,14 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -45,6 +49,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * collecting the results. Results are ordered by "priority" attribute if present, with the highest priority object
  * returned in the calls to retrieve a single object.
  * <p/>
+ * While every registered factory is an {@link IObservableObjectFactory} the outcome of a lookup (which factory defines
+ * a key, whether a type is defined, the references found for a type and set of properties) is cached until one of the
+ * factories reports a change or the set of factories itself changes. Objects are still obtained from the references on
+ * every call, so session and request scoped objects are resolved against the caller's session.
+ * <p/>
  * {@inheritDoc}
  * <p/>
  * User: nbaker Date: 1/15/13
@@ -59,6 +68,17 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   private Lock writeLock = factoryLock.writeLock();
   private Lock readLock = factoryLock.readLock();
 
+  private static final int MAX_CACHED_RESOLUTIONS = 10000;
+
+  private final AtomicLong generation = new AtomicLong();
+  private final ConcurrentMap<ResolutionKey, Resolution> resolutions = new ConcurrentHashMap<ResolutionKey, Resolution>();
+  private volatile int unobservableFactories;
+  private final Runnable invalidator = new Runnable() {
+    @Override public void run() {
+      invalidateResolutionCache();
+    }
+  };
+
   public AggregateObjectFactory() {
 
   }
@@ -66,7 +86,14 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public void registerObjectFactory( IPentahoObjectFactory fact, boolean primary ) {
     writeLock.lock();
     try {
-      factories.add( fact );
+      if ( factories.add( fact ) ) {
+        if ( fact instanceof IObservableObjectFactory ) {
+          ( (IObservableObjectFactory) fact ).addChangeListener( invalidator );
+        } else {
+          unobservableFactories++;
+        }
+      }
+      invalidateResolutionCache();
     } finally {
       writeLock.unlock();
     }
@@ -89,12 +116,30 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public boolean deregisterObjectFactory( IPentahoObjectFactory factory ) {
     writeLock.lock();
     try {
-      return factories.remove( factory );
+      boolean removed = factories.remove( factory );
+      if ( removed ) {
+        if ( factory instanceof IObservableObjectFactory ) {
+          ( (IObservableObjectFactory) factory ).removeChangeListener( invalidator );
+        } else {
+          unobservableFactories--;
+        }
+        invalidateResolutionCache();
+      }
+      return removed;
     } finally {
       writeLock.unlock();
     }
   }
 
+  /**
+   * Discard all cached lookup results. Called whenever a factory is registered or removed, or one of the registered
+   * factories reports that the objects it defines have changed.
+   */
+  public void invalidateResolutionCache() {
+    generation.incrementAndGet();
+    resolutions.clear();
+  }
+
   public Set<IPentahoObjectFactory> getFactories() {
     return new HashSet( factories );
   }
@@ -107,17 +152,11 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public <T> T get( Class<T> interfaceClass, String key, IPentahoSession session ) throws ObjectFactoryException {
     // if they want it by id, check for that first
     if ( key != null ) {
-      readLock.lock();
-      try {
-        for ( IPentahoObjectFactory fact : factories ) {
-          if ( fact.objectDefined( key ) ) {
-            T object = fact.get( interfaceClass, key, session );
-            logger.debug( MessageFormat.format( "Found object for key: {0} in factory: {1}", key, fact.getName() ) );
-            return object;
-          }
-        }
-      } finally {
-        readLock.unlock();
+      IPentahoObjectFactory fact = getFactoryDefining( key );
+      if ( fact != null ) {
+        T object = fact.get( interfaceClass, key, session );
+        logger.debug( MessageFormat.format( "Found object for key: {0} in factory: {1}", key, fact.getName() ) );
+        return object;
       }
     }
 
@@ -146,19 +185,38 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public boolean objectDefined( String key ) {
+    IPentahoObjectFactory fact = getFactoryDefining( key );
+    if ( fact != null ) {
+      logger.debug( MessageFormat.format( "Object defined for key: {0} in factory: {1}", key, fact.getName() ) );
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the first factory defining an object for the given key, or null if there is none
+   */
+  private IPentahoObjectFactory getFactoryDefining( String key ) {
+    ResolutionKey resolutionKey = new ResolutionKey( ResolutionKey.Kind.KEY, key, null );
+    Resolution cached = getCachedResolution( resolutionKey );
+    if ( cached != null ) {
+      return (IPentahoObjectFactory) cached.value;
+    }
+    long currentGeneration = generation.get();
+    IPentahoObjectFactory found = null;
     readLock.lock();
     try {
       for ( IPentahoObjectFactory fact : factories ) {
         if ( fact.objectDefined( key ) ) {
-          logger.debug( MessageFormat.format( "Object defined for key: {0} in factory: {1}", key, fact.getName() ) );
-          return true;
+          found = fact;
+          break;
         }
       }
-
     } finally {
       readLock.unlock();
     }
-    return false;
+    cacheResolution( resolutionKey, currentGeneration, found );
+    return found;
   }
 
   /**
@@ -168,17 +226,11 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
    */
   @Override
   public Class<?> getImplementingClass( String key ) {
-    readLock.lock();
-    try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( key ) ) {
-          logger.debug( MessageFormat.format( "Found implementing class for key: {0} in factory: {1}", key, fact
-              .getName() ) );
-          return fact.getImplementingClass( key );
-        }
-      }
-    } finally {
-      readLock.unlock();
+    IPentahoObjectFactory fact = getFactoryDefining( key );
+    if ( fact != null ) {
+      logger.debug( MessageFormat.format( "Found implementing class for key: {0} in factory: {1}", key, fact
+          .getName() ) );
+      return fact.getImplementingClass( key );
     }
     return null;
   }
@@ -268,16 +320,9 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     if ( highestRef != null ) {
       return highestRef.getObject();
     }
-    readLock.lock();
-    try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz.getSimpleName() ) ) {
-          T object = fact.get( clazz, clazz.getSimpleName(), session );
-          return object;
-        }
-      }
-    } finally {
-      readLock.unlock();
+    IPentahoObjectFactory fact = getFactoryDefining( clazz.getSimpleName() );
+    if ( fact != null ) {
+      return fact.get( clazz, clazz.getSimpleName(), session );
     }
     String msg =
         Messages.getInstance().getString( "AbstractSpringPentahoObjectFactory.WARN_FAILED_TO_RETRIEVE_OBJECT",
@@ -288,6 +333,13 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public boolean objectDefined( Class<?> clazz ) {
+    ResolutionKey resolutionKey = new ResolutionKey( ResolutionKey.Kind.TYPE, clazz, null );
+    Resolution cached = getCachedResolution( resolutionKey );
+    if ( cached != null ) {
+      return (Boolean) cached.value;
+    }
+    long currentGeneration = generation.get();
+    boolean defined = false;
     readLock.lock();
     try {
       for ( IPentahoObjectFactory fact : factories ) {
@@ -295,13 +347,15 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
           logger.debug( MessageFormat.format( "Found object for class: {0} in factory: {1}", clazz.getName(), fact
               .getName() ) );
-          return true;
+          defined = true;
+          break;
         }
       }
     } finally {
       readLock.unlock();
     }
-    return false;
+    cacheResolution( resolutionKey, currentGeneration, defined );
+    return defined;
   }
 
   @Override
@@ -309,6 +363,24 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
                                                             Map<String, String> properties )
       throws ObjectFactoryException {
 
+    return resolveReferences( interfaceClass, curSession, properties ).getHighest();
+  }
+
+  /**
+   * Collect the references to the given type from every factory defining it. The result is served from the resolution
+   * cache when possible.
+   */
+  @SuppressWarnings( "unchecked" )
+  private <T> ResolvedReferences<T> resolveReferences( Class<T> interfaceClass, IPentahoSession curSession,
+                                                       Map<String, String> properties )
+      throws ObjectFactoryException {
+    ResolutionKey resolutionKey = new ResolutionKey( ResolutionKey.Kind.REFERENCES, interfaceClass, properties );
+    Resolution cached = getCachedResolution( resolutionKey );
+    if ( cached != null ) {
+      return (ResolvedReferences<T>) cached.value;
+    }
+    long currentGeneration = generation.get();
+
     Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
     readLock.lock();
     try {
@@ -323,23 +395,41 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     } finally {
       readLock.unlock();
     }
-    IPentahoObjectReference<T> highestRef = null;
-    int highestRefPriority = -1;
-    for ( IPentahoObjectReference<T> ref : references ) {
-      int pri = computePriority( ref );
-      if ( pri > highestRefPriority ) {
-        highestRef = ref;
-        highestRefPriority = pri;
-      }
+    ResolvedReferences<T> resolved = new ResolvedReferences<T>( references );
+    cacheResolution( resolutionKey, currentGeneration, resolved );
+    return resolved;
+  }
+
+  private Resolution getCachedResolution( ResolutionKey key ) {
+    if ( unobservableFactories > 0 ) {
+      return null;
     }
+    Resolution resolution = resolutions.get( key );
+    if ( resolution == null || resolution.generation != generation.get() ) {
+      return null;
+    }
+    return resolution;
+  }
 
-    return highestRef;
+  private void cacheResolution( ResolutionKey key, long resolvedGeneration, Object value ) {
+    // a resolution computed before the latest invalidation carries the old generation and is never served
+    if ( unobservableFactories > 0 || resolutions.size() >= MAX_CACHED_RESOLUTIONS ) {
+      return;
+    }
+    resolutions.put( key.copy(), new Resolution( resolvedGeneration, value ) );
   }
 
   public void clear() {
     writeLock.lock();
     try {
+      for ( IPentahoObjectFactory fact : factories ) {
+        if ( fact instanceof IObservableObjectFactory ) {
+          ( (IObservableObjectFactory) fact ).removeChangeListener( invalidator );
+        }
+      }
       this.factories.clear();
+      unobservableFactories = 0;
+      invalidateResolutionCache();
     } finally {
       writeLock.unlock();
     }
@@ -390,32 +480,104 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public <T> List<IPentahoObjectReference<T>> getObjectReferences( Class<T> interfaceClass, IPentahoSession curSession,
                                                                    Map<String, String> properties )
       throws ObjectFactoryException {
-    // Use a set to avoid duplicates
-    Set<IPentahoObjectReference<T>> referenceSet = new HashSet<IPentahoObjectReference<T>>();
+    return new ArrayList<IPentahoObjectReference<T>>(
+        resolveReferences( interfaceClass, curSession, properties ).getSorted() );
+  }
 
-    readLock.lock();
-    try {
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
-          if ( found != null ) {
-            referenceSet.addAll( found );
-          }
-        }
+  @Override
+  public String getName() {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * Cache key for a lookup. Properties are copied before a key is stored so later changes by the caller to the map
+   * passed in cannot affect it.
+   */
+  private static final class ResolutionKey {
+    enum Kind {
+      KEY, TYPE, REFERENCES
+    }
+
+    private final Kind kind;
+    private final Object target;
+    private final Map<String, String> properties;
+    private final int hash;
+
+    ResolutionKey( Kind kind, Object target, Map<String, String> properties ) {
+      this.kind = kind;
+      this.target = target;
+      this.properties = properties;
+      this.hash = 31 * ( 31 * kind.hashCode() + ( target != null ? target.hashCode() : 0 ) )
+          + ( properties != null ? properties.hashCode() : 0 );
+    }
+
+    ResolutionKey copy() {
+      if ( properties == null ) {
+        return this;
       }
-    } finally {
-      readLock.unlock();
+      return new ResolutionKey( kind, target, new HashMap<String, String>( properties ) );
     }
 
-    // transform to a list to sort
-    List<IPentahoObjectReference<T>> referenceList = new ArrayList<IPentahoObjectReference<T>>();
-    referenceList.addAll( referenceSet );
-    Collections.sort( referenceList, referencePriorityComparitor );
-    return referenceList;
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof ResolutionKey ) ) {
+        return false;
+      }
+      ResolutionKey that = (ResolutionKey) o;
+      return kind == that.kind && ( target != null ? target.equals( that.target ) : that.target == null )
+          && ( properties != null ? properties.equals( that.properties ) : that.properties == null );
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
   }
 
-  @Override
-  public String getName() {
-    return getClass().getSimpleName();
+  private static final class Resolution {
+    private final long generation;
+    private final Object value;
+
+    Resolution( long generation, Object value ) {
+      this.generation = generation;
+      this.value = value;
+    }
+  }
+
+  /**
+   * The references found for a type, both ordered by "priority" attribute and reduced to the highest ranked one.
+   */
+  private static final class ResolvedReferences<T> {
+    private final List<IPentahoObjectReference<T>> sorted;
+    private final IPentahoObjectReference<T> highest;
+
+    ResolvedReferences( Set<IPentahoObjectReference<T>> references ) {
+      IPentahoObjectReference<T> highestRef = null;
+      int highestRefPriority = -1;
+      for ( IPentahoObjectReference<T> ref : references ) {
+        int pri = ref.getRanking();
+        if ( pri > highestRefPriority ) {
+          highestRef = ref;
+          highestRefPriority = pri;
+        }
+      }
+      this.highest = highestRef;
+
+      // transform to a list to sort
+      List<IPentahoObjectReference<T>> referenceList = new ArrayList<IPentahoObjectReference<T>>( references );
+      Collections.sort( referenceList, referencePriorityComparitor );
+      this.sorted = Collections.unmodifiableList( referenceList );
+    }
+
+    IPentahoObjectReference<T> getHighest() {
+      return highest;
+    }
+
+    List<IPentahoObjectReference<T>> getSorted() {
+      return sorted;
+    }
   }
 }
@@ -0,0 +1,48 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system.objfac;
+
+import org.pentaho.platform.api.engine.IPentahoObjectFactory;
+
+/**
+ * An {@link IPentahoObjectFactory} which announces changes to the set of objects it defines. {@link
+ * AggregateObjectFactory} only caches lookup results while every registered factory implements this interface.
+ * <p/>
+ * Implementations agree to two things: listeners are notified whenever the answer to {@code objectDefined} or {@code
+ * getObjectReferences} may have changed, and the references they return do not capture the session passed to the
+ * lookup, so that a reference resolved for one session may be handed to another.
+ */
+public interface IObservableObjectFactory extends IPentahoObjectFactory {
+
+  /**
+   * Register a listener to be run whenever the objects defined by this factory change.
+   *
+   * @param listener
+   */
+  void addChangeListener( Runnable listener );
+
+  /**
+   * Remove a listener previously added with {@link #addChangeListener(Runnable)}.
+   *
+   * @param listener
+   */
+  void removeChangeListener( Runnable listener );
+}
@@ -24,9 +24,10 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 import org.pentaho.platform.api.engine.IPentahoInitializer;
-import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoObjectReference;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
@@ -53,11 +54,17 @@ import java.util.Map;
  * User: nbaker Date: 10/31/13 Time: 11:43 AM
  */
 @SuppressWarnings( "unchecked" )
-public class OSGIObjectFactory implements IPentahoObjectFactory {
+public class OSGIObjectFactory implements IObservableObjectFactory {
 
   private BundleContext context;
   Logger log = LoggerFactory.getLogger( OSGIObjectFactory.class );
   public static final String REFERENCE_CLASS = "reference_class";
+  private final ObjectFactoryChangeSupport changeSupport = new ObjectFactoryChangeSupport();
+  private final ServiceListener serviceListener = new ServiceListener() {
+    @Override public void serviceChanged( ServiceEvent serviceEvent ) {
+      changeSupport.fireChanged();
+    }
+  };
 
   public OSGIObjectFactory( final BundleContext context ) {
     this.context = context;
@@ -327,6 +334,39 @@ public class OSGIObjectFactory implements IPentahoObjectFactory {
     return getClass().getSimpleName();
   }
 
+  /**
+   * Listeners are notified of every service registered, modified or unregistered in the BundleContext. The service
+   * listener is only added to the context while there is someone to notify.
+   * <p/>
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void addChangeListener( Runnable listener ) {
+    if ( !changeSupport.hasListeners() ) {
+      try {
+        context.addServiceListener( serviceListener );
+      } catch ( IllegalStateException e ) {
+        log.debug( "OSGI: unable to listen for service changes, BundleContext is no longer valid" );
+      }
+    }
+    changeSupport.addChangeListener( listener );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void removeChangeListener( Runnable listener ) {
+    changeSupport.removeChangeListener( listener );
+    if ( !changeSupport.hasListeners() ) {
+      try {
+        context.removeServiceListener( serviceListener );
+      } catch ( IllegalStateException e ) {
+        // context already invalidated, its listeners are gone with it
+      }
+    }
+  }
+
   /**
    * Occasionally the Bundle Context will be invalidated before the OSGIObjectFactory wrapping it is de-registered. This
    * method checks for this inconsistency and deregisters the OSGIObjectFactory. Callers should handle a false condition
@@ -24,7 +24,9 @@ import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
 import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
 import org.pentaho.platform.api.engine.IPentahoObjectReference;
@@ -52,13 +54,29 @@ public class OSGIRuntimeObjectFactory extends RuntimeObjectFactory {
   private AtomicBoolean osgiInitialized = new AtomicBoolean( false );
   private List<OSGIPentahoObjectRegistration> deferredRegistrations = new ArrayList<OSGIPentahoObjectRegistration>();
   private Logger logger = LoggerFactory.getLogger( getClass() );
+  private final ServiceListener serviceListener = new ServiceListener() {
+    @Override public void serviceChanged( ServiceEvent serviceEvent ) {
+      changeSupport.fireChanged();
+    }
+  };
 
   public OSGIRuntimeObjectFactory() {
   }
 
   public void setBundleContext( BundleContext bundleContext ) {
 
+    if ( this.bundleContext != null ) {
+      try {
+        this.bundleContext.removeServiceListener( serviceListener );
+      } catch ( IllegalStateException e ) {
+        // previous context is no longer valid, nothing to remove
+      }
+    }
     this.bundleContext = bundleContext;
+    if ( bundleContext != null ) {
+      // registrations are published as OSGI services from here on, follow them to keep lookup caches current
+      bundleContext.addServiceListener( serviceListener );
+    }
     // Migrate previously registered entries to OSGI
 
     Iterator<OSGIPentahoObjectRegistration> iterator = deferredRegistrations.iterator();
@@ -73,6 +91,7 @@ public class OSGIRuntimeObjectFactory extends RuntimeObjectFactory {
       }
     }
     osgiInitialized.set( true );
+    changeSupport.fireChanged();
 
 
   }
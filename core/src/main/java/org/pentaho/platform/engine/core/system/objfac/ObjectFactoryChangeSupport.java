@@ -0,0 +1,59 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system.objfac;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listener bookkeeping shared by the {@link IObservableObjectFactory} implementations.
+ */
+public class ObjectFactoryChangeSupport {
+
+  private static final Logger logger = LoggerFactory.getLogger( ObjectFactoryChangeSupport.class );
+
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<Runnable>();
+
+  public void addChangeListener( Runnable listener ) {
+    listeners.add( listener );
+  }
+
+  public void removeChangeListener( Runnable listener ) {
+    listeners.remove( listener );
+  }
+
+  public boolean hasListeners() {
+    return !listeners.isEmpty();
+  }
+
+  public void fireChanged() {
+    for ( Runnable listener : listeners ) {
+      try {
+        listener.run();
+      } catch ( RuntimeException e ) {
+        logger.error( "Error notifying object factory change listener", e );
+      }
+    }
+  }
+}
@@ -49,13 +49,15 @@ import java.util.concurrent.Callable;
  * <p/>
  * Created by nbaker on 2/19/14.
  */
-public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
+public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory, IObservableObjectFactory {
 
 
   private final Multimap<Class, IPentahoObjectReference<?>> registry =
       Multimaps.synchronizedSetMultimap( HashMultimap
           .<Class, IPentahoObjectReference<?>>create() );
 
+  protected final ObjectFactoryChangeSupport changeSupport = new ObjectFactoryChangeSupport();
+
 
   public RuntimeObjectFactory() {
 
@@ -139,6 +141,7 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
     for ( Class<?> aClass : classes ) {
       registry.get( aClass ).add( reference );
     }
+    changeSupport.fireChanged();
     return new ObjectRegistration( reference, Arrays.asList( classes ) );
 
   }
@@ -333,6 +336,22 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
     return "Runtime Object Factory";
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void addChangeListener( Runnable listener ) {
+    changeSupport.addChangeListener( listener );
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeChangeListener( Runnable listener ) {
+    changeSupport.removeChangeListener( listener );
+  }
+
 
   protected <T> List<IPentahoObjectReference<?>> getReferencesByQuery( Class<T> type,
                                                                        Map<String, String> query ) {
@@ -433,6 +452,7 @@ public class RuntimeObjectFactory implements IPentahoRegistrableObjectFactory {
       for ( Class<?> aClass : publishedClasses ) {
         registry.get( aClass ).remove( reference );
       }
+      changeSupport.fireChanged();
 
     }
   }
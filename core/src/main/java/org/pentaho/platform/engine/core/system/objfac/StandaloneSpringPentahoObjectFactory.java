@@ -73,7 +73,7 @@ public class StandaloneSpringPentahoObjectFactory extends AbstractSpringPentahoO
       Scope sessionScope = new ThreadLocalScope();
       appCtx.getBeanFactory().registerScope( "session", sessionScope );
 
-      beanFactory = appCtx;
+      setBeanFactory( appCtx );
     } else {
       if ( !( context instanceof ConfigurableApplicationContext ) ) {
         String msg =
@@ -0,0 +1,161 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services;
+
+import org.dom4j.Document;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps parsed action sequence documents so that frequently run xactions are not read from the repository and parsed
+ * again on every execution. Documents are shared by all sessions in the {@value #CACHE_REGION} cache region; callers
+ * still look the file up through their own session first, so repository permissions apply as before.
+ * <p/>
+ * Repository documents are keyed by path, file id, version and last modified date, so a changed file is parsed again
+ * on its next use. They are stored after localization and the key includes the locale. Changes to localization
+ * bundles only show once the entry has been evicted or the cache cleared.
+ * <p/>
+ * An {@link org.pentaho.platform.api.engine.IActionSequence} holds per-execution state (the components of its
+ * actions), so it is not itself cached. Each caller gets its own copy of the cached document and builds the action
+ * sequence from it, which costs far less than reading and parsing the file.
+ */
+public class ActionSequenceDocumentCache {
+
+  public static final String CACHE_REGION = "action-sequence-documents"; //$NON-NLS-1$
+
+  private static final ActionSequenceDocumentCache instance = new ActionSequenceDocumentCache( null );
+
+  /**
+   * The cache manager to use; <code>null</code> to use the one registered with {@link PentahoSystem}.
+   */
+  private final ICacheManager cacheManager;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong parseCount = new AtomicLong();
+  private final AtomicLong compileCount = new AtomicLong();
+
+  ActionSequenceDocumentCache( ICacheManager cacheManager ) {
+    this.cacheManager = cacheManager;
+  }
+
+  public static ActionSequenceDocumentCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the key of a repository document, or <code>null</code> if the file carries nothing that tells its
+   * versions apart and so cannot be cached.
+   */
+  public static String getKey( RepositoryFile file, Locale locale ) {
+    Date lastModified = file.getLastModifiedDate();
+    if ( file.getVersionId() == null && lastModified == null ) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder( file.getPath() ).append( '\n' );
+    key.append( file.getId() ).append( '\n' );
+    key.append( file.getVersionId() ).append( '\n' );
+    key.append( lastModified == null ? "" : lastModified.getTime() ).append( '\n' ); //$NON-NLS-1$
+    key.append( locale );
+    return key.toString();
+  }
+
+  /**
+   * Returns the key of an action sequence given as xml text.
+   */
+  public static String getKey( String actionSequenceXml ) {
+    return "xml\n" + actionSequenceXml; //$NON-NLS-1$
+  }
+
+  /**
+   * Returns a copy of the document cached under <code>key</code>, or <code>null</code> if there is none.
+   */
+  public Document get( String key ) {
+    ICacheManager cache = getCacheManager();
+    if ( key == null || cache == null ) {
+      return null;
+    }
+    Object cached = cache.getFromRegionCache( CACHE_REGION, key );
+    if ( cached instanceof Document ) {
+      hitCount.incrementAndGet();
+      return (Document) ( (Document) cached ).clone();
+    }
+    return null;
+  }
+
+  /**
+   * Caches a copy of <code>document</code>, so that later changes the caller makes to it are not shared.
+   */
+  public void put( String key, Document document ) {
+    ICacheManager cache = getCacheManager();
+    if ( key == null || document == null || cache == null ) {
+      return;
+    }
+    cache.putInRegionCache( CACHE_REGION, key, document.clone() );
+  }
+
+  /**
+   * Records that an action sequence document had to be read and parsed.
+   */
+  public void documentParsed() {
+    parseCount.incrementAndGet();
+  }
+
+  /**
+   * Records that an action sequence was built from a document.
+   */
+  public void actionSequenceCompiled() {
+    compileCount.incrementAndGet();
+  }
+
+  /**
+   * @return the number of documents served from the cache
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of documents read and parsed
+   */
+  public long getParseCount() {
+    return parseCount.get();
+  }
+
+  /**
+   * @return the number of action sequences built from documents
+   */
+  public long getCompileCount() {
+    return compileCount.get();
+  }
+
+  private ICacheManager getCacheManager() {
+    ICacheManager cache = cacheManager != null ? cacheManager : PentahoSystem.getCacheManager( null );
+    if ( cache != null && !cache.cacheEnabled( CACHE_REGION ) ) {
+      cache.addCacheRegion( CACHE_REGION );
+    }
+    return cache;
+  }
+}
@@ -94,6 +94,7 @@ public class ActionSequenceJCRHelper {
     if ( actionSequenceDocument == null ) {
       return null;
     }
+    ActionSequenceDocumentCache.getInstance().actionSequenceCompiled();
     IActionSequence actionSequence =
         SequenceDefinition.ActionSequenceFactory( actionSequenceDocument, actionPath, pentahoSession, PentahoSystem
             .getApplicationContext(), loggingLevel );
@@ -111,6 +112,13 @@ public class ActionSequenceJCRHelper {
     Document document = null;
     SimpleRepositoryFileData data = null;
     if ( file != null ) {
+      ActionSequenceDocumentCache documentCache = ActionSequenceDocumentCache.getInstance();
+      String cacheKey = ActionSequenceDocumentCache.getKey( file, getLocale() );
+      document = documentCache.get( cacheKey );
+      if ( document != null ) {
+        return document;
+      }
+      documentCache.documentParsed();
       data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
       if ( data != null ) {
         try {
@@ -132,6 +140,7 @@ public class ActionSequenceJCRHelper {
         return null;
       }
       localizeDoc( document, file );
+      documentCache.put( cacheKey, document );
     }
 
     return document;
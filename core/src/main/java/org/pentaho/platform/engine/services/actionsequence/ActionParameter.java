@@ -51,6 +51,8 @@ public class ActionParameter implements IActionParameter {
 
   private boolean isOutputParameter = true;
 
+  private boolean borrowedValue = false;
+
   private static final Log logger = LogFactory.getLog( ActionParameter.class );
 
   // should we force this to String for serialization?
@@ -168,9 +170,28 @@ public class ActionParameter implements IActionParameter {
     if ( this.value != value ) {
       dispose();
       this.value = value;
+      borrowedValue = false;
     }
   }
 
+  /**
+   * Creates a copy of this parameter that shares its definition and current value. The copy borrows the value: it
+   * is not disposed when the copy is disposed or given a new value, so the copy can be handed to a separate
+   * execution scope without affecting this parameter.
+   * 
+   * @return a copy of this parameter
+   */
+  public ActionParameter copy() {
+    ActionParameter copy = new ActionParameter( name, type, value, variables, null );
+    copy.defaultValue = defaultValue;
+    copy.paramSelections = paramSelections;
+    copy.promptType = promptType;
+    copy.saveLocations = ( saveLocations == null ) ? null : new ArrayList( saveLocations );
+    copy.isOutputParameter = isOutputParameter;
+    copy.borrowedValue = true;
+    return copy;
+  }
+
   public boolean hasDefaultValue() {
     return ( defaultValue != null );
   }
@@ -188,7 +209,7 @@ public class ActionParameter implements IActionParameter {
   }
 
   public void dispose() {
-    if ( ( value != null ) && ( value instanceof IDisposable ) ) {
+    if ( !borrowedValue && ( value != null ) && ( value instanceof IDisposable ) ) {
       ( (IDisposable) value ).dispose();
     }
   }
@@ -22,8 +22,11 @@ package org.pentaho.platform.engine.services.actionsequence;
 
 import org.pentaho.platform.api.engine.IActionSequence;
 import org.pentaho.platform.api.engine.IConditionalExecution;
+import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.ISequenceDefinition;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +41,10 @@ public class ActionSequence implements IActionSequence {
 
   private boolean loopUsingPeek;
 
+  private int loopParallelism = 1;
+
+  private boolean loopOrdered = true;
+
   protected ActionSequence( final String loopParameter, final ISequenceDefinition sequenceDefinition,
       final List actionDefinitions, boolean loopUsingPeek ) {
     this.loopParameter = loopParameter;
@@ -130,4 +137,50 @@ public class ActionSequence implements IActionSequence {
     return loopUsingPeek;
   }
 
+  public int getLoopParallelism() {
+    return loopParallelism;
+  }
+
+  public void setLoopParallelism( final int loopParallelism ) {
+    this.loopParallelism = loopParallelism;
+  }
+
+  public boolean isLoopOrdered() {
+    return loopOrdered;
+  }
+
+  public void setLoopOrdered( final boolean loopOrdered ) {
+    this.loopOrdered = loopOrdered;
+  }
+
+  /**
+   * Creates a copy of this sequence whose action definitions are rebuilt from their XML nodes. Action definitions
+   * cache the component that executes them, so a copy is needed whenever the same actions must run concurrently,
+   * e.g. for the iterations of a parallel loop.
+   * 
+   * @param logger
+   *          the logger used while rebuilding the action definitions
+   * @return a copy of this sequence that shares no action definitions with it
+   */
+  public ActionSequence copy( final ILogger logger ) {
+    List copiedDefinitions = new ArrayList( actionDefinitions.size() );
+    for ( Object listItem : actionDefinitions ) {
+      if ( listItem instanceof ActionSequence ) {
+        copiedDefinitions.add( ( (ActionSequence) listItem ).copy( logger ) );
+      } else if ( listItem instanceof ISolutionActionDefinition ) {
+        ISolutionActionDefinition actionDef = (ISolutionActionDefinition) listItem;
+        ActionDefinition copiedDef = new ActionDefinition( actionDef.getNode(), logger );
+        copiedDef.setLoggingLevel( actionDef.getLoggingLevel() );
+        copiedDefinitions.add( copiedDef );
+      } else {
+        copiedDefinitions.add( listItem );
+      }
+    }
+    ActionSequence copy = new ActionSequence( loopParameter, sequenceDefinition, copiedDefinitions, loopUsingPeek );
+    copy.setConditionalExecution( conditionalExecution );
+    copy.setLoopParallelism( loopParallelism );
+    copy.setLoopOrdered( loopOrdered );
+    return copy;
+  }
+
 }
@@ -133,9 +133,37 @@ public class SequenceDefinition implements ISequenceDefinition {
     ActionSequence sequence = new ActionSequence( loopParameterName, seqDef, actionDefinitionList, loopUsingPeek );
 
     sequence.setConditionalExecution( conditionalExecution );
+    sequence.setLoopParallelism( SequenceDefinition.parseLoopParallelism( actionsNode, logger ) );
+    sequence.setLoopOrdered( !"false".equalsIgnoreCase( XmlDom4JHelper.getNodeText( "@ordered", actionsNode ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
     return sequence;
   }
 
+  /**
+   * Reads the {@code parallel} attribute of an {@code actions} node, which is either the maximum number of loop
+   * iterations to run concurrently or {@code true} to use one per available processor.
+   */
+  static int parseLoopParallelism( final Node actionsNode, final ILogger logger ) {
+    String parallel = XmlDom4JHelper.getNodeText( "@parallel", actionsNode ); //$NON-NLS-1$
+    if ( ( parallel == null ) || ( parallel.trim().length() == 0 ) ) {
+      return 1;
+    }
+    parallel = parallel.trim();
+    if ( "false".equalsIgnoreCase( parallel ) ) { //$NON-NLS-1$
+      return 1;
+    }
+    if ( "true".equalsIgnoreCase( parallel ) ) { //$NON-NLS-1$
+      return Runtime.getRuntime().availableProcessors();
+    }
+    try {
+      return Math.max( 1, Integer.parseInt( parallel ) );
+    } catch ( NumberFormatException e ) {
+      if ( logger != null ) {
+        logger.warn( Messages.getInstance().getString( "SequenceDefinition.WARN_INVALID_LOOP_PARALLELISM", parallel ) ); //$NON-NLS-1$
+      }
+      return 1;
+    }
+  }
+
   private SequenceDefinition( final Node sequenceRootNode, final String solutionPath, final ILogger logger,
       final IApplicationContext applicationContext ) {
 
@@ -0,0 +1,347 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.api.engine.IAuditEntry;
+import org.pentaho.platform.engine.core.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base class for {@link IAuditEntry} implementations that take audit writes off the calling thread.
+ * <p>
+ * {@link #auditAll} only places an {@link AuditRecord} in a bounded, lock-free ring buffer. A single background
+ * thread drains the buffer and hands the records to {@link #writeBatch(List)} in batches of at most
+ * {@link #setBatchSize(int) batchSize}, writing whatever is pending at least every
+ * {@link #setFlushIntervalMillis(long) flushIntervalMillis}. When the buffer is full the {@link OverflowPolicy}
+ * decides whether the record is dropped or the caller waits for room.
+ * <p>
+ * {@link #shutdown()} drains and writes all pending records; configure it as the bean's <code>destroy-method</code>.
+ * 
+ * @see AsyncAuditSQLEntry
+ * @see AsyncAuditFileEntry
+ */
+public abstract class AsyncAuditEntry implements IAuditEntry {
+
+  /**
+   * What {@link AsyncAuditEntry#auditAll} does when the buffer is full.
+   */
+  public enum OverflowPolicy {
+    /** Discard the new record and count it as dropped. */
+    DROP,
+    /** Wait until the background writer has made room. */
+    BLOCK
+  }
+
+  private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos( 100 );
+
+  private static final long DROP_WARN_INTERVAL = 1000;
+
+  private int capacity = 8192;
+
+  private int batchSize = 500;
+
+  private long flushIntervalMillis = 1000;
+
+  private long shutdownTimeoutMillis = 30000;
+
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+  private final AtomicLong queuedCount = new AtomicLong();
+
+  private final AtomicLong writtenCount = new AtomicLong();
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * Callers between their shutdown check and the end of their offer; the writer waits for them before it stops, so a
+   * record accepted into the buffer is never left behind.
+   */
+  private final AtomicInteger enqueueing = new AtomicInteger();
+
+  private volatile AuditRingBuffer<AuditRecord> buffer;
+
+  private volatile Thread writerThread;
+
+  private volatile boolean running;
+
+  private volatile boolean shutdown;
+
+  public void auditAll( final String jobId, final String instId, final String objId, final String objType,
+      final String actor, final String messageType, final String messageName, final String messageTxtValue,
+      final BigDecimal messageNumValue, final double duration ) throws AuditException {
+    AuditRecord record =
+        new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName, messageTxtValue,
+            messageNumValue, duration, System.currentTimeMillis() );
+    enqueue( record );
+  }
+
+  void enqueue( final AuditRecord record ) {
+    enqueueing.incrementAndGet();
+    try {
+      if ( shutdown ) {
+        recordDropped();
+        return;
+      }
+      AuditRingBuffer<AuditRecord> ringBuffer = start();
+      if ( ringBuffer == null ) {
+        recordDropped();
+        return;
+      }
+      while ( !ringBuffer.offer( record ) ) {
+        if ( overflowPolicy == OverflowPolicy.DROP || shutdown ) {
+          recordDropped();
+          return;
+        }
+        LockSupport.unpark( writerThread );
+        LockSupport.parkNanos( this, BLOCK_PARK_NANOS );
+      }
+      queuedCount.incrementAndGet();
+      if ( ringBuffer.size() >= batchSize ) {
+        LockSupport.unpark( writerThread );
+      }
+    } finally {
+      enqueueing.decrementAndGet();
+    }
+  }
+
+  private void recordDropped() {
+    long dropped = droppedCount.incrementAndGet();
+    if ( dropped % DROP_WARN_INTERVAL == 1 ) {
+      Logger.warn( getClass().getName(), Messages.getInstance().getString( "AUDASYNC.WARN_ENTRIES_DROPPED", //$NON-NLS-1$
+          dropped ) );
+    }
+  }
+
+  /**
+   * Creates the buffer and starts the background writer on first use.
+   * 
+   * @return the buffer, or <code>null</code> if the writer has already been shut down
+   */
+  private AuditRingBuffer<AuditRecord> start() {
+    AuditRingBuffer<AuditRecord> ringBuffer = buffer;
+    if ( ringBuffer != null ) {
+      return ringBuffer;
+    }
+    synchronized ( this ) {
+      if ( buffer == null && !shutdown ) {
+        Thread thread = new Thread( new Runnable() {
+          public void run() {
+            runWriter();
+          }
+        }, "pentaho-audit-writer" ); //$NON-NLS-1$
+        thread.setDaemon( true );
+        writerThread = thread;
+        running = true;
+        buffer = new AuditRingBuffer<AuditRecord>( capacity );
+        thread.start();
+      }
+      return buffer;
+    }
+  }
+
+  private void runWriter() {
+    AuditRingBuffer<AuditRecord> ringBuffer = buffer;
+    List<AuditRecord> batch = new ArrayList<AuditRecord>( batchSize );
+    long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos( flushIntervalMillis );
+    long deadline = System.nanoTime() + flushIntervalNanos;
+    try {
+      while ( running ) {
+        ringBuffer.drainTo( batch, batchSize - batch.size() );
+        long now = System.nanoTime();
+        if ( batch.size() >= batchSize || ( !batch.isEmpty() && now - deadline >= 0 ) ) {
+          write( batch );
+          deadline = System.nanoTime() + flushIntervalNanos;
+        } else {
+          if ( batch.isEmpty() ) {
+            deadline = now + flushIntervalNanos;
+          }
+          LockSupport.parkNanos( this, deadline - now );
+        }
+      }
+      // flush everything that is still pending; callers that passed the shutdown check before it was set may still be
+      // offering records, while those arriving from now on see it and drop theirs
+      while ( true ) {
+        write( batch );
+        boolean quiet = enqueueing.get() == 0;
+        ringBuffer.drainTo( batch, batchSize );
+        if ( batch.isEmpty() ) {
+          if ( quiet ) {
+            break;
+          }
+          Thread.yield();
+        }
+      }
+    } finally {
+      close();
+    }
+  }
+
+  private void write( final List<AuditRecord> batch ) {
+    if ( batch.isEmpty() ) {
+      return;
+    }
+    try {
+      writeBatch( batch );
+      writtenCount.addAndGet( batch.size() );
+    } catch ( Exception e ) {
+      failedCount.addAndGet( batch.size() );
+      Logger.error( getClass().getName(), Messages.getInstance().getErrorString( "AUDASYNC.ERROR_0001_WRITE_FAILED", //$NON-NLS-1$
+          batch.size() ), e );
+    } finally {
+      batch.clear();
+    }
+  }
+
+  /**
+   * Writes a batch of records to the audit storage. Only ever called from the background writer thread, so
+   * implementations may keep long-lived, non thread-safe resources such as connections or writers.
+   */
+  protected abstract void writeBatch( List<AuditRecord> batch ) throws AuditException;
+
+  /**
+   * Releases resources held for writing. Called on the background writer thread once it has written the last batch.
+   */
+  protected void close() {
+  }
+
+  /**
+   * Stops accepting new records, writes everything still in the buffer and waits up to
+   * {@link #setShutdownTimeoutMillis(long) shutdownTimeoutMillis} for the background writer to finish.
+   */
+  public void shutdown() {
+    Thread thread;
+    synchronized ( this ) {
+      shutdown = true;
+      running = false;
+      thread = writerThread;
+    }
+    if ( thread == null ) {
+      return;
+    }
+    LockSupport.unpark( thread );
+    try {
+      thread.join( shutdownTimeoutMillis );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+    if ( thread.isAlive() ) {
+      Logger.error( getClass().getName(), Messages.getInstance().getErrorString(
+          "AUDASYNC.ERROR_0002_SHUTDOWN_TIMEOUT", shutdownTimeoutMillis, getPendingCount() ) ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * @return the number of records accepted into the buffer since startup
+   */
+  public long getQueuedCount() {
+    return queuedCount.get();
+  }
+
+  /**
+   * @return the number of records successfully written to the audit storage
+   */
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  /**
+   * @return the number of records discarded because the buffer was full or the writer was shut down
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * @return the number of records that were taken from the buffer but could not be written
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return the number of records currently waiting in the buffer
+   */
+  public int getPendingCount() {
+    AuditRingBuffer<AuditRecord> ringBuffer = buffer;
+    return ringBuffer == null ? 0 : ringBuffer.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Sets the maximum number of records held in memory; rounded up to a power of two. Has no effect once the first
+   * record has been audited.
+   */
+  public void setCapacity( final int capacity ) {
+    this.capacity = capacity;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize( final int batchSize ) {
+    if ( batchSize <= 0 ) {
+      throw new IllegalArgumentException( "batchSize must be positive: " + batchSize ); //$NON-NLS-1$
+    }
+    this.batchSize = batchSize;
+  }
+
+  public long getFlushIntervalMillis() {
+    return flushIntervalMillis;
+  }
+
+  public void setFlushIntervalMillis( final long flushIntervalMillis ) {
+    if ( flushIntervalMillis <= 0 ) {
+      throw new IllegalArgumentException( "flushIntervalMillis must be positive: " + flushIntervalMillis ); //$NON-NLS-1$
+    }
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  public long getShutdownTimeoutMillis() {
+    return shutdownTimeoutMillis;
+  }
+
+  public void setShutdownTimeoutMillis( final long shutdownTimeoutMillis ) {
+    this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public void setOverflowPolicy( final OverflowPolicy overflowPolicy ) {
+    this.overflowPolicy = overflowPolicy;
+  }
+}
@@ -0,0 +1,79 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.apache.commons.io.IOUtils;
+import org.pentaho.platform.api.engine.AuditException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.List;
+
+/**
+ * Asynchronous variant of {@link AuditFileEntry}. Audit records are buffered and appended by a background thread to
+ * a single audit log file that stays open between batches, in the same format and location as
+ * {@link AuditFileEntry}.
+ */
+public class AsyncAuditFileEntry extends AsyncAuditEntry {
+
+  private final AuditFileEntry formatter;
+
+  private BufferedWriter writer;
+
+  public AsyncAuditFileEntry() {
+    this( new AuditFileEntry() );
+  }
+
+  AsyncAuditFileEntry( final AuditFileEntry formatter ) {
+    this.formatter = formatter;
+  }
+
+  @Override
+  protected void writeBatch( final List<AuditRecord> batch ) throws AuditException {
+    File auditFile = formatter.getAuditFile();
+    if ( auditFile == null ) {
+      return;
+    }
+    try {
+      if ( writer == null ) {
+        writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( auditFile, true ) ) );
+      }
+      for ( AuditRecord record : batch ) {
+        formatter.writeRecord( writer, record );
+      }
+      writer.flush();
+    } catch ( IOException ex ) {
+      // reopen the file on the next batch
+      close();
+      throw new AuditException( ex );
+    }
+  }
+
+  @Override
+  protected void close() {
+    IOUtils.closeQuietly( writer );
+    writer = null;
+  }
+
+}
@@ -0,0 +1,69 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.util.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Asynchronous variant of {@link AuditSQLEntry}. Audit records are buffered and inserted by a background thread using
+ * one JDBC batch per {@link #getBatchSize() batchSize} records, with the same connection and INSERT statement
+ * configuration as {@link AuditSQLEntry}.
+ */
+public class AsyncAuditSQLEntry extends AsyncAuditEntry {
+
+  @Override
+  protected void writeBatch( final List<AuditRecord> batch ) throws AuditException {
+    try {
+      Connection con = AuditSQLEntry.getAuditConnection();
+      try {
+        PreparedStatement stmt = con.prepareStatement( AuditSQLEntry.getInsertStatement() );
+        try {
+          for ( AuditRecord record : batch ) {
+            AuditSQLEntry.setParameters( stmt, record );
+            stmt.addBatch();
+          }
+          stmt.executeBatch();
+        } catch ( SQLException ex ) {
+          Logger.error( this.getClass().getName(), ex.getMessage(), ex );
+          try {
+            con.rollback();
+          } catch ( Exception rollbackExc ) {
+            throw new AuditException( rollbackExc );
+          }
+          throw new AuditException( ex );
+        } finally {
+          stmt.close();
+        }
+      } finally {
+        con.close();
+      }
+    } catch ( SQLException ex ) {
+      throw new AuditException( ex );
+    }
+  }
+
+}
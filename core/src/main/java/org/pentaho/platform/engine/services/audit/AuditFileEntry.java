@@ -79,29 +79,8 @@ public class AuditFileEntry implements IAuditEntry {
     try {
       BufferedWriter fw = new BufferedWriter( new FileWriter( AuditFileEntry.auditFile, true ) );
       try {
-        Date dt = new Date();
-        fw.write( AuditFileEntry.auditDateFormat.format( dt ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( jobId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( instId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( actor ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageName ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageTxtValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageNumValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( duration ) );
-        fw.newLine();
+        writeRecord( fw, new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName,
+            messageTxtValue, messageNumValue, duration, System.currentTimeMillis() ) );
       } finally {
         fw.flush();
         fw.close();
@@ -111,6 +90,41 @@ public class AuditFileEntry implements IAuditEntry {
     }
   }
 
+  /**
+   * Returns the audit log file, or <code>null</code> if the audit location could not be created.
+   */
+  File getAuditFile() {
+    return AuditFileEntry.auditFile;
+  }
+
+  /**
+   * Writes one audit record as a single line. Not thread safe; callers must serialize access.
+   */
+  void writeRecord( final BufferedWriter fw, final AuditRecord record ) throws IOException {
+    fw.write( AuditFileEntry.auditDateFormat.format( new Date( record.getTimestamp() ) ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getJobId() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getInstId() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getObjId() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getObjType() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getActor() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getMessageType() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getMessageName() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getMessageTxtValue() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getMessageNumValue() ) );
+    fw.write( AuditFileEntry.ID_SEPARATOR );
+    fw.write( getWritable( record.getDuration() ) );
+    fw.newLine();
+  }
+
   private String getWritable( final Object obj ) {
     if ( obj instanceof BigDecimal ) {
       DecimalFormat format = new DecimalFormat( "#.###" ); //$NON-NLS-1$
@@ -0,0 +1,115 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free, multi-producer / single-consumer ring buffer. Producers claim a slot by advancing the tail with
+ * a CAS and then publish the element into it; the single consumer drains published elements in order and frees their
+ * slots. {@link #offer(Object)} never blocks and fails when the buffer is full.
+ */
+class AuditRingBuffer<E> {
+
+  private final AtomicReferenceArray<E> slots;
+  private final int mask;
+  private final int capacity;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  /**
+   * @param requestedCapacity
+   *          the minimum number of elements the buffer can hold; rounded up to the next power of two
+   */
+  AuditRingBuffer( final int requestedCapacity ) {
+    if ( requestedCapacity <= 0 ) {
+      throw new IllegalArgumentException( "capacity must be positive: " + requestedCapacity ); //$NON-NLS-1$
+    }
+    int size = Integer.highestOneBit( requestedCapacity );
+    if ( size < requestedCapacity ) {
+      size <<= 1;
+    }
+    this.capacity = size;
+    this.mask = size - 1;
+    this.slots = new AtomicReferenceArray<E>( size );
+  }
+
+  /**
+   * Adds an element if there is room for it. Safe to call from any thread.
+   * 
+   * @return <code>false</code> if the buffer is full
+   */
+  boolean offer( final E element ) {
+    if ( element == null ) {
+      throw new NullPointerException();
+    }
+    long claimed;
+    do {
+      claimed = tail.get();
+      if ( claimed - head.get() >= capacity ) {
+        return false;
+      }
+    } while ( !tail.compareAndSet( claimed, claimed + 1 ) );
+    slots.lazySet( (int) claimed & mask, element );
+    return true;
+  }
+
+  /**
+   * Moves up to <code>maxElements</code> published elements into <code>target</code>. Must only be called from the
+   * consumer thread.
+   * 
+   * @return the number of elements moved
+   */
+  int drainTo( final Collection<? super E> target, final int maxElements ) {
+    long current = head.get();
+    int drained = 0;
+    while ( drained < maxElements ) {
+      int index = (int) current & mask;
+      E element = slots.get( index );
+      if ( element == null ) {
+        // either empty, or a producer has claimed the slot but not yet published into it
+        break;
+      }
+      slots.lazySet( index, null );
+      target.add( element );
+      current++;
+      drained++;
+    }
+    if ( drained > 0 ) {
+      head.set( current );
+    }
+    return drained;
+  }
+
+  /**
+   * Returns the number of claimed slots; may include elements that are not yet published.
+   */
+  int size() {
+    long consumed = head.get();
+    return (int) ( tail.get() - consumed );
+  }
+
+  int capacity() {
+    return capacity;
+  }
+}
@@ -86,7 +86,21 @@ public class AuditSQLEntry implements IAuditEntry {
             "auditConnection/insertSQL", Messages.getInstance().getString( "AUDSQLENT.CODE_AUDIT_INSERT_STATEMENT" ) ); //$NON-NLS-1$ //$NON-NLS-2$
   }
 
-  private void setString( final PreparedStatement stmt, final int num, final String val ) throws SQLException {
+  /**
+   * Returns the INSERT statement used to write audit records.
+   */
+  static String getInsertStatement() {
+    return AuditSQLEntry.INSERT_STMT;
+  }
+
+  /**
+   * Returns a connection to the audit datasource; callers are responsible for closing it.
+   */
+  static Connection getAuditConnection() throws SQLException {
+    return AuditSQLEntry.audc.getAuditConnection();
+  }
+
+  private static void setString( final PreparedStatement stmt, final int num, final String val ) throws SQLException {
     if ( val != null ) {
       stmt.setString( num, val );
     } else {
@@ -94,7 +108,7 @@ public class AuditSQLEntry implements IAuditEntry {
     }
   }
 
-  private void setObject( final PreparedStatement stmt, final int num, final String val ) throws SQLException {
+  private static void setObject( final PreparedStatement stmt, final int num, final String val ) throws SQLException {
     if ( val != null ) {
       stmt.setObject( num, val );
     } else {
@@ -102,7 +116,8 @@ public class AuditSQLEntry implements IAuditEntry {
     }
   }
 
-  private void setBigDec( final PreparedStatement stmt, final int num, final BigDecimal val ) throws SQLException {
+  private static void setBigDec( final PreparedStatement stmt, final int num, final BigDecimal val )
+    throws SQLException {
     if ( val != null ) {
       stmt.setBigDecimal( num, val );
     } else {
@@ -110,6 +125,23 @@ public class AuditSQLEntry implements IAuditEntry {
     }
   }
 
+  /**
+   * Binds the values of an audit record to the parameters of the INSERT statement.
+   */
+  static void setParameters( final PreparedStatement stmt, final AuditRecord record ) throws SQLException {
+    setString( stmt, 1, record.getJobId() );
+    setString( stmt, 2, record.getInstId() );
+    setString( stmt, 3, record.getObjId() );
+    setString( stmt, 4, record.getObjType() );
+    setString( stmt, 5, record.getActor() );
+    setString( stmt, 6, record.getMessageType() );
+    setString( stmt, 7, record.getMessageName() );
+    setObject( stmt, 8, record.getMessageTxtValue() );
+    setBigDec( stmt, 9, record.getMessageNumValue() );
+    setBigDec( stmt, 10, new BigDecimal( record.getDuration() ) );
+    stmt.setTimestamp( 11, new Timestamp( record.getTimestamp() ) );
+  }
+
   /*
    * private void setInteger(PreparedStatement stmt, int num, Integer val) throws SQLException{ if (val != null) {
    * stmt.setInt(num, val.intValue()); } else { stmt.setNull(num, Types.INTEGER); } }
@@ -124,17 +156,8 @@ public class AuditSQLEntry implements IAuditEntry {
       try {
         PreparedStatement stmt = con.prepareStatement( AuditSQLEntry.INSERT_STMT );
         try {
-          setString( stmt, 1, jobId );
-          setString( stmt, 2, instId );
-          setString( stmt, 3, objId );
-          setString( stmt, 4, objType );
-          setString( stmt, 5, actor );
-          setString( stmt, 6, messageType );
-          setString( stmt, 7, messageName );
-          setObject( stmt, 8, messageTxtValue );
-          setBigDec( stmt, 9, messageNumValue );
-          setBigDec( stmt, 10, new BigDecimal( duration ) );
-          stmt.setTimestamp( 11, new Timestamp( System.currentTimeMillis() ) );
+          setParameters( stmt, new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName,
+              messageTxtValue, messageNumValue, duration, System.currentTimeMillis() ) );
           stmt.executeUpdate();
         } catch ( SQLException ex ) {
           Logger.error( this.getClass().getName(), ex.getMessage(), ex );
@@ -0,0 +1,257 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import org.pentaho.platform.api.data.ConnectionPoolStatistics;
+import org.pentaho.platform.engine.services.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the usage of one JDBC connection pool, whatever its backend. Borrow times and timeouts are recorded by the
+ * pool's data source, the current number of connections is read from the pool when asked for. Registered pools are
+ * published over JMX and through {@link #getAllStatistics()}.
+ */
+public class ConnectionPoolMetrics implements ConnectionPoolMetricsMXBean {
+
+  private static final String OBJECT_NAME_PREFIX = "org.pentaho.platform:type=ConnectionPool,name="; //$NON-NLS-1$
+
+  private static final ConcurrentMap<String, ConnectionPoolMetrics> POOLS =
+      new ConcurrentHashMap<String, ConnectionPoolMetrics>();
+
+  /**
+   * Reads the current number of connections of a pool.
+   */
+  public interface PoolState {
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getThreadsAwaitingConnection();
+
+    /**
+     * @return the most connections the pool opens at the same time, or <code>-1</code> if unlimited
+     */
+    int getMaxConnections();
+  }
+
+  private final String name;
+
+  private final String backend;
+
+  private final PoolState state;
+
+  private final LongAdder borrowCount = new LongAdder();
+
+  private final LongAdder timeoutCount = new LongAdder();
+
+  private final LongAdder waitNanos = new LongAdder();
+
+  private final LongAccumulator maxWaitNanos = new LongAccumulator( Long::max, 0 );
+
+  public ConnectionPoolMetrics( final String name, final String backend, final PoolState state ) {
+    this.name = name;
+    this.backend = backend;
+    this.state = state;
+  }
+
+  /**
+   * Records a connection borrowed from the pool.
+   * 
+   * @param nanos
+   *          the time it took to get the connection
+   */
+  public void recordBorrow( final long nanos ) {
+    borrowCount.increment();
+    waitNanos.add( nanos );
+    maxWaitNanos.accumulate( nanos );
+  }
+
+  /**
+   * Records a request for a connection that failed because none became available in time.
+   */
+  public void recordTimeout() {
+    timeoutCount.increment();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String getBackend() {
+    return backend;
+  }
+
+  @Override
+  public int getActiveConnections() {
+    return state.getActiveConnections();
+  }
+
+  @Override
+  public int getIdleConnections() {
+    return state.getIdleConnections();
+  }
+
+  @Override
+  public int getThreadsAwaitingConnection() {
+    return state.getThreadsAwaitingConnection();
+  }
+
+  @Override
+  public int getMaxConnections() {
+    return state.getMaxConnections();
+  }
+
+  @Override
+  public long getBorrowCount() {
+    return borrowCount.sum();
+  }
+
+  @Override
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  @Override
+  public double getAverageWaitTime() {
+    long count = borrowCount.sum();
+    return count == 0 ? 0 : toMillis( waitNanos.sum() ) / count;
+  }
+
+  @Override
+  public double getMaxWaitTime() {
+    return toMillis( maxWaitNanos.get() );
+  }
+
+  /**
+   * @return a snapshot of the usage of the pool
+   */
+  public ConnectionPoolStatistics getStatistics() {
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( name );
+    statistics.setBackend( backend );
+    statistics.setActiveConnections( getActiveConnections() );
+    statistics.setIdleConnections( getIdleConnections() );
+    statistics.setThreadsAwaitingConnection( getThreadsAwaitingConnection() );
+    statistics.setMaxConnections( getMaxConnections() );
+    statistics.setBorrowCount( getBorrowCount() );
+    statistics.setTimeoutCount( getTimeoutCount() );
+    statistics.setAverageWaitTime( getAverageWaitTime() );
+    statistics.setMaxWaitTime( getMaxWaitTime() );
+    return statistics;
+  }
+
+  private static double toMillis( final long nanos ) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos( 1 );
+  }
+
+  /**
+   * Publishes the metrics of a pool, replacing those of an earlier pool of the same datasource.
+   * 
+   * @param metrics
+   *          the metrics of the pool
+   * @return the metrics
+   */
+  public static synchronized ConnectionPoolMetrics register( final ConnectionPoolMetrics metrics ) {
+    POOLS.put( metrics.getName(), metrics );
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName objectName = getObjectName( metrics.getName() );
+      if ( server.isRegistered( objectName ) ) {
+        server.unregisterMBean( objectName );
+      }
+      server.registerMBean( metrics, objectName );
+    } catch ( JMException e ) {
+      Logger.warn( ConnectionPoolMetrics.class.getName(), Messages.getInstance().getString(
+          "ConnectionPoolMetrics.WARN_0001_UNABLE_TO_REGISTER_MBEAN", metrics.getName() ), e ); //$NON-NLS-1$
+    }
+    return metrics;
+  }
+
+  /**
+   * Stops publishing the metrics of a pool, unless they have already been replaced by those of a newer pool.
+   * 
+   * @param metrics
+   *          the metrics of the pool
+   */
+  public static synchronized void unregister( final ConnectionPoolMetrics metrics ) {
+    if ( !POOLS.remove( metrics.getName(), metrics ) ) {
+      return;
+    }
+    try {
+      ObjectName objectName = getObjectName( metrics.getName() );
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if ( server.isRegistered( objectName ) ) {
+        server.unregisterMBean( objectName );
+      }
+    } catch ( JMException e ) {
+      Logger.debug( ConnectionPoolMetrics.class.getName(), e.getMessage(), e );
+    }
+  }
+
+  /**
+   * Stops publishing the metrics of all pools.
+   */
+  public static synchronized void unregisterAll() {
+    for ( ConnectionPoolMetrics metrics : new ArrayList<ConnectionPoolMetrics>( POOLS.values() ) ) {
+      unregister( metrics );
+    }
+  }
+
+  /**
+   * @param name
+   *          the name of the datasource
+   * @return the metrics of the datasource's pool, or null if it has none
+   */
+  public static ConnectionPoolMetrics get( final String name ) {
+    return POOLS.get( name );
+  }
+
+  /**
+   * @return a snapshot of the usage of every pool, ordered by datasource name
+   */
+  public static List<ConnectionPoolStatistics> getAllStatistics() {
+    List<ConnectionPoolStatistics> statistics = new ArrayList<ConnectionPoolStatistics>();
+    for ( ConnectionPoolMetrics metrics : POOLS.values() ) {
+      statistics.add( metrics.getStatistics() );
+    }
+    statistics.sort( Comparator.comparing( ConnectionPoolStatistics::getName ) );
+    return statistics;
+  }
+
+  private static ObjectName getObjectName( final String name ) throws JMException {
+    return new ObjectName( OBJECT_NAME_PREFIX + ObjectName.quote( name ) );
+  }
+}
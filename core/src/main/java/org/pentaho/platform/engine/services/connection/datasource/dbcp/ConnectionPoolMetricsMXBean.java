@@ -0,0 +1,54 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+/**
+ * Management interface of a JDBC connection pool, registered with the platform MBean server under
+ * <code>org.pentaho.platform:type=ConnectionPool,name=&lt;datasource&gt;</code>.
+ */
+public interface ConnectionPoolMetricsMXBean {
+
+  String getName();
+
+  String getBackend();
+
+  int getActiveConnections();
+
+  int getIdleConnections();
+
+  int getThreadsAwaitingConnection();
+
+  int getMaxConnections();
+
+  long getBorrowCount();
+
+  long getTimeoutCount();
+
+  /**
+   * @return the average time in milliseconds it took to borrow a connection
+   */
+  double getAverageWaitTime();
+
+  /**
+   * @return the longest time in milliseconds it took to borrow a connection
+   */
+  double getMaxWaitTime();
+}
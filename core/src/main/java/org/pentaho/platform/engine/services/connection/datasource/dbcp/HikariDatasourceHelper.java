@@ -0,0 +1,290 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.pentaho.database.IDatabaseDialect;
+import org.pentaho.database.model.IDatabaseConnection;
+import org.pentaho.platform.api.data.DBDatasourceServiceException;
+import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+import org.springframework.transaction.annotation.Isolation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates HikariCP connection pools, an alternative to the commons-dbcp pools created by
+ * {@link PooledDatasourceHelper#setupPooledDataSource(IDatabaseConnection)}. HikariCP borrows and returns connections
+ * without taking a lock shared by all threads. The pools read the same settings as the dbcp pools; settings without a
+ * HikariCP equivalent, like the eviction and prepared statement pooling settings, are ignored.
+ */
+class HikariDatasourceHelper {
+
+  /** system setting for the time in milliseconds after which a connection not returned to the pool is logged */
+  static final String LEAK_DETECTION_THRESHOLD_SETTING = "dbcp-defaults/leak-detection-threshold"; //$NON-NLS-1$
+
+  /** HikariCP does not wait less than this for a connection */
+  private static final long MIN_CONNECTION_TIMEOUT = 250;
+
+  /** the dbcp default for removeAbandonedTimeout, in seconds */
+  private static final int DEFAULT_ABANDONED_TIMEOUT = 300;
+
+  private HikariDatasourceHelper() {
+  }
+
+  /**
+   * Returns the pool of the database connection, creating it if the connection has no pool yet or the settings of the
+   * connection have changed since its pool was created. The pool created before is then closed.
+   * 
+   * @param databaseConnection
+   *          the connection to pool
+   * @return the pooling data source
+   * @throws DBDatasourceServiceException
+   */
+  static HikariDataSource setupPooledDataSource( IDatabaseConnection databaseConnection )
+    throws DBDatasourceServiceException {
+    String name = databaseConnection.getName();
+    ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
+    String settings = PooledDatasourceHelper.getSettings( databaseConnection );
+    PentahoHikariDataSource pooled = getPool( cacheManager, name, settings );
+    if ( pooled != null ) {
+      return pooled;
+    }
+    synchronized ( HikariDatasourceHelper.class ) {
+      pooled = getPool( cacheManager, name, settings );
+      if ( pooled != null ) {
+        return pooled;
+      }
+      try {
+        HikariConfig config = createConfig( databaseConnection );
+        PentahoHikariDataSource dataSource = new PentahoHikariDataSource( config, settings );
+        warmUp( dataSource, PooledDatasourceHelper.getWarmUpSize( databaseConnection.getConnectionPoolingProperties(),
+            dataSource.getMinimumIdle() ) );
+
+        Object previous = cacheManager.getFromRegionCache( IDBDatasourceService.JDBC_POOL, name );
+        // store the pool, so we can get to it later
+        cacheManager.putInRegionCache( IDBDatasourceService.JDBC_POOL, name, dataSource );
+        PooledDatasourceHelper.closePool( previous );
+        return dataSource;
+      } catch ( DBDatasourceServiceException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new DBDatasourceServiceException( e );
+      }
+    }
+  }
+
+  private static PentahoHikariDataSource getPool( ICacheManager cacheManager, String name, String settings ) {
+    Object pool = cacheManager.getFromRegionCache( IDBDatasourceService.JDBC_POOL, name );
+    if ( pool instanceof PentahoHikariDataSource ) {
+      PentahoHikariDataSource dataSource = (PentahoHikariDataSource) pool;
+      if ( !dataSource.isClosed() && dataSource.settings.equals( settings ) ) {
+        return dataSource;
+      }
+    }
+    return null;
+  }
+
+  static HikariConfig createConfig( IDatabaseConnection databaseConnection ) throws Exception {
+    IDatabaseDialect dialect = PooledDatasourceHelper.getDialect( databaseConnection );
+    String driverClass = PooledDatasourceHelper.getDriverClass( databaseConnection, dialect );
+    String url = PooledDatasourceHelper.getUrl( databaseConnection, dialect );
+    // the driver registers with the DriverManager, where HikariCP looks it up by the url
+    PooledDatasourceHelper.initializeDriver( databaseConnection, dialect, driverClass );
+
+    Map<String, String> attributes = databaseConnection.getConnectionPoolingProperties();
+    HikariConfig config = new HikariConfig();
+    config.setPoolName( databaseConnection.getName() );
+    config.setJdbcUrl( url );
+    config.setUsername( StringEscapeUtils.unescapeHtml( databaseConnection.getUsername() ) );
+    config.setPassword( StringEscapeUtils.unescapeHtml( databaseConnection.getPassword() ) );
+    if ( url.startsWith( "jdbc:mysql:" ) || url.startsWith( "jdbc:mariadb:" ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      config.addDataSourceProperty( "connectTimeout", "5000" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    // like dbcp, do not fail when the database cannot be reached yet
+    config.setInitializationFailTimeout( -1 );
+
+    int maxActive = getInt( attributes, IDBDatasourceService.MAX_ACTIVE_KEY, "dbcp-defaults/max-act-conn", -1 ); //$NON-NLS-1$
+    if ( maxActive > 0 ) {
+      config.setMaximumPoolSize( maxActive );
+    }
+    int minIdle = getInt( attributes, IDBDatasourceService.MIN_IDLE_KEY, "dbcp-defaults/min-idle-conn", -1 ); //$NON-NLS-1$
+    if ( minIdle >= 0 ) {
+      config.setMinimumIdle( Math.min( minIdle, config.getMaximumPoolSize() ) );
+    }
+    // a negative wait means waiting for ever, as with dbcp
+    long wait = getInt( attributes, IDBDatasourceService.MAX_WAIT_KEY, "dbcp-defaults/wait", -1 ); //$NON-NLS-1$
+    config.setConnectionTimeout( wait < 0 ? 0 : Math.max( wait, MIN_CONNECTION_TIMEOUT ) );
+
+    if ( attributes.containsKey( IDBDatasourceService.QUERY_KEY )
+        && !StringUtils.isEmpty( attributes.get( IDBDatasourceService.QUERY_KEY ) ) ) {
+      config.setConnectionTestQuery( attributes.get( IDBDatasourceService.QUERY_KEY ) );
+    }
+    if ( attributes.containsKey( IDBDatasourceService.DEFAULT_READ_ONLY ) ) {
+      config.setReadOnly( Boolean.parseBoolean( attributes.get( IDBDatasourceService.DEFAULT_READ_ONLY ) ) );
+    }
+    if ( attributes.containsKey( IDBDatasourceService.DEFAULT_AUTO_COMMIT ) ) {
+      config.setAutoCommit( Boolean.parseBoolean( attributes.get( IDBDatasourceService.DEFAULT_AUTO_COMMIT ) ) );
+    }
+    if ( attributes.containsKey( IDBDatasourceService.DEFAULT_TRANSACTION_ISOLATION )
+        && !IDBDatasourceService.TRANSACTION_ISOLATION_NONE_VALUE.equalsIgnoreCase( attributes
+            .get( IDBDatasourceService.DEFAULT_TRANSACTION_ISOLATION ) ) ) {
+      Isolation isolationLevel =
+          Isolation.valueOf( attributes.get( IDBDatasourceService.DEFAULT_TRANSACTION_ISOLATION ) );
+      if ( isolationLevel != Isolation.DEFAULT ) {
+        config.setTransactionIsolation( "TRANSACTION_" + isolationLevel.name() ); //$NON-NLS-1$
+      }
+    }
+    if ( attributes.containsKey( IDBDatasourceService.DEFAULT_CATALOG ) ) {
+      config.setCatalog( attributes.get( IDBDatasourceService.DEFAULT_CATALOG ) );
+    }
+    config.setLeakDetectionThreshold( getLeakDetectionThreshold( attributes ) );
+    config.setMetricsTrackerFactory( new MetricsFactory() );
+    return config;
+  }
+
+  /**
+   * HikariCP logs connections which are not returned to the pool in time, but never takes them away like the dbcp
+   * abandoned connection settings do. The dbcp settings are used if the connection sets them.
+   */
+  static long getLeakDetectionThreshold( Map<String, String> attributes ) {
+    if ( Boolean.parseBoolean( attributes.get( IDBDatasourceService.REMOVE_ABANDONED ) )
+        || Boolean.parseBoolean( attributes.get( IDBDatasourceService.LOG_ABANDONED ) ) ) {
+      int timeout = NumberUtils.isNumber( attributes.get( IDBDatasourceService.REMOVE_ABANDONED_TIMEOUT ) )
+          ? Integer.parseInt( attributes.get( IDBDatasourceService.REMOVE_ABANDONED_TIMEOUT ) )
+          : DEFAULT_ABANDONED_TIMEOUT;
+      return timeout * 1000L;
+    }
+    String threshold = PentahoSystem.getSystemSetting( LEAK_DETECTION_THRESHOLD_SETTING, null );
+    return NumberUtils.isNumber( threshold ) ? Long.parseLong( threshold ) : 0;
+  }
+
+  private static int getInt( Map<String, String> attributes, String attribute, String setting, int defaultValue ) {
+    if ( attributes.containsKey( attribute ) && NumberUtils.isNumber( attributes.get( attribute ) ) ) {
+      return Integer.parseInt( attributes.get( attribute ) );
+    }
+    String value = PentahoSystem.getSystemSetting( setting, null );
+    return NumberUtils.isNumber( value ) ? Integer.parseInt( value ) : defaultValue;
+  }
+
+  /**
+   * Opens connections until the pool holds the given number, so that the first requests do not have to wait for them.
+   * A database which cannot be reached is logged; the pool then opens connections when they are asked for.
+   */
+  private static void warmUp( HikariDataSource dataSource, int size ) {
+    if ( size <= 0 ) {
+      return;
+    }
+    List<Connection> connections = new ArrayList<Connection>( size );
+    try {
+      for ( int i = 0; i < size && i < dataSource.getMaximumPoolSize(); i++ ) {
+        connections.add( dataSource.getConnection() );
+      }
+    } catch ( SQLException e ) {
+      Logger.warn( HikariDatasourceHelper.class.getName(), Messages.getInstance().getString(
+          "PooledDatasourceHelper.WARN_0001_UNABLE_TO_WARM_UP_POOL", dataSource.getPoolName(), e.getMessage() ) ); //$NON-NLS-1$
+    } finally {
+      for ( Connection connection : connections ) {
+        try {
+          // returns it to the pool
+          connection.close();
+        } catch ( SQLException ignored ) {
+          // ignored
+        }
+      }
+    }
+    Logger.debug( HikariDatasourceHelper.class.getName(), "Pool has been pre-populated with " + connections.size() //$NON-NLS-1$
+        + " connections" ); //$NON-NLS-1$
+  }
+
+  /**
+   * A HikariCP data source which remembers the settings it was created from.
+   */
+  static class PentahoHikariDataSource extends HikariDataSource {
+    private final String settings;
+
+    PentahoHikariDataSource( HikariConfig config, String settings ) {
+      super( config );
+      this.settings = settings;
+    }
+  }
+
+  /**
+   * Feeds the borrow times and timeouts HikariCP reports into the {@link ConnectionPoolMetrics} of the pool.
+   */
+  private static class MetricsFactory implements MetricsTrackerFactory {
+    @Override
+    public IMetricsTracker create( String poolName, final PoolStats poolStats ) {
+      final ConnectionPoolMetrics metrics = ConnectionPoolMetrics.register( new ConnectionPoolMetrics( poolName,
+          IDBDatasourceService.POOL_BACKEND_HIKARI, new ConnectionPoolMetrics.PoolState() {
+            @Override
+            public int getActiveConnections() {
+              return poolStats.getActiveConnections();
+            }
+
+            @Override
+            public int getIdleConnections() {
+              return poolStats.getIdleConnections();
+            }
+
+            @Override
+            public int getThreadsAwaitingConnection() {
+              return poolStats.getPendingThreads();
+            }
+
+            @Override
+            public int getMaxConnections() {
+              return poolStats.getMaxConnections();
+            }
+          } ) );
+      return new IMetricsTracker() {
+        @Override
+        public void recordConnectionAcquiredNanos( long elapsedAcquiredNanos ) {
+          metrics.recordBorrow( elapsedAcquiredNanos );
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+          metrics.recordTimeout();
+        }
+
+        @Override
+        public void close() {
+          ConnectionPoolMetrics.unregister( metrics );
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.ObjectPool;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.pentaho.platform.api.data.IDBDatasourceService;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A dbcp {@link PoolingDataSource} which records how long it takes to borrow connections in the
+ * {@link ConnectionPoolMetrics} of its pool. It remembers the settings its pool was created from, and closing it closes
+ * the pool.
+ */
+public class MeteredPoolingDataSource extends PoolingDataSource implements AutoCloseable {
+
+  private final AtomicInteger borrowing = new AtomicInteger();
+
+  private ConnectionPoolMetrics metrics;
+
+  private ObjectPool pool;
+
+  private String settings;
+
+  private volatile boolean closed;
+
+  @Override
+  public void setPool( final ObjectPool pool ) {
+    super.setPool( pool );
+    this.pool = pool;
+  }
+
+  /**
+   * @return the settings the pool was created from, as returned by
+   *         {@link PooledDatasourceHelper#getSettings(org.pentaho.database.model.IDatabaseConnection)}
+   */
+  public String getSettings() {
+    return settings;
+  }
+
+  public void setSettings( final String settings ) {
+    this.settings = settings;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Closes the pool and stops publishing its metrics. The idle connections are closed at once, those still borrowed
+   * when they are returned.
+   */
+  @Override
+  public void close() throws Exception {
+    closed = true;
+    if ( metrics != null ) {
+      ConnectionPoolMetrics.unregister( metrics );
+    }
+    if ( pool != null ) {
+      pool.close();
+    }
+  }
+
+  /**
+   * Creates the metrics of the pool and publishes them under the given datasource name.
+   * 
+   * @param name
+   *          the name of the datasource
+   * @param pool
+   *          the pool of this data source
+   * @return the metrics
+   */
+  public ConnectionPoolMetrics registerMetrics( final String name, final GenericObjectPool pool ) {
+    metrics = ConnectionPoolMetrics.register( new ConnectionPoolMetrics( name, IDBDatasourceService.POOL_BACKEND_DBCP,
+        new ConnectionPoolMetrics.PoolState() {
+          @Override
+          public int getActiveConnections() {
+            return pool.getNumActive();
+          }
+
+          @Override
+          public int getIdleConnections() {
+            return pool.getNumIdle();
+          }
+
+          @Override
+          public int getThreadsAwaitingConnection() {
+            // threads in getConnection, which includes those not having to wait
+            return borrowing.get();
+          }
+
+          @Override
+          public int getMaxConnections() {
+            return pool.getMaxActive() < 0 ? -1 : pool.getMaxActive();
+          }
+        } ) );
+    return metrics;
+  }
+
+  public ConnectionPoolMetrics getMetrics() {
+    return metrics;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    ConnectionPoolMetrics metrics = this.metrics;
+    if ( metrics == null ) {
+      return super.getConnection();
+    }
+    long start = System.nanoTime();
+    borrowing.incrementAndGet();
+    try {
+      Connection connection = super.getConnection();
+      metrics.recordBorrow( System.nanoTime() - start );
+      return connection;
+    } catch ( SQLException e ) {
+      // dbcp reports a pool that stayed exhausted for the whole wait time this way
+      if ( e.getCause() instanceof NoSuchElementException ) {
+        metrics.recordTimeout();
+      }
+      throw e;
+    } finally {
+      borrowing.decrementAndGet();
+    }
+  }
+}
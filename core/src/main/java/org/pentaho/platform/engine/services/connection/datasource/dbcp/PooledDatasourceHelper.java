@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -58,52 +58,135 @@ import javax.sql.DataSource;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.function.Supplier;
 
 public class PooledDatasourceHelper {
 
+  /** system setting naming the pool backend of datasources which do not set one themselves */
+  public static final String POOL_BACKEND_SETTING = "dbcp-defaults/pool-backend"; //$NON-NLS-1$
+
+  /**
+   * Creates a connection pool for the database connection and returns its data source. The pool is created by the
+   * backend set in the connection's pooling properties under {@link IDBDatasourceService#POOL_BACKEND}, or else in the
+   * <code>dbcp-defaults/pool-backend</code> system setting: commons-dbcp by default, or HikariCP.
+   * 
+   * @param databaseConnection
+   *          the connection to pool
+   * @return the pooling data source
+   * @throws DBDatasourceServiceException
+   */
+  public static DataSource setupDataSource( IDatabaseConnection databaseConnection )
+    throws DBDatasourceServiceException {
+    if ( IDBDatasourceService.POOL_BACKEND_HIKARI.equalsIgnoreCase( getPoolBackend( databaseConnection ) ) ) {
+      return HikariDatasourceHelper.setupPooledDataSource( databaseConnection );
+    }
+    return setupPooledDataSource( databaseConnection );
+  }
+
+  static String getPoolBackend( IDatabaseConnection databaseConnection ) {
+    Map<String, String> attributes = databaseConnection.getConnectionPoolingProperties();
+    String backend = attributes != null ? attributes.get( IDBDatasourceService.POOL_BACKEND ) : null;
+    if ( StringUtils.isEmpty( backend ) ) {
+      backend = PentahoSystem.getSystemSetting( POOL_BACKEND_SETTING, IDBDatasourceService.POOL_BACKEND_DBCP );
+    }
+    return backend;
+  }
+
+  /**
+   * Returns the commons-dbcp pool of the database connection, creating it if the connection has no pool yet or the
+   * settings of the connection have changed since its pool was created. The pool created before is then closed. Only a
+   * new pool is pre-populated and publishes its metrics.
+   * 
+   * @param databaseConnection
+   *          the connection to pool
+   * @return the pooling data source
+   * @throws DBDatasourceServiceException
+   */
   public static PoolingDataSource setupPooledDataSource( IDatabaseConnection databaseConnection )
     throws DBDatasourceServiceException {
-    PoolingDataSource poolingDataSource = null;
+    String name = databaseConnection.getName();
+    ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
+    String settings = getSettings( databaseConnection );
+    MeteredPoolingDataSource pooled = getPool( cacheManager, name, settings );
+    if ( pooled != null ) {
+      return pooled;
+    }
+    synchronized ( PooledDatasourceHelper.class ) {
+      pooled = getPool( cacheManager, name, settings );
+      if ( pooled != null ) {
+        return pooled;
+      }
+      MeteredPoolingDataSource dataSource = createPooledDataSource( databaseConnection, cacheManager );
+      dataSource.setSettings( settings );
+      Object previous = cacheManager.getFromRegionCache( IDBDatasourceService.JDBC_POOL, name );
+      // store the pool, so we can get to it later
+      cacheManager.putInRegionCache( IDBDatasourceService.JDBC_POOL, name, dataSource );
+      closePool( previous );
+      return dataSource;
+    }
+  }
+
+  private static MeteredPoolingDataSource getPool( ICacheManager cacheManager, String name, String settings ) {
+    Object pool = cacheManager != null ? cacheManager.getFromRegionCache( IDBDatasourceService.JDBC_POOL, name ) : null;
+    if ( pool instanceof MeteredPoolingDataSource ) {
+      MeteredPoolingDataSource dataSource = (MeteredPoolingDataSource) pool;
+      if ( !dataSource.isClosed() && settings.equals( dataSource.getSettings() ) ) {
+        return dataSource;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Closes a pool which has been replaced by a new one.
+   */
+  static void closePool( Object pool ) {
+    if ( pool instanceof AutoCloseable ) {
+      try {
+        ( (AutoCloseable) pool ).close();
+      } catch ( Exception e ) {
+        Logger.warn( PooledDatasourceHelper.class.getName(), e.getMessage(), e );
+      }
+    }
+  }
+
+  /**
+   * Returns everything the pool of a connection is created from, to tell whether the connection has been changed.
+   */
+  static String getSettings( IDatabaseConnection databaseConnection ) {
+    StringBuilder settings = new StringBuilder();
+    settings.append( databaseConnection.getHostname() ).append( '\n' );
+    settings.append( databaseConnection.getDatabasePort() ).append( '\n' );
+    settings.append( databaseConnection.getDatabaseName() ).append( '\n' );
+    settings.append( databaseConnection.getUsername() ).append( '\n' );
+    settings.append( databaseConnection.getPassword() ).append( '\n' );
+    if ( databaseConnection.getAttributes() != null ) {
+      settings.append( new TreeMap<String, String>( databaseConnection.getAttributes() ) ).append( '\n' );
+    }
+    if ( databaseConnection.getExtraOptions() != null ) {
+      settings.append( new TreeMap<String, String>( databaseConnection.getExtraOptions() ) ).append( '\n' );
+    }
+    if ( databaseConnection.getConnectionPoolingProperties() != null ) {
+      settings.append( new TreeMap<String, String>( databaseConnection.getConnectionPoolingProperties() ) );
+    }
+    return settings.toString();
+  }
+
+  private static MeteredPoolingDataSource createPooledDataSource( IDatabaseConnection databaseConnection,
+      ICacheManager cacheManager ) throws DBDatasourceServiceException {
+    MeteredPoolingDataSource poolingDataSource = null;
     String driverClass = null;
     String url = null;
     try {
-      if ( databaseConnection.getAccessType().equals( DatabaseAccessType.JNDI ) ) {
-        throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
-            "PooledDatasourceHelper.ERROR_0008_UNABLE_TO_POOL_DATASOURCE_IT_IS_JNDI",
-            databaseConnection.getName() ) );
-      }
-      ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
-      IDatabaseDialectService databaseDialectService = PentahoSystem.get( IDatabaseDialectService.class );
-      if ( databaseDialectService == null ) {
+      IDatabaseDialect dialect = getDialect( databaseConnection );
+      if ( cacheManager == null ) {
         throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
-            "PooledDatasourceHelper.ERROR_0005_UNABLE_TO_POOL_DATASOURCE_NO_DIALECT_SERVICE",
+            "PooledDatasourceHelper.ERROR_0010_UNABLE_TO_POOL_DATASOURCE_NO_CACHE_MANAGER",
             databaseConnection.getName() ) );
       }
-      IDatabaseDialect dialect = databaseDialectService.getDialect( databaseConnection );
-      if ( dialect == null || dialect.getDatabaseType() == null ) {
-        throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
-            "PooledDatasourceHelper.ERROR_0004_UNABLE_TO_POOL_DATASOURCE_NO_DIALECT", databaseConnection.getName() ) );
-      }
-      if ( databaseConnection.getDatabaseType().getShortName().equals( "GENERIC" ) ) { //$NON-NLS-1$
-        driverClass = databaseConnection.getAttributes().get( GenericDatabaseDialect.ATTRIBUTE_CUSTOM_DRIVER_CLASS );
-        if ( StringUtils.isEmpty( driverClass ) ) {
-          throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
-              "PooledDatasourceHelper.ERROR_0006_UNABLE_TO_POOL_DATASOURCE_NO_CLASSNAME", databaseConnection.getName() ) );
-        }
-
-      } else {
-        driverClass = dialect.getNativeDriver();
-        if ( StringUtils.isEmpty( driverClass ) ) {
-          throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
-              "PooledDatasourceHelper.ERROR_0007_UNABLE_TO_POOL_DATASOURCE_NO_DRIVER", databaseConnection.getName() ) );
-        }
-      }
-      try {
-        url = dialect.getURLWithExtraOptions( databaseConnection );
-      } catch ( DatabaseDialectException e ) {
-        url = null;
-      }
+      driverClass = getDriverClass( databaseConnection, dialect );
+      url = getUrl( databaseConnection, dialect );
 
       // Read default connection pooling parameter
       String maxdleConn = PentahoSystem.getSystemSetting( "dbcp-defaults/max-idle-conn", null ); //$NON-NLS-1$
@@ -163,16 +246,8 @@ public class PooledDatasourceHelper {
         testWhileIdle = Boolean.parseBoolean( attributes.get( IDBDatasourceService.TEST_WHILE_IDLE ) );
       }
 
-      poolingDataSource = new PoolingDataSource();
-      if ( dialect instanceof IDriverLocator ) {
-        if ( !( (IDriverLocator) dialect ).initialize( driverClass ) ) {
-          throw new DriverNotInitializedException( Messages.getInstance()
-            .getErrorString( "PooledDatasourceHelper.ERROR_0009_UNABLE_TO_POOL_DATASOURCE_CANT_INITIALIZE",
-              databaseConnection.getName(), driverClass ) );
-        }
-      } else {
-        Class.forName( driverClass );
-      }
+      poolingDataSource = new MeteredPoolingDataSource();
+      initializeDriver( databaseConnection, dialect, driverClass );
       // As the name says, this is a generic pool; it returns basic Object-class objects.
       GenericObjectPool pool = new GenericObjectPool( null );
 
@@ -282,14 +357,14 @@ public class PooledDatasourceHelper {
           + maxIdleConnection + "max idle" + "with " + waitTime + "wait time"//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
           + " idle connections." ); //$NON-NLS-1$
 
-      String prePopulatePoolStr = PentahoSystem.getSystemSetting( "dbcp-defaults/pre-populate-pool", null );
-      if ( Boolean.parseBoolean( prePopulatePoolStr ) ) {
-        for ( int i = 0; i < maxIdleConnection; ++i ) {
+      int warmUpSize = getWarmUpSize( attributes, maxIdleConnection );
+      if ( warmUpSize > 0 ) {
+        for ( int i = 0; i < warmUpSize; ++i ) {
           pool.addObject();
         }
         if ( Logger.getLogLevel() <= ILogger.DEBUG ) {
           Logger.debug( PooledDatasourceHelper.class,
-            "Pool has been pre-populated with " + maxIdleConnection + " connections" );
+            "Pool has been pre-populated with " + warmUpSize + " connections" );
         }
       }
       Logger.debug( PooledDatasourceHelper.class, "Pool now has " + pool.getNumActive() + " active/"
@@ -305,14 +380,90 @@ public class PooledDatasourceHelper {
             .get( IDBDatasourceService.ACCESS_TO_UNDERLYING_CONNECTION_ALLOWED ) ) );
       }
 
-      // store the pool, so we can get to it later
-      cacheManager.putInRegionCache( IDBDatasourceService.JDBC_POOL, databaseConnection.getName(), pool );
+      poolingDataSource.registerMetrics( databaseConnection.getName(), pool );
       return ( poolingDataSource );
     } catch ( Exception e ) {
       throw new DBDatasourceServiceException( e );
     }
   }
 
+  /**
+   * Returns the dialect of a connection that is to be pooled.
+   */
+  static IDatabaseDialect getDialect( IDatabaseConnection databaseConnection ) throws DBDatasourceServiceException {
+    if ( databaseConnection.getAccessType().equals( DatabaseAccessType.JNDI ) ) {
+      throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
+          "PooledDatasourceHelper.ERROR_0008_UNABLE_TO_POOL_DATASOURCE_IT_IS_JNDI",
+          databaseConnection.getName() ) );
+    }
+    IDatabaseDialectService databaseDialectService = PentahoSystem.get( IDatabaseDialectService.class );
+    if ( databaseDialectService == null ) {
+      throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
+          "PooledDatasourceHelper.ERROR_0005_UNABLE_TO_POOL_DATASOURCE_NO_DIALECT_SERVICE",
+          databaseConnection.getName() ) );
+    }
+    IDatabaseDialect dialect = databaseDialectService.getDialect( databaseConnection );
+    if ( dialect == null || dialect.getDatabaseType() == null ) {
+      throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
+          "PooledDatasourceHelper.ERROR_0004_UNABLE_TO_POOL_DATASOURCE_NO_DIALECT", databaseConnection.getName() ) );
+    }
+    return dialect;
+  }
+
+  static String getDriverClass( IDatabaseConnection databaseConnection, IDatabaseDialect dialect )
+    throws DBDatasourceServiceException {
+    String driverClass = null;
+    if ( databaseConnection.getDatabaseType().getShortName().equals( "GENERIC" ) ) { //$NON-NLS-1$
+      driverClass = databaseConnection.getAttributes().get( GenericDatabaseDialect.ATTRIBUTE_CUSTOM_DRIVER_CLASS );
+      if ( StringUtils.isEmpty( driverClass ) ) {
+        throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
+            "PooledDatasourceHelper.ERROR_0006_UNABLE_TO_POOL_DATASOURCE_NO_CLASSNAME", databaseConnection.getName() ) );
+      }
+
+    } else {
+      driverClass = dialect.getNativeDriver();
+      if ( StringUtils.isEmpty( driverClass ) ) {
+        throw new DBDatasourceServiceException( Messages.getInstance().getErrorString(
+            "PooledDatasourceHelper.ERROR_0007_UNABLE_TO_POOL_DATASOURCE_NO_DRIVER", databaseConnection.getName() ) );
+      }
+    }
+    return driverClass;
+  }
+
+  static String getUrl( IDatabaseConnection databaseConnection, IDatabaseDialect dialect ) {
+    try {
+      return dialect.getURLWithExtraOptions( databaseConnection );
+    } catch ( DatabaseDialectException e ) {
+      return null;
+    }
+  }
+
+  static void initializeDriver( IDatabaseConnection databaseConnection, IDatabaseDialect dialect, String driverClass )
+    throws DBDatasourceServiceException, ClassNotFoundException {
+    if ( dialect instanceof IDriverLocator ) {
+      if ( !( (IDriverLocator) dialect ).initialize( driverClass ) ) {
+        throw new DriverNotInitializedException( Messages.getInstance()
+          .getErrorString( "PooledDatasourceHelper.ERROR_0009_UNABLE_TO_POOL_DATASOURCE_CANT_INITIALIZE",
+            databaseConnection.getName(), driverClass ) );
+      }
+    } else {
+      Class.forName( driverClass );
+    }
+  }
+
+  /**
+   * Returns the number of connections to open when a pool is created: the {@link IDBDatasourceService#INITIAL_SIZE}
+   * of the connection if set, otherwise the given number if the <code>dbcp-defaults/pre-populate-pool</code> system
+   * setting is true.
+   */
+  static int getWarmUpSize( Map<String, String> attributes, int prePopulateSize ) {
+    if ( attributes != null && NumberUtils.isNumber( attributes.get( IDBDatasourceService.INITIAL_SIZE ) ) ) {
+      return Integer.parseInt( attributes.get( IDBDatasourceService.INITIAL_SIZE ) );
+    }
+    String prePopulatePoolStr = PentahoSystem.getSystemSetting( "dbcp-defaults/pre-populate-pool", null );
+    return Boolean.parseBoolean( prePopulatePoolStr ) ? prePopulateSize : 0;
+  }
+
   protected static ConnectionFactory getConnectionFactory( IDatabaseConnection databaseConnection, String url ) {
     Properties props = new Properties();
     props.put( "user", StringEscapeUtils.unescapeHtml( databaseConnection.getUsername() ) );
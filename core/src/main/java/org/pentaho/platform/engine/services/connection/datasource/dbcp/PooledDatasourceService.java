@@ -41,6 +41,6 @@ public class PooledDatasourceService extends NonPooledDatasourceService implemen
   @Override
   protected DataSource resolveDatabaseConnection( IDatabaseConnection databaseConnection )
     throws DBDatasourceServiceException {
-    return PooledDatasourceHelper.setupPooledDataSource( databaseConnection );
+    return PooledDatasourceHelper.setupDataSource( databaseConnection );
   }
 }
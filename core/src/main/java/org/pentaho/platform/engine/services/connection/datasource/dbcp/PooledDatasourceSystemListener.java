@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -41,7 +41,7 @@ public class PooledDatasourceSystemListener extends NonPooledDatasourceSystemLis
     DataSource ds = null;
     try {
       if (!connection.getAccessType().equals( DatabaseAccessType.JNDI ) ) {
-      ds =  PooledDatasourceHelper.setupPooledDataSource( connection );
+      ds =  PooledDatasourceHelper.setupDataSource( connection );
       } else {
         ds = PooledDatasourceHelper.getJndiDataSource( connection.getDatabaseName() );
       }
@@ -73,16 +73,19 @@ public class PooledDatasourceSystemListener extends NonPooledDatasourceSystemLis
 
     ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
 
-    List<ObjectPool> objectPools = null;
-    objectPools = (List<ObjectPool>) cacheManager.getAllValuesFromRegionCache( IDBDatasourceService.JDBC_POOL );
+    List<Object> objectPools = null;
+    objectPools = (List<Object>) cacheManager.getAllValuesFromRegionCache( IDBDatasourceService.JDBC_POOL );
 
     Logger.debug( this, "DatasourceSystemListener: Called for shutdown ..." ); //$NON-NLS-1$
 
     try {
       if ( objectPools != null ) {
-        for ( ObjectPool objectPool : objectPools ) {
-          if ( null != objectPool ) {
-            objectPool.clear();
+        for ( Object objectPool : objectPools ) {
+          if ( objectPool instanceof ObjectPool ) {
+            ( (ObjectPool) objectPool ).clear();
+          } else if ( objectPool instanceof AutoCloseable ) {
+            // the data sources of the dbcp and HikariCP pools
+            ( (AutoCloseable) objectPool ).close();
           }
         }
       }
@@ -91,6 +94,7 @@ public class PooledDatasourceSystemListener extends NonPooledDatasourceSystemLis
       Logger.error( this, "Failed to clear connection pool: " + ignored.getMessage(), ignored ); //$NON-NLS-1$
 
     }
+    ConnectionPoolMetrics.unregisterAll();
 
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_POOL );
     cacheManager.removeRegionCache( IDBDatasourceService.JDBC_DATASOURCE );
@@ -30,7 +30,7 @@ public class PooledOrJndiDatasourceService extends NonPooledOrJndiDatasourceServ
   @Override
   protected DataSource resolveDatabaseConnection( IDatabaseConnection databaseConnection )
     throws DBDatasourceServiceException {
-    return PooledDatasourceHelper.setupPooledDataSource( databaseConnection );
+    return PooledDatasourceHelper.setupDataSource( databaseConnection );
   }
 
 }
@@ -0,0 +1,110 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.pentaho.platform.api.engine.IMimeTypeListener;
+import org.pentaho.platform.api.engine.IOutputHandler;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository.IContentItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The output handler given to one iteration of a parallel loop. Outputs set by the iteration are recorded and only
+ * passed on to the loop's output handler when the iteration's results are applied, so concurrent iterations never
+ * interleave their outputs and a failed iteration leaves no outputs behind. Content items are still requested from
+ * the loop's output handler, one iteration at a time. Iterations cannot prompt for parameters.
+ */
+class LoopIterationOutputHandler implements IOutputHandler {
+
+  private final IOutputHandler target;
+
+  private final List<Object[]> outputs = new ArrayList<Object[]>();
+
+  LoopIterationOutputHandler( final IOutputHandler target ) {
+    this.target = target;
+  }
+
+  public void setSession( final IPentahoSession session ) {
+    // the session belongs to the loop's output handler
+  }
+
+  public IPentahoSession getSession() {
+    return target.getSession();
+  }
+
+  public boolean contentDone() {
+    synchronized ( target ) {
+      return target.contentDone();
+    }
+  }
+
+  public boolean isResponseExpected() {
+    return target.isResponseExpected();
+  }
+
+  public IContentItem getFeedbackContentItem() {
+    return null;
+  }
+
+  public IContentItem getOutputContentItem( final String objectName, final String contentName,
+      final String instanceId, final String mimeType ) {
+    synchronized ( target ) {
+      return target.getOutputContentItem( objectName, contentName, instanceId, mimeType );
+    }
+  }
+
+  public boolean allowFeedback() {
+    return false;
+  }
+
+  public void setOutputPreference( final int outputType ) {
+    // the output preference is chosen by the caller of the action sequence
+  }
+
+  public int getOutputPreference() {
+    return target.getOutputPreference();
+  }
+
+  public synchronized void setOutput( final String name, final Object value ) throws IOException {
+    outputs.add( new Object[] { name, value } );
+  }
+
+  public IMimeTypeListener getMimeTypeListener() {
+    return target.getMimeTypeListener();
+  }
+
+  public void setMimeTypeListener( final IMimeTypeListener mimeTypeListener ) {
+    // the mime type listener belongs to the loop's output handler
+  }
+
+  /**
+   * Passes the recorded outputs on to the loop's output handler, in the order they were set.
+   */
+  synchronized void replay() throws IOException {
+    for ( Object[] output : outputs ) {
+      target.setOutput( (String) output[0], output[1] );
+    }
+    outputs.clear();
+  }
+}
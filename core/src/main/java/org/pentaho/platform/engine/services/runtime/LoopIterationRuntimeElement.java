@@ -0,0 +1,294 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.pentaho.platform.api.repository.IRuntimeElement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The runtime element given to one iteration of a parallel loop. Properties set by the iteration are recorded and
+ * only written to the loop's runtime element when the iteration's results are applied, on the thread running the
+ * loop, so concurrent iterations never write to it at the same time. The iteration reads its own properties back
+ * from the record; everything else is read from the loop's runtime element while holding its lock, which is also
+ * held while recorded properties are written.
+ */
+class LoopIterationRuntimeElement implements IRuntimeElement {
+
+  private final IRuntimeElement target;
+
+  private final List<PropertyWrite> writes = new ArrayList<PropertyWrite>();
+
+  private final Map<String, Object> written = new HashMap<String, Object>();
+
+  LoopIterationRuntimeElement( final IRuntimeElement target ) {
+    this.target = target;
+  }
+
+  public String getParentId() {
+    synchronized ( target ) {
+      return target.getParentId();
+    }
+  }
+
+  public void setParentId( final String parentId ) {
+    // the identity of the runtime element belongs to the loop
+  }
+
+  public String getParentType() {
+    synchronized ( target ) {
+      return target.getParentType();
+    }
+  }
+
+  public void setParentType( final String parentType ) {
+    // the identity of the runtime element belongs to the loop
+  }
+
+  public String getInstanceId() {
+    synchronized ( target ) {
+      return target.getInstanceId();
+    }
+  }
+
+  public void setInstanceId( final String instanceId ) {
+    // the identity of the runtime element belongs to the loop
+  }
+
+  public String getSolutionId() {
+    synchronized ( target ) {
+      return target.getSolutionId();
+    }
+  }
+
+  public void setSolutionId( final String solutionId ) {
+    // the identity of the runtime element belongs to the loop
+  }
+
+  public int getRevision() {
+    synchronized ( target ) {
+      return target.getRevision();
+    }
+  }
+
+  public String getStringProperty( final String key ) {
+    return getStringProperty( key, null );
+  }
+
+  public synchronized String getStringProperty( final String key, final String defaultValue ) {
+    if ( written.containsKey( key ) ) {
+      Object value = written.get( key );
+      return ( value instanceof String ) ? (String) value : defaultValue;
+    }
+    synchronized ( target ) {
+      return target.getStringProperty( key, defaultValue );
+    }
+  }
+
+  public void setStringProperty( final String key, final String value ) {
+    record( key, value, String.class );
+  }
+
+  public BigDecimal getBigDecimalProperty( final String key ) {
+    return getBigDecimalProperty( key, null );
+  }
+
+  public synchronized BigDecimal getBigDecimalProperty( final String key, final BigDecimal defaultValue ) {
+    if ( written.containsKey( key ) ) {
+      Object value = written.get( key );
+      return ( value instanceof BigDecimal ) ? (BigDecimal) value : defaultValue;
+    }
+    synchronized ( target ) {
+      return target.getBigDecimalProperty( key, defaultValue );
+    }
+  }
+
+  public void setBigDecimalProperty( final String key, final BigDecimal value ) {
+    record( key, value, BigDecimal.class );
+  }
+
+  public Date getDateProperty( final String key ) {
+    return getDateProperty( key, null );
+  }
+
+  public synchronized Date getDateProperty( final String key, final Date defaultValue ) {
+    if ( written.containsKey( key ) ) {
+      Object value = written.get( key );
+      return ( value instanceof Date ) ? (Date) value : defaultValue;
+    }
+    synchronized ( target ) {
+      return target.getDateProperty( key, defaultValue );
+    }
+  }
+
+  public void setDateProperty( final String key, final Date value ) {
+    record( key, value, Date.class );
+  }
+
+  public synchronized Long getLongProperty( final String key, final Long defaultValue ) {
+    if ( written.containsKey( key ) ) {
+      Object value = written.get( key );
+      return ( value instanceof Long ) ? (Long) value : defaultValue;
+    }
+    synchronized ( target ) {
+      return target.getLongProperty( key, defaultValue );
+    }
+  }
+
+  public long getLongProperty( final String key, final long defaultValue ) {
+    Long value = getLongProperty( key, (Long) null );
+    return ( value != null ) ? value.longValue() : defaultValue;
+  }
+
+  public void setLongProperty( final String key, final Long value ) {
+    record( key, value, Long.class );
+  }
+
+  public void setLongProperty( final String key, final long value ) {
+    record( key, Long.valueOf( value ), Long.class );
+  }
+
+  public synchronized List getListProperty( final String key ) {
+    if ( written.containsKey( key ) ) {
+      Object value = written.get( key );
+      return ( value instanceof List ) ? (List) value : null;
+    }
+    synchronized ( target ) {
+      return target.getListProperty( key );
+    }
+  }
+
+  public synchronized Map getMapProperty( final String key ) {
+    if ( written.containsKey( key ) ) {
+      Object value = written.get( key );
+      return ( value instanceof Map ) ? (Map) value : null;
+    }
+    synchronized ( target ) {
+      return target.getMapProperty( key );
+    }
+  }
+
+  public void setListProperty( final String key, final List value ) {
+    record( key, value, List.class );
+  }
+
+  public void setMapProperty( final String key, final Map value ) {
+    record( key, value, Map.class );
+  }
+
+  public String toXML() {
+    synchronized ( target ) {
+      return target.toXML();
+    }
+  }
+
+  public int getLoggingLevel() {
+    synchronized ( target ) {
+      return target.getLoggingLevel();
+    }
+  }
+
+  public void setAllowableAttributeNames( final Collection allowableReadAttributeNames ) {
+    // the allowable attributes are chosen by the loop
+  }
+
+  public Set getParameterNames() {
+    synchronized ( target ) {
+      return target.getParameterNames();
+    }
+  }
+
+  public String getParameterType( final String name ) {
+    synchronized ( target ) {
+      return target.getParameterType( name );
+    }
+  }
+
+  public void setLoaded( final boolean value ) {
+    // the runtime element is loaded by the loop
+  }
+
+  public boolean getLoaded() {
+    synchronized ( target ) {
+      return target.getLoaded();
+    }
+  }
+
+  public void forceSave() {
+    // the recorded properties are saved by the loop once they have been written
+  }
+
+  private synchronized void record( final String key, final Object value, final Class<?> type ) {
+    writes.add( new PropertyWrite( key, value, type ) );
+    written.put( key, value );
+  }
+
+  /**
+   * Writes the recorded properties to the loop's runtime element, in the order they were set.
+   */
+  synchronized void replay() {
+    synchronized ( target ) {
+      for ( PropertyWrite write : writes ) {
+        write.apply( target );
+      }
+    }
+    writes.clear();
+    written.clear();
+  }
+
+  private static class PropertyWrite {
+
+    private final String key;
+
+    private final Object value;
+
+    private final Class<?> type;
+
+    PropertyWrite( final String key, final Object value, final Class<?> type ) {
+      this.key = key;
+      this.value = value;
+      this.type = type;
+    }
+
+    void apply( final IRuntimeElement target ) {
+      if ( type == String.class ) {
+        target.setStringProperty( key, (String) value );
+      } else if ( type == BigDecimal.class ) {
+        target.setBigDecimalProperty( key, (BigDecimal) value );
+      } else if ( type == Date.class ) {
+        target.setDateProperty( key, (Date) value );
+      } else if ( type == Long.class ) {
+        target.setLongProperty( key, (Long) value );
+      } else if ( type == List.class ) {
+        target.setListProperty( key, (List) value );
+      } else if ( type == Map.class ) {
+        target.setMapProperty( key, (Map) value );
+      }
+    }
+  }
+}
@@ -34,6 +34,7 @@ import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource
 import org.pentaho.platform.engine.services.messages.Messages;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -63,6 +64,8 @@ public class ParameterManager implements IParameterManager {
 
   private Map sequenceOutputDefs;
 
+  private Map inheritedParams;
+
   ParameterManager() {
     allParams = new ListOrderedMap();
     allResources = new ListOrderedMap();
@@ -91,6 +94,60 @@ public class ParameterManager implements IParameterManager {
     sequenceOutputDefs.putAll( actionSequence.getOutputDefinitions() );
   }
 
+  /**
+   * Creates the parameter scope for one iteration of a parallel loop. The scope starts with copies of all current
+   * parameters, so the iteration can add and overwrite parameters without affecting this manager or any other
+   * iteration. The copies borrow their values from this manager's parameters and never dispose them.
+   * 
+   * @return a new parameter manager holding copies of this manager's parameters
+   * @see #mergeLoopScope(ParameterManager)
+   */
+  @SuppressWarnings( { "all" } )
+  ParameterManager newLoopScope() {
+    ParameterManager scope = new ParameterManager();
+    scope.inheritedParams = new HashMap();
+    for ( Iterator it = allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      Object param = entry.getValue();
+      if ( param instanceof ActionParameter ) {
+        param = ( (ActionParameter) param ).copy();
+        scope.inheritedParams.put( entry.getKey(), param );
+      }
+      scope.allParams.put( entry.getKey(), param );
+    }
+    scope.allResources.putAll( allResources );
+    scope.sequenceInputNames = sequenceInputNames;
+    scope.sequenceResourceNames = sequenceResourceNames;
+    scope.sequenceOutputDefs.putAll( sequenceOutputDefs );
+    return scope;
+  }
+
+  /**
+   * Applies the parameters set by a completed loop iteration to this manager, as if the iteration had run in this
+   * scope. Parameters the iteration left untouched are skipped; this manager takes ownership of all others.
+   * 
+   * @param scope
+   *          a scope created by {@link #newLoopScope()}
+   */
+  @SuppressWarnings( { "all" } )
+  void mergeLoopScope( final ParameterManager scope ) {
+    for ( Iterator it = scope.allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      IActionParameter param = (IActionParameter) entry.getValue();
+      if ( param == null ) {
+        continue;
+      }
+      if ( param == scope.inheritedParams.get( entry.getKey() ) ) {
+        IActionParameter original = (IActionParameter) allParams.get( entry.getKey() );
+        if ( ( original != null ) && ( original.getValue() == param.getValue() ) ) {
+          continue;
+        }
+      }
+      addToAllInputs( (String) entry.getKey(), param );
+    }
+    waitingToDieParams.addAll( scope.waitingToDieParams );
+  }
+
   public Map getAllParameters() {
     return ( allParams );
   }
@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -39,6 +39,16 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -92,11 +102,13 @@ import org.pentaho.platform.api.util.XmlParseException;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
 import org.pentaho.platform.engine.core.output.MultiContentItem;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.PentahoMessenger;
 import org.pentaho.platform.engine.services.SolutionURIResolver;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequence;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceParameterMgr;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceResourceWrapper;
 import org.pentaho.platform.engine.services.messages.Messages;
@@ -108,6 +120,8 @@ import org.pentaho.platform.util.xml.XForm;
 import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
 import org.pentaho.platform.util.xml.XmlHelper;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 /**
  * @author James Dixon
@@ -124,6 +138,12 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
 
   private static final String LOG_NAME = "RUNTIME"; //$NON-NLS-1$
 
+  /**
+   * Upper bound for the number of concurrent iterations of a parallel loop, whatever the action sequence asks for.
+   * Defaults to the number of available processors.
+   */
+  public static final String MAX_LOOP_PARALLELISM_SETTING = "action-sequence/max-loop-parallelism"; //$NON-NLS-1$
+
   private static final String PLUGIN_BUNDLE_NAME = "org.pentaho.platform.engine.services.runtime.plugins"; //$NON-NLS-1$
 
   protected static final String PARAMETER_FORM = "actionparam"; //$NON-NLS-1$
@@ -257,6 +277,45 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     generatedContentItems = new ArrayList<IContentItem>();
   }
 
+  /**
+   * Creates the runtime context for one iteration of a parallel loop. The iteration shares the session, instance and
+   * action sequence of the loop's context, but has its own parameters, messages, output handler and a runtime element
+   * that holds back its writes.
+   */
+  private RuntimeContext( final RuntimeContext loopContext, final ParameterManager paramScope, final int loopIndex ) {
+    this.createFeedbackParameterCallback = loopContext.createFeedbackParameterCallback;
+    this.instanceId = loopContext.instanceId;
+    this.solutionEngine = loopContext.solutionEngine;
+    this.session = loopContext.session;
+    this.outputHandler =
+        ( loopContext.outputHandler != null ) ? new LoopIterationOutputHandler( loopContext.outputHandler ) : null;
+    this.processId = loopContext.processId;
+    this.urlFactory = loopContext.urlFactory;
+    this.parameterProviders = loopContext.parameterProviders;
+    setMessages( new ArrayList() );
+    xformHeader = new StringBuffer();
+    xformBody = new StringBuffer();
+    xformFields = new HashMap<String, String>();
+    parameterXsl = loopContext.parameterXsl;
+    parameterTemplate = loopContext.parameterTemplate;
+    parameterTarget = loopContext.parameterTarget;
+
+    this.currentComponent = ""; //$NON-NLS-1$
+    status = IRuntimeContext.RUNTIME_STATUS_RUNNING;
+
+    this.runtimeData =
+        ( loopContext.runtimeData != null ) ? new LoopIterationRuntimeElement( loopContext.runtimeData ) : null;
+    handle = loopContext.handle + "-" + loopIndex; //$NON-NLS-1$
+    logId = loopContext.logId.trim() + "[" + loopIndex + "] "; //$NON-NLS-1$ //$NON-NLS-2$
+
+    actionSequence = loopContext.actionSequence;
+    audit = loopContext.audit;
+    paramManager = paramScope;
+    pluginManager = loopContext.pluginManager;
+    generatedContentItems = new ArrayList<IContentItem>();
+    setLoggingLevel( loopContext.getLoggingLevel() );
+  }
+
   private IRuntimeElement createChild( boolean persisted ) {
     IRuntimeElement childRuntimeData = null;
     IRuntimeRepository runtimeRepository = PentahoSystem.get( IRuntimeRepository.class, session );
@@ -834,16 +893,112 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         loopList = Arrays.asList( (Object[]) loopList );
       }
     }
+    int parallelism = getLoopParallelism( sequence, loopParm );
     if ( loopList instanceof List ) {
-      executeLoop( loopParm, (List) loopList, sequence, doneListener, execListener, async );
+      if ( parallelism > 1 ) {
+        executeParallelLoop( getLoopParameters( loopParm, (List) loopList ), (ActionSequence) sequence, parallelism,
+            doneListener, execListener, async );
+      } else {
+        executeLoop( loopParm, (List) loopList, sequence, doneListener, execListener, async );
+      }
       if ( loopParm != null ) {
         addInputParameter( loopParm.getName(), loopParm ); // replace the loop param in case the last loop muggled it
       }
     } else if ( loopList instanceof IPentahoResultSet ) {
-      executeLoop( loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly );
+      // peek-only loops rely on the actions consuming the result set, so they always run sequentially
+      if ( ( parallelism > 1 ) && !peekOnly ) {
+        executeParallelLoop( getLoopParameters( (IPentahoResultSet) loopList ), (ActionSequence) sequence,
+            parallelism, doneListener, execListener, async );
+      } else {
+        executeLoop( loopParm, (IPentahoResultSet) loopList, sequence, doneListener, execListener, async, peekOnly );
+      }
     }
   }
 
+  /**
+   * Returns the number of loop iterations of the sequence that may run concurrently, or one if the loop must run
+   * sequentially.
+   */
+  private int getLoopParallelism( final IActionSequence sequence, final IActionParameter loopParm ) {
+    if ( ( loopParm == null ) || ( sequence.getLoopParallelism() <= 1 ) || !( sequence instanceof ActionSequence )
+        || !( paramManager instanceof ParameterManager ) ) {
+      return 1;
+    }
+    int maxParallelism = Runtime.getRuntime().availableProcessors();
+    String maxSetting = PentahoSystem.getSystemSetting( RuntimeContext.MAX_LOOP_PARALLELISM_SETTING, null );
+    if ( ( maxSetting != null ) && ( maxSetting.trim().length() > 0 ) ) {
+      try {
+        maxParallelism = Integer.parseInt( maxSetting.trim() );
+      } catch ( NumberFormatException e ) {
+        warn( "Invalid value for " + RuntimeContext.MAX_LOOP_PARALLELISM_SETTING + ": " + maxSetting ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return Math.max( 1, Math.min( sequence.getLoopParallelism(), maxParallelism ) );
+  }
+
+  private Iterator<List<IActionParameter>> getLoopParameters( final IActionParameter loopParm, final List loopList ) {
+    final Iterator it = loopList.iterator();
+    return new Iterator<List<IActionParameter>>() {
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      public List<IActionParameter> next() {
+        Object loopVar = it.next();
+        String type = ( loopVar instanceof Map ) ? "property-map" : "string"; //$NON-NLS-1$ //$NON-NLS-2$
+        return Collections.<IActionParameter>singletonList( new ActionParameter( loopParm.getName(), type, loopVar,
+            null, null ) );
+      }
+    };
+  }
+
+  private Iterator<List<IActionParameter>> getLoopParameters( final IPentahoResultSet loopSet ) {
+    if ( loopSet.isScrollable() ) {
+      loopSet.beforeFirst();
+    }
+    final Object[] headers = loopSet.getMetaData().getColumnHeaders()[0];
+    return new Iterator<List<IActionParameter>>() {
+      private Object[] row = loopSet.next();
+
+      public boolean hasNext() {
+        return row != null;
+      }
+
+      public List<IActionParameter> next() {
+        List<IActionParameter> params = new ArrayList<IActionParameter>( headers.length );
+        for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
+          String name = headers[columnNo].toString();
+          Object value = row[columnNo];
+          params.add( new ActionParameter( name, getLoopParameterType( name, value ), value, null, null ) );
+        }
+        row = loopSet.next();
+        return params;
+      }
+    };
+  }
+
+  private String getLoopParameterType( final String name, final Object value ) {
+    String type = null;
+    if ( value instanceof String ) {
+      type = IActionParameter.TYPE_STRING;
+    } else if ( value instanceof Date ) {
+      type = IActionParameter.TYPE_DATE;
+    } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
+      type = IActionParameter.TYPE_INTEGER;
+    } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
+      type = IActionParameter.TYPE_DECIMAL;
+    } else if ( value instanceof String[] ) {
+      type = IActionParameter.TYPE_STRING;
+    } else if ( value == null ) {
+      warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
+    } else {
+      type = IActionParameter.TYPE_OBJECT;
+      warn( Messages.getInstance().getString(
+          "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
+    }
+    return type;
+  }
+
   private void executeLoop( final IActionParameter loopParm, final IPentahoResultSet loopSet,
       final IActionSequence sequence, final IActionCompleteListener doneListener,
       final IExecutionListener execListener, final boolean async, boolean peekOnly ) throws ActionSequenceException {
@@ -881,24 +1036,7 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
         for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
           String name = headers[columnNo].toString();
           Object value = row[columnNo];
-          String type = null;
-          if ( value instanceof String ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value instanceof Date ) {
-            type = IActionParameter.TYPE_DATE;
-          } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
-            type = IActionParameter.TYPE_INTEGER;
-          } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
-            type = IActionParameter.TYPE_DECIMAL;
-          } else if ( value instanceof String[] ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value == null ) {
-            warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
-          } else {
-            type = IActionParameter.TYPE_OBJECT;
-            warn( Messages.getInstance().getString(
-                "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
-          }
+          String type = getLoopParameterType( name, value );
           // TODO make sure any previous loop values are removed
           ap = paramManager.getInput( name );
           if ( ap == null ) {
@@ -958,6 +1096,286 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
   }
 
+  /**
+   * Executes the iterations of a loop on a bounded pool of threads. Every iteration runs in its own runtime context,
+   * with its own copy of the action definitions and components, a copy of the current parameters, and an output
+   * handler and a runtime element that hold back its writes. As iterations complete, their parameters, outputs, runtime
+   * data and messages are applied
+   * to this context and the execution listener is notified of the loop index; in iteration order if the loop is
+   * ordered, otherwise in order of completion. No further iterations are started once one has failed or asked to
+   * prompt; the iterations already running are allowed to finish and all failures are reported together.
+   */
+  void executeParallelLoop( final Iterator<List<IActionParameter>> loopValues, final ActionSequence sequence,
+      final int parallelism, final IActionCompleteListener doneListener, final IExecutionListener execListener,
+      final boolean async ) throws ActionSequenceException {
+    if ( RuntimeContext.debug ) {
+      debug( Messages.getInstance().getString(
+          "RuntimeContext.DEBUG_EXECUTING_PARALLEL_LOOP", Integer.toString( parallelism ) ) ); //$NON-NLS-1$
+    }
+    IExecutionListener iterationListener =
+        ( execListener != null ) ? new SerialExecutionListener( execListener ) : null;
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    ExecutorService executor = Executors.newFixedThreadPool( parallelism, new LoopThreadFactory( logId.trim() ) );
+    CompletionService<LoopIteration> completion = new ExecutorCompletionService<LoopIteration>( executor );
+    SortedMap<Integer, LoopIteration> pending = new TreeMap<Integer, LoopIteration>();
+    List<LoopIteration> failed = new ArrayList<LoopIteration>();
+    int submitted = 0;
+    int running = 0;
+    int nextToApply = 0;
+    boolean stopped = false;
+    try {
+      while ( true ) {
+        while ( ( running < parallelism ) && !stopped && failed.isEmpty()
+            && ( promptStatus != IRuntimeContext.PROMPT_NOW ) && loopValues.hasNext() ) {
+          completion.submit( newLoopIteration( submitted++, loopValues.next(), sequence, doneListener,
+              iterationListener, async, securityContext ) );
+          running++;
+        }
+        if ( running == 0 ) {
+          break;
+        }
+        LoopIteration iteration = completion.take().get();
+        running--;
+        // an ordered loop applies the iteration later, but no further iterations are started from now on
+        if ( ( iteration.failure != null ) || ( iteration.context.promptStatus == IRuntimeContext.PROMPT_NOW ) ) {
+          stopped = true;
+        }
+        if ( sequence.isLoopOrdered() ) {
+          pending.put( iteration.index, iteration );
+          while ( !pending.isEmpty() && ( pending.firstKey() == nextToApply ) ) {
+            applyLoopIteration( pending.remove( nextToApply++ ), iterationListener, failed );
+          }
+        } else {
+          applyLoopIteration( iteration, iterationListener, failed );
+        }
+      }
+    } catch ( InterruptedException ex ) {
+      Thread.currentThread().interrupt();
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw new ActionExecutionException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0037_PARALLEL_LOOP_INTERRUPTED" ), ex, //$NON-NLS-1$
+          session.getName(), instanceId, getActionSequence().getSequenceName(), null );
+    } catch ( ExecutionException ex ) {
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      throw new ActionExecutionException( Messages.getInstance().getErrorString(
+          "RuntimeContext.ERROR_0017_COMPONENT_EXECUTE_FAILED" ), ex.getCause(), //$NON-NLS-1$
+          session.getName(), instanceId, getActionSequence().getSequenceName(), null );
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if ( !failed.isEmpty() ) {
+      status = IRuntimeContext.RUNTIME_STATUS_FAILURE;
+      LoopIteration first = failed.get( 0 );
+      for ( LoopIteration iteration : failed ) {
+        if ( iteration.index < first.index ) {
+          first = iteration;
+        }
+      }
+      for ( LoopIteration iteration : failed ) {
+        if ( iteration != first ) {
+          first.failure.addSuppressed( iteration.failure );
+        }
+      }
+      error( Messages.getInstance().getErrorString( "RuntimeContext.ERROR_0036_PARALLEL_LOOP_FAILED", //$NON-NLS-1$
+          Integer.toString( failed.size() ), Integer.toString( submitted ), Integer.toString( first.index ) ) );
+      throw first.failure;
+    }
+    status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
+  }
+
+  /**
+   * Prepares one iteration of a parallel loop. The action definitions and parameters are copied on the calling
+   * thread, as the XML they are built from is not safe for concurrent use.
+   */
+  private LoopIteration newLoopIteration( final int index, final List<IActionParameter> loopParams,
+      final ActionSequence sequence, final IActionCompleteListener doneListener,
+      final IExecutionListener execListener, final boolean async, final SecurityContext securityContext ) {
+    ParameterManager scope = ( (ParameterManager) paramManager ).newLoopScope();
+    for ( IActionParameter param : loopParams ) {
+      scope.addToAllInputs( param.getName(), param );
+    }
+    RuntimeContext context = new RuntimeContext( this, scope, index );
+    return new LoopIteration( this, index, context, scope, sequence.copy( context ), doneListener, execListener, async,
+        securityContext );
+  }
+
+  /**
+   * Applies the results of a completed loop iteration to this context.
+   */
+  private void applyLoopIteration( final LoopIteration iteration, final IExecutionListener execListener,
+      final List<LoopIteration> failed ) {
+    if ( execListener != null ) {
+      execListener.loop( this, iteration.index );
+    }
+    RuntimeContext context = iteration.context;
+    if ( getMessages() != null ) {
+      getMessages().addAll( context.getMessages() );
+    }
+    generatedContentItems.addAll( context.getOutputContentItems() );
+    if ( iteration.failure == null ) {
+      try {
+        if ( context.outputHandler != null ) {
+          ( (LoopIterationOutputHandler) context.outputHandler ).replay();
+        }
+        if ( context.runtimeData != null ) {
+          ( (LoopIterationRuntimeElement) context.runtimeData ).replay();
+        }
+      } catch ( IOException ex ) {
+        iteration.failure = new ActionExecutionException( Messages.getInstance().getErrorString(
+            "RuntimeContext.ERROR_0034_IO_ERROR" ), ex, //$NON-NLS-1$
+            session.getName(), instanceId, getActionSequence().getSequenceName(), null );
+      }
+    }
+    if ( iteration.failure != null ) {
+      iteration.failure.setLoopIndex( iteration.index );
+      iteration.scope.dispose();
+      failed.add( iteration );
+      return;
+    }
+    ( (ParameterManager) paramManager ).mergeLoopScope( iteration.scope );
+    if ( context.promptStatus > promptStatus ) {
+      promptStatus = context.promptStatus;
+    }
+  }
+
+  /**
+   * Validates and performs the actions of one iteration of a parallel loop in the iteration's runtime context. Called
+   * on a pooled thread.
+   */
+  void executeLoopIteration( final RuntimeContext context, final ParameterManager scope, final ActionSequence actions,
+      final IActionCompleteListener doneListener, final IExecutionListener execListener, final boolean async )
+    throws ActionSequenceException {
+    try {
+      // validation records the action outputs as parameters, so it gets a scope of its own
+      context.paramManager = scope.newLoopScope();
+      context.validateComponents( actions, null );
+      context.paramManager = scope;
+      context.performActions( actions, doneListener, execListener, async );
+    } finally {
+      context.paramManager = scope;
+    }
+  }
+
+  /**
+   * One iteration of a parallel loop, executed on a pooled thread with the session and security context of the
+   * thread that started the loop.
+   */
+  private static class LoopIteration implements Callable<LoopIteration> {
+
+    private final RuntimeContext loop;
+
+    final int index;
+
+    final RuntimeContext context;
+
+    final ParameterManager scope;
+
+    private final ActionSequence actions;
+
+    private final IActionCompleteListener doneListener;
+
+    private final IExecutionListener execListener;
+
+    private final boolean async;
+
+    private final SecurityContext securityContext;
+
+    ActionSequenceException failure;
+
+    LoopIteration( final RuntimeContext loop, final int index, final RuntimeContext context,
+        final ParameterManager scope, final ActionSequence actions, final IActionCompleteListener doneListener,
+        final IExecutionListener execListener, final boolean async, final SecurityContext securityContext ) {
+      this.loop = loop;
+      this.index = index;
+      this.context = context;
+      this.scope = scope;
+      this.actions = actions;
+      this.doneListener = doneListener;
+      this.execListener = execListener;
+      this.async = async;
+      this.securityContext = securityContext;
+    }
+
+    public LoopIteration call() {
+      IPentahoSession origSession = PentahoSessionHolder.getSession();
+      SecurityContext origContext = SecurityContextHolder.getContext();
+      PentahoSessionHolder.setSession( context.session );
+      SecurityContextHolder.setContext( securityContext );
+      try {
+        loop.executeLoopIteration( context, scope, actions, doneListener, execListener, async );
+      } catch ( ActionSequenceException ex ) {
+        failure = ex;
+      } catch ( RuntimeException ex ) {
+        failure = new ActionExecutionException( Messages.getInstance().getErrorString(
+            "RuntimeContext.ERROR_0017_COMPONENT_EXECUTE_FAILED" ), ex, //$NON-NLS-1$
+            context.session.getName(), context.instanceId, context.getActionSequence().getSequenceName(), null );
+      } finally {
+        PentahoSessionHolder.setSession( origSession );
+        SecurityContextHolder.setContext( origContext );
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Names the threads of a parallel loop after the loop's context and makes them daemons, so a loop left running
+   * never keeps the server from stopping.
+   */
+  private static class LoopThreadFactory implements ThreadFactory {
+
+    private final String name;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    LoopThreadFactory( final String name ) {
+      this.name = name;
+    }
+
+    public Thread newThread( final Runnable runnable ) {
+      Thread thread =
+          new Thread( runnable, "parallelLoop-" + name + "-" + threadCount.incrementAndGet() ); //$NON-NLS-1$ //$NON-NLS-2$
+      thread.setDaemon( true );
+      return thread;
+    }
+  }
+
+  /**
+   * Passes the notifications of concurrently running loop iterations on to an execution listener one at a time.
+   */
+  private static class SerialExecutionListener implements IExecutionListener {
+
+    private final IExecutionListener delegate;
+
+    SerialExecutionListener( final IExecutionListener delegate ) {
+      this.delegate = delegate;
+    }
+
+    public void loaded( final IRuntimeContext runtime ) {
+      synchronized ( delegate ) {
+        delegate.loaded( runtime );
+      }
+    }
+
+    public void validated( final IRuntimeContext runtime ) {
+      synchronized ( delegate ) {
+        delegate.validated( runtime );
+      }
+    }
+
+    public void action( final IRuntimeContext runtime, final ISolutionActionDefinition action ) {
+      synchronized ( delegate ) {
+        delegate.action( runtime, action );
+      }
+    }
+
+    public void loop( final IRuntimeContext runtime, final long count ) {
+      synchronized ( delegate ) {
+        delegate.loop( runtime, count );
+      }
+    }
+  }
+
   private void performActions( final IActionSequence sequence, final IActionCompleteListener doneListener,
       final IExecutionListener execListener, final boolean async ) throws ActionSequenceException {
     IConditionalExecution conditional = sequence.getConditionalExecution();
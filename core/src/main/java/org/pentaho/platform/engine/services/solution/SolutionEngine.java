@@ -47,6 +47,7 @@ import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityParameterProvider;
+import org.pentaho.platform.engine.services.ActionSequenceDocumentCache;
 import org.pentaho.platform.engine.services.ActionSequenceJCRHelper;
 import org.pentaho.platform.engine.services.PentahoMessenger;
 import org.pentaho.platform.engine.services.actionsequence.SequenceDefinition;
@@ -396,11 +397,19 @@ public class SolutionEngine extends PentahoMessenger implements ISolutionEngine,
 
   private IActionSequence createActionSequenceFromXml( final String actionDef ) {
     try {
-      Document actionSequenceDocument = XmlDom4JHelper.getDocFromString( actionDef, null );
+      ActionSequenceDocumentCache documentCache = ActionSequenceDocumentCache.getInstance();
+      String cacheKey = ActionSequenceDocumentCache.getKey( actionDef );
+      Document actionSequenceDocument = documentCache.get( cacheKey );
       if ( actionSequenceDocument == null ) {
-        return null;
+        documentCache.documentParsed();
+        actionSequenceDocument = XmlDom4JHelper.getDocFromString( actionDef, null );
+        if ( actionSequenceDocument == null ) {
+          return null;
+        }
+        documentCache.put( cacheKey, actionSequenceDocument );
       }
 
+      documentCache.actionSequenceCompiled();
       IActionSequence actionSequence =
           SequenceDefinition.ActionSequenceFactory( actionSequenceDocument, "", this, PentahoSystem //$NON-NLS-1$
               .getApplicationContext(), loggingLevel );
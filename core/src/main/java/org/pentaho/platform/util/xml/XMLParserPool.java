@@ -0,0 +1,176 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.util.xml;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dom4j.io.SAXReader;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.XMLReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Keeps a bounded number of secure, ready to use {@link SAXReader}s, {@link DocumentBuilder}s and identity
+ * {@link Transformer}s, so that parsing a document does not have to look up a JAXP implementation and configure a new
+ * parser each time.
+ * <p/>
+ * Each borrowed instance is used by one thread only and is handed back once it is done with. Instances are reset when
+ * handed back; an instance that failed should just be dropped instead. When the pool is empty a new instance is
+ * created, and instances handed back to a full pool are dropped, so borrowing never blocks.
+ *
+ * <pre>
+ * SAXReader reader = XMLParserPool.borrowSAXReader( resolver );
+ * Document document = reader.read( in );
+ * XMLParserPool.returnSAXReader( reader );
+ * </pre>
+ */
+public class XMLParserPool {
+
+  private static final Log logger = LogFactory.getLog( XMLParserPool.class );
+
+  private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+  private static final String DECLARATION_HANDLER = "http://xml.org/sax/properties/declaration-handler";
+
+  /**
+   * Most instances of each kind kept for reuse.
+   */
+  public static final int CAPACITY = Math.max( 8, Runtime.getRuntime().availableProcessors() * 2 );
+
+  // last in, first out, so the same few instances keep being reused
+  private static final BlockingDeque<SAXReader> saxReaders = new LinkedBlockingDeque<SAXReader>( CAPACITY );
+
+  private static final BlockingDeque<DocumentBuilder> documentBuilders =
+      new LinkedBlockingDeque<DocumentBuilder>( CAPACITY );
+
+  private static final BlockingDeque<Transformer> transformers = new LinkedBlockingDeque<Transformer>( CAPACITY );
+
+  private static DocumentBuilderFactory documentBuilderFactory;
+
+  private static TransformerFactory transformerFactory;
+
+  private XMLParserPool() {
+  }
+
+  /**
+   * Returns a reader configured like {@link XMLParserFactoryProducer#getSAXReader(EntityResolver)}.
+   * 
+   * @param resolver
+   *          resolves external entities, or <code>null</code> for the reader's default
+   */
+  public static SAXReader borrowSAXReader( final EntityResolver resolver ) {
+    SAXReader reader = saxReaders.pollFirst();
+    if ( reader == null ) {
+      reader = XMLParserFactoryProducer.getSAXReader( null );
+    }
+    reader.setEntityResolver( resolver );
+    return reader;
+  }
+
+  /**
+   * Hands back a reader which read its document successfully. Element handlers, a document factory or an error
+   * handler set on the reader are not undone, so only readers used as borrowed should be handed back.
+   */
+  public static void returnSAXReader( final SAXReader reader ) {
+    try {
+      // drop the handlers of the last read so the pool does not keep its document alive
+      XMLReader xmlReader = reader.getXMLReader();
+      xmlReader.setContentHandler( null );
+      xmlReader.setDTDHandler( null );
+      xmlReader.setErrorHandler( null );
+      xmlReader.setEntityResolver( null );
+      xmlReader.setProperty( LEXICAL_HANDLER, null );
+      xmlReader.setProperty( DECLARATION_HANDLER, null );
+    } catch ( Exception e ) {
+      logger.debug( "Dropping a SAX reader that could not be reset", e ); //$NON-NLS-1$
+      return;
+    }
+    reader.setEntityResolver( null );
+    saxReaders.offerFirst( reader );
+  }
+
+  /**
+   * Returns a builder made by {@link XMLParserFactoryProducer#createSecureDocBuilderFactory()}.
+   * 
+   * @throws ParserConfigurationException
+   *           if a secure builder cannot be created
+   */
+  public static DocumentBuilder borrowDocumentBuilder() throws ParserConfigurationException {
+    DocumentBuilder builder = documentBuilders.pollFirst();
+    if ( builder == null ) {
+      builder = newDocumentBuilder();
+    }
+    return builder;
+  }
+
+  public static void returnDocumentBuilder( final DocumentBuilder builder ) {
+    builder.reset();
+    documentBuilders.offerFirst( builder );
+  }
+
+  /**
+   * Returns an identity transformer with secure processing turned on.
+   * 
+   * @throws TransformerConfigurationException
+   *           if the transformer cannot be created
+   */
+  public static Transformer borrowTransformer() throws TransformerConfigurationException {
+    Transformer transformer = transformers.pollFirst();
+    if ( transformer == null ) {
+      transformer = newTransformer();
+    }
+    return transformer;
+  }
+
+  public static void returnTransformer( final Transformer transformer ) {
+    transformer.reset();
+    transformers.offerFirst( transformer );
+  }
+
+  private static synchronized DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+    if ( documentBuilderFactory == null ) {
+      documentBuilderFactory = XMLParserFactoryProducer.createSecureDocBuilderFactory();
+    }
+    return documentBuilderFactory.newDocumentBuilder();
+  }
+
+  private static synchronized Transformer newTransformer() throws TransformerConfigurationException {
+    if ( transformerFactory == null ) {
+      TransformerFactory factory = TransformerFactory.newInstance();
+      try {
+        factory.setFeature( XMLConstants.FEATURE_SECURE_PROCESSING, true );
+      } catch ( TransformerConfigurationException e ) {
+        logger.error( "Secure processing is not supported by the transformer factory." ); //$NON-NLS-1$
+      }
+      transformerFactory = factory;
+    }
+    return transformerFactory.newTransformer();
+  }
+}
@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -30,7 +30,7 @@ import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.pentaho.platform.api.util.XmlParseException;
 import org.pentaho.platform.util.messages.Messages;
-import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
+import org.pentaho.platform.util.xml.XMLParserPool;
 import org.xml.sax.EntityResolver;
 
 import javax.xml.transform.Source;
@@ -114,8 +114,10 @@ public class XmlDom4JHelper {
    */
   public static Document getDocFromFile( final File file, final EntityResolver resolver ) throws DocumentException,
     IOException {
-    SAXReader reader = XMLParserFactoryProducer.getSAXReader( resolver );
-    return reader.read( file );
+    SAXReader reader = XMLParserPool.borrowSAXReader( resolver );
+    Document document = reader.read( file );
+    XMLParserPool.returnSAXReader( reader );
+    return document;
   }
 
   /**
@@ -130,8 +132,10 @@ public class XmlDom4JHelper {
   public static Document getDocFromStream( final InputStream inStream, final EntityResolver resolver )
     throws DocumentException, IOException {
 
-    SAXReader reader = XMLParserFactoryProducer.getSAXReader( resolver );
-    return reader.read( inStream );
+    SAXReader reader = XMLParserPool.borrowSAXReader( resolver );
+    Document document = reader.read( inStream );
+    XMLParserPool.returnSAXReader( reader );
+    return document;
   }
 
   /**
@@ -220,13 +224,13 @@ public class XmlDom4JHelper {
     StringBuffer sb = null;
     StringWriter writer = new StringWriter();
 
-    TransformerFactory tf = TransformerFactory.newInstance();
-    Transformer t = tf.newTransformer(); // can throw
+    Transformer t = XMLParserPool.borrowTransformer(); // can throw
     // TransformerConfigurationException
 
     Source docSrc = new DOMSource( doc );
     t.transform( docSrc, new StreamResult( writer ) ); // can throw
     // TransformerException
+    XMLParserPool.returnTransformer( t );
     sb = writer.getBuffer();
 
     return sb;
@@ -355,7 +359,9 @@ public class XmlDom4JHelper {
     DocumentException {
     DOMSource source = new DOMSource( doc );
     StreamResult result = new StreamResult( new StringWriter() );
-    TransformerFactory.newInstance().newTransformer().transform( source, result );
+    Transformer transformer = XMLParserPool.borrowTransformer();
+    transformer.transform( source, result );
+    XMLParserPool.returnTransformer( transformer );
     String theXML = result.getWriter().toString();
     Document dom4jDoc = null;
     try {
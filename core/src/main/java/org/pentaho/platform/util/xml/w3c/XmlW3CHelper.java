@@ -14,18 +14,17 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.util.xml.w3c;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.pentaho.platform.util.logging.Logger;
 import org.pentaho.platform.util.messages.Messages;
-import org.pentaho.platform.util.xml.XMLParserFactoryProducer;
+import org.pentaho.platform.util.xml.XMLParserPool;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
@@ -41,9 +40,9 @@ public class XmlW3CHelper {
 
     try {
       // Check and open XML document
-      DocumentBuilderFactory dbf = XMLParserFactoryProducer.createSecureDocBuilderFactory();
-      DocumentBuilder db = dbf.newDocumentBuilder();
+      DocumentBuilder db = XMLParserPool.borrowDocumentBuilder();
       Document doc = db.parse( new InputSource( new java.io.StringReader( str ) ) );
+      XMLParserPool.returnDocumentBuilder( db );
 
       return doc;
     } catch ( Exception e ) {
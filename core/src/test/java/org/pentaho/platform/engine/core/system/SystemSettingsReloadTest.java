@@ -0,0 +1,148 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.platform.api.engine.ISystemSettingsListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SystemSettingsReloadTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private SystemSettings settings;
+
+  @Before
+  public void setUp() {
+    settings = new SystemSettings() {
+      @Override
+      protected String getAbsolutePath( final String path ) {
+        return new File( folder.getRoot(), path ).getAbsolutePath();
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    settings.stopWatching();
+  }
+
+  @Test
+  public void testReloadSettings() throws Exception {
+    writeSettings( "DEBUG" );
+    ISystemSettingsListener listener = mock( ISystemSettingsListener.class );
+    settings.addSettingsListener( listener );
+    assertEquals( "DEBUG", settings.getSystemSetting( "log-level", "ERROR" ) );
+    assertEquals( "DEBUG", settings.getSystemSetting( "pentaho-system/*", "ERROR" ) );
+
+    writeSettings( "WARN" );
+    assertEquals( "DEBUG", settings.getSystemSetting( "log-level", "ERROR" ) );
+    settings.reloadSettings( SystemSettings.PENTAHOSETTINGSFILENAME );
+
+    assertEquals( "WARN", settings.getSystemSetting( "log-level", "ERROR" ) );
+    assertEquals( "WARN", settings.getSystemSetting( "pentaho-system/*", "ERROR" ) );
+    assertEquals( "WARN", settings.getSettingsSnapshot().get( "pentaho-system/log-level" ) );
+    assertEquals( 1, settings.getSystemSettings( "log-level" ).size() );
+    verify( listener ).onSettingsChange( SystemSettings.PENTAHOSETTINGSFILENAME );
+  }
+
+  @Test
+  public void testUnreadableFileKeepsSettings() throws Exception {
+    writeSettings( "DEBUG" );
+    ISystemSettingsListener listener = mock( ISystemSettingsListener.class );
+    settings.addSettingsListener( listener );
+    assertEquals( "DEBUG", settings.getSystemSetting( "log-level", "ERROR" ) );
+
+    FileUtils.writeStringToFile( getSettingsFile(), "<pentaho-system><log-level>", StandardCharsets.UTF_8 );
+    settings.reloadSettings( SystemSettings.PENTAHOSETTINGSFILENAME );
+
+    assertEquals( "DEBUG", settings.getSystemSetting( "log-level", "ERROR" ) );
+    verify( listener, never() ).onSettingsChange( anyString() );
+  }
+
+  @Test
+  public void testChangedFileIsReadAgain() throws Exception {
+    writeSettings( "DEBUG" );
+    settings.setWatchForChanges( true );
+    assertEquals( "DEBUG", settings.getSystemSetting( "log-level", "ERROR" ) );
+
+    final CountDownLatch changed = new CountDownLatch( 1 );
+    settings.addSettingsListener( new ISystemSettingsListener() {
+      @Override
+      public void onSettingsChange( final String path ) {
+        if ( "WARN".equals( settings.getSystemSetting( path, "log-level", null ) ) ) {
+          changed.countDown();
+        }
+      }
+    } );
+    writeSettings( "WARN" );
+
+    assertTrue( "the change was not noticed", changed.await( 30, TimeUnit.SECONDS ) );
+    assertEquals( "WARN", settings.getSystemSetting( "log-level", "ERROR" ) );
+  }
+
+  @Test
+  public void testCreatedFileIsRead() throws Exception {
+    settings.setWatchForChanges( true );
+    assertEquals( "ERROR", settings.getSystemSetting( "log-level", "ERROR" ) );
+
+    final CountDownLatch created = new CountDownLatch( 1 );
+    settings.addSettingsListener( new ISystemSettingsListener() {
+      @Override
+      public void onSettingsChange( final String path ) {
+        if ( "INFO".equals( settings.getSystemSetting( path, "log-level", null ) ) ) {
+          created.countDown();
+        }
+      }
+    } );
+    writeSettings( "INFO" );
+
+    assertTrue( "the new file was not noticed", created.await( 30, TimeUnit.SECONDS ) );
+    assertEquals( "INFO", settings.getSystemSetting( "log-level", "ERROR" ) );
+  }
+
+  private File getSettingsFile() {
+    return new File( folder.getRoot(), SystemSettings.PENTAHOSETTINGSFILENAME );
+  }
+
+  private void writeSettings( final String logLevel ) throws IOException {
+    FileUtils.writeStringToFile( getSettingsFile(), "<pentaho-system><log-level>" + logLevel
+        + "</log-level></pentaho-system>", StandardCharsets.UTF_8 );
+  }
+}
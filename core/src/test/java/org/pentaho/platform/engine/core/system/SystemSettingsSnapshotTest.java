@@ -0,0 +1,119 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Node;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SystemSettingsSnapshotTest {
+
+  private static final String SETTINGS = "<pentaho-system>"
+      + "<log-level>DEBUG</log-level>"
+      + "<audit><auditLogFile>/PentahoAuditLog.log</auditLogFile><id_separator>|</id_separator></audit>"
+      + "<auditConnection><insertSQL>INSERT INTO audit</insertSQL></auditConnection>"
+      + "<objects><class>first</class><nested><class>second</class></nested></objects>"
+      + "<cache-provider><class>org.example.Provider</class><properties><timeout>30</timeout></properties>"
+      + "</cache-provider>"
+      + "<flags><on> true </on><off>no</off><count>x</count></flags>"
+      + "<ns:element xmlns:ns=\"urn:example\"><inner>namespaced</inner></ns:element>"
+      + "</pentaho-system>";
+
+  @Test
+  public void testMatchesXPath() throws Exception {
+    Document document = DocumentHelper.parseText( SETTINGS );
+    SystemSettingsSnapshot snapshot = SystemSettingsSnapshot.compile( document );
+
+    for ( String key : Arrays.asList( "log-level", "audit/auditLogFile", "auditLogFile", "pentaho-system/audit/id_separator",
+        "auditConnection/insertSQL", "class", "objects/class", "nested/class", "cache-provider/class",
+        "cache-provider/properties/timeout", "audit", "pentaho-system", "missing", "audit/missing", "inner", "element",
+        "element/inner", "objects/nested/class", "audit/class" ) ) {
+      Node node = document.selectSingleNode( "//" + key );
+      assertEquals( key, node == null ? null : node.getText(), snapshot.get( key ) );
+    }
+  }
+
+  @Test
+  public void testMatchesXPathForPentahoXml() throws Exception {
+    Document document = new SystemSettings().getSettingsDocumentFromFile(
+        new File( "src/test/resources/solution/system/pentaho.xml" ) );
+    SystemSettingsSnapshot snapshot = SystemSettingsSnapshot.compile( document );
+
+    for ( Object element : document.selectNodes( "//*" ) ) {
+      String key = ( (Node) element ).getPath().substring( 1 );
+      while ( key.length() > 0 ) {
+        Node node = document.selectSingleNode( "//" + key );
+        assertEquals( key, node.getText(), snapshot.get( key ) );
+        key = key.indexOf( '/' ) < 0 ? "" : key.substring( key.indexOf( '/' ) + 1 );
+      }
+    }
+  }
+
+  @Test
+  public void testTypedAccessors() throws Exception {
+    SystemSettingsSnapshot snapshot = SystemSettingsSnapshot.compile( DocumentHelper.parseText( SETTINGS ) );
+
+    assertEquals( 30, snapshot.getInt( "timeout", 10 ) );
+    assertEquals( 30L, snapshot.getLong( "properties/timeout", 10L ) );
+    assertEquals( 10, snapshot.getInt( "count", 10 ) );
+    assertEquals( 10, snapshot.getInt( "missing", 10 ) );
+    assertTrue( snapshot.getBoolean( "on", false ) );
+    assertFalse( snapshot.getBoolean( "off", true ) );
+    assertTrue( snapshot.getBoolean( "missing", true ) );
+    assertEquals( "DEBUG", snapshot.getString( "log-level", "ERROR" ) );
+    assertEquals( "ERROR", snapshot.getString( "missing", "ERROR" ) );
+    assertTrue( snapshot.contains( "audit" ) );
+    assertFalse( snapshot.contains( "missing" ) );
+  }
+
+  @Test
+  public void testEmptyDocument() {
+    assertSame( SystemSettingsSnapshot.EMPTY, SystemSettingsSnapshot.compile( DocumentHelper.createDocument() ) );
+    assertNull( SystemSettingsSnapshot.EMPTY.get( "log-level" ) );
+  }
+
+  @Test
+  public void testIsSimplePath() {
+    assertTrue( SystemSettingsSnapshot.isSimplePath( "log-level" ) );
+    assertTrue( SystemSettingsSnapshot.isSimplePath( "audit/id_separator" ) );
+    assertTrue( SystemSettingsSnapshot.isSimplePath( "cache-provider/properties/max.size" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( null ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "/audit" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "audit/" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "audit//file" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "cache-provider/properties/*" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "audit/@file" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "objects/class[2]" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "ns:element" ) );
+    assertFalse( SystemSettingsSnapshot.isSimplePath( "audit/text()" ) );
+  }
+}
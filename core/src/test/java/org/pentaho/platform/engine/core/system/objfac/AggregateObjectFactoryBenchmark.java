@@ -0,0 +1,133 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system.objfac;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ObjectFactoryException;
+import org.pentaho.platform.engine.core.system.objfac.references.SingletonPentahoObjectReference;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of resolving objects through {@link AggregateObjectFactory}, with the resolution cache in use and
+ * with it disabled by registering a factory that does not report changes (a {@link StandaloneObjectFactory}).
+ * <p/>
+ * Not run as part of the unit tests. After {@code mvn test-compile} run it from the IDE through {@link #main} or with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main AggregateObjectFactoryBenchmark}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class AggregateObjectFactoryBenchmark {
+
+  /**
+   * Number of factories registered besides the one holding the looked up type, roughly one per plugin.
+   */
+  @Param( { "1", "20" } )
+  public int factoryCount;
+
+  @Param( { "true", "false" } )
+  public boolean cached;
+
+  private AggregateObjectFactory aggregate;
+  private IPentahoSession session;
+  private Map<String, String> properties;
+
+  @Setup
+  public void setUp() {
+    aggregate = new AggregateObjectFactory();
+    RuntimeObjectFactory runtime = new RuntimeObjectFactory();
+    runtime.registerObject( new Service( "default" ), IService.class );
+    Map<String, Object> attributes = new HashMap<String, Object>();
+    attributes.put( "id", "special" );
+    runtime.registerReference(
+      new SingletonPentahoObjectReference<IService>( IService.class, new Service( "special" ), attributes, 10 ),
+      IService.class );
+    aggregate.registerObjectFactory( runtime );
+
+    for ( int i = 0; i < factoryCount; i++ ) {
+      RuntimeObjectFactory other = new RuntimeObjectFactory();
+      other.registerObject( "object " + i, CharSequence.class );
+      aggregate.registerObjectFactory( other );
+    }
+    if ( !cached ) {
+      aggregate.registerObjectFactory( new StandaloneObjectFactory() );
+    }
+    properties = Collections.singletonMap( "id", "special" );
+  }
+
+  @Benchmark
+  public boolean objectDefined() {
+    return aggregate.objectDefined( IService.class );
+  }
+
+  @Benchmark
+  public IService getByType() throws ObjectFactoryException {
+    return aggregate.get( IService.class, session, null );
+  }
+
+  @Benchmark
+  public IService getByProperties() throws ObjectFactoryException {
+    return aggregate.get( IService.class, session, properties );
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    Options options = new OptionsBuilder().include( AggregateObjectFactoryBenchmark.class.getSimpleName() ).build();
+    new Runner( options ).run();
+  }
+
+  public interface IService {
+  }
+
+  public static class Service implements IService {
+    private final String name;
+
+    public Service( String name ) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
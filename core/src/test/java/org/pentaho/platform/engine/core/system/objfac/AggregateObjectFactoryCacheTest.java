@@ -0,0 +1,206 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.core.system.objfac;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IObjectCreator;
+import org.pentaho.platform.api.engine.IPentahoObjectFactory;
+import org.pentaho.platform.api.engine.IPentahoObjectReference;
+import org.pentaho.platform.api.engine.IPentahoObjectRegistration;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ObjectFactoryException;
+import org.pentaho.platform.engine.core.system.objfac.references.PrototypePentahoObjectReference;
+import org.pentaho.platform.engine.core.system.objfac.references.SingletonPentahoObjectReference;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AggregateObjectFactoryCacheTest {
+
+  private AggregateObjectFactory aggregate;
+  private CountingRuntimeObjectFactory runtime;
+
+  @Before
+  public void setUp() {
+    aggregate = new AggregateObjectFactory();
+    runtime = new CountingRuntimeObjectFactory();
+    aggregate.registerObjectFactory( runtime );
+  }
+
+  @Test
+  public void testLookupsAreCached() throws Exception {
+    runtime.registerObject( new Widget( "one" ), IWidget.class );
+
+    assertTrue( aggregate.objectDefined( IWidget.class ) );
+    assertEquals( "one", lookup( null ).getName() );
+    assertEquals( "one", lookup( null ).getName() );
+    assertEquals( 1, aggregate.getObjectReferences( IWidget.class, null, null ).size() );
+
+    assertEquals( 1, runtime.referenceLookups );
+  }
+
+  @Test
+  public void testPropertiesArePartOfTheKey() throws Exception {
+    Map<String, Object> attributes = new HashMap<String, Object>();
+    attributes.put( "color", "red" );
+    runtime.registerReference( new SingletonPentahoObjectReference<IWidget>( IWidget.class, new Widget( "red" ),
+      attributes, 0 ), IWidget.class );
+    runtime.registerObject( new Widget( "plain" ), IWidget.class );
+
+    Map<String, String> query = new HashMap<String, String>();
+    query.put( "color", "red" );
+    assertEquals( "red", lookup( query ).getName() );
+    assertEquals( 2, aggregate.getObjectReferences( IWidget.class, null, null ).size() );
+
+    // changing the caller's map afterwards must not affect the cached entry
+    query.put( "color", "blue" );
+    assertNull( aggregate.getObjectReference( IWidget.class, null, query ) );
+    assertEquals( "red",
+      lookup( Collections.singletonMap( "color", "red" ) ).getName() );
+    assertEquals( 3, runtime.referenceLookups );
+  }
+
+  @Test
+  public void testRegistrationChangesInvalidate() throws Exception {
+    assertFalse( aggregate.objectDefined( IWidget.class ) );
+
+    IPentahoObjectRegistration registration = runtime.registerObject( new Widget( "one" ), IWidget.class );
+    assertTrue( aggregate.objectDefined( IWidget.class ) );
+    assertEquals( "one", lookup( null ).getName() );
+
+    runtime.registerReference( new SingletonPentahoObjectReference<IWidget>( IWidget.class, new Widget( "two" ),
+      Collections.<String, Object>emptyMap(), 10 ), IWidget.class );
+    assertEquals( "two", lookup( null ).getName() );
+
+    registration.remove();
+    assertEquals( 1, aggregate.getObjectReferences( IWidget.class, null, null ).size() );
+  }
+
+  @Test
+  public void testFactoryRegistrationInvalidates() throws Exception {
+    CountingRuntimeObjectFactory other = new CountingRuntimeObjectFactory();
+    other.registerObject( new Widget( "other" ), IWidget.class );
+    assertFalse( aggregate.objectDefined( IWidget.class ) );
+
+    aggregate.registerObjectFactory( other );
+    assertTrue( aggregate.objectDefined( IWidget.class ) );
+    assertEquals( "other", lookup( null ).getName() );
+
+    aggregate.deregisterObjectFactory( other );
+    assertFalse( aggregate.objectDefined( IWidget.class ) );
+
+    // a factory no longer registered does not reach the aggregate anymore
+    other.registerObject( new Widget( "late" ), IWidget.class );
+    assertFalse( aggregate.objectDefined( IWidget.class ) );
+  }
+
+  @Test
+  public void testObjectsAreStillCreatedPerCall() throws Exception {
+    runtime.registerReference( new PrototypePentahoObjectReference.Builder<IWidget>( IWidget.class ).creator(
+      new IObjectCreator<IWidget>() {
+        @Override public IWidget create( IPentahoSession session ) {
+          return new Widget( "prototype" );
+        }
+      } ).build(), IWidget.class );
+
+    IWidget first = lookup( null );
+    IWidget second = lookup( null );
+    assertNotSame( first, second );
+    assertEquals( 1, runtime.referenceLookups );
+  }
+
+  @Test
+  public void testUnobservableFactoryDisablesCache() throws Exception {
+    IPentahoObjectFactory plain = mock( IPentahoObjectFactory.class );
+    when( plain.objectDefined( IWidget.class ) ).thenReturn( false );
+    aggregate.registerObjectFactory( plain );
+
+    Widget widget = new Widget( "one" );
+    runtime.registerObject( widget, IWidget.class );
+    assertSame( widget, lookup( null ) );
+    assertSame( widget, lookup( null ) );
+    assertEquals( 2, runtime.referenceLookups );
+
+    aggregate.deregisterObjectFactory( plain );
+    lookup( null );
+    lookup( null );
+    assertEquals( 3, runtime.referenceLookups );
+  }
+
+  @Test
+  public void testKeyLookupsAreCached() throws Exception {
+    IPentahoObjectFactory keyed = mock( IObservableObjectFactory.class );
+    when( keyed.objectDefined( "widget" ) ).thenReturn( true );
+    when( keyed.get( IWidget.class, "widget", null ) ).thenReturn( new Widget( "keyed" ) );
+    aggregate.registerObjectFactory( keyed );
+
+    assertTrue( aggregate.objectDefined( "widget" ) );
+    assertEquals( "keyed", aggregate.get( IWidget.class, "widget", null ).getName() );
+    verify( keyed, times( 1 ) ).objectDefined( "widget" );
+  }
+
+  private IWidget lookup( Map<String, String> properties ) throws ObjectFactoryException {
+    return aggregate.get( IWidget.class, (IPentahoSession) null, properties );
+  }
+
+  public interface IWidget {
+    String getName();
+  }
+
+  public static class Widget implements IWidget {
+    private final String name;
+
+    public Widget( String name ) {
+      this.name = name;
+    }
+
+    @Override public String getName() {
+      return name;
+    }
+  }
+
+  private static class CountingRuntimeObjectFactory extends RuntimeObjectFactory {
+    private int referenceLookups;
+
+    @Override
+    public <T> List<IPentahoObjectReference<T>> getObjectReferences( Class<T> interfaceClass,
+                                                                     IPentahoSession curSession,
+                                                                     Map<String, String> properties )
+      throws ObjectFactoryException {
+      referenceLookups++;
+      return super.getObjectReferences( interfaceClass, curSession, properties );
+    }
+  }
+}
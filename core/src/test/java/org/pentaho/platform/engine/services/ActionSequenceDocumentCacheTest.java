@@ -0,0 +1,106 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
+
+import java.util.Date;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class ActionSequenceDocumentCacheTest {
+
+  private static final String XACTION =
+    "<action-sequence><title>%title</title><actions><action-definition/></actions></action-sequence>";
+
+  private ActionSequenceDocumentCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new ActionSequenceDocumentCache( new SimpleMapCacheManager() );
+  }
+
+  @Test
+  public void testRepositoryKey() {
+    RepositoryFile file = file( "1.0", new Date( 1000L ) );
+    String key = ActionSequenceDocumentCache.getKey( file, Locale.US );
+    assertEquals( key, ActionSequenceDocumentCache.getKey( file( "1.0", new Date( 1000L ) ), Locale.US ) );
+
+    assertNotEquals( key, ActionSequenceDocumentCache.getKey( file( "1.1", new Date( 1000L ) ), Locale.US ) );
+    assertNotEquals( key, ActionSequenceDocumentCache.getKey( file( "1.0", new Date( 2000L ) ), Locale.US ) );
+    assertNotEquals( key, ActionSequenceDocumentCache.getKey( file, Locale.GERMANY ) );
+
+    assertNotNull( ActionSequenceDocumentCache.getKey( file( null, new Date( 1000L ) ), Locale.US ) );
+    assertNull( ActionSequenceDocumentCache.getKey( file( null, null ), Locale.US ) );
+  }
+
+  @Test
+  public void testGetReturnsCopies() throws Exception {
+    String key = ActionSequenceDocumentCache.getKey( XACTION );
+    assertNull( cache.get( key ) );
+
+    Document parsed = DocumentHelper.parseText( XACTION );
+    cache.put( key, parsed );
+    // changes the caller makes after caching are not shared
+    parsed.selectSingleNode( "/action-sequence/title" ).setText( "changed" );
+
+    Document first = cache.get( key );
+    assertEquals( "%title", first.selectSingleNode( "/action-sequence/title" ).getText() );
+    first.selectSingleNode( "/action-sequence/title" ).setText( "localized" );
+
+    Document second = cache.get( key );
+    assertNotSame( first, second );
+    assertEquals( "%title", second.selectSingleNode( "/action-sequence/title" ).getText() );
+    assertNotNull( second.selectSingleNode( "/action-sequence/actions/action-definition" ) );
+    assertEquals( 2, cache.getHitCount() );
+  }
+
+  @Test
+  public void testNullKeyIsNotCached() throws Exception {
+    cache.put( null, DocumentHelper.parseText( XACTION ) );
+    assertNull( cache.get( null ) );
+    assertEquals( 0, cache.getHitCount() );
+  }
+
+  @Test
+  public void testCounters() {
+    cache.documentParsed();
+    cache.actionSequenceCompiled();
+    cache.actionSequenceCompiled();
+    assertEquals( 1, cache.getParseCount() );
+    assertEquals( 2, cache.getCompileCount() );
+  }
+
+  private static RepositoryFile file( String versionId, Date lastModified ) {
+    return new RepositoryFile.Builder( "fileId", "report.xaction" ).path( "/public/report.xaction" )
+      .versionId( versionId ).lastModificationDate( lastModified ).build();
+  }
+}
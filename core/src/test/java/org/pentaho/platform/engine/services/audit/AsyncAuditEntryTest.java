@@ -0,0 +1,190 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncAuditEntryTest {
+
+  private CollectingAuditEntry auditEntry;
+
+  @After
+  public void tearDown() {
+    if ( auditEntry != null ) {
+      auditEntry.shutdown();
+    }
+  }
+
+  @Test
+  public void testRingBufferRoundsCapacityAndRejectsWhenFull() {
+    AuditRingBuffer<String> buffer = new AuditRingBuffer<String>( 3 );
+    assertEquals( 4, buffer.capacity() );
+    for ( int i = 0; i < 4; i++ ) {
+      assertTrue( buffer.offer( "e" + i ) );
+    }
+    assertFalse( buffer.offer( "overflow" ) );
+
+    List<String> drained = new ArrayList<String>();
+    assertEquals( 2, buffer.drainTo( drained, 2 ) );
+    assertEquals( 2, buffer.size() );
+    assertTrue( buffer.offer( "e4" ) );
+    buffer.drainTo( drained, 10 );
+    assertEquals( 0, buffer.size() );
+    assertEquals( "[e0, e1, e2, e3, e4]", drained.toString() );
+  }
+
+  @Test
+  public void testRecordsAreWrittenInBatches() throws Exception {
+    auditEntry = new CollectingAuditEntry( 250 );
+    auditEntry.setBatchSize( 100 );
+    auditEntry.setFlushIntervalMillis( 50 );
+
+    for ( int i = 0; i < 250; i++ ) {
+      audit( auditEntry, i );
+    }
+
+    assertTrue( auditEntry.latch.await( 10, TimeUnit.SECONDS ) );
+    auditEntry.shutdown();
+    assertEquals( 250, auditEntry.getQueuedCount() );
+    assertEquals( 250, auditEntry.getWrittenCount() );
+    assertEquals( 0, auditEntry.getDroppedCount() );
+    for ( Integer size : auditEntry.batchSizes ) {
+      assertTrue( size <= 100 );
+    }
+  }
+
+  @Test
+  public void testShutdownFlushesPendingRecords() {
+    auditEntry = new CollectingAuditEntry( 10 );
+    auditEntry.setFlushIntervalMillis( 60000 );
+    for ( int i = 0; i < 10; i++ ) {
+      audit( auditEntry, i );
+    }
+    auditEntry.shutdown();
+
+    assertEquals( 10, auditEntry.records.size() );
+    assertEquals( 10, auditEntry.getWrittenCount() );
+    assertTrue( auditEntry.closed );
+
+    audit( auditEntry, 11 );
+    assertEquals( 1, auditEntry.getDroppedCount() );
+  }
+
+  @Test
+  public void testRecordsAuditedDuringShutdownAreWrittenOrDropped() throws Exception {
+    auditEntry = new CollectingAuditEntry( 0 );
+    auditEntry.setOverflowPolicy( AsyncAuditEntry.OverflowPolicy.BLOCK );
+    auditEntry.setFlushIntervalMillis( 10 );
+    final CountDownLatch started = new CountDownLatch( 4 );
+    List<Thread> producers = new ArrayList<Thread>();
+    for ( int p = 0; p < 4; p++ ) {
+      Thread producer = new Thread( new Runnable() {
+        public void run() {
+          started.countDown();
+          for ( int i = 0; i < 5000; i++ ) {
+            audit( auditEntry, i );
+          }
+        }
+      } );
+      producers.add( producer );
+      producer.start();
+    }
+    assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+    auditEntry.shutdown();
+    for ( Thread producer : producers ) {
+      producer.join( 10000 );
+    }
+
+    assertEquals( 20000, auditEntry.getQueuedCount() + auditEntry.getDroppedCount() );
+    assertEquals( auditEntry.getQueuedCount(), auditEntry.getWrittenCount() );
+    assertEquals( auditEntry.getWrittenCount(), auditEntry.records.size() );
+  }
+
+  @Test
+  public void testDropPolicyCountsDroppedRecords() throws Exception {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    auditEntry = new CollectingAuditEntry( 0 ) {
+      @Override
+      protected void writeBatch( List<AuditRecord> batch ) {
+        try {
+          release.await( 10, TimeUnit.SECONDS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+        super.writeBatch( batch );
+      }
+    };
+    auditEntry.setCapacity( 4 );
+    auditEntry.setBatchSize( 1 );
+
+    for ( int i = 0; i < 100; i++ ) {
+      audit( auditEntry, i );
+    }
+    release.countDown();
+    auditEntry.shutdown();
+
+    assertTrue( auditEntry.getDroppedCount() > 0 );
+    assertEquals( 100, auditEntry.getQueuedCount() + auditEntry.getDroppedCount() );
+    assertEquals( auditEntry.getQueuedCount(), auditEntry.getWrittenCount() );
+  }
+
+  private static void audit( AsyncAuditEntry entry, int i ) {
+    entry.auditAll( "job", "inst" + i, "obj", "type", "actor", "msgType", "msgName", "txt", BigDecimal.ONE, i );
+  }
+
+  private static class CollectingAuditEntry extends AsyncAuditEntry {
+
+    final List<AuditRecord> records = Collections.synchronizedList( new ArrayList<AuditRecord>() );
+    final List<Integer> batchSizes = Collections.synchronizedList( new ArrayList<Integer>() );
+    final CountDownLatch latch;
+    volatile boolean closed;
+
+    CollectingAuditEntry( int expected ) {
+      latch = new CountDownLatch( expected );
+    }
+
+    @Override
+    protected void writeBatch( List<AuditRecord> batch ) {
+      batchSizes.add( batch.size() );
+      for ( AuditRecord record : batch ) {
+        records.add( record );
+        latch.countDown();
+      }
+    }
+
+    @Override
+    protected void close() {
+      closed = true;
+    }
+  }
+}
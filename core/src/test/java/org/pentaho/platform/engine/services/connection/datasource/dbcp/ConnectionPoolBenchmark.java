@@ -0,0 +1,151 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.commons.dbcp.ConnectionFactory;
+import org.apache.commons.dbcp.PoolableConnectionFactory;
+import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of borrowing a connection from a pool and returning it, with 64 threads sharing a pool of
+ * 16 connections, for the commons-dbcp pools created by {@link PooledDatasourceHelper} and the HikariCP pools created
+ * by {@link HikariDatasourceHelper}. The connections do not talk to a database, so only the cost of the pool is
+ * measured.
+ * <p/>
+ * Not run as part of the unit tests. After {@code mvn test-compile} run it from the IDE through {@link #main} or with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ConnectionPoolBenchmark}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 64 )
+public class ConnectionPoolBenchmark {
+
+  private static final int POOL_SIZE = 16;
+
+  @Param( { "dbcp", "hikari" } )
+  public String backend;
+
+  private DataSource dataSource;
+
+  @Setup
+  public void setUp() {
+    if ( "hikari".equals( backend ) ) {
+      HikariConfig config = new HikariConfig();
+      config.setDataSource( new AbstractDataSource() {
+        @Override
+        public Connection getConnection() {
+          return newConnection();
+        }
+
+        @Override
+        public Connection getConnection( String username, String password ) {
+          return newConnection();
+        }
+      } );
+      config.setMaximumPoolSize( POOL_SIZE );
+      config.setMinimumIdle( POOL_SIZE );
+      config.setConnectionTimeout( 0 );
+      dataSource = new HikariDataSource( config );
+    } else {
+      GenericObjectPool pool = new GenericObjectPool( null );
+      pool.setMaxActive( POOL_SIZE );
+      pool.setMaxIdle( POOL_SIZE );
+      pool.setWhenExhaustedAction( GenericObjectPool.WHEN_EXHAUSTED_BLOCK );
+      ConnectionFactory factory = new ConnectionFactory() {
+        @Override
+        public Connection createConnection() {
+          return newConnection();
+        }
+      };
+      new PoolableConnectionFactory( factory, pool, null, null, false, true );
+      PoolingDataSource poolingDataSource = new MeteredPoolingDataSource();
+      poolingDataSource.setPool( pool );
+      dataSource = poolingDataSource;
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if ( dataSource instanceof HikariDataSource ) {
+      ( (HikariDataSource) dataSource ).close();
+    }
+  }
+
+  @Benchmark
+  public void borrowAndReturn() throws Exception {
+    Connection connection = dataSource.getConnection();
+    connection.close();
+  }
+
+  /**
+   * Returns a connection which does nothing and answers every question the way the pools expect of an open connection.
+   */
+  private static Connection newConnection() {
+    return (Connection) Proxy.newProxyInstance( ConnectionPoolBenchmark.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+          if ( method.getName().equals( "isClosed" ) || method.getName().equals( "isReadOnly" ) ) {
+            return false;
+          }
+          if ( method.getReturnType() == boolean.class ) {
+            return true;
+          }
+          if ( method.getReturnType() == int.class ) {
+            return 0;
+          }
+          return null;
+        } );
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    Options options = new OptionsBuilder().include( ConnectionPoolBenchmark.class.getSimpleName() ).build();
+    new Runner( options ).run();
+  }
+}
@@ -0,0 +1,168 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.connection.datasource.dbcp;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericObjectPool;
+import org.junit.After;
+import org.junit.Test;
+import org.pentaho.platform.api.data.ConnectionPoolStatistics;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class ConnectionPoolMetricsTest {
+
+  @After
+  public void tearDown() {
+    ConnectionPoolMetrics.unregisterAll();
+  }
+
+  @Test
+  public void testRecordBorrowAndTimeout() {
+    ConnectionPoolMetrics metrics = new ConnectionPoolMetrics( "SampleData", "dbcp", new FixedState( 3, 2, 1, 20 ) );
+    metrics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 2 ) );
+    metrics.recordBorrow( TimeUnit.MILLISECONDS.toNanos( 6 ) );
+    metrics.recordTimeout();
+
+    ConnectionPoolStatistics statistics = metrics.getStatistics();
+    assertEquals( "SampleData", statistics.getName() );
+    assertEquals( "dbcp", statistics.getBackend() );
+    assertEquals( 3, statistics.getActiveConnections() );
+    assertEquals( 2, statistics.getIdleConnections() );
+    assertEquals( 1, statistics.getThreadsAwaitingConnection() );
+    assertEquals( 20, statistics.getMaxConnections() );
+    assertEquals( 2, statistics.getBorrowCount() );
+    assertEquals( 1, statistics.getTimeoutCount() );
+    assertEquals( 4.0, statistics.getAverageWaitTime(), 0.0001 );
+    assertEquals( 6.0, statistics.getMaxWaitTime(), 0.0001 );
+  }
+
+  @Test
+  public void testNoBorrows() {
+    ConnectionPoolMetrics metrics = new ConnectionPoolMetrics( "SampleData", "dbcp", new FixedState( 0, 0, 0, -1 ) );
+    assertEquals( 0.0, metrics.getAverageWaitTime(), 0.0 );
+    assertEquals( 0.0, metrics.getMaxWaitTime(), 0.0 );
+  }
+
+  @Test
+  public void testRegister() throws Exception {
+    ObjectName objectName = new ObjectName( "org.pentaho.platform:type=ConnectionPool,name=\"SampleData\"" );
+    ConnectionPoolMetrics first = ConnectionPoolMetrics.register(
+        new ConnectionPoolMetrics( "SampleData", "dbcp", new FixedState( 1, 0, 0, 20 ) ) );
+    assertSame( first, ConnectionPoolMetrics.get( "SampleData" ) );
+    assertEquals( 1, ManagementFactory.getPlatformMBeanServer().getAttribute( objectName, "ActiveConnections" ) );
+
+    // a new pool of the same datasource replaces the old one
+    ConnectionPoolMetrics second = ConnectionPoolMetrics.register(
+        new ConnectionPoolMetrics( "SampleData", "hikari", new FixedState( 5, 0, 0, 10 ) ) );
+    assertEquals( 5, ManagementFactory.getPlatformMBeanServer().getAttribute( objectName, "ActiveConnections" ) );
+    ConnectionPoolMetrics.unregister( first );
+    assertSame( second, ConnectionPoolMetrics.get( "SampleData" ) );
+    assertTrue( ManagementFactory.getPlatformMBeanServer().isRegistered( objectName ) );
+
+    ConnectionPoolMetrics.register( new ConnectionPoolMetrics( "Audit", "dbcp", new FixedState( 0, 1, 0, 20 ) ) );
+    List<ConnectionPoolStatistics> statistics = ConnectionPoolMetrics.getAllStatistics();
+    assertEquals( 2, statistics.size() );
+    assertEquals( "Audit", statistics.get( 0 ).getName() );
+    assertEquals( "SampleData", statistics.get( 1 ).getName() );
+
+    ConnectionPoolMetrics.unregister( second );
+    assertNull( ConnectionPoolMetrics.get( "SampleData" ) );
+    assertFalse( ManagementFactory.getPlatformMBeanServer().isRegistered( objectName ) );
+  }
+
+  @Test
+  public void testMeteredPoolingDataSource() throws Exception {
+    GenericObjectPool pool = new GenericObjectPool( new BasePoolableObjectFactory() {
+      @Override
+      public Object makeObject() {
+        return mock( Connection.class );
+      }
+    } );
+    pool.setMaxActive( 1 );
+    pool.setMaxWait( 10 );
+    pool.setWhenExhaustedAction( GenericObjectPool.WHEN_EXHAUSTED_BLOCK );
+    MeteredPoolingDataSource dataSource = new MeteredPoolingDataSource();
+    dataSource.setPool( pool );
+    ConnectionPoolMetrics metrics = dataSource.registerMetrics( "SampleData", pool );
+    assertSame( metrics, ConnectionPoolMetrics.get( "SampleData" ) );
+
+    dataSource.getConnection();
+    assertEquals( 1, metrics.getBorrowCount() );
+    assertEquals( 1, metrics.getActiveConnections() );
+    assertEquals( 1, metrics.getMaxConnections() );
+    try {
+      dataSource.getConnection();
+      fail( "Expecting the pool to be exhausted" );
+    } catch ( SQLException e ) {
+      assertEquals( 1, metrics.getTimeoutCount() );
+    }
+    assertEquals( 0, metrics.getThreadsAwaitingConnection() );
+    assertEquals( 0, metrics.getIdleConnections() );
+  }
+
+  private static class FixedState implements ConnectionPoolMetrics.PoolState {
+    private final int active;
+    private final int idle;
+    private final int awaiting;
+    private final int max;
+
+    FixedState( int active, int idle, int awaiting, int max ) {
+      this.active = active;
+      this.idle = idle;
+      this.awaiting = awaiting;
+      this.max = max;
+    }
+
+    @Override
+    public int getActiveConnections() {
+      return active;
+    }
+
+    @Override
+    public int getIdleConnections() {
+      return idle;
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+      return awaiting;
+    }
+
+    @Override
+    public int getMaxConnections() {
+      return max;
+    }
+  }
+}
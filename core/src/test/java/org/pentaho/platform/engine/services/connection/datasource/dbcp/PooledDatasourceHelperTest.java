@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -25,7 +25,10 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -57,6 +60,9 @@ import org.pentaho.database.service.DatabaseDialectService;
 import org.pentaho.database.service.IDatabaseDialectService;
 import org.pentaho.database.util.DatabaseTypeHelper;
 import org.pentaho.platform.api.data.DBDatasourceServiceException;
+import org.pentaho.platform.api.data.IDBDatasourceService;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
@@ -348,6 +354,65 @@ public class PooledDatasourceHelperTest {
 
   }
 
+  @Test
+  public void testPoolBackend() {
+    when( connection.getConnectionPoolingProperties() ).thenReturn( new HashMap<String, String>() );
+    assertEquals( IDBDatasourceService.POOL_BACKEND_DBCP, PooledDatasourceHelper.getPoolBackend( connection ) );
+
+    when( connection.getConnectionPoolingProperties() ).thenReturn(
+      ImmutableMap.of( IDBDatasourceService.POOL_BACKEND, IDBDatasourceService.POOL_BACKEND_HIKARI ) );
+    assertEquals( IDBDatasourceService.POOL_BACKEND_HIKARI, PooledDatasourceHelper.getPoolBackend( connection ) );
+  }
+
+  @Test
+  public void testSetupPooledDataSourceReusesPool() throws Exception {
+    ICacheManager cacheManager = new SimpleMapCacheManager();
+    mp = new MicroPlatform( SOLUTION_PATH );
+    mp.defineInstance( IDatabaseDialectService.class, dialectService );
+    mp.defineInstance( ICacheManager.class, cacheManager );
+    mp.start();
+    when( connection.getName() ).thenReturn( "PooledSampleData" );
+    when( connection.getAccessType() ).thenReturn( DatabaseAccessType.NATIVE );
+    when( connection.getUsername() ).thenReturn( user );
+    when( connection.getPassword() ).thenReturn( password );
+    when( connection.getConnectionPoolingProperties() ).thenReturn( new HashMap<String, String>() );
+    when( ( (IDriverLocator) driverLocatorDialect ).initialize( nativeDriverName ) ).thenReturn( true );
+
+    MeteredPoolingDataSource first =
+      (MeteredPoolingDataSource) PooledDatasourceHelper.setupPooledDataSource( connection );
+    ConnectionPoolMetrics metrics = ConnectionPoolMetrics.get( "PooledSampleData" );
+    assertSame( first.getMetrics(), metrics );
+    assertSame( first, PooledDatasourceHelper.setupPooledDataSource( connection ) );
+    assertSame( metrics, ConnectionPoolMetrics.get( "PooledSampleData" ) );
+    verify( (IDriverLocator) driverLocatorDialect, times( 1 ) ).initialize( nativeDriverName );
+
+    // a changed connection gets a new pool, and the old one is closed
+    when( connection.getPassword() ).thenReturn( "changed" );
+    MeteredPoolingDataSource second =
+      (MeteredPoolingDataSource) PooledDatasourceHelper.setupPooledDataSource( connection );
+    assertNotSame( first, second );
+    assertTrue( first.isClosed() );
+    assertSame( second, cacheManager.getFromRegionCache( IDBDatasourceService.JDBC_POOL, "PooledSampleData" ) );
+    assertSame( second.getMetrics(), ConnectionPoolMetrics.get( "PooledSampleData" ) );
+    second.close();
+  }
+
+  @Test
+  public void testWarmUpSize() {
+    assertEquals( 0, PooledDatasourceHelper.getWarmUpSize( new HashMap<String, String>(), 5 ) );
+    assertEquals( 3,
+      PooledDatasourceHelper.getWarmUpSize( ImmutableMap.of( IDBDatasourceService.INITIAL_SIZE, "3" ), 5 ) );
+  }
+
+  @Test
+  public void testHikariLeakDetectionThreshold() {
+    assertEquals( 0, HikariDatasourceHelper.getLeakDetectionThreshold( new HashMap<String, String>() ) );
+    assertEquals( 300000, HikariDatasourceHelper.getLeakDetectionThreshold(
+      ImmutableMap.of( IDBDatasourceService.LOG_ABANDONED, "true" ) ) );
+    assertEquals( 60000, HikariDatasourceHelper.getLeakDetectionThreshold( ImmutableMap.of(
+      IDBDatasourceService.REMOVE_ABANDONED, "true", IDBDatasourceService.REMOVE_ABANDONED_TIMEOUT, "60" ) ) );
+  }
+
   @After
   public void after() {
     if ( mp != null ) {
@@ -0,0 +1,78 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.pentaho.platform.api.engine.IOutputHandler;
+import org.pentaho.platform.api.repository.IContentItem;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class LoopIterationOutputHandlerTest {
+
+  private IOutputHandler target;
+
+  private LoopIterationOutputHandler handler;
+
+  @Before
+  public void setUp() {
+    target = mock( IOutputHandler.class );
+    doReturn( true ).when( target ).allowFeedback();
+    handler = new LoopIterationOutputHandler( target );
+  }
+
+  @Test
+  public void testOutputsAreHeldBackUntilReplayed() throws Exception {
+    handler.setOutput( "first", "1" );
+    handler.setOutput( "second", "2" );
+    verify( target, never() ).setOutput( anyString(), anyObject() );
+
+    handler.replay();
+    InOrder order = inOrder( target );
+    order.verify( target ).setOutput( "first", "1" );
+    order.verify( target ).setOutput( "second", "2" );
+  }
+
+  @Test
+  public void testIterationsCannotPrompt() {
+    assertFalse( handler.allowFeedback() );
+    assertNull( handler.getFeedbackContentItem() );
+  }
+
+  @Test
+  public void testContentItemsComeFromTarget() {
+    IContentItem contentItem = mock( IContentItem.class );
+    doReturn( contentItem ).when( target ).getOutputContentItem( "response", "content", "id", "text/html" );
+
+    assertSame( contentItem, handler.getOutputContentItem( "response", "content", "id", "text/html" ) );
+  }
+}
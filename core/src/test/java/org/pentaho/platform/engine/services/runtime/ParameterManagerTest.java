@@ -0,0 +1,89 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IDisposable;
+import org.pentaho.platform.api.engine.IActionParameter;
+import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ParameterManagerTest {
+
+  @Test
+  public void testLoopScopeIsolatesParameters() {
+    ParameterManager parent = new ParameterManager();
+    ActionParameter shared = new ActionParameter( "shared", "string", "a", null, null );
+    parent.addToAllInputs( "shared", shared );
+
+    ParameterManager scope = parent.newLoopScope();
+    IActionParameter copy = scope.getInput( "shared" );
+    assertNotSame( shared, copy );
+    assertEquals( "a", copy.getValue() );
+
+    copy.setValue( "b" );
+    scope.addToAllInputs( "added", new ActionParameter( "added", "string", "c", null, null ) );
+
+    assertEquals( "a", shared.getValue() );
+    assertEquals( null, parent.getInput( "added" ) );
+  }
+
+  @Test
+  public void testLoopScopeDoesNotDisposeBorrowedValues() {
+    IDisposable value = mock( IDisposable.class );
+    ParameterManager parent = new ParameterManager();
+    parent.addToAllInputs( "rs", new ActionParameter( "rs", "result-set", value, null, null ) );
+
+    ParameterManager scope = parent.newLoopScope();
+    scope.getInput( "rs" ).setValue( "replaced" );
+    scope.dispose();
+
+    verify( value, never() ).dispose();
+    parent.dispose();
+    verify( value ).dispose();
+  }
+
+  @Test
+  public void testMergeLoopScopeAppliesChangedParameters() {
+    ParameterManager parent = new ParameterManager();
+    ActionParameter untouched = new ActionParameter( "untouched", "string", "a", null, null );
+    ActionParameter changed = new ActionParameter( "changed", "string", "a", null, null );
+    parent.addToAllInputs( "untouched", untouched );
+    parent.addToAllInputs( "changed", changed );
+
+    ParameterManager scope = parent.newLoopScope();
+    scope.getInput( "changed" ).setValue( "b" );
+    ActionParameter added = new ActionParameter( "added", "string", "c", null, null );
+    scope.addToAllInputs( "added", added );
+
+    parent.mergeLoopScope( scope );
+
+    assertSame( untouched, parent.getInput( "untouched" ) );
+    assertEquals( "b", parent.getInput( "changed" ).getValue() );
+    assertSame( added, parent.getInput( "added" ) );
+  }
+}
@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -26,14 +26,23 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.util.Assert;
+import org.pentaho.platform.api.engine.ActionExecutionException;
+import org.pentaho.platform.api.engine.ActionSequenceException;
+import org.pentaho.platform.api.engine.IActionCompleteListener;
+import org.pentaho.platform.api.engine.IActionParameter;
 import org.pentaho.platform.api.engine.IApplicationContext;
+import org.pentaho.platform.api.engine.IExecutionListener;
+import org.pentaho.platform.api.engine.ILogger;
+import org.pentaho.platform.api.engine.IOutputHandler;
 import org.pentaho.platform.api.engine.IParameterProvider;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IPentahoUrlFactory;
 import org.pentaho.platform.api.engine.IRuntimeContext;
+import org.pentaho.platform.api.engine.ISolutionActionDefinition;
 import org.pentaho.platform.api.engine.ISolutionEngine;
 import org.pentaho.platform.api.repository.IRuntimeElement;
 import org.pentaho.platform.api.repository.IRuntimeRepository;
@@ -41,18 +50,27 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneApplicationContext;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.security.SecurityParameterProvider;
+import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequence;
 import org.pentaho.platform.util.JVMParameterProvider;
 import org.pentaho.platform.util.UUIDUtil;
 import org.pentaho.platform.util.web.SimpleUrlFactory;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -219,6 +237,183 @@ public class RuntimeContextTest {
     Assert.assertTrue( runtimeCtx.getUrlFactory() == urlFactory );
   }
 
+  /**
+   * Iterations complete in reverse order, but their outputs, runtime data and loop notifications are applied in
+   * iteration order, on the thread running the loop.
+   */
+  @Test
+  public void testParallelLoopAppliesIterationsInOrder() throws Exception {
+    final Thread loopThread = Thread.currentThread();
+    final List<Thread> writers = Collections.synchronizedList( new ArrayList<Thread>() );
+    final List<Thread> workers = Collections.synchronizedList( new ArrayList<Thread>() );
+    IRuntimeElement runtimeData = spy( makeRuntimeData( session ) );
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( final InvocationOnMock invocation ) throws Throwable {
+        writers.add( Thread.currentThread() );
+        invocation.callRealMethod();
+        return null;
+      }
+    } ).when( runtimeData ).setStringProperty( anyString(), anyString() );
+    IOutputHandler outputHandler = mock( IOutputHandler.class );
+    IExecutionListener listener = mock( IExecutionListener.class );
+
+    RuntimeContext loop = newLoopContext( runtimeData, outputHandler, new LoopBody() {
+      public void execute( final RuntimeContext context, final ParameterManager scope, final int index )
+        throws Exception {
+        workers.add( Thread.currentThread() );
+        Thread.sleep( ( 4 - index ) * 50L );
+        scope.setCurrentParameters( makeOutputDefinition( "out" ) );
+        context.setOutputValue( "out", "value-" + index );
+        context.outputHandler.setOutput( "out", index );
+      }
+    } );
+    loop.executeParallelLoop( makeLoopValues( 4 ), makeSequence(), 4, null, listener, false );
+
+    InOrder inOrder = inOrder( listener, outputHandler, runtimeData );
+    for ( int i = 0; i < 4; i++ ) {
+      inOrder.verify( listener ).loop( loop, i );
+      inOrder.verify( outputHandler ).setOutput( "out", i );
+      inOrder.verify( runtimeData ).setStringProperty( "out", "value-" + i );
+    }
+    Assert.assertTrue( runtimeData.getStringProperty( "out" ).equals( "value-3" ) );
+    for ( Thread writer : writers ) {
+      Assert.assertTrue( writer == loopThread );
+    }
+    for ( Thread worker : workers ) {
+      Assert.assertTrue( worker.isDaemon() );
+      Assert.assertTrue( worker.getName().startsWith( "parallelLoop-" ) );
+    }
+    Assert.assertTrue( loop.getStatus() == IRuntimeContext.RUNTIME_STATUS_SUCCESS );
+  }
+
+  /**
+   * Once an iteration fails no further iterations are started, the iterations already running finish and all
+   * failures are reported together, the first one carrying the others.
+   */
+  @Test
+  public void testParallelLoopStopsAfterFailure() throws Exception {
+    final AtomicInteger executed = new AtomicInteger();
+    final CountDownLatch firstApplied = new CountDownLatch( 1 );
+    IOutputHandler outputHandler = mock( IOutputHandler.class );
+    IExecutionListener listener = mock( IExecutionListener.class );
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( final InvocationOnMock invocation ) throws Throwable {
+        firstApplied.countDown();
+        return null;
+      }
+    } ).when( listener ).loop( any( IRuntimeContext.class ), anyLong() );
+
+    RuntimeContext loop = newLoopContext( makeRuntimeData( session ), outputHandler, new LoopBody() {
+      public void execute( final RuntimeContext context, final ParameterManager scope, final int index )
+        throws Exception {
+        executed.incrementAndGet();
+        context.outputHandler.setOutput( "out", index );
+        if ( index > 0 ) {
+          firstApplied.await( 10, TimeUnit.SECONDS );
+        }
+        throw new ActionExecutionException( "failed " + index );
+      }
+    } );
+    try {
+      loop.executeParallelLoop( makeLoopValues( 10 ), makeSequence(), 2, null, listener, false );
+      Assert.assertTrue( false );
+    } catch ( ActionSequenceException ex ) {
+      Assert.assertTrue( ex.getMessage().equals( "failed 0" ) );
+      Assert.assertTrue( ex.getLoopIndex() == 0 );
+      Assert.assertTrue( ex.getSuppressed().length == 1 );
+      Assert.assertTrue( ( (ActionSequenceException) ex.getSuppressed()[0] ).getLoopIndex() == 1 );
+    }
+    Assert.assertTrue( executed.get() == 2 );
+    Assert.assertTrue( loop.getStatus() == IRuntimeContext.RUNTIME_STATUS_FAILURE );
+    verify( outputHandler, never() ).setOutput( anyString(), any() );
+  }
+
+  @Test
+  public void testParallelLoopStopsOnPromptNow() throws Exception {
+    final AtomicInteger executed = new AtomicInteger();
+    final CountDownLatch firstApplied = new CountDownLatch( 1 );
+    IExecutionListener listener = mock( IExecutionListener.class );
+    doAnswer( new Answer<Void>() {
+      @Override
+      public Void answer( final InvocationOnMock invocation ) throws Throwable {
+        firstApplied.countDown();
+        return null;
+      }
+    } ).when( listener ).loop( any( IRuntimeContext.class ), anyLong() );
+
+    RuntimeContext loop = newLoopContext( makeRuntimeData( session ), null, new LoopBody() {
+      public void execute( final RuntimeContext context, final ParameterManager scope, final int index )
+        throws Exception {
+        executed.incrementAndGet();
+        if ( index == 0 ) {
+          context.promptNow();
+        } else {
+          firstApplied.await( 10, TimeUnit.SECONDS );
+        }
+      }
+    } );
+    loop.executeParallelLoop( makeLoopValues( 10 ), makeSequence(), 2, null, listener, false );
+
+    Assert.assertTrue( executed.get() == 2 );
+    Assert.assertTrue( loop.isPromptPending() );
+    verify( listener ).loop( loop, 0 );
+    verify( listener ).loop( loop, 1 );
+    verify( listener, times( 2 ) ).loop( any( IRuntimeContext.class ), anyLong() );
+  }
+
+  private interface LoopBody {
+    void execute( RuntimeContext context, ParameterManager scope, int index ) throws Exception;
+  }
+
+  private RuntimeContext newLoopContext( final IRuntimeElement runtimeData, final IOutputHandler outputHandler,
+                                         final LoopBody body ) {
+    return new RuntimeContext( "id", mockedSolutionEngine, "solutionName", runtimeData, session, outputHandler,
+      "processId", urlFactory, makeParameterProviders( session ), new ArrayList<String>(), null ) {
+      @Override
+      void executeLoopIteration( final RuntimeContext context, final ParameterManager scope,
+                                 final ActionSequence actions, final IActionCompleteListener doneListener,
+                                 final IExecutionListener execListener, final boolean async )
+        throws ActionSequenceException {
+        try {
+          int index = (Integer) scope.getLoopParameter( "index" ).getValue();
+          body.execute( context, scope, index );
+        } catch ( ActionSequenceException ex ) {
+          throw ex;
+        } catch ( Exception ex ) {
+          throw new ActionExecutionException( ex );
+        }
+      }
+    };
+  }
+
+  private Iterator<List<IActionParameter>> makeLoopValues( final int count ) {
+    List<List<IActionParameter>> values = new ArrayList<>();
+    for ( int i = 0; i < count; i++ ) {
+      List<IActionParameter> params = new ArrayList<>();
+      params.add( new ActionParameter( "index", "integer", i, null, null ) );
+      values.add( params );
+    }
+    return values.iterator();
+  }
+
+  private ActionSequence makeSequence() {
+    ActionSequence sequence = mock( ActionSequence.class );
+    when( sequence.isLoopOrdered() ).thenReturn( true );
+    when( sequence.copy( any( ILogger.class ) ) ).thenReturn( sequence );
+    return sequence;
+  }
+
+  private ISolutionActionDefinition makeOutputDefinition( final String name ) {
+    Map<String, IActionParameter> outputs = new HashMap<>();
+    outputs.put( name, new ActionParameter( name, "string", null, null, null ) );
+    ISolutionActionDefinition definition = mock( ISolutionActionDefinition.class );
+    when( definition.getActionInputDefinitions() ).thenReturn( new HashMap() );
+    when( definition.getActionOutputDefinitions() ).thenReturn( outputs );
+    return definition;
+  }
+
   private Map<String, IParameterProvider> makeParameterProviders( final IPentahoSession session ) {
     final Map<String, IParameterProvider> res = new HashMap<>();
 
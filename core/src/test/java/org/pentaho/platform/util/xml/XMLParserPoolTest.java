@@ -0,0 +1,129 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.util.xml;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.junit.Test;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class XMLParserPoolTest {
+
+  private static final String XXE = "<?xml version=\"1.0\"?><!DOCTYPE root [<!ENTITY xxe SYSTEM \"file:///etc/passwd\">]>"
+    + "<root>&xxe;</root>";
+
+  @Test
+  public void testSAXReaderIsReused() throws Exception {
+    SAXReader reader = XMLParserPool.borrowSAXReader( null );
+    reader.read( new StringReader( "<root><child/></root>" ) );
+    XMLParserPool.returnSAXReader( reader );
+
+    SAXReader reused = XMLParserPool.borrowSAXReader( null );
+    assertSame( reader, reused );
+    Document document = reused.read( new StringReader( "<other/>" ) );
+    assertEquals( "other", document.getRootElement().getName() );
+    XMLParserPool.returnSAXReader( reused );
+  }
+
+  @Test
+  public void testReturnedSAXReaderIsReset() throws Exception {
+    EntityResolver resolver = mock( EntityResolver.class );
+    SAXReader reader = XMLParserPool.borrowSAXReader( resolver );
+    assertSame( resolver, reader.getEntityResolver() );
+    reader.read( new StringReader( "<root/>" ) );
+    XMLParserPool.returnSAXReader( reader );
+
+    assertNull( reader.getEntityResolver() );
+    assertNull( reader.getXMLReader().getContentHandler() );
+    assertNull( reader.getXMLReader().getErrorHandler() );
+  }
+
+  @Test
+  public void testReusedSAXReaderStaysSecure() throws Exception {
+    SAXReader reader = XMLParserPool.borrowSAXReader( null );
+    reader.read( new StringReader( "<root/>" ) );
+    XMLParserPool.returnSAXReader( reader );
+
+    reader = XMLParserPool.borrowSAXReader( null );
+    Document document = reader.read( new StringReader( XXE ) );
+    XMLParserPool.returnSAXReader( reader );
+    assertEquals( "", document.getRootElement().getText() );
+  }
+
+  @Test
+  public void testFailedSAXReaderIsNotReturned() throws Exception {
+    SAXReader reader = XMLParserPool.borrowSAXReader( null );
+    try {
+      reader.read( new StringReader( "<root>" ) );
+      fail( "expected the unclosed element to fail" );
+    } catch ( DocumentException e ) {
+      // expected
+    }
+
+    reader = XMLParserPool.borrowSAXReader( null );
+    assertEquals( "root", reader.read( new StringReader( "<root/>" ) ).getRootElement().getName() );
+    XMLParserPool.returnSAXReader( reader );
+  }
+
+  @Test
+  public void testReusedDocumentBuilderStaysSecure() throws Exception {
+    DocumentBuilder builder = XMLParserPool.borrowDocumentBuilder();
+    builder.parse( new InputSource( new StringReader( "<root/>" ) ) );
+    XMLParserPool.returnDocumentBuilder( builder );
+
+    DocumentBuilder reused = XMLParserPool.borrowDocumentBuilder();
+    assertSame( builder, reused );
+    try {
+      reused.parse( new InputSource( new StringReader( XXE ) ) );
+      fail( "expected the doctype to be refused" );
+    } catch ( SAXParseException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReturnedTransformerIsReset() throws Exception {
+    Transformer transformer = XMLParserPool.borrowTransformer();
+    transformer.setOutputProperty( OutputKeys.INDENT, "yes" );
+    transformer.setParameter( "param", "value" );
+    XMLParserPool.returnTransformer( transformer );
+
+    Transformer reused = XMLParserPool.borrowTransformer();
+    assertSame( transformer, reused );
+    assertEquals( "no", reused.getOutputProperty( OutputKeys.INDENT ) );
+    assertNull( reused.getParameter( "param" ) );
+    XMLParserPool.returnTransformer( reused );
+  }
+}
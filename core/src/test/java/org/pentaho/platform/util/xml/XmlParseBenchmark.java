@@ -0,0 +1,91 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.util.xml;
+
+import org.apache.commons.io.IOUtils;
+import org.dom4j.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many documents per millisecond 8 threads parse into dom4j documents, for an action sequence and for
+ * the system settings file, either with a new {@link org.dom4j.io.SAXReader} per document as
+ * {@link XMLParserFactoryProducer#getSAXReader(org.xml.sax.EntityResolver)} makes them or through
+ * {@link XmlDom4JHelper}, which reuses readers from {@link XMLParserPool}.
+ * <p/>
+ * Not run as part of the unit tests. After {@code mvn test-compile} run it from the IDE through {@link #main} or with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main XmlParseBenchmark}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 8 )
+public class XmlParseBenchmark {
+
+  @Param( { "/solution/test/xml/query_without_connection.xaction", "/solution/system/pentaho.xml" } )
+  public String document;
+
+  private byte[] content;
+
+  @Setup
+  public void setUp() throws Exception {
+    try ( InputStream in = XmlParseBenchmark.class.getResourceAsStream( document ) ) {
+      content = IOUtils.toByteArray( in );
+    }
+  }
+
+  @Benchmark
+  public Document newReader() throws Exception {
+    return XMLParserFactoryProducer.getSAXReader( null ).read( new ByteArrayInputStream( content ) );
+  }
+
+  @Benchmark
+  public Document pooledReader() throws Exception {
+    return XmlDom4JHelper.getDocFromStream( new ByteArrayInputStream( content ) );
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    Options options = new OptionsBuilder().include( XmlParseBenchmark.class.getSimpleName() ).build();
+    new Runner( options ).run();
+  }
+}
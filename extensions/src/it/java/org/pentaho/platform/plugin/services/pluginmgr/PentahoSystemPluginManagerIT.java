@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -49,6 +49,7 @@ import org.pentaho.ui.xul.XulOverlay;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -156,6 +157,29 @@ public class PentahoSystemPluginManagerIT extends DefaultPluginManagerIT {
     assertEquals( 1, PentahoSystem.getAll( IPluginPerspective.class ).size() );
   }
 
+  @Test
+  public void testPluginRegisteredAfterReload() throws Exception {
+    PentahoSystem.clearObjectFactory();
+    PentahoSystem.registerObject( new IPluginProvider() {
+      @Override
+      public List<IPlatformPlugin> getPlugins( IPentahoSession session ) {
+        return Collections.emptyList();
+      }
+    }, IPluginProvider.class );
+    pluginManager = new PentahoSystemPluginManager();
+    pluginManager.reload();
+    assertNull( pluginManager.getServicePlugin( "/late/resources/style.css" ) );
+
+    PlatformPlugin plugin = new PlatformPlugin();
+    plugin.setId( "late" );
+    plugin.addStaticResourcePath( "/late/resources", "resources" );
+    PentahoSystem.registerObject( plugin, IPlatformPlugin.class );
+
+    assertEquals( "late", pluginManager.getServicePlugin( "/late/resources/style.css" ) );
+    assertTrue( pluginManager.isStaticResource( "/late/resources/style.css" ) );
+    assertFalse( pluginManager.isStaticResource( "/other/resources/style.css" ) );
+  }
+
   @Test
   public void testClosedAppContext() throws Exception {
     init0();
@@ -23,6 +23,7 @@ package org.pentaho.platform.admin;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.action.IAction;
+import org.pentaho.platform.api.repository2.unified.IGeneratedContentIndex;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
@@ -65,6 +66,8 @@ public class GeneratedContentCleaner implements IAction {
 
   private IUnifiedRepository repository;
 
+  private IGeneratedContentIndex generatedContentIndex;
+
   /**
    * This class permanently deletes generated files which are older than the provided age. Generated content is
    * determined by using file metadata. If a file contains the "RESERVEDMAPKEY_LINEAGE_ID" key in the metadata, then
@@ -72,13 +75,13 @@ public class GeneratedContentCleaner implements IAction {
    */
   public GeneratedContentCleaner() {
     repository = PentahoSystem.get( IUnifiedRepository.class );
+    generatedContentIndex = PentahoSystem.get( IGeneratedContentIndex.class );
   }
 
   private void findGeneratedContent( List<RepositoryFile> generatedContentList, RepositoryFileTree parent ) {
     RepositoryFile parentFile = parent.getFile();
     if ( !parentFile.isFolder() ) {
-      long createTime = parentFile.getCreatedDate().getTime();
-      if ( createTime <= ( System.currentTimeMillis() - ( age * 1000 ) ) ) {
+      if ( isOld( parentFile ) ) {
         // now check metadata for RESERVEDMAPKEY_LINEAGE_ID (all generated content has)
         Map<String, Serializable> metadata = repository.getFileMetadata( parentFile.getId() );
         if ( metadata.containsKey( QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID ) ) {
@@ -92,6 +95,10 @@ public class GeneratedContentCleaner implements IAction {
     }
   }
 
+  private boolean isOld( RepositoryFile file ) {
+    return file.getCreatedDate().getTime() <= ( System.currentTimeMillis() - ( age * 1000 ) );
+  }
+
   /*
    * This method performs the actual work of the GeneratedContentCleaner by calling deleteFile with 'true' passed down
    * for the 'permanent' flag.
@@ -101,11 +108,20 @@ public class GeneratedContentCleaner implements IAction {
    * @see org.pentaho.platform.api.action.IAction#execute()
    */
   public void execute() throws Exception {
-    // scan the repository for all files with a RESERVEDMAPKEY_LINEAGE_ID
+    // find all files with a RESERVEDMAPKEY_LINEAGE_ID
     // we need to find and delete hidden generated files too (like .css and .png)
-    RepositoryFileTree tree = repository.getTree( ClientRepositoryPaths.getRootFolderPath(), -1, null, true );
     ArrayList<RepositoryFile> generatedContentList = new ArrayList<RepositoryFile>();
-    findGeneratedContent( generatedContentList, tree );
+    if ( generatedContentIndex != null ) {
+      for ( RepositoryFile file : generatedContentIndex.getAllGeneratedContent(
+          ClientRepositoryPaths.getRootFolderPath(), QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID ) ) {
+        if ( isOld( file ) ) {
+          generatedContentList.add( file );
+        }
+      }
+    } else {
+      RepositoryFileTree tree = repository.getTree( ClientRepositoryPaths.getRootFolderPath(), -1, null, true );
+      findGeneratedContent( generatedContentList, tree );
+    }
     for ( RepositoryFile deleteMe : generatedContentList ) {
       repository.deleteFile( deleteMe.getId(), true, GeneratedContentCleaner.class.getName() );
       logger.info( "GeneratedContentCleaner deleting: " + deleteMe.getPath() );
@@ -129,4 +145,15 @@ public class GeneratedContentCleaner implements IAction {
     this.age = age;
   }
 
+  /**
+   * This method sets the index used to find generated content. Without one, the metadata of every file in the
+   * repository is read.
+   *
+   * @param generatedContentIndex
+   *          the index, or null
+   */
+  public void setGeneratedContentIndex( IGeneratedContentIndex generatedContentIndex ) {
+    this.generatedContentIndex = generatedContentIndex;
+  }
+
 }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -36,6 +36,7 @@ import org.pentaho.platform.api.data.IDBDatasourceService;
 import org.pentaho.platform.api.data.IDataComponent;
 import org.pentaho.platform.api.data.IPreparedComponent;
 import org.pentaho.platform.api.engine.IActionSequenceResource;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
@@ -48,6 +49,7 @@ import org.pentaho.platform.plugin.action.messages.Messages;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalog;
 import org.pentaho.platform.plugin.action.mondrian.catalog.MondrianCatalogHelper;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
 import org.pentaho.platform.plugin.services.connections.mondrian.MDXConnection;
 import org.pentaho.platform.plugin.services.connections.mondrian.MDXResultSet;
 import org.pentaho.platform.util.messages.LocaleHelper;
@@ -55,6 +57,7 @@ import org.pentaho.platform.util.messages.LocaleHelper;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
 public abstract class MDXBaseComponent extends ComponentBase implements IDataComponent, IPreparedComponent {
 
@@ -351,14 +354,15 @@ public abstract class MDXBaseComponent extends ComponentBase implements IDataCom
       }
 
       // execute the query, read the results and cache them
-      IPentahoResultSet resultSet = localConnection.executeQuery( rawQuery );
-      if ( resultSet != null && resultSet instanceof MDXResultSet ) {
-        // BISERVER-3543 - set the result set to return formatted cell values
-        boolean formattedCellValues = false;
-        if ( isDefinedInput( FORMATTED_CELL_VALUES ) ) {
-          formattedCellValues = getInputBooleanValue( FORMATTED_CELL_VALUES, false );
-        }
-        ( (MDXResultSet) resultSet ).setFormattedCellValues( formattedCellValues );
+      IPentahoResultSet resultSet;
+      QueryResultCache.QueryKey cacheKey = getResultCacheKey( localConnection, rawQuery );
+      if ( cacheKey != null ) {
+        resultSet = QueryResultCache.getInstance().get( cacheKey, () -> {
+          IPentahoResultSet result = executeQuery( localConnection, rawQuery );
+          return result == null ? null : result.memoryCopy();
+        } );
+      } else {
+        resultSet = executeQuery( localConnection, rawQuery );
       }
       rSet = resultSet;
       if ( resultSet != null ) {
@@ -383,6 +387,112 @@ public abstract class MDXBaseComponent extends ComponentBase implements IDataCom
     return false;
   }
 
+  private IPentahoResultSet executeQuery( final IPentahoConnection localConnection, final String query ) {
+    IPentahoResultSet resultSet = localConnection.executeQuery( query );
+    if ( resultSet != null && resultSet instanceof MDXResultSet ) {
+      // BISERVER-3543 - set the result set to return formatted cell values
+      ( (MDXResultSet) resultSet ).setFormattedCellValues( isFormattedCellValues() );
+    }
+    return resultSet;
+  }
+
+  private boolean isFormattedCellValues() {
+    boolean formattedCellValues = false;
+    if ( isDefinedInput( FORMATTED_CELL_VALUES ) ) {
+      formattedCellValues = getInputBooleanValue( FORMATTED_CELL_VALUES, false );
+    }
+    return formattedCellValues;
+  }
+
+  /**
+   * returns the key under which the result of a query is shared with other sessions. Cached results are memory copies,
+   * as returned by {@link IPentahoResultSet#memoryCopy()}.
+   * 
+   * @return the key, or null if the result is not to be cached
+   */
+  protected QueryResultCache.QueryKey getResultCacheKey( final IPentahoConnection localConnection,
+                                                         final String query ) {
+    // the datasource of a shared connection is not known here
+    if ( !connectionOwner || localConnection != connection || !QueryResultCache.getInstance().isEnabled() ) {
+      return null;
+    }
+    if ( !( getActionDefinition() instanceof MdxConnectionAction ) ) {
+      return null;
+    }
+    MdxConnectionAction connAction = (MdxConnectionAction) getActionDefinition();
+    String catalog = connAction.getCatalog().getStringValue();
+    String jndi = connAction.getJndi().getStringValue();
+    String jdbc = connAction.getConnection().getStringValue();
+    String mdxConnectionStr = connAction.getMdxConnectionString().getStringValue();
+
+    String datasource = catalog != null ? catalog : jndi != null ? jndi : jdbc != null ? jdbc : mdxConnectionStr;
+    return QueryResultCache.createKey( datasource, getResultCacheConnectionInfo( connAction, localConnection ), query,
+      null );
+  }
+
+  /**
+   * returns everything that identifies the connection of an action in the key of a cached result. The Mondrian roles
+   * of a connection are mapped from the session by the configured user role mapper, not only from the platform roles,
+   * so the results carry the roles the connection was opened with, or the name of the user if these are not known. A
+   * dynamic schema processor may generate a different schema for every user, so the results of a connection that
+   * names one also carry the name of the user.
+   */
+  @VisibleForTesting
+  String getResultCacheConnectionInfo( final MdxConnectionAction connAction,
+                                       final IPentahoConnection localConnection ) {
+    String catalog = connAction.getCatalog().getStringValue();
+    String jndi = connAction.getJndi().getStringValue();
+    String jdbc = connAction.getConnection().getStringValue();
+    String mdxConnectionStr = connAction.getMdxConnectionString().getStringValue();
+    Properties mdxConnectionProps = (Properties) connAction.getConnectionProps().getValue();
+    StringBuilder connectionInfo = new StringBuilder();
+    connectionInfo.append( catalog ).append( '\n' ).append( jndi ).append( '\n' ).append( jdbc ).append( '\n' );
+    connectionInfo.append( mdxConnectionStr ).append( '\n' );
+    connectionInfo.append( mdxConnectionProps == null ? null : new TreeMap<Object, Object>( mdxConnectionProps ) );
+    connectionInfo.append( '\n' ).append( connAction.getRole().getStringValue() );
+    connectionInfo.append( '\n' ).append( connAction.getLocation().getStringValue() );
+    connectionInfo.append( '\n' ).append( connAction.getUserId().getStringValue() );
+    connectionInfo.append( '\n' ).append( connAction.getPassword().getStringValue() );
+    if ( connAction.getExtendedColumnNames() != ActionInputConstant.NULL_INPUT ) {
+      connectionInfo.append( '\n' ).append( connAction.getExtendedColumnNames().getBooleanValue() );
+    }
+    connectionInfo.append( '\n' ).append( LocaleHelper.getLocale() ).append( '\n' ).append( isFormattedCellValues() );
+    boolean perUser = hasDynamicSchemaProcessor( catalog, mdxConnectionStr, mdxConnectionProps );
+    if ( localConnection instanceof MDXConnection ) {
+      connectionInfo.append( '\n' ).append( ( (MDXConnection) localConnection ).getMondrianRoles() );
+    } else if ( PentahoSystem.getObjectFactory().objectDefined( MDXConnection.MDX_CONNECTION_MAPPER_KEY ) ) {
+      perUser = true;
+    }
+    if ( perUser ) {
+      IPentahoSession session = getSession();
+      connectionInfo.append( '\n' ).append( session == null ? null : session.getName() );
+    }
+    return connectionInfo.toString();
+  }
+
+  private boolean hasDynamicSchemaProcessor( final String catalog, final String mdxConnectionStr,
+                                             final Properties mdxConnectionProps ) {
+    String processor = RolapConnectionProperties.DynamicSchemaProcessor.name();
+    if ( mdxConnectionProps != null && mdxConnectionProps.getProperty( processor ) != null ) {
+      return true;
+    }
+    if ( mdxConnectionStr != null && Util.parseConnectString( mdxConnectionStr ).get( processor ) != null ) {
+      return true;
+    }
+    if ( catalog == null ) {
+      return false;
+    }
+    MondrianCatalog mondrianCatalog;
+    try {
+      mondrianCatalog = getMondrianCatalog( catalog );
+    } catch ( RuntimeException e ) {
+      // the catalog cannot be checked, so its results are not shared between users
+      return true;
+    }
+    String dataSourceInfo = mondrianCatalog == null ? null : mondrianCatalog.getDataSourceInfo();
+    return dataSourceInfo != null && Util.parseConnectString( dataSourceInfo ).get( processor ) != null;
+  }
+
   /**
    * attempt to aquire a connection. if connection isn't available, wait a certain period of time before trying again.
    * 
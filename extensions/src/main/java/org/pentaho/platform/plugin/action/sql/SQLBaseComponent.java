@@ -35,11 +35,15 @@ import org.pentaho.commons.connection.memory.MemoryMetaData;
 import org.pentaho.platform.api.data.IDataComponent;
 import org.pentaho.platform.api.data.IPreparedComponent;
 import org.pentaho.platform.api.engine.IParameterResolver;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.connection.PentahoConnectionFactory;
 import org.pentaho.platform.engine.services.runtime.TemplateUtil;
 import org.pentaho.platform.engine.services.solution.ComponentBase;
 import org.pentaho.platform.plugin.action.messages.Messages;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
+import org.pentaho.platform.plugin.services.connections.columnar.ColumnarResultSetBuilder;
 import org.pentaho.platform.plugin.services.connections.sql.SQLConnection;
+import org.pentaho.platform.plugin.services.connections.sql.SQLResultSet;
 
 import java.text.Format;
 import java.util.ArrayList;
@@ -61,6 +65,9 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
 
   public static final String PREPARE_PARAMETER_PREFIX = "PREPARE"; //$NON-NLS-1$
 
+  /** system setting which makes non-live queries use a forward-only result set by default */
+  public static final String FORWARD_ONLY_WHEN_NOT_LIVE_SETTING = "sql-result-set/forward-only-when-not-live"; //$NON-NLS-1$
+
   /** stores the prepared query for later use */
   protected String preparedQuery = null;
 
@@ -463,20 +470,6 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         dumpQuery( query );
       }
 
-      // evaluate
-      IPentahoResultSet resultSet = null;
-      if ( preparedParameters.size() > 0 ) {
-        resultSet = connection.prepareAndExecuteQuery( query, copyOfPreparedParameters );
-      } else {
-        resultSet = connection.executeQuery( query );
-      }
-
-      if ( connection instanceof SQLConnection ) {
-        if ( ( (SQLConnection) connection ).isForcedForwardOnly() ) {
-          warn( Messages.getInstance().getString( "SQLBaseComponent.WARN_FALL_BACK_TO_NONSCROLLABLE" ) ); //$NON-NLS-1$
-        }
-      }
-
       boolean live = true;
       IActionDefinition actionDefinition = getActionDefinition();
       if ( actionDefinition instanceof AbstractRelationalDbAction ) {
@@ -484,11 +477,26 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
         live = relationalDbAction.getLive().getBooleanValue( false );
       }
 
+      // the results of a non-live query are only read once, into memory
+      boolean forwardOnly = !live && isForwardOnlyWhenNotLive();
+
+      QueryResultCache.QueryKey cacheKey = live ? null : getResultCacheKey( query, copyOfPreparedParameters );
+      if ( cacheKey != null ) {
+        rSet = QueryResultCache.getInstance().get( cacheKey, () -> {
+          IPentahoResultSet result = executePreparedQuery( query, copyOfPreparedParameters, forwardOnly );
+          return result == null ? null : inMemoryCopy( result );
+        } );
+        return rSet;
+      }
+
+      // evaluate
+      IPentahoResultSet resultSet = executePreparedQuery( query, copyOfPreparedParameters, forwardOnly );
+
       IPentahoResultSet rs = resultSet;
 
       // BISERVER-5915, BISERVER-5875 - if the live setting is false, return an in memory resultset.
       if ( !live ) {
-        rs = resultSet.memoryCopy();
+        rs = inMemoryCopy( resultSet );
       }
 
       rSet = rs;
@@ -500,6 +508,33 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
     return null;
   }
 
+  private IPentahoResultSet executePreparedQuery( final String query, final List parameters,
+                                                  final boolean forwardOnly ) throws Exception {
+    IPentahoResultSet resultSet = null;
+    if ( forwardOnly && ( connection instanceof SQLConnection ) ) {
+      SQLConnection sqlConnection = (SQLConnection) connection;
+      if ( preparedParameters.size() > 0 ) {
+        resultSet =
+            sqlConnection.prepareAndExecuteQuery( query, parameters, SQLConnection.RESULTSET_FORWARDONLY,
+                SQLConnection.CONCUR_READONLY );
+      } else {
+        resultSet =
+            sqlConnection.executeQuery( query, SQLConnection.RESULTSET_FORWARDONLY, SQLConnection.CONCUR_READONLY );
+      }
+    } else if ( preparedParameters.size() > 0 ) {
+      resultSet = connection.prepareAndExecuteQuery( query, parameters );
+    } else {
+      resultSet = connection.executeQuery( query );
+    }
+
+    if ( connection instanceof SQLConnection ) {
+      if ( ( (SQLConnection) connection ).isForcedForwardOnly() ) {
+        warn( Messages.getInstance().getString( "SQLBaseComponent.WARN_FALL_BACK_TO_NONSCROLLABLE" ) ); //$NON-NLS-1$
+      }
+    }
+    return resultSet;
+  }
+
   /**
    * called when in prepared-component mode, this method populates the preparedQuery string and preparedParameters
    * object.
@@ -568,7 +603,15 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
       AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
 
       IPentahoResultSet resultSet = null;
-      boolean isForwardOnly = relationalDbAction.getUseForwardOnlyResultSet().getBooleanValue( false );
+      // the results of a non-live query are only read once, into memory
+      boolean isForwardOnly =
+          relationalDbAction.getUseForwardOnlyResultSet().getBooleanValue(
+              !live && ( sqlConnection != null ) && isForwardOnlyWhenNotLive() );
+
+      QueryResultCache.QueryKey cacheKey = live ? null : getResultCacheKey( query, preparedParameters );
+      if ( cacheKey != null ) {
+        return runCachedQuery( cacheKey, sqlConnection, query, isForwardOnly );
+      }
 
       resultSet = doQuery( sqlConnection, query, isForwardOnly );
 
@@ -610,7 +653,7 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
           // prepared parameters.
           preparedParameters.clear();
 
-          IPentahoResultSet cachedResultSet = resultSet.memoryCopy();
+          IPentahoResultSet cachedResultSet = inMemoryCopy( resultSet );
           rSet = cachedResultSet;
 
           IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
@@ -633,6 +676,110 @@ public abstract class SQLBaseComponent extends ComponentBase implements IDataCom
     return false;
   }
 
+  /**
+   * runs a non-live query through the shared query result cache. The query only reaches the database if no other
+   * session has recently run it with the same parameters and roles.
+   * 
+   * @param cacheKey
+   *          the key of the query in the cache
+   * @return true if successful
+   */
+  private boolean runCachedQuery( final QueryResultCache.QueryKey cacheKey, final SQLConnection sqlConnection,
+                                  final String query, final boolean forwardOnly ) throws Exception {
+    AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
+    try {
+      IPentahoResultSet cachedResultSet = QueryResultCache.getInstance().get( cacheKey, () -> {
+        IPentahoResultSet result = doQuery( sqlConnection, query, forwardOnly );
+        if ( ( sqlConnection != null ) && sqlConnection.isForcedForwardOnly() ) {
+          warn( Messages.getInstance().getString( "SQLBaseComponent.WARN_FALL_BACK_TO_NONSCROLLABLE" ) ); //$NON-NLS-1$
+        }
+        return result == null ? null : inMemoryCopy( result );
+      } );
+      if ( cachedResultSet == null ) {
+        error( Messages.getInstance().getErrorString( "SQLBaseComponent.ERROR_0006_EXECUTE_FAILED",
+          getActionName() ) ); //$NON-NLS-1$
+        return false;
+      }
+      rSet = cachedResultSet;
+
+      IActionOutput actionOutput = relationalDbAction.getOutputResultSet();
+      if ( actionOutput != null ) {
+        actionOutput.setValue( cachedResultSet );
+      }
+      return true;
+    } finally {
+      // After preparation and execution, we need to clear out the
+      // prepared parameters.
+      preparedParameters.clear();
+      // close the connection if owner
+      if ( connectionOwner ) {
+        connection.close();
+        connection = null;
+      }
+    }
+  }
+
+  /**
+   * returns the key under which the result of a non-live query is shared with other sessions.
+   * 
+   * @param query
+   *          the query with all inputs applied
+   * @param parameters
+   *          the values bound to the query
+   * @return the key, or null if the result is not to be cached
+   */
+  protected QueryResultCache.QueryKey getResultCacheKey( final String query, final List parameters ) {
+    // the datasource of a shared connection is not known here
+    if ( !connectionOwner || !isResultCacheable() || !QueryResultCache.getInstance().isEnabled() ) {
+      return null;
+    }
+    if ( !( getActionDefinition() instanceof AbstractRelationalDbAction ) ) {
+      return null;
+    }
+    AbstractRelationalDbAction relationalDbAction = (AbstractRelationalDbAction) getActionDefinition();
+    String jndiName = relationalDbAction.getJndi().getStringValue();
+    String dbUrl = relationalDbAction.getDbUrl().getStringValue();
+    String connectionInfo = jndiName + '\n' + relationalDbAction.getDriver().getStringValue() + '\n' + dbUrl + '\n'
+        + relationalDbAction.getUserId().getStringValue() + '\n' + relationalDbAction.getPassword().getStringValue()
+        + '\n' + getMaxRows();
+    return QueryResultCache.createKey( jndiName != null ? jndiName : dbUrl, connectionInfo, query, parameters );
+  }
+
+  /**
+   * whether the results of this component's non-live queries may be shared with other sessions. Components running
+   * statements that change data must return false.
+   * 
+   * @return true
+   */
+  protected boolean isResultCacheable() {
+    return true;
+  }
+
+  /**
+   * whether non-live queries, whose results are read once into memory, use a forward-only result set unless the action
+   * says otherwise. A forward-only result set lets the JDBC driver stream the rows instead of buffering all of them.
+   * 
+   * @return the value of the system setting, true by default
+   */
+  protected boolean isForwardOnlyWhenNotLive() {
+    return "true".equalsIgnoreCase( PentahoSystem.getSystemSetting( FORWARD_ONLY_WHEN_NOT_LIVE_SETTING, "true" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * copies a result set into memory for non-live queries. SQL result sets are copied into a columnar result set if
+   * enabled in the system settings, otherwise into a memory result set.
+   * 
+   * @param resultSet
+   *          the result set to copy
+   * @return the in memory copy
+   */
+  protected IPentahoResultSet inMemoryCopy( final IPentahoResultSet resultSet ) {
+    if ( ( resultSet instanceof SQLResultSet ) && ColumnarResultSetBuilder.isEnabled() ) {
+      return ( (SQLResultSet) resultSet ).columnarCopy();
+    }
+    return resultSet.memoryCopy();
+  }
+
   public IPentahoResultSet
   doQuery( final SQLConnection sqlConnection, final String query, boolean forwardOnlyResultset ) throws Exception {
     //
@@ -60,6 +60,14 @@ public class SQLExecute extends SQLLookupRule {
     return runSqlQuery( conn, rawQuery, live );
   }
 
+  /**
+   * statements run by this component may change data, so their results are never shared.
+   */
+  @Override
+  protected boolean isResultCacheable() {
+    return false;
+  }
+
   protected boolean runSqlQuery( final SQLConnection conn, String rawQuery, final boolean live ) {
     SqlExecuteAction sqlExecuteAction = (SqlExecuteAction) getActionDefinition();
     boolean executed = false;
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -26,6 +26,7 @@ import org.dom4j.Element;
 import org.hibernate.cache.Cache;
 import org.hibernate.cache.CacheException;
 import org.hibernate.cache.CacheProvider;
+import org.pentaho.platform.api.cache.CacheRegionStatistics;
 import org.pentaho.platform.api.cache.ICacheExpirationRegistry;
 import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IPentahoSession;
@@ -35,12 +36,14 @@ import org.pentaho.platform.engine.services.messages.Messages;
 import org.pentaho.platform.util.xml.dom4j.XmlDom4JHelper;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class provides an access point for pluggable caching mechanisms. Right now, it only supports the caching
@@ -76,9 +79,15 @@ import java.util.Set;
  * <p>
  * Data that is cached for user sessions require an <code>IPentahoSession</code> object to be passed in. The cache
  * manager uses the <code>IPentahoSession.getId()</code> to classify saved objects underneath a specific user session.
- * No information is actually stored in the user session object. For an example of this, see <code><br>
+ * No information is actually stored in the user session object. Session entries are keyed by a
+ * {@link SessionCacheKey}, and the cache manager keeps an index from session id to the keys stored for that session,
+ * so that {@link #killSessionCache(IPentahoSession)} only touches the entries of that one session. For an example of
+ * this, see <code><br>
  * putInSessionCache(IPentahoSession session, String key, Object value)</code>
  * <p>
+ * Regions are kept in a concurrent registry, so regions can be added lazily from any thread. The cache manager counts
+ * hits, misses, puts, removals and clears for every region; see {@link #getRegionStatistics(String)}.
+ * <p>
  * Data that is server-wide (i.e. global) uses different methods for storage/retrieval/management. For an example of
  * this, see <code><br> 
  * getFromGlobalCache(Object key)</code>
@@ -117,7 +126,7 @@ public class CacheManager implements ICacheManager {
   // ~ Instance Fields ======================================================
   private CacheProvider cacheProvider;
 
-  private Map<String, Cache> regionCache;
+  private final ConcurrentMap<String, CacheRegion> regionCache = new ConcurrentHashMap<String, CacheRegion>();
 
   private String cacheProviderClassName;
 
@@ -127,6 +136,19 @@ public class CacheManager implements ICacheManager {
 
   private ICacheExpirationRegistry cacheExpirationRegistry;
 
+  /**
+   * Index of the keys in the SESSION region, by session id. Entries evicted by the cache provider itself may still be
+   * listed here until their session is killed; removing a key that is no longer cached is harmless.
+   */
+  private final ConcurrentMap<String, Set<SessionCacheKey>> sessionKeyIndex =
+      new ConcurrentHashMap<String, Set<SessionCacheKey>>();
+
+  /**
+   * Whether a String key has ever been put in the SESSION region directly, bypassing the session methods. Such keys
+   * are not indexed, so {@link #killSessionCache(IPentahoSession)} then also scans the region for them.
+   */
+  private volatile boolean unindexedSessionKeys;
+
   // ~ Constructors =========================================================
 
   /**
@@ -171,20 +193,19 @@ public class CacheManager implements ICacheManager {
       if ( obj instanceof CacheProvider ) {
         this.cacheProvider = (CacheProvider) obj;
         cacheProvider.start( cacheProperties );
-        regionCache = new HashMap<String, Cache>();
         Cache cache = buildCache( SESSION, cacheProperties );
         if ( cache == null ) {
           CacheManager.logger
               .error( Messages.getInstance().getString( "CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE" ) ); //$NON-NLS-1$
         } else {
-          regionCache.put( SESSION, cache );
+          regionCache.put( SESSION, new CacheRegion( cache ) );
         }
         cache = buildCache( GLOBAL, cacheProperties );
         if ( cache == null ) {
           CacheManager.logger
               .error( Messages.getInstance().getString( "CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE" ) ); //$NON-NLS-1$
         } else {
-          regionCache.put( GLOBAL, cache );
+          regionCache.put( GLOBAL, new CacheRegion( cache ) );
         }
       } else {
         CacheManager.logger.error( Messages.getInstance().getString(
@@ -196,6 +217,7 @@ public class CacheManager implements ICacheManager {
   public void cacheStop() {
     if ( cacheEnabled ) {
       regionCache.clear();
+      sessionKeyIndex.clear();
       cacheProvider.stop();
     }
   }
@@ -233,27 +255,24 @@ public class CacheManager implements ICacheManager {
   }
 
   public boolean cacheEnabled( String region ) {
-    Cache cache = regionCache.get( region );
-    if ( cache == null ) {
-      return false;
-    }
-    return true;
+    return regionCache.containsKey( region );
   }
 
   public void onLogout( final IPentahoSession session ) {
     removeRegionCache( session.getName() );
+    if ( cacheEnabled && session.getId() != null ) {
+      killSessionCache( session );
+    }
   }
 
   public boolean addCacheRegion( String region, Properties cacheProperties ) {
     boolean returnValue = false;
     if ( cacheEnabled ) {
-      if ( !cacheEnabled( region ) ) {
-        Cache cache = buildCache( region, cacheProperties );
-        if ( cache == null ) {
+      if ( !regionCache.containsKey( region ) ) {
+        if ( buildRegion( region, cacheProperties ) == null ) {
           CacheManager.logger
               .error( Messages.getInstance().getString( "CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE" ) ); //$NON-NLS-1$
         } else {
-          regionCache.put( region, cache );
           returnValue = true;
         }
       } else {
@@ -269,13 +288,11 @@ public class CacheManager implements ICacheManager {
   public boolean addCacheRegion( String region ) {
     boolean returnValue = false;
     if ( cacheEnabled ) {
-      if ( !cacheEnabled( region ) ) {
-        Cache cache = buildCache( region, null );
-        if ( cache == null ) {
+      if ( !regionCache.containsKey( region ) ) {
+        if ( buildRegion( region, null ) == null ) {
           CacheManager.logger
               .error( Messages.getInstance().getString( "CacheManager.ERROR_0005_UNABLE_TO_BUILD_CACHE" ) ); //$NON-NLS-1$
         } else {
-          regionCache.put( region, cache );
           returnValue = true;
         }
       } else {
@@ -291,9 +308,7 @@ public class CacheManager implements ICacheManager {
 
   public boolean addCacheRegion( String region, Cache cache ) {
     if ( cacheEnabled ) {
-      if ( !cacheEnabled( region ) ) {
-        regionCache.put( region, cache );
-      } else {
+      if ( regionCache.putIfAbsent( region, new CacheRegion( cache ) ) != null ) {
         CacheManager.logger.warn( Messages.getInstance().getString(
           "CacheManager.WARN_0002_REGION_ALREADY_EXIST", region ) );
       }
@@ -306,10 +321,13 @@ public class CacheManager implements ICacheManager {
 
   public void clearRegionCache( String region ) {
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cache != null ) {
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        if ( SESSION.equals( region ) ) {
+          sessionKeyIndex.clear();
+        }
         try {
-          cache.clear();
+          cacheRegion.clear();
         } catch ( CacheException e ) {
           CacheManager.logger.error( Messages.getInstance().getString(
             "CacheManager.ERROR_0006_CACHE_EXCEPTION", e.getLocalizedMessage() ) ); //$NON-NLS-1$
@@ -324,23 +342,22 @@ public class CacheManager implements ICacheManager {
   }
 
   public void removeRegionCache( String region ) {
-    if ( cacheEnabled ) {
-      if ( cacheEnabled( region ) ) {
-        clearRegionCache( region );
-      } else {
-        CacheManager.logger.info( Messages.getInstance().getString(
-            "CacheManager.INFO_0001_CACHE_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
-      }
-    } else {
-      CacheManager.logger.warn( Messages.getInstance().getString( "CacheManager.WARN_0001_CACHE_NOT_ENABLED" ) ); //$NON-NLS-1$
-    }
+    // clearRegionCache reports a missing region or a disabled cache the same way
+    clearRegionCache( region );
   }
 
   public void putInRegionCache( String region, Object key, Object value ) {
     if ( cacheEnabled ) {
-      if ( cacheEnabled( region ) ) {
-        Cache cache = regionCache.get( region );
-        cache.put( key, value );
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        if ( SESSION.equals( region ) ) {
+          if ( key instanceof SessionCacheKey ) {
+            indexSessionKey( (SessionCacheKey) key );
+          } else if ( key instanceof String ) {
+            unindexedSessionKeys = true;
+          }
+        }
+        cacheRegion.put( key, value );
       } else {
         CacheManager.logger.warn( Messages.getInstance().getString(
             "CacheManager.WARN_0003_REGION_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
@@ -353,9 +370,9 @@ public class CacheManager implements ICacheManager {
   public Object getFromRegionCache( String region, Object key ) {
     Object returnValue = null;
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cacheEnabled( region ) ) {
-        returnValue = cache.get( key );
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        returnValue = cacheRegion.get( key );
       } else {
         CacheManager.logger.warn( Messages.getInstance().getString(
             "CacheManager.WARN_0003_REGION_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
@@ -370,9 +387,9 @@ public class CacheManager implements ICacheManager {
   public List getAllValuesFromRegionCache( String region ) {
     List list = new ArrayList<Object>();
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cacheEnabled( region ) ) {
-        Map cacheMap = cache.toMap();
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        Map cacheMap = cacheRegion.cache.toMap();
         if ( cacheMap != null ) {
           Iterator it = cacheMap.entrySet().iterator();
           while ( it.hasNext() ) {
@@ -390,9 +407,9 @@ public class CacheManager implements ICacheManager {
   public Set getAllKeysFromRegionCache( String region ) {
     Set set = null;
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cacheEnabled( region ) ) {
-        Map cacheMap = cache.toMap();
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        Map cacheMap = cacheRegion.cache.toMap();
         if ( cacheMap != null ) {
           set = cacheMap.keySet();
         }
@@ -406,9 +423,9 @@ public class CacheManager implements ICacheManager {
   public Set getAllEntriesFromRegionCache( String region ) {
     Set set = null;
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cacheEnabled( region ) ) {
-        Map cacheMap = cache.toMap();
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        Map cacheMap = cacheRegion.cache.toMap();
         if ( cacheMap != null ) {
           set = cacheMap.entrySet();
         }
@@ -421,9 +438,12 @@ public class CacheManager implements ICacheManager {
 
   public void removeFromRegionCache( String region, Object key ) {
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cacheEnabled( region ) ) {
-        cache.remove( key );
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
+        cacheRegion.remove( key );
+        if ( key instanceof SessionCacheKey && SESSION.equals( region ) ) {
+          unindexSessionKey( (SessionCacheKey) key );
+        }
       } else {
         CacheManager.logger.warn( Messages.getInstance().getString(
             "CacheManager.WARN_0003_REGION_DOES_NOT_EXIST", region ) ); //$NON-NLS-1$
@@ -439,15 +459,10 @@ public class CacheManager implements ICacheManager {
 
   public void clearCache() {
     if ( cacheEnabled ) {
-      Iterator it = regionCache.entrySet().iterator();
-      while ( it.hasNext() ) {
-        Map.Entry entry = (Map.Entry) it.next();
-        String key = ( entry.getKey() != null ) ? entry.getKey().toString() : ""; //$NON-NLS-1$
-        if ( key != null ) {
-          Cache cache = regionCache.get( key );
-          cache.clear();
-        }
+      for ( CacheRegion cacheRegion : regionCache.values() ) {
+        cacheRegion.clear();
       }
+      sessionKeyIndex.clear();
     }
   }
 
@@ -461,18 +476,29 @@ public class CacheManager implements ICacheManager {
 
   public void killSessionCache( IPentahoSession session ) {
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( SESSION );
-      if ( cache != null ) {
-        Map cacheMap = cache.toMap();
-        if ( cacheMap != null ) {
-          Set set = cacheMap.keySet();
-          Iterator it = set.iterator();
-          while ( it.hasNext() ) {
-            String key = (String) it.next();
-            if ( key.indexOf( session.getId() ) >= 0 ) {
-              cache.remove( key );
-            }
-          }
+      Set<SessionCacheKey> keys = sessionKeyIndex.remove( session.getId() );
+      CacheRegion cacheRegion = regionCache.get( SESSION );
+      if ( cacheRegion != null && keys != null ) {
+        for ( SessionCacheKey key : keys ) {
+          cacheRegion.remove( key );
+        }
+      }
+      if ( cacheRegion != null && unindexedSessionKeys ) {
+        removeUnindexedSessionKeys( cacheRegion, session.getId() );
+      }
+    }
+  }
+
+  /**
+   * Removes the String keys containing the session id, which is how session entries were keyed before
+   * {@link SessionCacheKey}; callers may still put such keys in the SESSION region themselves.
+   */
+  private void removeUnindexedSessionKeys( final CacheRegion cacheRegion, final String sessionId ) {
+    Map cacheMap = cacheRegion.cache.toMap();
+    if ( cacheMap != null && sessionId != null ) {
+      for ( Object key : new ArrayList<Object>( cacheMap.keySet() ) ) {
+        if ( key instanceof String && ( (String) key ).indexOf( sessionId ) >= 0 ) {
+          cacheRegion.remove( key );
         }
       }
     }
@@ -498,16 +524,42 @@ public class CacheManager implements ICacheManager {
     removeFromRegionCache( SESSION, getCorrectedKey( session, key ) );
   }
 
-  private String getCorrectedKey( final IPentahoSession session, final String key ) {
+  private SessionCacheKey getCorrectedKey( final IPentahoSession session, final String key ) {
     String sessionId = session.getId();
     if ( sessionId != null ) {
-      String newKey = sessionId + "\t" + key; //$NON-NLS-1$
-      return newKey;
+      return new SessionCacheKey( sessionId, key );
     } else {
       throw new CacheException( Messages.getInstance().getErrorString( "CacheManager.ERROR_0001_NOSESSION" ) ); //$NON-NLS-1$
     }
   }
 
+  private void indexSessionKey( final SessionCacheKey key ) {
+    sessionKeyIndex.compute( key.getSessionId(), ( sessionId, keys ) -> {
+      Set<SessionCacheKey> sessionKeys = keys != null ? keys : ConcurrentHashMap.<SessionCacheKey>newKeySet();
+      sessionKeys.add( key );
+      return sessionKeys;
+    } );
+  }
+
+  private void unindexSessionKey( final SessionCacheKey key ) {
+    sessionKeyIndex.computeIfPresent( key.getSessionId(), ( sessionId, keys ) -> {
+      keys.remove( key );
+      return keys.isEmpty() ? null : keys;
+    } );
+  }
+
+  /**
+   * Builds and registers the cache of a region unless another thread has already done so.
+   * 
+   * @return the registered region, or <code>null</code> if the cache could not be built
+   */
+  private CacheRegion buildRegion( String region, final Properties cacheProperties ) {
+    return regionCache.computeIfAbsent( region, name -> {
+      Cache cache = buildCache( name, cacheProperties );
+      return cache == null ? null : new CacheRegion( cache );
+    } );
+  }
+
   private LastModifiedCache buildCache( String key, Properties cacheProperties ) {
     if ( getCacheProvider() != null ) {
       Cache cache = getCacheProvider().buildCache( key, cacheProperties );
@@ -527,11 +579,11 @@ public class CacheManager implements ICacheManager {
   @Override
   public long getElementCountInRegionCache( String region ) {
     if ( cacheEnabled ) {
-      Cache cache = regionCache.get( region );
-      if ( cache != null ) {
+      CacheRegion cacheRegion = regionCache.get( region );
+      if ( cacheRegion != null ) {
         try {
-          long memCnt = cache.getElementCountInMemory();
-          long discCnt = cache.getElementCountOnDisk();
+          long memCnt = cacheRegion.cache.getElementCountInMemory();
+          long discCnt = cacheRegion.cache.getElementCountOnDisk();
           return memCnt + discCnt;
         } catch ( Exception ignored ) {
           return -1;
@@ -553,4 +605,78 @@ public class CacheManager implements ICacheManager {
   public long getElementCountInGlobalCache() {
     return getElementCountInRegionCache( GLOBAL );
   }
+
+  @Override
+  public CacheRegionStatistics getRegionStatistics( String region ) {
+    CacheRegion cacheRegion = regionCache.get( region );
+    return cacheRegion == null ? null : cacheRegion.getStatistics( region );
+  }
+
+  @Override
+  public List<CacheRegionStatistics> getAllRegionStatistics() {
+    List<CacheRegionStatistics> statistics = new ArrayList<CacheRegionStatistics>();
+    for ( Map.Entry<String, CacheRegion> entry : regionCache.entrySet() ) {
+      statistics.add( entry.getValue().getStatistics( entry.getKey() ) );
+    }
+    return statistics;
+  }
+
+  /**
+   * A region's cache together with its usage counters.
+   */
+  private static final class CacheRegion {
+
+    private final Cache cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+
+    CacheRegion( Cache cache ) {
+      this.cache = cache;
+    }
+
+    Object get( Object key ) {
+      Object value = cache.get( key );
+      if ( value != null ) {
+        hits.increment();
+      } else {
+        misses.increment();
+      }
+      return value;
+    }
+
+    void put( Object key, Object value ) {
+      cache.put( key, value );
+      puts.increment();
+    }
+
+    void remove( Object key ) {
+      cache.remove( key );
+      removes.increment();
+    }
+
+    void clear() {
+      cache.clear();
+      clears.increment();
+    }
+
+    CacheRegionStatistics getStatistics( String region ) {
+      CacheRegionStatistics statistics = new CacheRegionStatistics( region );
+      statistics.setHitCount( hits.sum() );
+      statistics.setMissCount( misses.sum() );
+      statistics.setPutCount( puts.sum() );
+      statistics.setRemoveCount( removes.sum() );
+      statistics.setClearCount( clears.sum() );
+      try {
+        statistics.setElementCountInMemory( cache.getElementCountInMemory() );
+        statistics.setElementCountOnDisk( cache.getElementCountOnDisk() );
+        statistics.setSizeInMemory( cache.getSizeInMemory() );
+      } catch ( Exception e ) {
+        logger.debug( "Unable to read the size of cache region " + region, e ); //$NON-NLS-1$
+      }
+      return statistics;
+    }
+  }
 }
@@ -0,0 +1,426 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.plugin.services.connections.columnar.ColumnarResultSet;
+import org.pentaho.platform.plugin.services.messages.Messages;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares the results of non-live SQL and MDX queries between sessions, so that a query many users run at the same
+ * time, such as the one behind a prompt list, reaches the datasource once. Results are kept in the
+ * {@value #CACHE_REGION} cache region; how long they live and how many are kept is configured for that region in
+ * <code>ehcache.xml</code>. Results with more than {@value #MAX_ROWS_SETTING} rows are not cached.
+ * <p/>
+ * Entries are keyed by datasource, query text with its whitespace normalized, bound parameters and the caller's
+ * security fingerprint: the tenant and roles of the current user together with the connection details. Concurrent
+ * requests for the same key wait for the first one instead of running the query themselves. Every caller gets its own
+ * copy of a cached result, so cursors are never shared.
+ * <p/>
+ * The cache is only used when the {@value #ENABLED_SETTING} system setting is <code>true</code>, since cached results
+ * may be older than the data in the datasource. Clearing it shows up in the {@link ICacheManager} statistics and as a
+ * new last modified date of the region in the cache expiration service.
+ */
+public class QueryResultCache {
+
+  public static final String CACHE_REGION = "query-results"; //$NON-NLS-1$
+
+  public static final String ENABLED_SETTING = "query-result-cache/enabled"; //$NON-NLS-1$
+
+  public static final String MAX_ROWS_SETTING = "query-result-cache/max-rows"; //$NON-NLS-1$
+
+  public static final int DEFAULT_MAX_ROWS = 10000;
+
+  private static final Log logger = LogFactory.getLog( QueryResultCache.class );
+
+  private static QueryResultCache instance;
+
+  /**
+   * The cache manager holding the results; <code>null</code> if the cache is disabled.
+   */
+  private final ICacheManager cacheManager;
+
+  private final int maxRows;
+
+  private final ConcurrentMap<QueryKey, Future<IPentahoResultSet>> runningQueries =
+    new ConcurrentHashMap<QueryKey, Future<IPentahoResultSet>>();
+
+  /**
+   * Incremented on every invalidation, so that a query started before it does not store its now outdated result.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong errorCount = new AtomicLong();
+  private final AtomicLong oversizedCount = new AtomicLong();
+  private final AtomicLong invalidationCount = new AtomicLong();
+  private final AtomicLong totalQueryTime = new AtomicLong();
+  private final AtomicLong maxQueryTime = new AtomicLong();
+
+  QueryResultCache( ICacheManager cacheManager, int maxRows ) {
+    this.cacheManager = cacheManager;
+    this.maxRows = maxRows;
+    if ( cacheManager != null ) {
+      cacheManager.addCacheRegion( CACHE_REGION );
+    }
+  }
+
+  public static synchronized QueryResultCache getInstance() {
+    if ( instance == null ) {
+      boolean enabled = Boolean.parseBoolean( PentahoSystem.getSystemSetting( ENABLED_SETTING, "false" ) ); //$NON-NLS-1$
+      instance = new QueryResultCache( enabled ? PentahoSystem.getCacheManager( null ) : null, getMaxRowsSetting() );
+    }
+    return instance;
+  }
+
+  /**
+   * @return <code>true</code> if query results are cached
+   */
+  public boolean isEnabled() {
+    return cacheManager != null;
+  }
+
+  /**
+   * Creates the key of a query run by the current user.
+   *
+   * @param datasource the name of the datasource, used to invalidate its results
+   * @param connection everything else that identifies the connection, such as its url, user and options; hashed, so
+   *                   it may contain credentials
+   * @param query      the query text, after all inputs have been applied
+   * @param parameters the values bound to the query, may be <code>null</code>
+   */
+  public static QueryKey createKey( String datasource, String connection, String query, List<?> parameters ) {
+    return new QueryKey( datasource, normalize( query ), parameters,
+      DigestUtils.sha256Hex( connection + '\n' + getSecurityFingerprint() ) );
+  }
+
+  /**
+   * Returns a copy of the result cached under <code>key</code>. If there is none, runs <code>query</code> and caches
+   * its result, unless the same query is already running, in which case its result is awaited instead.
+   *
+   * @param key   the key of the query
+   * @param query runs the query and returns its result in memory; the result must support random access through
+   *              {@link IPentahoResultSet#getDataRow(int)}
+   * @return a copy of the result, or <code>null</code> if the query returned none
+   * @throws Exception the exception thrown by the query, also to the callers that waited for it
+   */
+  public IPentahoResultSet get( QueryKey key, Callable<IPentahoResultSet> query ) throws Exception {
+    if ( cacheManager == null ) {
+      return query.call();
+    }
+    Object cached = cacheManager.getFromRegionCache( CACHE_REGION, key );
+    if ( cached instanceof IPentahoResultSet ) {
+      hitCount.incrementAndGet();
+      return copy( (IPentahoResultSet) cached );
+    }
+
+    FutureTask<IPentahoResultSet> task = new FutureTask<IPentahoResultSet>( query );
+    Future<IPentahoResultSet> running = runningQueries.putIfAbsent( key, task );
+    if ( running != null ) {
+      coalescedCount.incrementAndGet();
+      return copy( await( running ) );
+    }
+
+    missCount.incrementAndGet();
+    long startGeneration = generation.get();
+    long start = System.nanoTime();
+    try {
+      task.run();
+      IPentahoResultSet resultSet = await( task );
+      recordQueryTime( System.nanoTime() - start );
+      if ( resultSet == null ) {
+        return null;
+      }
+      if ( resultSet.getRowCount() > maxRows ) {
+        oversizedCount.incrementAndGet();
+      } else if ( generation.get() == startGeneration ) {
+        cacheManager.putInRegionCache( CACHE_REGION, key, resultSet );
+      }
+      return copy( resultSet );
+    } catch ( Exception e ) {
+      errorCount.incrementAndGet();
+      throw e;
+    } finally {
+      runningQueries.remove( key, task );
+    }
+  }
+
+  /**
+   * Drops all cached results.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    invalidationCount.incrementAndGet();
+    if ( cacheManager != null ) {
+      cacheManager.clearRegionCache( CACHE_REGION );
+    }
+  }
+
+  /**
+   * Drops the cached results of one datasource.
+   *
+   * @param datasource the datasource name the keys were created with
+   */
+  public void invalidate( String datasource ) {
+    generation.incrementAndGet();
+    invalidationCount.incrementAndGet();
+    if ( cacheManager == null ) {
+      return;
+    }
+    Object[] keys = cacheManager.getAllKeysFromRegionCache( CACHE_REGION ).toArray();
+    for ( Object key : keys ) {
+      if ( key instanceof QueryKey && ( (QueryKey) key ).isOf( datasource ) ) {
+        cacheManager.removeFromRegionCache( CACHE_REGION, key );
+      }
+    }
+  }
+
+  public QueryResultCacheStatistics getStatistics() {
+    QueryResultCacheStatistics statistics = new QueryResultCacheStatistics();
+    statistics.setEnabled( isEnabled() );
+    statistics.setEntryCount( cacheManager != null ? cacheManager.getElementCountInRegionCache( CACHE_REGION ) : 0 );
+    statistics.setHitCount( hitCount.get() );
+    statistics.setMissCount( missCount.get() );
+    statistics.setCoalescedCount( coalescedCount.get() );
+    statistics.setErrorCount( errorCount.get() );
+    statistics.setOversizedCount( oversizedCount.get() );
+    statistics.setInvalidationCount( invalidationCount.get() );
+    long queries = missCount.get();
+    statistics.setAverageQueryTime( queries == 0 ? 0 : totalQueryTime.get() / queries / 1000000 );
+    statistics.setMaxQueryTime( maxQueryTime.get() / 1000000 );
+    return statistics;
+  }
+
+  private void recordQueryTime( long nanos ) {
+    totalQueryTime.addAndGet( nanos );
+    long max = maxQueryTime.get();
+    while ( nanos > max && !maxQueryTime.compareAndSet( max, nanos ) ) {
+      max = maxQueryTime.get();
+    }
+  }
+
+  private static IPentahoResultSet await( Future<IPentahoResultSet> future ) throws Exception {
+    try {
+      return future.get();
+    } catch ( ExecutionException e ) {
+      Throwable cause = e.getCause();
+      if ( cause instanceof Exception ) {
+        throw (Exception) cause;
+      }
+      if ( cause instanceof Error ) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a copy of a cached result with its own cursor. Rows are copied too, since callers may change them.
+   */
+  static IPentahoResultSet copy( IPentahoResultSet resultSet ) {
+    if ( resultSet == null ) {
+      return null;
+    }
+    if ( resultSet instanceof ColumnarResultSet ) {
+      // columns are immutable and rows are built on every read
+      return resultSet.memoryCopy();
+    }
+    MemoryResultSet copy = new MemoryResultSet( resultSet.getMetaData() );
+    for ( int i = 0, rowCount = resultSet.getRowCount(); i < rowCount; i++ ) {
+      Object[] row = resultSet.getDataRow( i );
+      copy.addRow( row == null ? null : row.clone() );
+    }
+    return copy;
+  }
+
+  /**
+   * Collapses runs of whitespace into a single space, except inside quotes, brackets and line comments, so that the
+   * same query formatted differently gets the same key.
+   */
+  static String normalize( String query ) {
+    if ( query == null ) {
+      return null;
+    }
+    StringBuilder normalized = new StringBuilder( query.length() );
+    char closing = 0;
+    boolean space = false;
+    for ( int i = 0, length = query.length(); i < length; i++ ) {
+      char c = query.charAt( i );
+      if ( closing != 0 ) {
+        normalized.append( c );
+        if ( c == closing ) {
+          closing = 0;
+        }
+      } else if ( Character.isWhitespace( c ) ) {
+        space = true;
+      } else {
+        if ( space && normalized.length() > 0 ) {
+          normalized.append( ' ' );
+        }
+        space = false;
+        normalized.append( c );
+        if ( c == '\'' || c == '"' ) {
+          closing = c;
+        } else if ( c == '[' ) {
+          closing = ']';
+        } else if ( c == '-' && i + 1 < length && query.charAt( i + 1 ) == '-' ) {
+          closing = '\n';
+        }
+      }
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Returns the tenant and the sorted roles of the current user. Users with the same roles may share results; queries
+   * that depend on the user name, or on roles derived from the session, carry these in their text, parameters or
+   * connection.
+   */
+  static String getSecurityFingerprint() {
+    StringBuilder fingerprint = new StringBuilder();
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session != null ) {
+      fingerprint.append( session.getAttribute( IPentahoSession.TENANT_ID_KEY ) );
+    }
+    Authentication authentication = SecurityHelper.getInstance().getAuthentication();
+    if ( authentication != null && authentication.getAuthorities() != null ) {
+      List<String> roles = new ArrayList<String>();
+      for ( GrantedAuthority authority : authentication.getAuthorities() ) {
+        roles.add( authority.getAuthority() );
+      }
+      Collections.sort( roles );
+      for ( String role : roles ) {
+        fingerprint.append( '\n' ).append( role );
+      }
+    }
+    return fingerprint.toString();
+  }
+
+  private static int getMaxRowsSetting() {
+    String maxRows = PentahoSystem.getSystemSetting( MAX_ROWS_SETTING, String.valueOf( DEFAULT_MAX_ROWS ) );
+    try {
+      return Integer.parseInt( maxRows.trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( Messages.getInstance().getString( "QueryResultCache.WARN_INVALID_MAX_ROWS", maxRows ) ); //$NON-NLS-1$
+      return DEFAULT_MAX_ROWS;
+    }
+  }
+
+  /**
+   * Identifies a query result. Parameter values are kept as they are when they are immutable and compare by value,
+   * and as text otherwise.
+   */
+  public static final class QueryKey implements Serializable {
+
+    private static final long serialVersionUID = -2870412365127393415L;
+
+    private final String datasource;
+    private final String query;
+    private final List<Object> parameters;
+    private final String scope;
+    private final int hashCode;
+
+    QueryKey( String datasource, String query, List<?> parameters, String scope ) {
+      this.datasource = datasource;
+      this.query = query;
+      this.parameters = parameters == null ? Collections.<Object>emptyList() : toKeyValues( parameters.toArray() );
+      this.scope = scope;
+      int hash = String.valueOf( datasource ).hashCode();
+      hash = 31 * hash + String.valueOf( query ).hashCode();
+      hash = 31 * hash + this.parameters.hashCode();
+      this.hashCode = 31 * hash + scope.hashCode();
+    }
+
+    public String getDatasource() {
+      return datasource;
+    }
+
+    boolean isOf( String datasource ) {
+      return datasource == null ? this.datasource == null : datasource.equals( this.datasource );
+    }
+
+    private static List<Object> toKeyValues( Object[] values ) {
+      List<Object> keyValues = new ArrayList<Object>( values.length );
+      for ( Object value : values ) {
+        if ( value instanceof Object[] ) {
+          keyValues.add( toKeyValues( (Object[]) value ) );
+        } else if ( value instanceof Timestamp ) {
+          keyValues.add( value.getClass().getName() + ':' + ( (Timestamp) value ).getTime() + '.'
+            + ( (Timestamp) value ).getNanos() );
+        } else if ( value instanceof Date ) {
+          // the text of a date leaves out its milliseconds
+          keyValues.add( value.getClass().getName() + ':' + ( (Date) value ).getTime() );
+        } else if ( value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+          || value instanceof Character ) {
+          keyValues.add( value );
+        } else {
+          keyValues.add( value.getClass().getName() + ':' + value );
+        }
+      }
+      return keyValues;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof QueryKey ) ) {
+        return false;
+      }
+      QueryKey other = (QueryKey) o;
+      return hashCode == other.hashCode && isOf( other.datasource ) && scope.equals( other.scope )
+        && ( query == null ? other.query == null : query.equals( other.query ) ) && parameters.equals( other.parameters );
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
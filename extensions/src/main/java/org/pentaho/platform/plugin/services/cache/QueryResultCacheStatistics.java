@@ -0,0 +1,154 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * A snapshot of the usage of the {@link QueryResultCache}. Counters are cumulative since server start.
+ */
+@XmlRootElement
+public class QueryResultCacheStatistics implements Serializable {
+
+  private static final long serialVersionUID = -4471961802613640158L;
+
+  private boolean enabled;
+  private long entryCount;
+  private long hitCount;
+  private long missCount;
+  private long coalescedCount;
+  private long errorCount;
+  private long oversizedCount;
+  private long invalidationCount;
+  private long averageQueryTime;
+  private long maxQueryTime;
+
+  /**
+   * @return <code>true</code> if query results are cached
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled( boolean enabled ) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return the number of results currently cached
+   */
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  public void setEntryCount( long entryCount ) {
+    this.entryCount = entryCount;
+  }
+
+  /**
+   * @return the number of queries answered from the cache
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public void setHitCount( long hitCount ) {
+    this.hitCount = hitCount;
+  }
+
+  /**
+   * @return the number of queries that had to be run against their datasource
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void setMissCount( long missCount ) {
+    this.missCount = missCount;
+  }
+
+  /**
+   * @return the number of queries that waited for the same query already running for another caller
+   */
+  public long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  public void setCoalescedCount( long coalescedCount ) {
+    this.coalescedCount = coalescedCount;
+  }
+
+  /**
+   * @return the number of queries that failed
+   */
+  public long getErrorCount() {
+    return errorCount;
+  }
+
+  public void setErrorCount( long errorCount ) {
+    this.errorCount = errorCount;
+  }
+
+  /**
+   * @return the number of results not cached because they had too many rows
+   */
+  public long getOversizedCount() {
+    return oversizedCount;
+  }
+
+  public void setOversizedCount( long oversizedCount ) {
+    this.oversizedCount = oversizedCount;
+  }
+
+  /**
+   * @return the number of times all results or those of a datasource were dropped
+   */
+  public long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  public void setInvalidationCount( long invalidationCount ) {
+    this.invalidationCount = invalidationCount;
+  }
+
+  /**
+   * @return the average time in milliseconds it took to run a query that was not cached
+   */
+  public long getAverageQueryTime() {
+    return averageQueryTime;
+  }
+
+  public void setAverageQueryTime( long averageQueryTime ) {
+    this.averageQueryTime = averageQueryTime;
+  }
+
+  /**
+   * @return the longest time in milliseconds it took to run a query that was not cached
+   */
+  public long getMaxQueryTime() {
+    return maxQueryTime;
+  }
+
+  public void setMaxQueryTime( long maxQueryTime ) {
+    this.maxQueryTime = maxQueryTime;
+  }
+}
@@ -0,0 +1,78 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import java.io.Serializable;
+
+/**
+ * Key of an entry in the {@link org.pentaho.platform.api.engine.ICacheManager#SESSION} region: the id of the owning
+ * session plus the caller supplied key. {@link #toString()} keeps the <code>sessionId + "\t" + key</code> form used
+ * by earlier versions of {@link CacheManager} so that code matching on the string form of session keys keeps working.
+ */
+public final class SessionCacheKey implements Serializable {
+
+  private static final long serialVersionUID = 6027195716530318740L;
+
+  private final String sessionId;
+
+  private final String key;
+
+  private final int hashCode;
+
+  public SessionCacheKey( final String sessionId, final String key ) {
+    if ( sessionId == null ) {
+      throw new IllegalArgumentException( "sessionId must not be null" ); //$NON-NLS-1$
+    }
+    this.sessionId = sessionId;
+    this.key = key;
+    this.hashCode = 31 * sessionId.hashCode() + ( key == null ? 0 : key.hashCode() );
+  }
+
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  @Override
+  public boolean equals( final Object o ) {
+    if ( this == o ) {
+      return true;
+    }
+    if ( !( o instanceof SessionCacheKey ) ) {
+      return false;
+    }
+    SessionCacheKey that = (SessionCacheKey) o;
+    return sessionId.equals( that.sessionId ) && ( key == null ? that.key == null : key.equals( that.key ) );
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public String toString() {
+    return sessionId + "\t" + key; //$NON-NLS-1$
+  }
+}
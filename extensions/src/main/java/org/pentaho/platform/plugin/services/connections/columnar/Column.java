@@ -0,0 +1,219 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.columnar;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.Date;
+
+/**
+ * The values of one column of a {@link ColumnarResultSet}. Values are kept in a primitive buffer chosen by the
+ * {@link Kind} of the column and boxed again when read, so a column of numbers or dates costs a few bytes per row
+ * instead of an object per row. Strings are dictionary encoded. Nulls are tracked in a bitmap. The buffers are either
+ * heap buffers or views of a memory-mapped temporary file.
+ */
+final class Column {
+
+  /**
+   * How a column's values are stored. Only values of exactly the listed classes are stored as primitives, so that
+   * reading a value back returns an object of the same class as the one that was added.
+   */
+  enum Kind {
+    INTEGER( Storage.INT ), SHORT( Storage.INT ), BYTE( Storage.INT ), BOOLEAN( Storage.INT ),
+    LONG( Storage.LONG ), DATE( Storage.LONG ), SQL_DATE( Storage.LONG ), SQL_TIME( Storage.LONG ),
+    DOUBLE( Storage.DOUBLE ), FLOAT( Storage.DOUBLE ),
+    TIMESTAMP( Storage.TIMESTAMP ),
+    STRING( Storage.STRING ),
+    OBJECT( Storage.OBJECT );
+
+    final Storage storage;
+
+    Kind( final Storage storage ) {
+      this.storage = storage;
+    }
+
+    static Kind of( final Object value ) {
+      Class<?> type = value.getClass();
+      if ( type == String.class ) {
+        return STRING;
+      } else if ( type == Integer.class ) {
+        return INTEGER;
+      } else if ( type == Long.class ) {
+        return LONG;
+      } else if ( type == Double.class ) {
+        return DOUBLE;
+      } else if ( type == Timestamp.class ) {
+        return TIMESTAMP;
+      } else if ( type == java.sql.Date.class ) {
+        return SQL_DATE;
+      } else if ( type == Date.class ) {
+        return DATE;
+      } else if ( type == Time.class ) {
+        return SQL_TIME;
+      } else if ( type == Float.class ) {
+        return FLOAT;
+      } else if ( type == Short.class ) {
+        return SHORT;
+      } else if ( type == Byte.class ) {
+        return BYTE;
+      } else if ( type == Boolean.class ) {
+        return BOOLEAN;
+      }
+      return OBJECT;
+    }
+
+    int toInt( final Object value ) {
+      switch ( this ) {
+        case BOOLEAN:
+          return ( (Boolean) value ) ? 1 : 0;
+        default:
+          return ( (Number) value ).intValue();
+      }
+    }
+
+    Object fromInt( final int value ) {
+      switch ( this ) {
+        case SHORT:
+          return Short.valueOf( (short) value );
+        case BYTE:
+          return Byte.valueOf( (byte) value );
+        case BOOLEAN:
+          return Boolean.valueOf( value != 0 );
+        default:
+          return Integer.valueOf( value );
+      }
+    }
+
+    long toLong( final Object value ) {
+      switch ( this ) {
+        case LONG:
+          return (Long) value;
+        default:
+          return ( (Date) value ).getTime();
+      }
+    }
+
+    Object fromLong( final long value ) {
+      switch ( this ) {
+        case DATE:
+          return new Date( value );
+        case SQL_DATE:
+          return new java.sql.Date( value );
+        case SQL_TIME:
+          return new Time( value );
+        default:
+          return Long.valueOf( value );
+      }
+    }
+
+    double toDouble( final Object value ) {
+      return ( (Number) value ).doubleValue();
+    }
+
+    Object fromDouble( final double value ) {
+      switch ( this ) {
+        case FLOAT:
+          return Float.valueOf( (float) value );
+        default:
+          return Double.valueOf( value );
+      }
+    }
+  }
+
+  enum Storage {
+    INT( 4 ), LONG( 8 ), DOUBLE( 8 ), TIMESTAMP( 12 ), STRING( 4 ), OBJECT( 0 );
+
+    /**
+     * Bytes of primitive storage needed per row.
+     */
+    final int bytesPerRow;
+
+    Storage( final int bytesPerRow ) {
+      this.bytesPerRow = bytesPerRow;
+    }
+  }
+
+  private final Kind kind;
+
+  private final BitSet nulls;
+
+  private final IntBuffer ints;
+
+  private final LongBuffer longs;
+
+  private final DoubleBuffer doubles;
+
+  private final String[] dictionary;
+
+  private final Object[] objects;
+
+  Column( final Kind kind, final BitSet nulls, final IntBuffer ints, final LongBuffer longs,
+      final DoubleBuffer doubles, final String[] dictionary, final Object[] objects ) {
+    this.kind = kind;
+    this.nulls = nulls;
+    this.ints = ints;
+    this.longs = longs;
+    this.doubles = doubles;
+    this.dictionary = dictionary;
+    this.objects = objects;
+  }
+
+  /**
+   * @return the kind of the column, or null if the column only holds nulls
+   */
+  Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * @return whether the values are held in a memory-mapped file rather than on the heap
+   */
+  boolean isMapped() {
+    return ( ( ints != null ) && ints.isDirect() ) || ( ( longs != null ) && longs.isDirect() )
+        || ( ( doubles != null ) && doubles.isDirect() );
+  }
+
+  Object get( final int row ) {
+    if ( ( kind == null ) || ( ( nulls != null ) && nulls.get( row ) ) ) {
+      return null;
+    }
+    switch ( kind.storage ) {
+      case INT:
+        return kind.fromInt( ints.get( row ) );
+      case LONG:
+        return kind.fromLong( longs.get( row ) );
+      case DOUBLE:
+        return kind.fromDouble( doubles.get( row ) );
+      case TIMESTAMP:
+        Timestamp timestamp = new Timestamp( longs.get( row ) );
+        timestamp.setNanos( ints.get( row ) );
+        return timestamp;
+      case STRING:
+        return dictionary[ints.get( row )];
+      default:
+        return objects[row];
+    }
+  }
+}
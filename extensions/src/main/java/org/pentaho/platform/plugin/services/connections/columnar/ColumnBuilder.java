@@ -0,0 +1,220 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.columnar;
+
+import org.pentaho.platform.plugin.services.connections.columnar.Column.Kind;
+import org.pentaho.platform.plugin.services.connections.columnar.Column.Storage;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the values of one column in growable primitive arrays. The kind of the column is taken from its first
+ * non-null value; if a later value is of another kind the column falls back to storing objects.
+ */
+final class ColumnBuilder {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private Kind kind;
+
+  private int size;
+
+  private BitSet nulls;
+
+  private int[] ints;
+
+  private long[] longs;
+
+  private double[] doubles;
+
+  private Object[] objects;
+
+  private Map<String, Integer> dictionaryIndex;
+
+  private List<String> dictionary;
+
+  void add( final Object value ) {
+    if ( value == null ) {
+      if ( nulls == null ) {
+        nulls = new BitSet();
+      }
+      nulls.set( size );
+      if ( kind != null ) {
+        ensureCapacity( size + 1 );
+      }
+      size++;
+      return;
+    }
+    Kind valueKind = Kind.of( value );
+    if ( kind == null ) {
+      init( valueKind );
+    } else if ( ( kind != valueKind ) && ( kind != Kind.OBJECT ) ) {
+      convertToObjects();
+    }
+    ensureCapacity( size + 1 );
+    switch ( kind.storage ) {
+      case INT:
+        ints[size] = kind.toInt( value );
+        break;
+      case LONG:
+        longs[size] = kind.toLong( value );
+        break;
+      case DOUBLE:
+        doubles[size] = kind.toDouble( value );
+        break;
+      case TIMESTAMP:
+        longs[size] = ( (Timestamp) value ).getTime();
+        ints[size] = ( (Timestamp) value ).getNanos();
+        break;
+      case STRING:
+        ints[size] = encode( (String) value );
+        break;
+      default:
+        objects[size] = value;
+    }
+    size++;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of bytes of primitive storage the column needs
+   */
+  long getDataSize() {
+    return ( kind == null ) ? 0 : (long) kind.storage.bytesPerRow * size;
+  }
+
+  Column build( final ColumnarResultSetBuilder.BufferStore store ) {
+    Column column;
+    if ( kind == null ) {
+      column = new Column( null, null, null, null, null, null, null );
+    } else {
+      switch ( kind.storage ) {
+        case INT:
+          column = new Column( kind, nulls, store.ints( ints, size ), null, null, null, null );
+          break;
+        case LONG:
+          column = new Column( kind, nulls, null, store.longs( longs, size ), null, null, null );
+          break;
+        case DOUBLE:
+          column = new Column( kind, nulls, null, null, store.doubles( doubles, size ), null, null );
+          break;
+        case TIMESTAMP:
+          column = new Column( kind, nulls, store.ints( ints, size ), store.longs( longs, size ), null, null, null );
+          break;
+        case STRING:
+          column = new Column( kind, nulls, store.ints( ints, size ), null, null,
+              dictionary.toArray( new String[dictionary.size()] ), null );
+          break;
+        default:
+          column = new Column( kind, nulls, null, null, null, null, Arrays.copyOf( objects, size ) );
+      }
+    }
+    release();
+    return column;
+  }
+
+  private void init( final Kind valueKind ) {
+    kind = valueKind;
+    int capacity = Math.max( INITIAL_CAPACITY, size + 1 );
+    switch ( kind.storage ) {
+      case INT:
+        ints = new int[capacity];
+        break;
+      case LONG:
+        longs = new long[capacity];
+        break;
+      case DOUBLE:
+        doubles = new double[capacity];
+        break;
+      case TIMESTAMP:
+        longs = new long[capacity];
+        ints = new int[capacity];
+        break;
+      case STRING:
+        ints = new int[capacity];
+        dictionary = new ArrayList<String>();
+        dictionaryIndex = new HashMap<String, Integer>();
+        break;
+      default:
+        objects = new Object[capacity];
+    }
+  }
+
+  private void ensureCapacity( final int capacity ) {
+    if ( ints != null && ints.length < capacity ) {
+      ints = Arrays.copyOf( ints, grow( ints.length, capacity ) );
+    }
+    if ( longs != null && longs.length < capacity ) {
+      longs = Arrays.copyOf( longs, grow( longs.length, capacity ) );
+    }
+    if ( doubles != null && doubles.length < capacity ) {
+      doubles = Arrays.copyOf( doubles, grow( doubles.length, capacity ) );
+    }
+    if ( objects != null && objects.length < capacity ) {
+      objects = Arrays.copyOf( objects, grow( objects.length, capacity ) );
+    }
+  }
+
+  private static int grow( final int length, final int capacity ) {
+    return Math.max( length + ( length >> 1 ), capacity );
+  }
+
+  private int encode( final String value ) {
+    Integer code = dictionaryIndex.get( value );
+    if ( code == null ) {
+      code = dictionary.size();
+      dictionary.add( value );
+      dictionaryIndex.put( value, code );
+    }
+    return code;
+  }
+
+  /**
+   * Replaces the primitive storage with an array of the values read back as objects.
+   */
+  private void convertToObjects() {
+    Object[] values = new Object[Math.max( INITIAL_CAPACITY, size + 1 )];
+    Column current = build( ColumnarResultSetBuilder.BufferStore.HEAP );
+    for ( int row = 0; row < size; row++ ) {
+      values[row] = current.get( row );
+    }
+    kind = Kind.OBJECT;
+    objects = values;
+  }
+
+  private void release() {
+    ints = null;
+    longs = null;
+    doubles = null;
+    objects = null;
+    dictionary = null;
+    dictionaryIndex = null;
+  }
+}
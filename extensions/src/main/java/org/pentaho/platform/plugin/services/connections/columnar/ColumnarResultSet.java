@@ -0,0 +1,138 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.columnar;
+
+import org.pentaho.commons.connection.IPeekable;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+
+/**
+ * An in-memory result set that stores its values column by column in primitive buffers, as an alternative to
+ * {@link org.pentaho.commons.connection.memory.MemoryResultSet} for large non-live query results. Numbers, booleans
+ * and dates take a few bytes per value, repeated strings are stored once, and nulls are kept in a bitmap. Values are
+ * boxed again when read and are of the same classes as the values that were added.
+ * <p/>
+ * The values cannot be changed once built; use {@link ColumnarResultSetBuilder} to create one. Like
+ * {@code MemoryResultSet}, an instance keeps a cursor and must not be shared between threads, but
+ * {@link #memoryCopy()} is cheap and returns an independent cursor over the same values.
+ */
+public class ColumnarResultSet implements IPentahoResultSet, IPeekable {
+
+  private final IPentahoMetaData metaData;
+
+  private final Column[] columns;
+
+  private final int rowCount;
+
+  private int rowIndex = -1;
+
+  ColumnarResultSet( final IPentahoMetaData metaData, final Column[] columns, final int rowCount ) {
+    this.metaData = metaData;
+    this.columns = columns;
+    this.rowCount = rowCount;
+  }
+
+  public IPentahoMetaData getMetaData() {
+    return metaData;
+  }
+
+  public Object[] peek() {
+    return ( rowIndex + 1 < rowCount ) ? getDataRow( rowIndex + 1 ) : null;
+  }
+
+  public Object[] next() {
+    if ( rowIndex + 1 < rowCount ) {
+      rowIndex++;
+      return getDataRow( rowIndex );
+    }
+    return null;
+  }
+
+  public void close() {
+    // nothing to release, the values stay readable
+  }
+
+  public void closeConnection() {
+    // not connected
+  }
+
+  public void dispose() {
+    // mapped buffers are released by the garbage collector
+  }
+
+  public boolean isScrollable() {
+    return true;
+  }
+
+  public Object getValueAt( final int row, final int column ) {
+    return columns[column].get( row );
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * @return a new result set over the same values, positioned before the first row
+   */
+  public IPentahoResultSet memoryCopy() {
+    return new ColumnarResultSet( metaData, columns, rowCount );
+  }
+
+  public void beforeFirst() {
+    rowIndex = -1;
+  }
+
+  public Object[] getDataColumn( final int column ) {
+    Object[] result = new Object[rowCount];
+    for ( int row = 0; row < rowCount; row++ ) {
+      result[row] = columns[column].get( row );
+    }
+    return result;
+  }
+
+  public Object[] getDataRow( final int row ) {
+    if ( ( row < 0 ) || ( row >= rowCount ) ) {
+      return null;
+    }
+    Object[] result = new Object[columns.length];
+    for ( int column = 0; column < columns.length; column++ ) {
+      result[column] = columns[column].get( row );
+    }
+    return result;
+  }
+
+  /**
+   * @return whether the values of any column are held in a memory-mapped temporary file
+   */
+  public boolean isMapped() {
+    for ( Column column : columns ) {
+      if ( column.isMapped() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
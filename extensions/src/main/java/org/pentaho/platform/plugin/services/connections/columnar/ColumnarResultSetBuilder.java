@@ -0,0 +1,256 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.columnar;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.messages.Messages;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Builds a {@link ColumnarResultSet} one row at a time, either from rows added by the caller, from another
+ * {@link IPentahoResultSet} or straight from a JDBC {@link ResultSet} without creating an intermediate row array per
+ * row.
+ * <p/>
+ * If the primitive data of the finished result set is larger than the spill threshold it is moved to a temporary
+ * file that is mapped into memory, so that it no longer counts against the heap. The threshold defaults to the
+ * {@value #SPILL_THRESHOLD_SETTING} system setting; zero or less disables spilling. A builder can only build one
+ * result set.
+ */
+public class ColumnarResultSetBuilder {
+
+  public static final String ENABLED_SETTING = "columnar-result-set/enabled"; //$NON-NLS-1$
+
+  public static final String SPILL_THRESHOLD_SETTING = "columnar-result-set/spill-threshold"; //$NON-NLS-1$
+
+  public static final long DEFAULT_SPILL_THRESHOLD = 64L * 1024 * 1024;
+
+  private static final Log logger = LogFactory.getLog( ColumnarResultSetBuilder.class );
+
+  private final IPentahoMetaData metaData;
+
+  private final ColumnBuilder[] columns;
+
+  private final long spillThreshold;
+
+  private int rowCount;
+
+  public ColumnarResultSetBuilder( final IPentahoMetaData metaData ) {
+    this( metaData, getDefaultSpillThreshold() );
+  }
+
+  public ColumnarResultSetBuilder( final IPentahoMetaData metaData, final long spillThreshold ) {
+    this.metaData = metaData;
+    this.spillThreshold = spillThreshold;
+    columns = new ColumnBuilder[metaData.getColumnCount()];
+    for ( int i = 0; i < columns.length; i++ ) {
+      columns[i] = new ColumnBuilder();
+    }
+  }
+
+  /**
+   * @return whether components should keep non-live query results as {@link ColumnarResultSet}s rather than
+   *         {@link org.pentaho.commons.connection.memory.MemoryResultSet}s, as set by {@value #ENABLED_SETTING}
+   */
+  public static boolean isEnabled() {
+    return "true".equalsIgnoreCase( PentahoSystem.getSystemSetting( ENABLED_SETTING, "false" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  public static long getDefaultSpillThreshold() {
+    String threshold = PentahoSystem.getSystemSetting( SPILL_THRESHOLD_SETTING, null );
+    if ( threshold != null && !threshold.trim().isEmpty() ) {
+      try {
+        return Long.parseLong( threshold.trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Invalid value for " + SPILL_THRESHOLD_SETTING + ": " + threshold ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return DEFAULT_SPILL_THRESHOLD;
+  }
+
+  /**
+   * Adds a row. Missing trailing values are added as nulls, extra values are ignored.
+   */
+  public void addRow( final Object[] row ) {
+    for ( int column = 0; column < columns.length; column++ ) {
+      columns[column].add( ( column < row.length ) ? row[column] : null );
+    }
+    rowCount++;
+  }
+
+  /**
+   * Adds the remaining rows of a result set.
+   */
+  public void addRows( final IPentahoResultSet resultSet ) {
+    Object[] row = resultSet.next();
+    while ( row != null ) {
+      addRow( row );
+      row = resultSet.next();
+    }
+  }
+
+  /**
+   * Adds the remaining rows of a JDBC result set, reading the values with {@link ResultSet#getObject(int)} so they are
+   * the same as those of a {@link org.pentaho.commons.connection.memory.MemoryResultSet} copy.
+   */
+  public void addRows( final ResultSet resultSet ) throws SQLException {
+    while ( resultSet.next() ) {
+      for ( int column = 0; column < columns.length; column++ ) {
+        columns[column].add( resultSet.getObject( column + 1 ) );
+      }
+      rowCount++;
+    }
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @return the number of bytes of primitive data added so far
+   */
+  public long getDataSize() {
+    long dataSize = 0;
+    for ( ColumnBuilder column : columns ) {
+      dataSize += column.getDataSize();
+    }
+    return dataSize;
+  }
+
+  public ColumnarResultSet build() {
+    BufferStore store = BufferStore.HEAP;
+    if ( ( spillThreshold > 0 ) && ( getDataSize() > spillThreshold ) ) {
+      store = BufferStore.mapped();
+    }
+    try {
+      Column[] built = new Column[columns.length];
+      for ( int i = 0; i < columns.length; i++ ) {
+        built[i] = columns[i].build( store );
+      }
+      return new ColumnarResultSet( metaData, built, rowCount );
+    } finally {
+      store.close();
+    }
+  }
+
+  /**
+   * Creates a columnar copy of the remaining rows of a result set.
+   */
+  public static ColumnarResultSet copyOf( final IPentahoResultSet resultSet ) {
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( resultSet.getMetaData() );
+    builder.addRows( resultSet );
+    return builder.build();
+  }
+
+  /**
+   * Creates the buffers that hold the values of the built columns, either on the heap or in a memory-mapped temporary
+   * file. A column whose data cannot be mapped stays on the heap.
+   */
+  static class BufferStore {
+
+    static final BufferStore HEAP = new BufferStore( null );
+
+    private final FileChannel channel;
+
+    private long position;
+
+    private BufferStore( final FileChannel channel ) {
+      this.channel = channel;
+    }
+
+    static BufferStore mapped() {
+      try {
+        return new BufferStore( FileChannel.open( Files.createTempFile( "columnar-", ".tmp" ), //$NON-NLS-1$ //$NON-NLS-2$
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE ) );
+      } catch ( IOException e ) {
+        logger.warn( Messages.getInstance().getString( "ColumnarResultSetBuilder.WARN_SPILL_FAILED" ), e ); //$NON-NLS-1$
+        return HEAP;
+      }
+    }
+
+    IntBuffer ints( final int[] values, final int size ) {
+      ByteBuffer buffer = map( 4L * size );
+      if ( buffer == null ) {
+        return IntBuffer.wrap( ( values.length == size ) ? values : Arrays.copyOf( values, size ) );
+      }
+      IntBuffer view = buffer.asIntBuffer();
+      view.put( values, 0, size );
+      return view.asReadOnlyBuffer();
+    }
+
+    LongBuffer longs( final long[] values, final int size ) {
+      ByteBuffer buffer = map( 8L * size );
+      if ( buffer == null ) {
+        return LongBuffer.wrap( ( values.length == size ) ? values : Arrays.copyOf( values, size ) );
+      }
+      LongBuffer view = buffer.asLongBuffer();
+      view.put( values, 0, size );
+      return view.asReadOnlyBuffer();
+    }
+
+    DoubleBuffer doubles( final double[] values, final int size ) {
+      ByteBuffer buffer = map( 8L * size );
+      if ( buffer == null ) {
+        return DoubleBuffer.wrap( ( values.length == size ) ? values : Arrays.copyOf( values, size ) );
+      }
+      DoubleBuffer view = buffer.asDoubleBuffer();
+      view.put( values, 0, size );
+      return view.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer map( final long bytes ) {
+      if ( ( channel == null ) || ( bytes == 0 ) || ( bytes > Integer.MAX_VALUE ) ) {
+        return null;
+      }
+      try {
+        ByteBuffer buffer = channel.map( FileChannel.MapMode.READ_WRITE, position, bytes );
+        position += bytes;
+        return buffer.order( ByteOrder.nativeOrder() );
+      } catch ( IOException e ) {
+        logger.warn( Messages.getInstance().getString( "ColumnarResultSetBuilder.WARN_SPILL_FAILED" ), e ); //$NON-NLS-1$
+        return null;
+      }
+    }
+
+    /**
+     * Closes the temporary file, which deletes it. The mapped buffers stay valid until they are garbage collected.
+     */
+    void close() {
+      IOUtils.closeQuietly( channel );
+    }
+  }
+}
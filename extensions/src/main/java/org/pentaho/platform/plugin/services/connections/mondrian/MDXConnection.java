@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -71,6 +71,11 @@ public class MDXConnection implements IPentahoLoggingConnection {
    */
   private Role role = null;
 
+  /**
+   * The Mondrian roles the connection was opened with, once the platform roles have been mapped to them
+   */
+  private String mondrianRoles = null;
+
   public MDXConnection() {
     super();
   }
@@ -233,6 +238,7 @@ public class MDXConnection implements IPentahoLoggingConnection {
       String dataSourceName = properties.get( RolapConnectionProperties.DataSource.name() );
 
       mapPlatformRolesToMondrianRoles( properties );
+      mondrianRoles = properties.get( RolapConnectionProperties.Role.name() );
 
       if ( dataSourceName != null ) {
         IDBDatasourceService datasourceService =
@@ -401,4 +407,12 @@ public class MDXConnection implements IPentahoLoggingConnection {
   public void setRole( Role customRole ) {
     this.role = customRole;
   }
+
+  /**
+   * @return the comma separated Mondrian roles the connection was opened with, as given or as mapped from the roles of
+   * the platform user; <code>null</code> if there are none
+   */
+  public String getMondrianRoles() {
+    return mondrianRoles;
+  }
 }
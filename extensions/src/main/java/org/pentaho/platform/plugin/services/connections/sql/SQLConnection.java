@@ -412,7 +412,9 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
         setForcedForwardOnly( true );
       }
     }
-    sqlResultSet = new SQLResultSet( resultSet, this );
+    SQLResultSet result = new SQLResultSet( resultSet, this );
+    result.setQuery( query, null );
+    sqlResultSet = result;
     // add to list of resultsets for cleanup later.
     resultSets.add( sqlResultSet );
     lastQuery = query;
@@ -529,13 +531,60 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
       }
     }
 
-    sqlResultSet = new SQLResultSet( resultSet, this );
+    SQLResultSet result = new SQLResultSet( resultSet, this );
+    result.setQuery( query, parameters );
+    sqlResultSet = result;
     // add to list of resultsets for cleanup later.
     resultSets.add( sqlResultSet );
     lastQuery = query;
     return sqlResultSet;
   }
 
+  /**
+   * Counts the rows the specified query returns by running it wrapped in <code>SELECT COUNT(*)</code> on its own
+   * statement. The row limit of this connection applies to the count as it does to the query.
+   * 
+   * @param query
+   *          the query to count the rows of
+   * @param parameters
+   *          the values bound to the query, or null if the query is not prepared
+   * @return the number of rows
+   * @throws SQLException
+   *           indicates an error running the count query
+   */
+  public int countRows( final String query, final List parameters ) throws SQLException {
+    String countQuery = query.trim();
+    if ( countQuery.endsWith( ";" ) ) { //$NON-NLS-1$
+      countQuery = countQuery.substring( 0, countQuery.length() - 1 );
+    }
+    countQuery = "SELECT COUNT(*) FROM ( " + countQuery + " ) PENTAHO_ROW_COUNT"; //$NON-NLS-1$ //$NON-NLS-2$
+    if ( logger != null && logger.getLoggingLevel() == ILogger.DEBUG ) {
+      logger.debug( "SQLConnection.countRows:" + countQuery ); //$NON-NLS-1$
+    }
+
+    PreparedStatement pStmt = nativeConnection.prepareStatement( countQuery );
+    try {
+      enhanceStatement( pStmt );
+      if ( this.getQueryTimeout() >= 0 ) {
+        pStmt.setQueryTimeout( this.getQueryTimeout() );
+      }
+      if ( parameters != null ) {
+        for ( int i = 0; i < parameters.size(); i++ ) {
+          pStmt.setObject( i + 1, parameters.get( i ) );
+        }
+      }
+      ResultSet resultSet = pStmt.executeQuery();
+      try {
+        int count = resultSet.next() ? resultSet.getInt( 1 ) : 0;
+        return this.getMaxRows() > 0 ? Math.min( count, this.getMaxRows() ) : count;
+      } finally {
+        resultSet.close();
+      }
+    } finally {
+      pStmt.close();
+    }
+  }
+
   public boolean preparedQueriesSupported() {
     return true;
   }
@@ -581,7 +630,7 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
   void initDataSource( IDatabaseConnection databaseConnection ) {
     DataSource dataSource = null;
     try {
-      dataSource = PooledDatasourceHelper.setupPooledDataSource( databaseConnection );
+      dataSource = PooledDatasourceHelper.setupDataSource( databaseConnection );
       nativeConnection = captureConnection( dataSource.getConnection() );
     } catch ( Exception e ) {
       logger.error( "Can't get connection from Pool", e );
@@ -618,7 +667,8 @@ public class SQLConnection implements IPentahoLoggingConnection, ILimitableConne
   }
 
   public int execute( final String query ) throws SQLException {
-    return execute( query, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY );
+    // updates do not return rows, so there is no cursor to scroll
+    return execute( query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
   }
 
   public int execute( final String query, final int scrollType, final int concur ) throws SQLException {
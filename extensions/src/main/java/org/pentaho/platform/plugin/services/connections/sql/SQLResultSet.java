@@ -26,10 +26,14 @@ import org.pentaho.commons.connection.IPeekable;
 import org.pentaho.commons.connection.IPentahoMetaData;
 import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.connections.columnar.ColumnarResultSet;
+import org.pentaho.platform.plugin.services.connections.columnar.ColumnarResultSetBuilder;
 import org.pentaho.platform.plugin.services.messages.Messages;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * @author wseyler
@@ -38,6 +42,12 @@ import java.sql.SQLException;
  *         Code Templates
  */
 public class SQLResultSet implements IPentahoResultSet, IPeekable {
+  /**
+   * System setting which lets {@link #getRowCount()} of a forward-only result set run a <code>COUNT(*)</code> query
+   * when the rows have not all been read yet.
+   */
+  public static final String ROW_COUNT_PROBE_SETTING = "sql-result-set/row-count-probe"; //$NON-NLS-1$
+
   ResultSet nativeResultSet = null;
 
   SQLConnection connection;
@@ -54,6 +64,15 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
 
   private IPentahoMetaData metaData;
 
+  /** number of rows read from a forward-only result set so far */
+  private int rowsRead = 0;
+
+  private Boolean scrollable;
+
+  private String query;
+
+  private List parameters;
+
   /**
    * 
    */
@@ -67,6 +86,19 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
     this.metaData = metadata;
   }
 
+  /**
+   * Sets the query this result set was created from, used to count the rows of a forward-only result set.
+   * 
+   * @param query
+   *          the query
+   * @param parameters
+   *          the values bound to the query, or null if the query is not prepared
+   */
+  void setQuery( final String query, final List parameters ) {
+    this.query = query;
+    this.parameters = parameters;
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -108,8 +140,11 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
       return row;
     }
     try {
-      int columns = nativeResultSet.getMetaData().getColumnCount();
-      if ( nativeResultSet.next() ) {
+      if ( columnCount == SQLResultSet.COUNT_NEVER_OBTAINED ) {
+        columnCount = nativeResultSet.getMetaData().getColumnCount();
+      }
+      int columns = columnCount;
+      if ( nextNativeRow() ) {
         Object[] currentRow = new Object[columns];
         for ( int column = 0; column < columns; column++ ) {
           currentRow[column] = nativeResultSet.getObject( column + 1 );
@@ -124,6 +159,22 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
     return null;
   }
 
+  /**
+   * Moves the native cursor to the next row. Rows of a forward-only result set are counted on the way, so that its row
+   * count is known once the last row has been read.
+   */
+  private boolean nextNativeRow() throws SQLException {
+    boolean hasRow = nativeResultSet.next();
+    if ( !isScrollable() ) {
+      if ( hasRow ) {
+        rowsRead++;
+      } else if ( rowCount == SQLResultSet.COUNT_NEVER_OBTAINED ) {
+        rowCount = rowsRead;
+      }
+    }
+    return hasRow;
+  }
+
   public void closeConnection() {
     close();
     if ( connection != null ) {
@@ -147,6 +198,7 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
       rowCount = SQLResultSet.COUNT_NEVER_OBTAINED;
     }
     nativeResultSet = null;
+    scrollable = null;
   }
 
   public void dispose() {
@@ -157,6 +209,9 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
     if ( nativeResultSet == null ) {
       return false;
     }
+    if ( scrollable != null ) {
+      return scrollable;
+    }
 
     int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
     try {
@@ -164,11 +219,8 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
     } catch ( SQLException ex ) {
       SQLResultSet.log.warn( Messages.getInstance().getString( "SQLResultSet.WARN_RESULTSET_TYPE_UNDETERMINED" ) ); //$NON-NLS-1$
     }
-    if ( resultSetType == ResultSet.TYPE_FORWARD_ONLY ) {
-      return false;
-    } else {
-      return true;
-    }
+    scrollable = resultSetType != ResultSet.TYPE_FORWARD_ONLY;
+    return scrollable;
   }
 
   /**
@@ -195,18 +247,20 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
   }
 
   /**
-   * Get a rowCount from the resultset. If the resultset
+   * Get a rowCount from the resultset. The row count of a forward-only resultset is known once all of its rows have
+   * been read. Before that it is -1, unless the row count probe is enabled in the system settings, in which case the
+   * query is counted on the database.
    * 
    * @return the row count.
    */
   public int getRowCount() {
-    if ( !isScrollable() ) {
-      return -1;
-    }
     if ( rowCount != SQLResultSet.COUNT_NEVER_OBTAINED ) {
       // We have already calculated rowcount, return what we have
       return rowCount;
     }
+    if ( !isScrollable() ) {
+      return probeRowCount();
+    }
     // No resultset
     if ( nativeResultSet == null ) {
       return 0;
@@ -248,6 +302,26 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
     return rowCount;
   }
 
+  /**
+   * Counts the rows of a forward-only result set with a <code>COUNT(*)</code> query, if enabled. Some drivers do not
+   * allow a second statement while a result set is streamed, so a failed count is logged and ignored.
+   * 
+   * @return the row count, or -1 if it could not be obtained
+   */
+  private int probeRowCount() {
+    if ( ( nativeResultSet == null ) || ( connection == null ) || ( query == null )
+        || !"true".equalsIgnoreCase( PentahoSystem.getSystemSetting( ROW_COUNT_PROBE_SETTING, "false" ) ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+      return -1;
+    }
+    try {
+      rowCount = connection.countRows( query, parameters );
+      return rowCount;
+    } catch ( SQLException e ) {
+      SQLResultSet.log.warn( Messages.getInstance().getString( "SQLResultSet.WARN_ROW_COUNT_PROBE_FAILED" ), e ); //$NON-NLS-1$
+    }
+    return -1;
+  }
+
   /**
    * Returns the value of the specified row and the specified column from within the resultset.
    * 
@@ -266,7 +340,7 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
         int curNativeRow = nativeResultSet.getRow();
         if ( curNativeRow != ( row + 1 ) ) {
           if ( curNativeRow == row ) {
-            nativeResultSet.next();
+            nextNativeRow();
           } else {
             nativeResultSet.absolute( row + 1 );
           }
@@ -303,6 +377,29 @@ public class SQLResultSet implements IPentahoResultSet, IPeekable {
     }
   }
 
+  /**
+   * Reads the remaining rows straight from the JDBC result set into a {@link ColumnarResultSet} and closes this result
+   * set. Uses the same metadata as {@link #memoryCopy()}.
+   * 
+   * @return new instance of {@link ColumnarResultSet} with same metadata
+   */
+  public ColumnarResultSet columnarCopy() {
+    try {
+      ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( getMetaData() );
+      if ( peekRow != null ) {
+        builder.addRow( peekRow );
+        peekRow = null;
+      }
+      builder.addRows( nativeResultSet );
+      return builder.build();
+    } catch ( SQLException e ) {
+      SQLResultSet.log.error( Messages.getInstance().getErrorString( "SQLResultSet.ERROR_0005_NEXT" ), e ); //$NON-NLS-1$
+      throw new SQLResultSetException( Messages.getInstance().getErrorString( "SQLResultSet.ERROR_0005_NEXT" ), e ); //$NON-NLS-1$
+    } finally {
+      close();
+    }
+  }
+
   public void beforeFirst() {
     try {
       if ( nativeResultSet == null ) {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -22,9 +22,15 @@ package org.pentaho.platform.plugin.services.metadata;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.metadata.model.Category;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalColumn;
 import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
+import org.pentaho.metadata.model.concept.Concept;
 import org.pentaho.metadata.model.concept.IConcept;
+import org.pentaho.metadata.model.concept.security.Security;
+import org.pentaho.metadata.model.concept.security.SecurityOwner;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
 import org.pentaho.metadata.repository.DomainStorageException;
@@ -37,16 +43,33 @@ import org.pentaho.platform.api.engine.ISystemConfig;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.core.GrantedAuthority;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is the platform implementation which provides session-based caching for an existing {@link
  * IMetadataDomainRepository}.
+ * <p>
+ * With <code>system.shareMetadataDomainsBySecurityContext</code> set to true, secured domains are cached by the roles
+ * of the user instead of by session, so that all sessions whose users hold the same roles share one domain instance.
+ * The user name becomes part of the key only for domains whose ACLs name individual users. Shared domains must be
+ * treated as read-only. This requires a delegate which returns the same domain to every session.
+ * <p>
+ * The keys cached for each domain and session are tracked, so purging a domain or a session only touches its own
+ * entries.
  *
  * @author Jordan Ganoff (jganoff@pentaho.com)
  */
@@ -65,8 +88,22 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   ICacheManager cacheManager;
   boolean domainIdsCacheEnabled = true;
   private final IMetadataDomainRepository delegate;
+  boolean shareDomainsBySecurityContext = false;
   private static final String DOMAIN_CACHE_KEY_PREDICATE = "domain-id-cache-for-session:";
 
+  private final ConcurrentMap<String, Set<Serializable>> keysByDomain =
+    new ConcurrentHashMap<String, Set<Serializable>>();
+  private final ConcurrentMap<String, Set<Serializable>> keysBySession =
+    new ConcurrentHashMap<String, Set<Serializable>>();
+  private final Set<String> domainIdCacheKeys = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<Serializable, Integer> conceptCounts = new ConcurrentHashMap<Serializable, Integer>();
+  /**
+   * Whether the ACLs of a domain name individual users, by domain id
+   */
+  private final ConcurrentMap<String, Boolean> domainsWithUserAcls = new ConcurrentHashMap<String, Boolean>();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
   /**
    * this as a public class so that if necessary someone can get access to a session key and clear the cache in their
    * own way via javascript rule / etc
@@ -118,6 +155,50 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     }
   }
 
+  /**
+   * Key of a domain shared by all sessions with the same security context: the roles of the user and, for domains
+   * whose ACLs name individual users, the user name.
+   */
+  public static class SecurityContextCacheKey implements Serializable {
+    private static final long serialVersionUID = -4517153213834325740L;
+    public final String domainId;
+    public final String userName;
+    public final List<String> roles;
+
+    public SecurityContextCacheKey( String domainId, String userName, Collection<String> roles ) {
+      this.domainId = domainId;
+      this.userName = userName;
+      this.roles = Collections.unmodifiableList( new ArrayList<String>( new TreeSet<String>( roles ) ) );
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( o == null || getClass() != o.getClass() ) {
+        return false;
+      }
+      SecurityContextCacheKey that = (SecurityContextCacheKey) o;
+      return ( domainId != null ? domainId.equals( that.domainId ) : that.domainId == null )
+        && ( userName != null ? userName.equals( that.userName ) : that.userName == null )
+        && roles.equals( that.roles );
+    }
+
+    @Override
+    public int hashCode() {
+      int result = domainId != null ? domainId.hashCode() : 0;
+      result = 31 * result + ( userName != null ? userName.hashCode() : 0 );
+      result = 31 * result + roles.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "(" + domainId + "," + userName + "," + roles + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+  }
+
   /**
    * Wraps the provided domain repository to provide session-based caching of domains.
    */
@@ -144,6 +225,8 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     if ( systemConfig != null ) {
       String enableDomainIdCache = systemConfig.getProperty( "system.enableDomainIdCache" );
       domainIdsCacheEnabled = ( enableDomainIdCache == null ) || Boolean.valueOf( enableDomainIdCache );
+      shareDomainsBySecurityContext =
+        Boolean.valueOf( systemConfig.getProperty( "system.shareMetadataDomainsBySecurityContext" ) );
     }
   }
 
@@ -227,9 +310,26 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   @Override
   public Domain getDomain( final String id ) {
     final IPentahoSession session = PentahoSessionHolder.getSession();
-    final CacheKey key = new CacheKey( session.getId(), id );
-    Domain domain = (Domain) cacheManager.getFromRegionCache( CACHE_REGION, key );
-    if ( domain != null ) {
+    Domain domain = null;
+    final Serializable key;
+    if ( shareDomainsBySecurityContext ) {
+      Boolean userAcls = domainsWithUserAcls.get( id );
+      if ( userAcls == null ) {
+        // the key depends on the domain's ACLs, so the domain has to be loaded first
+        domain = delegate.getDomain( id );
+        if ( domain == null ) {
+          return null;
+        }
+        userAcls = hasUserAcls( domain );
+        domainsWithUserAcls.put( id, userAcls );
+      }
+      key = createSecurityContextKey( session, id, userAcls );
+    } else {
+      key = new CacheKey( session.getId(), id );
+    }
+
+    Domain cachedDomain = (Domain) cacheManager.getFromRegionCache( CACHE_REGION, key );
+    if ( cachedDomain != null ) {
       if ( logger.isDebugEnabled() ) {
         logger.debug( "Found domain in cache: " + key ); //$NON-NLS-1$
       }
@@ -238,12 +338,17 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
         if ( logger.isDebugEnabled() ) {
           logger.debug( "User no longer has access to Domain, purging from session cache: " + key );
         }
-        purgeDomain( domain.getId() );
-        domain = null;
+        purgeDomain( cachedDomain.getId() );
+        cachedDomain = null;
+      } else {
+        hitCount.incrementAndGet();
       }
-      return domain;
+      return cachedDomain;
+    }
+    missCount.incrementAndGet();
+    if ( domain == null ) {
+      domain = delegate.getDomain( id );
     }
-    domain = delegate.getDomain( id );
     if ( domain != null ) {
 
       if ( logger.isDebugEnabled() ) {
@@ -257,44 +362,104 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
         logger.debug( "Caching domain by session: " + key ); //$NON-NLS-1$
       }
       cacheManager.putInRegionCache( CACHE_REGION, key, domain );
+      trackKey( id, session.getId(), key, domain );
     }
     return domain;
   }
 
+  /**
+   * Creates the key of a domain shared by sessions with the same security context. Sessions without roles get a key of
+   * their own.
+   */
+  protected Serializable createSecurityContextKey( final IPentahoSession session, final String domainId,
+                                                   final boolean includeUserName ) {
+    Object roles = session.getAttribute( IPentahoSession.SESSION_ROLES );
+    if ( !( roles instanceof Collection ) ) {
+      return new CacheKey( session.getId(), domainId );
+    }
+    Set<String> roleNames = new HashSet<String>();
+    for ( Object role : (Collection<?>) roles ) {
+      roleNames.add( role instanceof GrantedAuthority ? ( (GrantedAuthority) role ).getAuthority()
+        : String.valueOf( role ) );
+    }
+    return new SecurityContextCacheKey( domainId, includeUserName ? session.getName() : null, roleNames );
+  }
+
+  private void trackKey( final String domainId, final String sessionId, final Serializable key, final Domain domain ) {
+    keysByDomain.computeIfAbsent( domainId, k -> ConcurrentHashMap.<Serializable>newKeySet() ).add( key );
+    if ( key instanceof CacheKey && sessionId != null ) {
+      keysBySession.computeIfAbsent( sessionId, k -> ConcurrentHashMap.<Serializable>newKeySet() ).add( key );
+    }
+    conceptCounts.put( key, countConcepts( domain ) );
+  }
+
+  private void removeCachedDomain( final Serializable key ) {
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Removing domain from cache: " + key ); //$NON-NLS-1$
+    }
+    cacheManager.removeFromRegionCache( CACHE_REGION, key );
+    conceptCounts.remove( key );
+  }
+
   /**
    * Remove all cache entries whose domain's id is equal to {@code domainId}.
    *
    * @param domainId Domain id to remove from cache
    */
   private void purgeDomain( final String domainId ) {
-    forAllKeys( new CacheIteratorCallback() {
-      @Override
-      public Boolean call( ICacheManager cacheManager, CacheKey key ) {
-        if ( domainId == null ? key.domainId == null : domainId.equals( key.domainId ) ) {
-          cacheManager.removeFromRegionCache( CACHE_REGION, key );
+    domainsWithUserAcls.remove( domainId );
+    Set<Serializable> keys = keysByDomain.remove( domainId );
+    if ( keys != null ) {
+      for ( Serializable key : keys ) {
+        removeCachedDomain( key );
+        if ( key instanceof CacheKey ) {
+          Set<Serializable> sessionKeys = keysBySession.get( ( (CacheKey) key ).sessionId );
+          if ( sessionKeys != null ) {
+            sessionKeys.remove( key );
+          }
         }
-        return true; // continue
       }
-    } );
+    }
     removeDomainFromIDCache( domainId );
   }
 
+  /**
+   * Remove all cached domains, for all sessions
+   */
+  private void purgeAllDomains() {
+    for ( String domainId : new ArrayList<String>( keysByDomain.keySet() ) ) {
+      purgeDomain( domainId );
+    }
+    keysBySession.clear();
+    domainsWithUserAcls.clear();
+  }
+
   @Override
   public void reloadDomains() {
-    forAllKeys( REMOVE_ALL_CALLBACK );
+    purgeAllDomains();
     clearDomainIdsFromCache();
     delegate.reloadDomains();
   }
 
   @Override
   public void flushDomains() {
-    forAllKeys( REMOVE_ALL_CALLBACK );
+    purgeAllDomains();
     clearDomainIdsFromCache();
     delegate.flushDomains();
   }
 
   protected void flushDomains( final IPentahoSession session ) {
-    forAllKeysInSession( session, REMOVE_ALL_CALLBACK );
+    // domains shared by security context outlive the sessions using them
+    Set<Serializable> keys = session.getId() != null ? keysBySession.remove( session.getId() ) : null;
+    if ( keys != null ) {
+      for ( Serializable key : keys ) {
+        removeCachedDomain( key );
+        Set<Serializable> domainKeys = keysByDomain.get( ( (CacheKey) key ).domainId );
+        if ( domainKeys != null ) {
+          domainKeys.remove( key );
+        }
+      }
+    }
     clearDomainIdsFromCache( session );
   }
 
@@ -303,16 +468,9 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
    */
   protected void clearDomainIdsFromCache() {
     try {
-      Set<?> cachedObjects = cacheManager.getAllKeysFromRegionCache( CACHE_REGION );
-      if ( cachedObjects != null ) {
-        for ( Object k : cachedObjects ) {
-          if ( k instanceof String ) {
-            String key = (String) k;
-            if ( key != null && key.startsWith( DOMAIN_CACHE_KEY_PREDICATE ) ) {
-              cacheManager.removeFromRegionCache( CACHE_REGION, key );
-            }
-          }
-        }
+      for ( String key : domainIdCacheKeys ) {
+        domainIdCacheKeys.remove( key );
+        cacheManager.removeFromRegionCache( CACHE_REGION, key );
       }
     } catch ( Throwable e ) {
       // due to a known issue in hibernate cache
@@ -332,6 +490,7 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
    */
   protected void clearDomainIdsFromCache( IPentahoSession session ) {
     final String key = generateDomainIdCacheKeyForSession( session );
+    domainIdCacheKeys.remove( key );
     if ( cacheManager.getFromRegionCache( CACHE_REGION, key ) != null ) {
       cacheManager.removeFromRegionCache( CACHE_REGION, key );
     }
@@ -344,17 +503,13 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
    */
   private void removeDomainFromIDCache( String domainId ) {
     try {
-      Set<?> cachedObjects = cacheManager.getAllKeysFromRegionCache( CACHE_REGION );
-      if ( cachedObjects != null ) {
-        for ( Object k : cachedObjects ) {
-          if ( k instanceof String ) {
-            String key = (String) k;
-            if ( key != null && key.startsWith( DOMAIN_CACHE_KEY_PREDICATE ) ) {
-              Set<String> domainIds = (Set<String>) cacheManager.getFromRegionCache( CACHE_REGION, key );
-              domainIds.remove( domainId );
-              cacheManager.putInRegionCache( CACHE_REGION, key, domainIds );
-            }
-          }
+      for ( String key : domainIdCacheKeys ) {
+        Set<String> domainIds = (Set<String>) cacheManager.getFromRegionCache( CACHE_REGION, key );
+        if ( domainIds == null ) {
+          // expired
+          domainIdCacheKeys.remove( key );
+        } else if ( domainIds.remove( domainId ) ) {
+          cacheManager.putInRegionCache( CACHE_REGION, key, domainIds );
         }
       }
     } catch ( Throwable e ) {
@@ -426,6 +581,7 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     domainIds = delegate.getDomainIds();
     if ( domainIdsCacheEnabled ) {
       cacheManager.putInRegionCache( CACHE_REGION, domainKey, new HashSet<String>( domainIds ) );
+      domainIdCacheKeys.add( domainKey );
     }
     return domainIds;
   }
@@ -440,6 +596,104 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     return delegate.hasAccess( accessType, aclHolder );
   }
 
+  /**
+   * @return the number of domain lookups served from the cache
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return the number of domain lookups which had to go to the delegate
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return the number of domain instances held in the cache
+   */
+  public int getCachedDomainCount() {
+    return conceptCounts.size();
+  }
+
+  /**
+   * @param domainId id of the domain
+   * @return the number of instances of the domain held in the cache
+   */
+  public int getCachedDomainCount( final String domainId ) {
+    Set<Serializable> keys = keysByDomain.get( domainId );
+    return keys != null ? keys.size() : 0;
+  }
+
+  /**
+   * Rough measure of the memory held by the cache: the number of models, tables, columns and categories of all cached
+   * domain instances.
+   *
+   * @return the number of concepts held in the cache
+   */
+  public long getCachedConceptCount() {
+    long count = 0;
+    for ( Integer concepts : conceptCounts.values() ) {
+      count += concepts;
+    }
+    return count;
+  }
+
+  private static boolean hasUserAcls( final Domain domain ) {
+    if ( hasUserAcls( (IConcept) domain ) ) {
+      return true;
+    }
+    for ( LogicalModel model : domain.getLogicalModels() ) {
+      if ( hasUserAcls( model ) ) {
+        return true;
+      }
+      for ( LogicalTable table : model.getLogicalTables() ) {
+        if ( hasUserAcls( table ) || hasUserAcls( table.getLogicalColumns() ) ) {
+          return true;
+        }
+      }
+      for ( Category category : model.getCategories() ) {
+        if ( hasUserAcls( category ) || hasUserAcls( category.getLogicalColumns() ) ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasUserAcls( final List<LogicalColumn> columns ) {
+    for ( LogicalColumn column : columns ) {
+      if ( hasUserAcls( column ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasUserAcls( final IConcept concept ) {
+    Object security = concept.getProperty( Concept.SECURITY_PROPERTY );
+    if ( security instanceof Security ) {
+      for ( SecurityOwner owner : ( (Security) security ).getOwnerAclMap().keySet() ) {
+        if ( owner.getOwnerType() == SecurityOwner.OwnerType.USER ) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static int countConcepts( final Domain domain ) {
+    int count = 1;
+    for ( LogicalModel model : domain.getLogicalModels() ) {
+      count += 1 + model.getCategories().size();
+      for ( LogicalTable table : model.getLogicalTables() ) {
+        count += 1 + table.getLogicalColumns().size();
+      }
+    }
+    return count;
+  }
+
   @Override
   public void onLogout( final IPentahoSession session ) {
     flushDomains( session );
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -97,6 +97,11 @@ public class DefaultPluginManager implements IPluginManager {
 
   protected List<XulOverlay> overlaysCache = Collections.synchronizedList( new ArrayList<XulOverlay>() );
 
+  /**
+   * Resolves request paths to plugins, rebuilt whenever the registered plugins change.
+   */
+  private volatile PluginPathIndex pathIndex = PluginPathIndex.EMPTY;
+
   @Override
   public Set<String> getContentTypes() {
     // map.keySet returns a set backed by the map, so we cannot allow modification of the set
@@ -141,6 +146,7 @@ public class DefaultPluginManager implements IPluginManager {
       }
     }
     registeredPlugins.clear();
+    pathIndex = PluginPathIndex.EMPTY;
   }
 
   @Override
@@ -220,6 +226,7 @@ public class DefaultPluginManager implements IPluginManager {
           PluginMessageLogger.add( msg );
         }
       }
+      pathIndex = new PluginPathIndex( registeredPlugins.values() );
     }
 
     IServiceManager svcManager = PentahoSystem.get( IServiceManager.class, null );
@@ -836,42 +843,12 @@ public class DefaultPluginManager implements IPluginManager {
 
   @Deprecated
   public String getServicePlugin( String path ) {
-    for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
-      String pluginId = getStaticResourcePluginId( plugin, path );
-      if ( pluginId != null ) {
-        return pluginId;
-      }
-
-      for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
-        String cgId = contentGenerator.getId();
-        if ( isRequested( cgId, path ) ) {
-          return plugin.getId();
-        }
-      }
-    }
-
-    return null;
-  }
-
-  private String getStaticResourcePluginId( IPlatformPlugin plugin, String path ) {
-    Map<String, String> resourceMap = plugin.getStaticResourceMap();
-    for ( String url : resourceMap.keySet() ) {
-      if ( isRequested( url, path ) ) {
-        return plugin.getId();
-      }
-    }
-    return null;
+    return pathIndex.getPluginId( path );
   }
 
   @Deprecated
   public boolean isStaticResource( String path ) {
-    for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
-      String pluginId = getStaticResourcePluginId( plugin, path );
-      if ( pluginId != null ) {
-        return true;
-      }
-    }
-    return false;
+    return pathIndex.isStaticResource( path );
   }
 
   public boolean isPublic( String pluginId, String path ) {
@@ -907,6 +884,22 @@ public class DefaultPluginManager implements IPluginManager {
     return null;
   }
 
+  @Deprecated
+  public long getStaticResourceLastModified( String path ) {
+    for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
+      Map<String, String> resourceMap = plugin.getStaticResourceMap();
+      for ( String url : resourceMap.keySet() ) {
+        if ( isRequested( url, path ) ) {
+          IPluginResourceLoader resLoader = PentahoSystem.get( IPluginResourceLoader.class, null );
+          ClassLoader classLoader = classLoaderMap.get( plugin.getId() );
+          String resourcePath = path.replace( url, resourceMap.get( url ) );
+          return resLoader.getResourceLastModified( classLoader, resourcePath );
+        }
+      }
+    }
+    return 0L;
+  }
+
   public List<String> getExternalResourcesForContext( String context ) {
     List<String> resources = new ArrayList<String>();
     for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
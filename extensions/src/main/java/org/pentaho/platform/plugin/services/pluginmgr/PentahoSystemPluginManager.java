@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -116,6 +116,12 @@ public class PentahoSystemPluginManager implements IPluginManager {
   private Logger logger = LoggerFactory.getLogger( getClass() );
   private Set<IPluginManagerListener> listeners = new HashSet<IPluginManagerListener>();
 
+  /**
+   * Resolves request paths to plugins, rebuilt whenever plugins are loaded or unloaded, and when a path is not found
+   * and plugins have been registered with PentahoSystem by others since.
+   */
+  private volatile PluginPathIndex pathIndex = PluginPathIndex.EMPTY;
+
   private static void createAndRegisterLifecycleListeners( IPlatformPlugin plugin, ClassLoader loader )
       throws PlatformPluginRegistrationException {
     Object listener = null;
@@ -233,7 +239,7 @@ public class PentahoSystemPluginManager implements IPluginManager {
       entry.getValue().remove();
     }
     handleRegistry.clear();
-
+    pathIndex = PluginPathIndex.EMPTY;
   }
 
   @Override
@@ -340,6 +346,8 @@ public class PentahoSystemPluginManager implements IPluginManager {
 
     }
 
+    pathIndex = new PluginPathIndex( PentahoSystem.getAll( IPlatformPlugin.class ) );
+
     IServiceManager svcManager = PentahoSystem.get( IServiceManager.class, null );
     if ( svcManager != null ) {
       try {
@@ -1032,31 +1040,8 @@ public class PentahoSystemPluginManager implements IPluginManager {
 
   @Deprecated
   public String getServicePlugin( String path ) {
-    for ( IPlatformPlugin plugin : PentahoSystem.getAll( IPlatformPlugin.class ) ) {
-      String pluginId = getStaticResourcePluginId( plugin, path );
-      if ( pluginId != null ) {
-        return pluginId;
-      }
-
-      for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
-        String cgId = contentGenerator.getId();
-        if ( isRequested( cgId, path ) ) {
-          return plugin.getId();
-        }
-      }
-    }
-
-    return null;
-  }
-
-  private String getStaticResourcePluginId( IPlatformPlugin plugin, String path ) {
-    Map<String, String> resourceMap = plugin.getStaticResourceMap();
-    for ( String url : resourceMap.keySet() ) {
-      if ( isRequested( url, path ) ) {
-        return plugin.getId();
-      }
-    }
-    return null;
+    String pluginId = pathIndex.getPluginId( path );
+    return pluginId != null ? pluginId : getCurrentPathIndex().getPluginId( path );
   }
 
   @Override
@@ -1071,14 +1056,21 @@ public class PentahoSystemPluginManager implements IPluginManager {
 
   @Override
   public boolean isStaticResource( String path ) {
+    return pathIndex.isStaticResource( path ) || getCurrentPathIndex().isStaticResource( path );
+  }
 
-    for ( IPlatformPlugin plugin : PentahoSystem.getAll( IPlatformPlugin.class ) ) {
-      String pluginId = getStaticResourcePluginId( plugin, path );
-      if ( pluginId != null ) {
-        return true;
-      }
+  /**
+   * Returns the path index of the plugins registered with PentahoSystem now. Plugins may be registered without a
+   * reload, by OSGi or through the object factory, so the index is rebuilt if it no longer matches them.
+   */
+  private PluginPathIndex getCurrentPathIndex() {
+    List<IPlatformPlugin> plugins = PentahoSystem.getAll( IPlatformPlugin.class );
+    PluginPathIndex index = pathIndex;
+    if ( !index.isBuiltFrom( plugins ) ) {
+      index = new PluginPathIndex( plugins );
+      pathIndex = index;
     }
-    return false;
+    return index;
   }
 
   @Override
@@ -1117,6 +1109,23 @@ public class PentahoSystemPluginManager implements IPluginManager {
     return null;
   }
 
+  @Override
+  public long getStaticResourceLastModified( String path ) {
+    for ( IPlatformPlugin plugin : PentahoSystem.getAll( IPlatformPlugin.class ) ) {
+      Map<String, String> resourceMap = plugin.getStaticResourceMap();
+      for ( String url : resourceMap.keySet() ) {
+        if ( isRequested( url, path ) ) {
+          IPluginResourceLoader resLoader = PentahoSystem.get( IPluginResourceLoader.class, null );
+          ClassLoader classLoader =
+              PentahoSystem.get( ClassLoader.class, null, Collections.singletonMap( PLUGIN_ID, plugin.getId() ) );
+          String resourcePath = path.replace( url, resourceMap.get( url ) );
+          return resLoader.getResourceLastModified( classLoader, resourcePath );
+        }
+      }
+    }
+    return 0L;
+  }
+
   @Override
   public List<String> getRegisteredPlugins() {
     List<String> retList = new ArrayList<String>();
@@ -0,0 +1,167 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.pentaho.platform.api.engine.IContentGeneratorInfo;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves request paths to the plugin serving them. The static resource urls and content generator ids of all
+ * registered plugins are kept in a trie keyed by path element, so a lookup walks the elements of the request path once
+ * instead of comparing the request against every url of every plugin.
+ * <p/>
+ * A path is served by a url when it starts with all of the url's path elements, in order (see
+ * {@link DefaultPluginManager#isRequested(String, String)}). When several plugins serve a path the one registered first
+ * wins, as it did when the plugins were searched in order.
+ * <p/>
+ * Instances are immutable; plugin managers build a new index whenever the set of registered plugins changes, which
+ * {@link #isBuiltFrom(List)} tells for plugins registered with PentahoSystem from elsewhere.
+ */
+class PluginPathIndex {
+
+  static final PluginPathIndex EMPTY = new PluginPathIndex( Collections.<IPlatformPlugin>emptyList() );
+
+  private static final int NONE = Integer.MAX_VALUE;
+
+  private final Node root = new Node();
+
+  private final List<String> pluginIds = new ArrayList<String>();
+
+  private final List<IPlatformPlugin> plugins;
+
+  PluginPathIndex( Collection<? extends IPlatformPlugin> plugins ) {
+    this.plugins = new ArrayList<IPlatformPlugin>( plugins );
+    for ( IPlatformPlugin plugin : plugins ) {
+      int ordinal = pluginIds.size();
+      pluginIds.add( plugin.getId() );
+      Map<String, String> resourceMap = plugin.getStaticResourceMap();
+      if ( resourceMap != null ) {
+        for ( String url : resourceMap.keySet() ) {
+          add( url, ordinal, true );
+        }
+      }
+      List<IContentGeneratorInfo> contentGenerators = plugin.getContentGenerators();
+      if ( contentGenerators != null ) {
+        for ( IContentGeneratorInfo contentGenerator : contentGenerators ) {
+          add( contentGenerator.getId(), ordinal, false );
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the id of the plugin with a static resource url or content generator addressed by <code>path</code>, or
+   * <code>null</code> if there is none.
+   */
+  String getPluginId( String path ) {
+    int owner = find( path, false );
+    return owner == NONE ? null : pluginIds.get( owner );
+  }
+
+  /**
+   * Returns <code>true</code> if <code>path</code> addresses a static resource url of any plugin.
+   */
+  boolean isStaticResource( String path ) {
+    return find( path, true ) != NONE;
+  }
+
+  /**
+   * Returns <code>true</code> if the index was built from the same plugin instances, in the same order.
+   */
+  boolean isBuiltFrom( List<? extends IPlatformPlugin> plugins ) {
+    if ( plugins.size() != this.plugins.size() ) {
+      return false;
+    }
+    for ( int i = 0; i < plugins.size(); i++ ) {
+      if ( plugins.get( i ) != this.plugins.get( i ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void add( String servicePath, int ordinal, boolean staticResource ) {
+    if ( servicePath == null ) {
+      return;
+    }
+    Node node = root;
+    for ( String element : elements( servicePath ) ) {
+      Node child = node.children.get( element );
+      if ( child == null ) {
+        child = new Node();
+        node.children.put( element, child );
+      }
+      node = child;
+    }
+    node.serviceOwner = Math.min( node.serviceOwner, ordinal );
+    if ( staticResource ) {
+      node.staticOwner = Math.min( node.staticOwner, ordinal );
+    }
+  }
+
+  private int find( String requestPath, boolean staticOnly ) {
+    if ( requestPath == null ) {
+      return NONE;
+    }
+    Node node = root;
+    int owner = node.owner( staticOnly );
+    for ( String element : elements( requestPath ) ) {
+      node = node.children.get( element );
+      if ( node == null ) {
+        break;
+      }
+      owner = Math.min( owner, node.owner( staticOnly ) );
+    }
+    return owner;
+  }
+
+  /**
+   * Splits a path exactly like {@link DefaultPluginManager#isRequested(String, String)} does.
+   */
+  private static String[] elements( String path ) {
+    return ( path.startsWith( "/" ) ? path.substring( 1 ) : path ).split( "/" ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  private static class Node {
+    private final Map<String, Node> children = new HashMap<String, Node>( 4 );
+
+    /**
+     * Lowest ordinal of the plugins with a static resource url or content generator ending at this node.
+     */
+    private int serviceOwner = NONE;
+
+    /**
+     * Lowest ordinal of the plugins with a static resource url ending at this node.
+     */
+    private int staticOwner = NONE;
+
+    private int owner( boolean staticOnly ) {
+      return staticOnly ? staticOwner : serviceOwner;
+    }
+  }
+}
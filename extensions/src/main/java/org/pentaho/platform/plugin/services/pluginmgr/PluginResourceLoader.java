@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -219,6 +219,27 @@ public class PluginResourceLoader implements IPluginResourceLoader {
     return in;
   }
 
+  @Override
+  public long getResourceLastModified( ClassLoader classLoader, String resourcePath ) {
+    if ( getOverrideClassloader() != null ) {
+      classLoader = getOverrideClassloader();
+    }
+
+    File root = getPluginDir( classLoader );
+    if ( root != null ) {
+      File f = new File( root, resourcePath );
+      try {
+        checkPathTraversal( resourcePath, f );
+        if ( f.isFile() && f.canRead() ) {
+          return f.lastModified();
+        }
+      } catch ( IOException e ) {
+        Logger.debug( this, "Cannot check resource modification time", e ); //$NON-NLS-1$
+      }
+    }
+    return 0L;
+  }
+
   public List<URL> findResources( Class<?> clazz, String namePattern ) {
     ClassLoader classLoader = getClassLoader( clazz );
     return findResources( classLoader, namePattern );
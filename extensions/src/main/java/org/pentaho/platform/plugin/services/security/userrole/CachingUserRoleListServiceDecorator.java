@@ -14,40 +14,109 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.plugin.services.security.userrole;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Caching Decorator for an IUserRoleListService. It will use the configured ICacheManager in the PentahoSystem to cache
  * all calls being made to the decorated instance.
  * <p/>
+ * Only one call per cache key reaches the decorated instance at a time; concurrent callers asking for the same list
+ * wait for that call instead of issuing their own. Each kind of list has its own time to live, and once an entry has
+ * used up {@link #setRefreshAheadRatio(double) a share} of it the entry is reloaded in the background while callers
+ * keep getting the current value. The lists returned are shared between callers and cannot be modified.
+ * <p/>
  * Created by nbaker on 5/20/14.
  */
 public class CachingUserRoleListServiceDecorator implements IUserRoleListService {
+  private static final Log logger = LogFactory.getLog( CachingUserRoleListServiceDecorator.class );
   private IUserRoleListService delegate;
-  private ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
+  private ICacheManager cacheManager;
   private static final String REGION = "userRoleListCache";
   private static final String ALL_USERS = "all users";
   private static final String ALL_ROLES = "all roles";
   private static final String SYSTEM_ROLES = "system roles";
   private static final String ROLES_BY_USER = "roles by user";
+  private static final String USERS_IN_ROLE = "users in role";
+
+  /**
+   * Default time to live of a cached list. Kept below the time to live of the cache region so that lists are
+   * refreshed before the region evicts them.
+   */
+  public static final long DEFAULT_TTL_SECONDS = 300;
+
+  public static final double DEFAULT_REFRESH_AHEAD_RATIO = 0.8;
+
+  private static final Executor DEFAULT_REFRESH_EXECUTOR = createDefaultRefreshExecutor();
+
+  private volatile long allUsersTtl = TimeUnit.SECONDS.toMillis( DEFAULT_TTL_SECONDS );
+  private volatile long allRolesTtl = TimeUnit.SECONDS.toMillis( DEFAULT_TTL_SECONDS );
+  private volatile long systemRolesTtl = TimeUnit.SECONDS.toMillis( DEFAULT_TTL_SECONDS );
+  private volatile long rolesForUserTtl = TimeUnit.SECONDS.toMillis( DEFAULT_TTL_SECONDS );
+  private volatile long usersInRoleTtl = TimeUnit.SECONDS.toMillis( DEFAULT_TTL_SECONDS );
+  private volatile double refreshAheadRatio = DEFAULT_REFRESH_AHEAD_RATIO;
+  private volatile Executor refreshExecutor = DEFAULT_REFRESH_EXECUTOR;
+
+  private final ConcurrentMap<String, CompletableFuture<CachedResult>> loading = new ConcurrentHashMap<>();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder loadFailureCount = new LongAdder();
+  private final LongAdder refreshCount = new LongAdder();
+  private final LongAdder loadNanos = new LongAdder();
 
   private static interface DelegateOperation {
     List<String> perform();
   }
 
+  /**
+   * A list loaded from the decorated instance together with the time it was loaded.
+   */
+  static final class CachedResult implements Serializable {
+    private static final long serialVersionUID = 2745180349124617236L;
+
+    private final List<String> values;
+
+    private final long loadedAt;
+
+    CachedResult( final List<String> values, final long loadedAt ) {
+      this.values = values;
+      this.loadedAt = loadedAt;
+    }
+  }
+
   private final DelegateOperation ALL_ROLES_OPERATION = new DelegateOperation() {
     @Override public List<String> perform() {
       return delegate.getAllRoles();
@@ -67,42 +136,153 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
 
   public CachingUserRoleListServiceDecorator( IUserRoleListService delegate ) {
+    this( delegate, PentahoSystem.getCacheManager( null ) );
+  }
+
+  public CachingUserRoleListServiceDecorator( IUserRoleListService delegate, ICacheManager cacheManager ) {
     if ( delegate == null ) {
       throw new IllegalArgumentException( "Decorated IUserRoleListService cannot be null" );
     }
     this.delegate = delegate;
+    this.cacheManager = cacheManager;
     if ( !this.cacheManager.cacheEnabled( REGION ) ) {
       this.cacheManager.addCacheRegion( REGION );
     }
   }
 
-  @SuppressWarnings( "unchecked" )
-  private List<String> performOperation( String cacheEntry, DelegateOperation operation ) {
-      List<String> results = null;
+  private static Executor createDefaultRefreshExecutor() {
+    final AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor =
+      new ThreadPoolExecutor( 2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>( 1000 ), runnable -> {
+        Thread thread = new Thread( runnable, "userRoleListCache-refresh-" + threadCount.incrementAndGet() );
+        thread.setDaemon( true );
+        return thread;
+      } );
+    executor.allowCoreThreadTimeOut( true );
+    return executor;
+  }
+
+  private List<String> performOperation( String cacheEntry, long ttl, DelegateOperation operation ) {
     Object fromRegionCache = cacheManager.getFromRegionCache( REGION, cacheEntry );
-    if (fromRegionCache instanceof List ) {
-        results = (List<String>) fromRegionCache;
-    }else{
-        results = operation.perform();
-        cacheManager.putInRegionCache( REGION, cacheEntry, results );
+    if ( fromRegionCache instanceof CachedResult ) {
+      CachedResult cached = (CachedResult) fromRegionCache;
+      long age = currentTimeMillis() - cached.loadedAt;
+      if ( age < ttl ) {
+        hitCount.increment();
+        if ( age >= ttl * refreshAheadRatio ) {
+          refresh( cacheEntry, operation );
+        }
+        return cached.values;
+      }
+    }
+    missCount.increment();
+    return load( cacheEntry, operation ).values;
+  }
+
+  /**
+   * Loads the entry on the calling thread, or waits for the load already running for it.
+   */
+  private CachedResult load( String cacheEntry, DelegateOperation operation ) {
+    CompletableFuture<CachedResult> future = new CompletableFuture<>();
+    while ( true ) {
+      CompletableFuture<CachedResult> running = loading.putIfAbsent( cacheEntry, future );
+      if ( running == null ) {
+        return perform( cacheEntry, operation, future );
+      }
+      try {
+        return running.join();
+      } catch ( CancellationException e ) {
+        // a background reload that could not be scheduled; load it here instead
+        loading.remove( cacheEntry, running );
+      } catch ( CompletionException e ) {
+        Throwable cause = e.getCause();
+        if ( cause instanceof RuntimeException ) {
+          throw (RuntimeException) cause;
+        }
+        if ( cause instanceof Error ) {
+          throw (Error) cause;
+        }
+        throw e;
+      }
     }
-    return new ArrayList<String>(results);
+  }
+
+  /**
+   * Starts a background reload of the entry unless one is already running for it.
+   */
+  private void refresh( final String cacheEntry, final DelegateOperation operation ) {
+    final CompletableFuture<CachedResult> future = new CompletableFuture<>();
+    if ( loading.putIfAbsent( cacheEntry, future ) != null ) {
+      return;
+    }
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final SecurityContext securityContext = SecurityContextHolder.getContext();
+    try {
+      refreshExecutor.execute( () -> {
+        PentahoSessionHolder.setSession( session );
+        SecurityContextHolder.setContext( securityContext );
+        try {
+          refreshCount.increment();
+          perform( cacheEntry, operation, future );
+        } catch ( RuntimeException e ) {
+          logger.warn( "Could not refresh cached user role list \"" + cacheEntry + "\"; keeping the cached one", e );
+        } finally {
+          PentahoSessionHolder.removeSession();
+          SecurityContextHolder.clearContext();
+        }
+      } );
+    } catch ( RejectedExecutionException e ) {
+      // the cached value stays in use until it expires
+      loading.remove( cacheEntry, future );
+      future.cancel( false );
+    }
+  }
+
+  private CachedResult perform( String cacheEntry, DelegateOperation operation, CompletableFuture<CachedResult> future ) {
+    long start = System.nanoTime();
+    try {
+      List<String> results = operation.perform();
+      CachedResult cached = new CachedResult( results == null ? Collections.<String>emptyList()
+        : Collections.unmodifiableList( new ArrayList<String>( results ) ), currentTimeMillis() );
+      cacheManager.putInRegionCache( REGION, cacheEntry, cached );
+      future.complete( cached );
+      return cached;
+    } catch ( RuntimeException | Error e ) {
+      loadFailureCount.increment();
+      future.completeExceptionally( e );
+      throw e;
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      loadCount.increment();
+      loadNanos.add( elapsed );
+      loading.remove( cacheEntry, future );
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( String.format( "loaded \"%s\" in %d ms", cacheEntry, TimeUnit.NANOSECONDS.toMillis( elapsed ) ) ); //$NON-NLS-1$
+      }
+    }
+  }
+
+  /**
+   * @return the current time in milliseconds, used to work out the age of cached lists
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
   }
 
 
   @Override
   public List<String> getAllRoles() {
-    return performOperation( ALL_ROLES, ALL_ROLES_OPERATION );
+    return performOperation( ALL_ROLES, allRolesTtl, ALL_ROLES_OPERATION );
   }
 
   @Override
   public List<String> getSystemRoles() {
-    return performOperation( SYSTEM_ROLES, SYSTEM_ROLES_OPERATION );
+    return performOperation( SYSTEM_ROLES, systemRolesTtl, SYSTEM_ROLES_OPERATION );
   }
 
   @Override
   public List<String> getRolesForUser( final ITenant tenant, final String username ) {
-    return performOperation( ROLES_BY_USER + getTenantKey( tenant ) + username,
+    return performOperation( ROLES_BY_USER + getTenantKey( tenant ) + username, rolesForUserTtl,
       new DelegateOperation() {
         @Override public List<String> perform() {
           return delegate.getRolesForUser( tenant, username );
@@ -117,7 +297,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getAllUsers( final ITenant tenant ) {
-    return performOperation( ALL_USERS + getTenantKey( tenant ), new DelegateOperation() {
+    return performOperation( ALL_USERS + getTenantKey( tenant ), allUsersTtl, new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getAllUsers( tenant );
       }
@@ -126,7 +306,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getAllRoles( final ITenant tenant ) {
-    return performOperation( ALL_ROLES + getTenantKey( tenant ), new DelegateOperation() {
+    return performOperation( ALL_ROLES + getTenantKey( tenant ), allRolesTtl, new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getAllRoles( tenant );
       }
@@ -135,7 +315,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getUsersInRole( final ITenant tenant, final String role ) {
-    return performOperation( ALL_USERS + getTenantKey( tenant ) + role, new DelegateOperation() {
+    return performOperation( USERS_IN_ROLE + getTenantKey( tenant ) + role, usersInRoleTtl, new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getUsersInRole( tenant, role );
       }
@@ -145,6 +325,119 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
   @Override
   public List<String> getAllUsers() {
 
-    return performOperation( ALL_USERS, ALL_USERS_OPERATION );
+    return performOperation( ALL_USERS, allUsersTtl, ALL_USERS_OPERATION );
+  }
+
+  /**
+   * @param seconds
+   *          how long the lists returned by {@link #getAllUsers()} and {@link #getAllUsers(ITenant)} are cached
+   */
+  public void setAllUsersTtl( final long seconds ) {
+    this.allUsersTtl = TimeUnit.SECONDS.toMillis( seconds );
+  }
+
+  /**
+   * @param seconds
+   *          how long the lists returned by {@link #getAllRoles()} and {@link #getAllRoles(ITenant)} are cached
+   */
+  public void setAllRolesTtl( final long seconds ) {
+    this.allRolesTtl = TimeUnit.SECONDS.toMillis( seconds );
+  }
+
+  /**
+   * @param seconds
+   *          how long the list returned by {@link #getSystemRoles()} is cached
+   */
+  public void setSystemRolesTtl( final long seconds ) {
+    this.systemRolesTtl = TimeUnit.SECONDS.toMillis( seconds );
+  }
+
+  /**
+   * @param seconds
+   *          how long the lists returned by {@link #getRolesForUser(ITenant, String)} are cached
+   */
+  public void setRolesForUserTtl( final long seconds ) {
+    this.rolesForUserTtl = TimeUnit.SECONDS.toMillis( seconds );
+  }
+
+  /**
+   * @param seconds
+   *          how long the lists returned by {@link #getUsersInRole(ITenant, String)} are cached
+   */
+  public void setUsersInRoleTtl( final long seconds ) {
+    this.usersInRoleTtl = TimeUnit.SECONDS.toMillis( seconds );
+  }
+
+  /**
+   * @param refreshAheadRatio
+   *          share of the time to live after which a cached list is reloaded in the background; <code>1</code> or
+   *          more turns the background reload off
+   */
+  public void setRefreshAheadRatio( final double refreshAheadRatio ) {
+    if ( refreshAheadRatio <= 0 ) {
+      throw new IllegalArgumentException( "refreshAheadRatio must be greater than 0" );
+    }
+    this.refreshAheadRatio = refreshAheadRatio;
+  }
+
+  /**
+   * @param refreshExecutor
+   *          runs the background reloads; defaults to two shared daemon threads
+   */
+  public void setRefreshExecutor( final Executor refreshExecutor ) {
+    if ( refreshExecutor == null ) {
+      throw new IllegalArgumentException( "refreshExecutor cannot be null" );
+    }
+    this.refreshExecutor = refreshExecutor;
+  }
+
+  /**
+   * @return the number of calls answered from the cache
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return the number of calls that had to wait for a list to be loaded
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return the number of calls made to the decorated instance, including background reloads
+   */
+  public long getLoadCount() {
+    return loadCount.sum();
+  }
+
+  /**
+   * @return the number of calls to the decorated instance that failed
+   */
+  public long getLoadFailureCount() {
+    return loadFailureCount.sum();
+  }
+
+  /**
+   * @return the number of background reloads run
+   */
+  public long getRefreshCount() {
+    return refreshCount.sum();
+  }
+
+  /**
+   * @return the total time spent in the decorated instance, in milliseconds
+   */
+  public long getTotalLoadTime() {
+    return TimeUnit.NANOSECONDS.toMillis( loadNanos.sum() );
+  }
+
+  /**
+   * @return the average time of a call to the decorated instance, in milliseconds
+   */
+  public double getAverageLoadTime() {
+    long loads = loadCount.sum();
+    return loads == 0 ? 0 : loadNanos.sum() / 1000000d / loads;
   }
 }
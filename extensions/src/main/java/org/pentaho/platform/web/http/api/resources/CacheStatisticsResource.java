@@ -0,0 +1,164 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.api.cache.CacheRegionStatistics;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+import org.pentaho.platform.web.servlet.StaticResourceCache;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Reports usage statistics of the platform cache regions, so that regions can be sized from real hit rates and
+ * entry counts. Only administrators may call this service.
+ */
+@Path( "/system/cache" )
+@Facet( name = "Unsupported" )
+public class CacheStatisticsResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the statistics of every cache region.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/system/cache/regions
+   * </p>
+   *
+   * @return the hit, miss, put, remove and clear counts, entry counts and approximate memory size of each region
+   */
+  @GET
+  @Path( "/regions" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Returns the statistics of all cache regions." ),
+      @ResponseCode( code = 401, condition = "The user is not an administrator." )
+  } )
+  public Response getRegionStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( new CacheRegionStatisticsList( getCacheManager().getAllRegionStatistics() ) ).build();
+  }
+
+  /**
+   * Returns the statistics of a single cache region.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/system/cache/regions/GLOBAL
+   * </p>
+   *
+   * @param region the name of the cache region
+   * @return the statistics of the region
+   */
+  @GET
+  @Path( "/regions/{region}" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Returns the statistics of the cache region." ),
+      @ResponseCode( code = 401, condition = "The user is not an administrator." ),
+      @ResponseCode( code = 404, condition = "The cache region does not exist." )
+  } )
+  public Response getRegionStatistics( @PathParam( "region" ) String region ) {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    CacheRegionStatistics statistics = getCacheManager().getRegionStatistics( region );
+    if ( statistics == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    return Response.ok( statistics ).build();
+  }
+
+  /**
+   * Returns the statistics of the cache serving plugin static resources.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/system/cache/static-resources
+   * </p>
+   *
+   * @return the hit, miss and not-modified counts and the number of bytes served
+   */
+  @GET
+  @Path( "/static-resources" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Returns the statistics of the static resource cache." ),
+      @ResponseCode( code = 401, condition = "The user is not an administrator." )
+  } )
+  public Response getStaticResourceStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( getStaticResourceCache().getStatistics() ).build();
+  }
+
+  /**
+   * Returns the statistics of the cache sharing the results of non-live SQL and MDX queries between sessions.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/system/cache/query-results
+   * </p>
+   *
+   * @return the hit, miss, coalesced, error and invalidation counts and the average and longest query time
+   */
+  @GET
+  @Path( "/query-results" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Returns the statistics of the query result cache." ),
+      @ResponseCode( code = 401, condition = "The user is not an administrator." )
+  } )
+  public Response getQueryResultStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( getQueryResultCache().getStatistics() ).build();
+  }
+
+  protected ICacheManager getCacheManager() {
+    return PentahoSystem.getCacheManager( null );
+  }
+
+  protected StaticResourceCache getStaticResourceCache() {
+    return StaticResourceCache.getInstance();
+  }
+
+  protected QueryResultCache getQueryResultCache() {
+    return QueryResultCache.getInstance();
+  }
+
+  protected boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+}
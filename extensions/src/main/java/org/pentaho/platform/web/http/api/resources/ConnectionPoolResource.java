@@ -0,0 +1,112 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.codehaus.enunciate.Facet;
+import org.codehaus.enunciate.jaxrs.ResponseCode;
+import org.codehaus.enunciate.jaxrs.StatusCodes;
+import org.pentaho.platform.api.data.ConnectionPoolStatistics;
+import org.pentaho.platform.engine.services.connection.datasource.dbcp.ConnectionPoolMetrics;
+import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+
+/**
+ * Reports the usage of the JDBC connection pools of pooled datasources, so that pools can be sized from the number of
+ * connections in use and the time spent waiting for them. The same values are published over JMX. Only
+ * administrators may call this service.
+ */
+@Path( "/system/connection-pools" )
+@Facet( name = "Unsupported" )
+public class ConnectionPoolResource extends AbstractJaxRSResource {
+
+  /**
+   * Returns the statistics of every connection pool.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/system/connection-pools
+   * </p>
+   *
+   * @return the active, idle and awaiting connection counts, borrow and timeout counts and wait times of each pool
+   */
+  @GET
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Returns the statistics of all connection pools." ),
+      @ResponseCode( code = 401, condition = "The user is not an administrator." )
+  } )
+  public Response getPoolStatistics() {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    return Response.ok( new ConnectionPoolStatisticsList( getAllPoolStatistics() ) ).build();
+  }
+
+  /**
+   * Returns the statistics of the connection pool of a single datasource.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/system/connection-pools/SampleData
+   * </p>
+   *
+   * @param name the name of the datasource
+   * @return the statistics of the pool
+   */
+  @GET
+  @Path( "/{name}" )
+  @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+  @StatusCodes( {
+      @ResponseCode( code = 200, condition = "Returns the statistics of the connection pool." ),
+      @ResponseCode( code = 401, condition = "The user is not an administrator." ),
+      @ResponseCode( code = 404, condition = "The datasource has no connection pool." )
+  } )
+  public Response getPoolStatistics( @PathParam( "name" ) String name ) {
+    if ( !canAdminister() ) {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+    ConnectionPoolMetrics metrics = getPoolMetrics( name );
+    if ( metrics == null ) {
+      return Response.status( NOT_FOUND ).build();
+    }
+    return Response.ok( metrics.getStatistics() ).build();
+  }
+
+  protected List<ConnectionPoolStatistics> getAllPoolStatistics() {
+    return ConnectionPoolMetrics.getAllStatistics();
+  }
+
+  protected ConnectionPoolMetrics getPoolMetrics( String name ) {
+    return ConnectionPoolMetrics.get( name );
+  }
+
+  protected boolean canAdminister() {
+    return SystemUtils.canAdminister();
+  }
+}
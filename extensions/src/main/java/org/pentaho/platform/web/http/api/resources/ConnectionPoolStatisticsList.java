@@ -0,0 +1,50 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.pentaho.platform.api.data.ConnectionPoolStatistics;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.List;
+
+@XmlRootElement( name = "connectionPools" )
+public class ConnectionPoolStatisticsList {
+  List<ConnectionPoolStatistics> pools = new ArrayList<ConnectionPoolStatistics>();
+
+  public ConnectionPoolStatisticsList() {
+  }
+
+  public ConnectionPoolStatisticsList( List<ConnectionPoolStatistics> pools ) {
+    this.pools.addAll( pools );
+  }
+
+  public List<ConnectionPoolStatistics> getPools() {
+    return pools;
+  }
+
+  public void setPools( List<ConnectionPoolStatistics> pools ) {
+    if ( pools != this.pools ) {
+      this.pools.clear();
+      this.pools.addAll( pools );
+    }
+  }
+}
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -83,6 +83,8 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -1768,6 +1770,167 @@ public class FileResource extends AbstractJaxRSResource {
     return fileService.doGetChildren( pathId, filter, showHidden, includeAcls );
   }
 
+  /**
+   * Retrieve the recursive list of children of the selected repository folder, written while the repository is walked
+   * rather than after the whole tree has been read. Use it instead of {@code tree} for large repositories.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/:public/treeStream?depth=-1&showHidden=false&offset=0&limit=100
+   * </p>
+   *
+   * @param pathId      The path from the root folder to the root node of the tree to return using colon characters in place of /
+   *                    or \ characters. To clarify /path/to/file, the encoded pathId would be :path:to:file.
+   * @param depth       How many level should the search go.
+   * @param filter      Filter to be applied for search, as for {@code tree}. Folders of a tree filtered by file name are only
+   *                    returned when a matching file is found below them, so such a tree is read before it is written.
+   * @param showHidden  Include or exclude hidden files from the file list.
+   * @param includeAcls Include permission information about the file in the output.
+   * @param offset      How many children of the selected folder to skip, for paging through large folders.
+   * @param limit       How many children of the selected folder to return at most, all of them if not given.
+   *
+   * @return The same tree as {@code tree}, in XML or in JSON. In JSON a tree is an object with a "file" and an array of
+   * "children" trees.
+   */
+  @GET
+  @Path ( "{pathId : .+}/treeStream" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the tree of the selected repository folder." ),
+    @ResponseCode ( code = 404, condition = "The folder does not exist." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public Response doGetTreeStream( @PathParam ( "pathId" ) String pathId, @QueryParam ( "depth" ) Integer depth,
+                                   @QueryParam ( "filter" ) String filter,
+                                   @QueryParam ( "showHidden" ) Boolean showHidden,
+                                   @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls,
+                                   @DefaultValue ( "false" ) @QueryParam ( "includeSysDirs" )
+                                     Boolean includeSystemFolders,
+                                   @QueryParam ( "offset" ) Integer offset, @QueryParam ( "limit" ) Integer limit ) {
+    boolean json = isJsonRequested();
+    StreamingOutput output = fileService.doGetTreeStream( pathId, depth, filter, showHidden, includeAcls,
+        includeSystemFolders, offset, limit, json );
+    return buildStreamingResponse( output, json );
+  }
+
+  /**
+   * Retrieve the children of the selected repository folder, written while they are read from the repository. Use it
+   * instead of {@code children} for large folders.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/:public/childrenStream?offset=100&limit=100
+   * </p>
+   *
+   * @param pathId      The path from the root folder to the folder using colon characters in place of / or \ characters.
+   * @param filter      Filter to be applied for search, as for {@code children}.
+   * @param showHidden  Include or exclude hidden files from the file list.
+   * @param includeAcls Include permission information about the file in the output.
+   * @param offset      How many children to skip, for paging through large folders.
+   * @param limit       How many children to return at most, all of them if not given.
+   *
+   * @return The same list as {@code children}, in XML or in JSON.
+   */
+  @GET
+  @Path ( "{pathId : .+}/childrenStream" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the children of the selected repository folder." ),
+    @ResponseCode ( code = 404, condition = "The folder does not exist." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public Response doGetChildrenStream( @PathParam ( "pathId" ) String pathId, @QueryParam ( "filter" ) String filter,
+                                       @QueryParam ( "showHidden" ) Boolean showHidden,
+                                       @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls,
+                                       @QueryParam ( "offset" ) Integer offset,
+                                       @QueryParam ( "limit" ) Integer limit ) {
+    boolean json = isJsonRequested();
+    StreamingOutput output =
+        fileService.doGetChildrenStream( pathId, filter, showHidden, includeAcls, offset, limit, json );
+    return buildStreamingResponse( output, json );
+  }
+
+  /**
+   * Retrieve one level of the tree below the selected repository folder: the folder and its children, without the
+   * children of those. The response carries an ETag, so that a client loading a folder tree one folder at a time can
+   * revalidate the levels it has cached instead of downloading them again.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/repo/files/:public/treeLevel?showHidden=false
+   * </p>
+   *
+   * @param pathId               The path from the root folder to the folder using colon characters in place of / or \
+   *                             characters. To clarify /path/to/file, the encoded pathId would be :path:to:file.
+   * @param filter               Filter to be applied for search, as for {@code tree}.
+   * @param showHidden           Include or exclude hidden files from the file list.
+   * @param includeSystemFolders Include system folders in the file list.
+   *
+   * @return The same tree as {@code tree} with a depth of 1, or no content if the If-None-Match header of the request
+   * holds its ETag.
+   */
+  @GET
+  @Path ( "{pathId : .+}/treeLevel" )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully retrieved the children of the selected repository folder." ),
+    @ResponseCode ( code = 304, condition = "The children did not change since they were last retrieved." ),
+    @ResponseCode ( code = 404, condition = "The folder does not exist." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public Response doGetTreeLevel( @PathParam ( "pathId" ) String pathId, @QueryParam ( "filter" ) String filter,
+                                  @QueryParam ( "showHidden" ) Boolean showHidden,
+                                  @DefaultValue ( "false" ) @QueryParam ( "includeSysDirs" )
+                                    Boolean includeSystemFolders ) {
+    RepositoryFileTreeDto tree = fileService.doGetTreeLevel( pathId, filter, showHidden, includeSystemFolders );
+    if ( tree == null ) {
+      return buildStatusResponse( Response.Status.NOT_FOUND );
+    }
+
+    EntityTag eTag = new EntityTag( fileService.getTreeLevelETag( tree ) );
+    // the level may be stored by the browser, but has to be revalidated each time it is used
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setPrivate( true );
+    cacheControl.setNoCache( true );
+    Response.ResponseBuilder response =
+      isNotModified( eTag ) ? Response.notModified( eTag ) : Response.ok( tree ).tag( eTag );
+    // the ETag is that of the level, not of its XML or JSON representation, so caches have to tell these apart
+    return response.cacheControl( cacheControl ).header( "Vary", "Accept" ).build(); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * Tell which levels of a folder tree changed since a client retrieved them with {@code treeLevel}, so that an open
+   * tree can be refreshed by reloading only those folders.
+   *
+   * <p><b>Example Request:</b><br />
+   *    POST pentaho/api/repo/files/treeChanges?showHidden=false
+   * </p>
+   * <br /><b>POST data:</b>
+   *  <pre function="syntax.xml">
+   *    &lt;settings&gt;
+   *    &lt;setting&gt;
+   *    &lt;name&gt;/public&lt;/name&gt;
+   *    &lt;value&gt;&quot;3f2a9c0d5e7b41a6c8d9e0f1a2b3c4d5&quot;&lt;/value&gt;
+   *    &lt;/setting&gt;
+   *    &lt;/settings&gt;
+   *  </pre>
+   *
+   * @param levels               The path of each folder, with the ETag of its level.
+   * @param filter               Filter the levels were retrieved with.
+   * @param showHidden           Whether the levels were retrieved with hidden files.
+   * @param includeSystemFolders Whether the levels were retrieved with system folders.
+   *
+   * @return The folders whose level changed, with the current ETag of the level. The ETag is empty if the folder no
+   * longer exists.
+   */
+  @POST
+  @Path ( "/treeChanges" )
+  @Consumes ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @Produces ( { MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON } )
+  @StatusCodes ( {
+    @ResponseCode ( code = 200, condition = "Successfully compared the levels of the tree." ),
+    @ResponseCode ( code = 500, condition = "Server Error." ) } )
+  public List<Setting> doGetTreeChanges( List<Setting> levels, @QueryParam ( "filter" ) String filter,
+                                         @QueryParam ( "showHidden" ) Boolean showHidden,
+                                         @DefaultValue ( "false" ) @QueryParam ( "includeSysDirs" )
+                                           Boolean includeSystemFolders ) {
+    return fileService.doGetTreeLevelChanges( levels, filter, showHidden, includeSystemFolders );
+  }
+
   /**
    * Retrieve the list of files in the user's trash folder.
    *
@@ -2257,6 +2420,54 @@ public class FileResource extends AbstractJaxRSResource {
     return new FileInputStream( file );
   }
 
+  protected Response buildStreamingResponse( StreamingOutput output, boolean json ) {
+    if ( output == null ) {
+      return buildStatusResponse( Response.Status.NOT_FOUND );
+    }
+    return Response.ok( output, json ? MediaType.APPLICATION_JSON_TYPE : MediaType.APPLICATION_XML_TYPE ).build();
+  }
+
+  /**
+   * Tells whether the If-None-Match header of the request holds the given entity tag.
+   */
+  protected boolean isNotModified( EntityTag eTag ) {
+    String ifNoneMatch = httpServletRequest != null ? httpServletRequest.getHeader( "If-None-Match" ) : null;
+    if ( ifNoneMatch == null ) {
+      return false;
+    }
+    for ( String tag : ifNoneMatch.split( "," ) ) {
+      tag = tag.trim();
+      // the comparison is weak, gzip filters may mark the tag weak
+      if ( tag.startsWith( "W/" ) ) {
+        tag = tag.substring( 2 );
+      }
+      if ( "*".equals( tag ) || tag.equals( '"' + eTag.getValue() + '"' ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tells whether JSON is preferred over XML by the Accept header, for responses which are not written by JAX-RS.
+   */
+  protected boolean isJsonRequested() {
+    if ( acceptableMediaTypes != null ) {
+      for ( MediaType mediaType : acceptableMediaTypes ) {
+        if ( mediaType.isWildcardType() || mediaType.isWildcardSubtype() ) {
+          return false;
+        }
+        if ( mediaType.isCompatible( MediaType.APPLICATION_JSON_TYPE ) ) {
+          return true;
+        }
+        if ( mediaType.isCompatible( MediaType.APPLICATION_XML_TYPE ) ) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
   protected StreamingOutput getStreamingOutput( final InputStream is ) {
     return new StreamingOutput() {
       public void write( OutputStream output ) throws IOException {
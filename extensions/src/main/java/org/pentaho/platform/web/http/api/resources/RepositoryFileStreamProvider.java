@@ -31,6 +31,7 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileInputStream;
 import org.pentaho.platform.repository2.unified.fileio.RepositoryFileOutputStream;
+import org.pentaho.platform.repository2.unified.fileio.SpillingRepositoryFileOutputStream;
 import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
 import org.pentaho.platform.util.web.MimeHelper;
 
@@ -123,7 +124,7 @@ public class RepositoryFileStreamProvider implements IBackgroundExecutionStreamP
     }
 
     RepositoryFileOutputStream outputStream =
-        new RepositoryFileOutputStream( tempOutputFilePath, autoCreateUniqueFilename, true );
+        new SpillingRepositoryFileOutputStream( tempOutputFilePath, autoCreateUniqueFilename, true );
     outputStream.addListener( this );
     return outputStream;
   }
@@ -53,6 +53,7 @@ import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.web.http.api.resources.proxies.BlockStatusProxy;
@@ -531,6 +532,81 @@ public class SchedulerResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Retrieve one page of the scheduled job(s) visible to the current user. Jobs can be narrowed down by owner, name and
+   * state, and sorted by any of JOB_NAME, USER_NAME, STATE, NEXT_RUN or LAST_RUN.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/scheduler/getJobsPage?offset=0&amp;limit=50&amp;sortBy=NEXT_RUN&amp;state=NORMAL&amp;state=PAUSED
+   * </p>
+   *
+   * @param offset Number of matching jobs to skip.
+   * @param limit Maximum number of jobs to return, a negative value returns all remaining jobs.
+   * @param sortBy Field to sort the jobs by, unsorted if omitted.
+   * @param ascending Whether to sort in ascending order.
+   * @param userName Only return jobs owned by this user. Ignored for users who cannot administer the scheduler.
+   * @param jobName Only return jobs with this name.
+   * @param states Only return jobs in one of these states.
+   *
+   * @return A page of jobs along with the total number of jobs matching the request.
+   *
+   * <p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *  &lt;jobPage&gt;
+   *  &lt;jobs&gt;
+   *  &lt;jobId&gt;admin  PentahoSystemVersionCheck 1408369303507&lt;/jobId&gt;
+   *  &lt;jobName&gt;PentahoSystemVersionCheck&lt;/jobName&gt;
+   *  ...
+   *  &lt;/jobs&gt;
+   *  &lt;limit&gt;50&lt;/limit&gt;
+   *  &lt;offset&gt;0&lt;/offset&gt;
+   *  &lt;totalCount&gt;1&lt;/totalCount&gt;
+   *  &lt;/jobPage&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "/getJobsPage" )
+  @Produces ( { APPLICATION_JSON, APPLICATION_XML } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Jobs retrieved successfully." ),
+      @ResponseCode ( code = 400, condition = "Unknown sort field or job state." ),
+      @ResponseCode ( code = 500, condition = "Error while retrieving jobs." ),
+    } )
+  public Response getJobsPage( @DefaultValue ( "0" ) @QueryParam ( "offset" ) int offset,
+                               @DefaultValue ( "-1" ) @QueryParam ( "limit" ) int limit,
+                               @QueryParam ( "sortBy" ) String sortBy,
+                               @DefaultValue ( "true" ) @QueryParam ( "ascending" ) boolean ascending,
+                               @QueryParam ( "userName" ) String userName,
+                               @QueryParam ( "jobName" ) String jobName,
+                               @QueryParam ( "state" ) List<String> states ) {
+    JobQuery query = new JobQuery();
+    query.setOffset( offset );
+    query.setLimit( limit );
+    query.setAscending( ascending );
+    query.setUserName( userName );
+    query.setJobName( jobName );
+    try {
+      if ( sortBy != null ) {
+        query.setSortField( JobQuery.SortField.valueOf( sortBy.toUpperCase() ) );
+      }
+      if ( states != null ) {
+        List<JobState> jobStates = new ArrayList<JobState>();
+        for ( String state : states ) {
+          jobStates.add( JobState.valueOf( state.toUpperCase() ) );
+        }
+        query.setStates( jobStates );
+      }
+    } catch ( IllegalArgumentException e ) {
+      return buildStatusResponse( Status.BAD_REQUEST );
+    }
+
+    try {
+      return buildOkResponse( schedulerService.getJobs( query ) );
+    } catch ( SchedulerException e ) {
+      throw new RuntimeException( e );
+    }
+  }
+
   /**
    * Checks whether the current user may schedule a repository file in the platform.
    *
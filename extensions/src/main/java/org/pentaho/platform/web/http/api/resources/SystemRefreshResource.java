@@ -27,6 +27,7 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.mondrian.catalog.IMondrianCatalogService;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
 import org.pentaho.platform.web.http.api.resources.utils.SystemUtils;
 
 import javax.ws.rs.GET;
@@ -136,6 +137,30 @@ public class SystemRefreshResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Drops the shared results of non-live SQL and MDX queries, so that they are read from their datasource again.
+   *
+   * @param datasource the JNDI name, url or mondrian catalog of the datasource whose results to drop; all results are
+   *                   dropped if it is not given
+   */
+  @GET
+  @Path( "/queryResultCache" )
+  @Produces( { MediaType.TEXT_PLAIN, MediaType.APPLICATION_JSON } )
+  @Facet ( name = "Unsupported" )
+  public Response flushQueryResultCache( @QueryParam( "datasource" ) String datasource ) {
+    if ( canAdminister() ) {
+      QueryResultCache queryResultCache = QueryResultCache.getInstance();
+      if ( datasource == null ) {
+        queryResultCache.invalidate();
+      } else {
+        queryResultCache.invalidate( datasource );
+      }
+      return Response.ok().type( MediaType.TEXT_PLAIN ).build();
+    } else {
+      return Response.status( UNAUTHORIZED ).build();
+    }
+  }
+
   /**
    * @deprecated use org.pentaho.reporting.platform.plugin.CacheManagerEndpoint instead
    */
@@ -0,0 +1,134 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The state the user console needs to start: the permissions of the current user, the repository reserved
+ * characters, the user console settings, the user settings, the themes and the plugin perspectives.
+ */
+@XmlRootElement
+public class UserConsoleBootstrap implements Serializable {
+
+  private static final long serialVersionUID = -2391829741305928614L;
+
+  private boolean administrator;
+  private boolean canCreate;
+  private boolean canSchedule;
+  private String reservedCharacters;
+  private String activeTheme;
+  private List<Setting> mantleSettings = new ArrayList<Setting>();
+  private List<Setting> userSettings = new ArrayList<Setting>();
+  private List<Theme> themes = new ArrayList<Theme>();
+  private List<PluginPerspective> perspectives = new ArrayList<PluginPerspective>();
+
+  public UserConsoleBootstrap() {
+  }
+
+  public UserConsoleBootstrap( UserConsoleBootstrap bootstrap ) {
+    this.administrator = bootstrap.administrator;
+    this.canCreate = bootstrap.canCreate;
+    this.canSchedule = bootstrap.canSchedule;
+    this.reservedCharacters = bootstrap.reservedCharacters;
+    this.activeTheme = bootstrap.activeTheme;
+    this.mantleSettings = bootstrap.mantleSettings;
+    this.userSettings = bootstrap.userSettings;
+    this.themes = bootstrap.themes;
+    this.perspectives = bootstrap.perspectives;
+  }
+
+  public boolean isAdministrator() {
+    return administrator;
+  }
+
+  public void setAdministrator( boolean administrator ) {
+    this.administrator = administrator;
+  }
+
+  public boolean isCanCreate() {
+    return canCreate;
+  }
+
+  public void setCanCreate( boolean canCreate ) {
+    this.canCreate = canCreate;
+  }
+
+  public boolean isCanSchedule() {
+    return canSchedule;
+  }
+
+  public void setCanSchedule( boolean canSchedule ) {
+    this.canSchedule = canSchedule;
+  }
+
+  public String getReservedCharacters() {
+    return reservedCharacters;
+  }
+
+  public void setReservedCharacters( String reservedCharacters ) {
+    this.reservedCharacters = reservedCharacters;
+  }
+
+  public String getActiveTheme() {
+    return activeTheme;
+  }
+
+  public void setActiveTheme( String activeTheme ) {
+    this.activeTheme = activeTheme;
+  }
+
+  public List<Setting> getMantleSettings() {
+    return mantleSettings;
+  }
+
+  public void setMantleSettings( List<Setting> mantleSettings ) {
+    this.mantleSettings = mantleSettings;
+  }
+
+  public List<Setting> getUserSettings() {
+    return userSettings;
+  }
+
+  public void setUserSettings( List<Setting> userSettings ) {
+    this.userSettings = userSettings;
+  }
+
+  public List<Theme> getThemes() {
+    return themes;
+  }
+
+  public void setThemes( List<Theme> themes ) {
+    this.themes = themes;
+  }
+
+  public List<PluginPerspective> getPerspectives() {
+    return perspectives;
+  }
+
+  public void setPerspectives( List<PluginPerspective> perspectives ) {
+    this.perspectives = perspectives;
+  }
+
+}
@@ -14,12 +14,14 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.web.http.api.resources;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.codehaus.enunciate.Facet;
@@ -55,6 +57,7 @@ import java.util.StringTokenizer;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_XML;
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 
 /**
  * The UserConsoleResource service provides the ability to check whether the current user is authenticated and/or is an administrator.
@@ -63,6 +66,9 @@ import static javax.ws.rs.core.Response.Status.FORBIDDEN;
 public class UserConsoleResource extends AbstractJaxRSResource {
 
   private static final Log logger = LogFactory.getLog( UserConsoleResource.class );
+  private static final String BOOTSTRAP_ATTRIBUTE = "user-console-bootstrap"; //$NON-NLS-1$
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().setSerializationInclusion( JsonInclude.Include.NON_NULL );
   protected static UserConsoleService userConsoleService;
   private static ISystemConfig systemConfig;
   private static List<String> setSessionVarWhiteList;
@@ -144,6 +150,83 @@ public class UserConsoleResource extends AbstractJaxRSResource {
     return buildOkResponse( String.valueOf( userConsoleService.isAuthenticated() ) );
   }
 
+  /**
+   * Returns everything the user console needs to start in a single response: whether the current user is an
+   * administrator, can create content and can schedule, the repository reserved characters, the user console
+   * settings, the user settings, the available and active themes and the plugin perspectives.
+   *
+   * <p>The permissions, reserved characters, settings, themes and perspectives are computed once per session and
+   * kept in it. The user settings and the active theme can be changed by the user and are read on every request.</p>
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/mantle/bootstrap
+   * </p>
+   *
+   * @return the start-up state of the user console.
+   *
+   * <p><b>Example Response:</b></p>
+   *  <pre function="syntax.json">
+   *    {"administrator":true,"canCreate":true,"canSchedule":true,"reservedCharacters":"/\\","activeTheme":"ruby",
+   *     "mantleSettings":[{"name":"num-startup-urls","value":"0"}],"userSettings":[],
+   *     "themes":[{"id":"ruby","name":"Ruby"}],"perspectives":[{"id":"default.perspective","title":"Browse"}]}
+   *  </pre>
+   */
+  @GET
+  @Path ( "/bootstrap" )
+  @Produces ( { APPLICATION_JSON } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Returns the start-up state of the user console" ),
+      @ResponseCode ( code = 500, condition = "The start-up state could not be written" )
+  } )
+  @Facet ( name = "Unsupported" )
+  public Response getBootstrap() {
+    UserConsoleBootstrap bootstrap = new UserConsoleBootstrap( getSessionBootstrap() );
+    bootstrap.setUserSettings( getCurrentUserSettings() );
+    bootstrap.setActiveTheme( getCurrentTheme() );
+    try {
+      return buildOkResponse( MAPPER.writeValueAsString( bootstrap ) );
+    } catch ( IOException e ) {
+      logger.error( e.getMessage(), e );
+      return Response.status( INTERNAL_SERVER_ERROR ).build();
+    }
+  }
+
+  /**
+   * Returns the start-up state that does not change during the session, computing it on the first call.
+   *
+   * @return the start-up state kept in the session
+   */
+  protected UserConsoleBootstrap getSessionBootstrap() {
+    IPentahoSession session = UserConsoleService.getPentahoSession();
+    UserConsoleBootstrap bootstrap = (UserConsoleBootstrap) session.getAttribute( BOOTSTRAP_ATTRIBUTE );
+    if ( bootstrap == null ) {
+      bootstrap = createSessionBootstrap();
+      session.setAttribute( BOOTSTRAP_ATTRIBUTE, bootstrap );
+    }
+    return bootstrap;
+  }
+
+  protected UserConsoleBootstrap createSessionBootstrap() {
+    UserConsoleBootstrap bootstrap = new UserConsoleBootstrap();
+    bootstrap.setAdministrator( userConsoleService.isAdministrator() );
+    bootstrap.setCanCreate( userConsoleService.canCreate() );
+    bootstrap.setCanSchedule( userConsoleService.canSchedule() );
+    bootstrap.setReservedCharacters( userConsoleService.getReservedCharacters() );
+    bootstrap.setMantleSettings( getMantleSettings() );
+    bootstrap.setThemes( new ThemeResource().getSystemThemes() );
+    bootstrap.setPerspectives( new PluginManagerResource().getPluginPerpectives() );
+    return bootstrap;
+  }
+
+  protected List<Setting> getCurrentUserSettings() {
+    List<Setting> userSettings = new UserSettingsResource().getUserSettings();
+    return userSettings != null ? userSettings : new ArrayList<Setting>();
+  }
+
+  protected String getCurrentTheme() {
+    return (String) new ThemeResource().getActiveTheme().getEntity();
+  }
+
   /**
    * Returns the list of admin related settings
    *
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -31,6 +31,7 @@ import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.channels.IllegalSelectorException;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
@@ -51,6 +52,7 @@ import java.util.StringTokenizer;
 
 import javax.ws.rs.core.StreamingOutput;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.BooleanUtils;
@@ -62,6 +64,7 @@ import org.apache.log4j.Level;
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.PentahoAccessControlException;
+import org.pentaho.platform.api.repository2.unified.IGeneratedContentIndex;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
@@ -128,6 +131,8 @@ public class FileService {
 
   protected IUnifiedRepository repository;
 
+  protected IGeneratedContentIndex generatedContentIndex;
+
   protected RepositoryDownloadWhitelist whitelist;
 
   protected SessionResource sessionResource;
@@ -1390,6 +1395,130 @@ public class FileService {
     } );
   }
 
+  /**
+   * Retrieve the tree below the selected repository folder as output that is written while the repository is walked,
+   * see {@link RepositoryFileTreeStreamingOutput}
+   *
+   * @param offset how many children of the folder to skip, null for none
+   * @param limit  how many children of the folder to return at most, null for all
+   * @param json   whether to write JSON rather than XML
+   * @return the output, or null if the folder does not exist
+   */
+  public RepositoryFileTreeStreamingOutput doGetTreeStream( String pathId, Integer depth, String filter,
+                                                            Boolean showHidden, Boolean includeAcls,
+                                                            Boolean includeSystemFolders, Integer offset,
+                                                            Integer limit, boolean json ) {
+    String path = FileUtils.idToPath( pathId );
+    if ( getRepository().getFile( path ) == null ) {
+      return null;
+    }
+
+    RepositoryRequest repositoryRequest = getRepositoryRequest( path, showHidden, depth, filter );
+    repositoryRequest.setIncludeAcls( includeAcls );
+    // system folders are never returned to non admin users, as in DefaultUnifiedRepositoryWebService
+    repositoryRequest.setIncludeSystemFolders( includeSystemFolders
+        && getPolicy().isAllowed( AdministerSecurityAction.NAME ) );
+
+    return getTreeStreamingOutput( repositoryRequest, false, offset, limit, json );
+  }
+
+  /**
+   * Retrieve one level of the tree below the selected repository folder: the folder and its children, but not the
+   * children of those. Used to load a folder tree one folder at a time, see {@link #getTreeLevelETag}
+   *
+   * @return the level, or null if the folder does not exist
+   */
+  public RepositoryFileTreeDto doGetTreeLevel( String pathId, String filter, Boolean showHidden,
+                                               Boolean includeSystemFolders ) {
+    return getTreeLevel( FileUtils.idToPath( pathId ), filter, showHidden, includeSystemFolders );
+  }
+
+  /**
+   * Compare the validators a client holds for the levels of a folder tree with the current ones, so that an open tree
+   * can be refreshed by reloading only the folders which changed.
+   *
+   * @param levels the name of each setting is the path of a folder, the value the ETag the client got for its level
+   * @return the folders whose level changed, with its current ETag, or an empty value if the folder no longer exists
+   */
+  public List<Setting> doGetTreeLevelChanges( List<Setting> levels, String filter, Boolean showHidden,
+                                              Boolean includeSystemFolders ) {
+    List<Setting> changes = new ArrayList<Setting>();
+    if ( levels == null ) {
+      return changes;
+    }
+    for ( Setting level : levels ) {
+      String path = level.getName();
+      if ( StringUtils.isEmpty( path ) ) {
+        continue;
+      }
+      RepositoryFileTreeDto tree = getTreeLevel( path, filter, showHidden, includeSystemFolders );
+      String eTag = tree != null ? getTreeLevelETag( tree ) : "";
+      if ( !eTag.equals( unquoteETag( level.getValue() ) ) ) {
+        changes.add( new Setting( path, eTag ) );
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Computes the validator of a tree level. It changes when the folder or any of its children is added, removed,
+   * renamed, modified or hidden, and it does not depend on the children of the children.
+   */
+  public String getTreeLevelETag( RepositoryFileTreeDto tree ) {
+    StringBuilder signature = new StringBuilder();
+    appendTreeLevelSignature( signature, tree.getFile() );
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTreeDto child : tree.getChildren() ) {
+        appendTreeLevelSignature( signature, child.getFile() );
+      }
+    }
+    return DigestUtils.md5Hex( signature.toString().getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  protected RepositoryFileTreeDto getTreeLevel( String path, String filter, Boolean showHidden,
+                                                Boolean includeSystemFolders ) {
+    RepositoryFile folder = getRepository().getFile( path );
+    if ( folder == null || !folder.isFolder() ) {
+      return null;
+    }
+
+    RepositoryRequest repositoryRequest = getRepositoryRequest( path, showHidden, 1, filter );
+    repositoryRequest.setIncludeSystemFolders( includeSystemFolders );
+    RepositoryFileTreeDto tree = getRepoWs().getTreeFromRequest( repositoryRequest );
+
+    // BISERVER-9599 - Use special sort order
+    if ( tree != null && isShowingTitle( repositoryRequest ) ) {
+      sortByLocaleTitle( getCollator( Collator.PRIMARY ), tree );
+    }
+    return tree;
+  }
+
+  private void appendTreeLevelSignature( StringBuilder signature, RepositoryFileDto file ) {
+    if ( file == null ) {
+      return;
+    }
+    // only the members shown in a folder tree, some others such as the locale map have no stable string form
+    signature.append( file.getId() ).append( '\n' ).append( file.getPath() ).append( '\n' )
+      .append( file.getTitle() ).append( '\n' ).append( file.getDescription() ).append( '\n' )
+      .append( file.isFolder() ).append( file.isHidden() ).append( file.isLocked() ).append( file.isNotSchedulable() )
+      .append( '\n' ).append( file.getFileSize() ).append( '\n' ).append( file.getLastModifiedDate() ).append( '\n' )
+      .append( file.getVersionId() ).append( '\n' ).append( file.getLocale() ).append( '\n' );
+  }
+
+  private static String unquoteETag( String eTag ) {
+    if ( eTag == null ) {
+      return "";
+    }
+    eTag = eTag.trim();
+    if ( eTag.startsWith( "W/" ) ) {
+      eTag = eTag.substring( 2 );
+    }
+    if ( eTag.length() > 1 && eTag.startsWith( "\"" ) && eTag.endsWith( "\"" ) ) {
+      eTag = eTag.substring( 1, eTag.length() - 1 );
+    }
+    return eTag;
+  }
+
   /**
    * Retrieve the executed contents for a selected repository file
    *
@@ -1450,7 +1579,12 @@ public class FileService {
     List<RepositoryFileDto> content = new ArrayList<RepositoryFileDto>();
 
     RepositoryFile workspaceFolder = getRepository().getFile( userDir );
-    if ( workspaceFolder != null ) {
+    if ( workspaceFolder != null && getGeneratedContentIndex() != null ) {
+      for ( RepositoryFile file : getGeneratedContentIndex().getGeneratedContent( workspaceFolder.getPath(),
+          metadataConstant, targetComparator ) ) {
+        content.add( toFileDto( file, null, false ) );
+      }
+    } else if ( workspaceFolder != null ) {
       List<RepositoryFile> children = getRepository().getChildren( workspaceFolder.getId() );
       for ( RepositoryFile child : children ) {
         if ( !child.isFolder() ) {
@@ -1664,6 +1798,16 @@ public class FileService {
     return repository;
   }
 
+  /**
+   * @return the index to look up generated content with, or null to read the metadata of every file instead
+   */
+  public IGeneratedContentIndex getGeneratedContentIndex() {
+    if ( generatedContentIndex == null ) {
+      generatedContentIndex = PentahoSystem.get( IGeneratedContentIndex.class );
+    }
+    return generatedContentIndex;
+  }
+
   public String idToPath( String pathId ) {
     return FileUtils.idToPath( pathId );
   }
@@ -1754,6 +1898,38 @@ public class FileService {
     return repositoryFileDtoList;
   }
 
+  /**
+   * Retrieve the children of the selected repository folder as output that is written while the repository is read,
+   * see {@link RepositoryFileTreeStreamingOutput}
+   *
+   * @param offset how many children to skip, null for none
+   * @param limit  how many children to return at most, null for all
+   * @param json   whether to write JSON rather than XML
+   * @return the output, or null if the folder does not exist
+   */
+  public RepositoryFileTreeStreamingOutput doGetChildrenStream( String pathId, String filter, Boolean showHidden,
+                                                                Boolean includeAcls, Integer offset, Integer limit,
+                                                                boolean json ) {
+    RepositoryFileDto repositoryFileDto = getRepoWs().getFile( FileUtils.idToPath( pathId ) );
+    if ( repositoryFileDto == null || !isPathValid( repositoryFileDto.getPath() ) ) {
+      return null;
+    }
+
+    RepositoryRequest repositoryRequest = getRepositoryRequest( repositoryFileDto, showHidden, filter, includeAcls );
+    return getTreeStreamingOutput( repositoryRequest, true, offset, limit, json );
+  }
+
+  protected RepositoryFileTreeStreamingOutput getTreeStreamingOutput( RepositoryRequest repositoryRequest,
+                                                                      boolean childrenOnly, Integer offset,
+                                                                      Integer limit, boolean json ) {
+    // BISERVER-9599 - Use special sort order
+    Collator collator = isShowingTitle( repositoryRequest ) ? getCollator( Collator.PRIMARY ) : null;
+    RepositoryFileTreeStreamingOutput output =
+        new RepositoryFileTreeStreamingOutput( getRepository(), repositoryRequest, collator, childrenOnly, json );
+    output.setPage( offset, limit );
+    return output;
+  }
+
   public boolean isShowingTitle( RepositoryRequest repositoryRequest ) {
     if ( repositoryRequest.getExcludeMemberSet() != null && !repositoryRequest.getExcludeMemberSet().isEmpty() ) {
       if ( repositoryRequest.getExcludeMemberSet().contains( "title" ) ) {
@@ -0,0 +1,402 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAdapter;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes a repository tree, or the children of a folder, to the response while walking the repository, instead of
+ * building the whole tree and its DTOs first. The repository is asked for one folder level at a time, so what is held
+ * in memory is bounded by the size of the folders along the path currently being written. Each level is sorted on its
+ * own and the children of the requested folder can be paged with an offset and a limit.
+ * <p>
+ * A folder is only part of a tree filtered by name when a matching file is found below it, which cannot be known
+ * before its subtree has been read. Such trees are therefore read from the repository at once, and only written
+ * incrementally.
+ * <p>
+ * The XML written is the same as the JAXB serialization of a {@code RepositoryFileTreeDto}, or of a list of
+ * {@code RepositoryFileDto}s. The JSON has the same structure: a tree is an object with a {@code file} and a
+ * {@code children} array of trees, and a list of children is an array of files.
+ */
+public class RepositoryFileTreeStreamingOutput implements StreamingOutput {
+
+  private static final String TREE_ELEMENT = "repositoryFileTreeDto"; //$NON-NLS-1$
+  private static final String FILE_ELEMENT = "file"; //$NON-NLS-1$
+  private static final String CHILDREN_ELEMENT = "children"; //$NON-NLS-1$
+  private static final String FILE_LIST_ELEMENT = "repositoryFileDtoes"; //$NON-NLS-1$
+  private static final String FILE_LIST_ITEM_ELEMENT = "repositoryFileDto"; //$NON-NLS-1$
+
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().setSerializationInclusion( JsonInclude.Include.NON_NULL );
+
+  private static JAXBContext jaxbContext;
+
+  private final IUnifiedRepository repository;
+  private final RepositoryRequest repositoryRequest;
+  private final RepositoryFileAdapter fileAdapter;
+  private final Comparator<RepositoryFileTree> comparator;
+  private final boolean childrenOnly;
+  private final boolean json;
+  private int offset;
+  private int limit = -1;
+
+  /**
+   * @param repository        the repository to read
+   * @param repositoryRequest the folder, depth and filters of the tree
+   * @param collator          the collator to sort each level by title, or null to keep the order of the repository
+   * @param childrenOnly      whether to write the list of children of the folder rather than its tree
+   * @param json              whether to write JSON rather than XML
+   */
+  public RepositoryFileTreeStreamingOutput( final IUnifiedRepository repository,
+                                            final RepositoryRequest repositoryRequest, final Collator collator,
+                                            final boolean childrenOnly, final boolean json ) {
+    this.repository = repository;
+    this.repositoryRequest = repositoryRequest;
+    this.fileAdapter = new RepositoryFileAdapter( repositoryRequest );
+    this.comparator = collator != null ? new TitleComparator( collator ) : null;
+    this.childrenOnly = childrenOnly;
+    this.json = json;
+  }
+
+  /**
+   * Pages the children of the requested folder.
+   *
+   * @param offset how many children to skip, null for none
+   * @param limit  how many children to write at most, null or negative for all
+   */
+  public void setPage( final Integer offset, final Integer limit ) {
+    this.offset = offset != null && offset > 0 ? offset : 0;
+    this.limit = limit != null ? limit : -1;
+  }
+
+  @Override
+  public void write( final OutputStream output ) throws IOException, WebApplicationException {
+    try {
+      TreeWriter writer = json ? new JsonTreeWriter( output ) : new XmlTreeWriter( output );
+      if ( childrenOnly ) {
+        writeChildren( writer );
+      } else {
+        writeTree( writer );
+      }
+      writer.close();
+    } catch ( XMLStreamException | JAXBException e ) {
+      throw new IOException( e );
+    }
+  }
+
+  private void writeChildren( final TreeWriter writer ) throws IOException, XMLStreamException, JAXBException {
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    for ( RepositoryFile child : repository.getChildren( repositoryRequest ) ) {
+      children.add( new RepositoryFileTree( child, null ) );
+    }
+    writer.startList();
+    for ( RepositoryFileTree child : page( sort( children ) ) ) {
+      RepositoryFileDto file = fileAdapter.marshal( child );
+      if ( file != null ) {
+        writer.writeListItem( file );
+      }
+    }
+    writer.endList();
+  }
+
+  private void writeTree( final TreeWriter writer ) throws IOException, XMLStreamException, JAXBException {
+    int depth = repositoryRequest.getDepth();
+    RepositoryFileTree root;
+    if ( isNameFiltered() ) {
+      root = repository.getTree( repositoryRequest );
+    } else {
+      root = repository.getTree( getLevelRequest( repositoryRequest.getPath(), depth,
+          repositoryRequest.isIncludeSystemFolders() ) );
+    }
+    if ( root != null ) {
+      writeNode( writer, root, depth, true );
+    }
+  }
+
+  private void writeNode( final TreeWriter writer, final RepositoryFileTree node, final int depth,
+                          final boolean top ) throws IOException, XMLStreamException, JAXBException {
+    RepositoryFileDto file = fileAdapter.marshal( node );
+    if ( file == null ) {
+      // the file was deleted while the tree was written
+      return;
+    }
+    if ( !top ) {
+      writer.startChild();
+    }
+    writer.startNode( file );
+    List<RepositoryFileTree> children = getChildren( node, depth );
+    if ( children != null ) {
+      children = sort( children );
+      writer.startChildren();
+      for ( RepositoryFileTree child : top ? page( children ) : children ) {
+        writeNode( writer, child, depth - 1, false );
+      }
+      writer.endChildren();
+    }
+    writer.endNode();
+  }
+
+  /**
+   * Returns the children of the node, reading them from the repository when the node came from the level above.
+   */
+  private List<RepositoryFileTree> getChildren( final RepositoryFileTree node, final int depth ) {
+    if ( node.getChildren() != null || depth == 0 || !node.getFile().isFolder() ) {
+      return node.getChildren();
+    }
+    // system folders are only left out directly below the requested folder
+    RepositoryFileTree level = repository.getTree( getLevelRequest( node.getFile().getPath(), depth, true ) );
+    return level != null ? level.getChildren() : null;
+  }
+
+  private RepositoryRequest getLevelRequest( final String path, final int depth, final boolean includeSystemFolders ) {
+    RepositoryRequest levelRequest = new RepositoryRequest();
+    levelRequest.setPath( path );
+    levelRequest.setDepth( depth == 0 ? 0 : 1 );
+    levelRequest.setShowHidden( repositoryRequest.isShowHidden() );
+    levelRequest.setTypes( repositoryRequest.getTypes() );
+    levelRequest.setChildNodeFilter( repositoryRequest.getChildNodeFilter() );
+    levelRequest.setIncludeSystemFolders( includeSystemFolders );
+    levelRequest.setIncludeAcls( repositoryRequest.isIncludeAcls() );
+    return levelRequest;
+  }
+
+  private boolean isNameFiltered() {
+    String childNodeFilter = repositoryRequest.getChildNodeFilter();
+    return childNodeFilter != null && !childNodeFilter.equals( "*" ); //$NON-NLS-1$
+  }
+
+  private List<RepositoryFileTree> sort( final List<RepositoryFileTree> children ) {
+    if ( comparator != null && children.size() > 1 ) {
+      List<RepositoryFileTree> sorted = new ArrayList<RepositoryFileTree>( children );
+      Collections.sort( sorted, comparator );
+      return sorted;
+    }
+    return children;
+  }
+
+  private List<RepositoryFileTree> page( final List<RepositoryFileTree> children ) {
+    if ( offset >= children.size() ) {
+      return Collections.emptyList();
+    }
+    int end = limit < 0 ? children.size() : (int) Math.min( children.size(), (long) offset + limit );
+    return children.subList( offset, end );
+  }
+
+  private static synchronized JAXBContext getJaxbContext() throws JAXBException {
+    if ( jaxbContext == null ) {
+      jaxbContext = JAXBContext.newInstance( RepositoryFileDto.class );
+    }
+    return jaxbContext;
+  }
+
+  /**
+   * Orders by title ignoring case, then by title, the same as {@link FileService#sortByLocaleTitle}.
+   */
+  private static class TitleComparator implements Comparator<RepositoryFileTree> {
+    private final Collator collator;
+
+    TitleComparator( final Collator collator ) {
+      this.collator = collator;
+    }
+
+    @Override
+    public int compare( final RepositoryFileTree tree1, final RepositoryFileTree tree2 ) {
+      String title1 = tree1.getFile().getTitle();
+      String title2 = tree2.getFile().getTitle();
+      int result = collator.compare( title1, title2 );
+      return result != 0 ? result : title1.compareTo( title2 );
+    }
+  }
+
+  private interface TreeWriter {
+    void startNode( RepositoryFileDto file ) throws IOException, XMLStreamException, JAXBException;
+
+    void startChildren() throws IOException, XMLStreamException;
+
+    void startChild() throws IOException, XMLStreamException;
+
+    void endChildren() throws IOException, XMLStreamException;
+
+    void endNode() throws IOException, XMLStreamException;
+
+    void startList() throws IOException, XMLStreamException;
+
+    void writeListItem( RepositoryFileDto file ) throws IOException, XMLStreamException, JAXBException;
+
+    void endList() throws IOException, XMLStreamException;
+
+    void close() throws IOException, XMLStreamException;
+  }
+
+  private static class JsonTreeWriter implements TreeWriter {
+    private final JsonGenerator generator;
+
+    JsonTreeWriter( final OutputStream output ) throws IOException {
+      generator = MAPPER.getFactory().createGenerator( output, JsonEncoding.UTF8 );
+      generator.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+    }
+
+    @Override
+    public void startNode( final RepositoryFileDto file ) throws IOException {
+      generator.writeStartObject();
+      generator.writeFieldName( FILE_ELEMENT );
+      MAPPER.writeValue( generator, file );
+    }
+
+    @Override
+    public void startChildren() throws IOException {
+      generator.writeArrayFieldStart( CHILDREN_ELEMENT );
+    }
+
+    @Override
+    public void startChild() {
+    }
+
+    @Override
+    public void endChildren() throws IOException {
+      generator.writeEndArray();
+    }
+
+    @Override
+    public void endNode() throws IOException {
+      generator.writeEndObject();
+    }
+
+    @Override
+    public void startList() throws IOException {
+      generator.writeStartArray();
+    }
+
+    @Override
+    public void writeListItem( final RepositoryFileDto file ) throws IOException {
+      MAPPER.writeValue( generator, file );
+    }
+
+    @Override
+    public void endList() throws IOException {
+      generator.writeEndArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+      generator.close();
+    }
+  }
+
+  private static class XmlTreeWriter implements TreeWriter {
+    private final XMLStreamWriter writer;
+    private final Marshaller marshaller;
+    private boolean started;
+
+    XmlTreeWriter( final OutputStream output ) throws XMLStreamException, JAXBException {
+      writer = XMLOutputFactory.newInstance().createXMLStreamWriter( output, "UTF-8" ); //$NON-NLS-1$
+      marshaller = getJaxbContext().createMarshaller();
+      marshaller.setProperty( Marshaller.JAXB_FRAGMENT, Boolean.TRUE );
+    }
+
+    @Override
+    public void startNode( final RepositoryFileDto file ) throws XMLStreamException, JAXBException {
+      if ( !started ) {
+        start( TREE_ELEMENT );
+      }
+      marshal( FILE_ELEMENT, file );
+    }
+
+    @Override
+    public void startChildren() {
+    }
+
+    @Override
+    public void startChild() throws XMLStreamException {
+      writer.writeStartElement( CHILDREN_ELEMENT );
+    }
+
+    @Override
+    public void endChildren() {
+    }
+
+    @Override
+    public void endNode() throws XMLStreamException {
+      writer.writeEndElement();
+    }
+
+    @Override
+    public void startList() throws XMLStreamException {
+      start( FILE_LIST_ELEMENT );
+    }
+
+    @Override
+    public void writeListItem( final RepositoryFileDto file ) throws JAXBException {
+      marshal( FILE_LIST_ITEM_ELEMENT, file );
+    }
+
+    @Override
+    public void endList() throws XMLStreamException {
+      writer.writeEndElement();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+      if ( started ) {
+        writer.writeEndDocument();
+        writer.close();
+      }
+    }
+
+    private void start( final String rootElement ) throws XMLStreamException {
+      writer.writeStartDocument( "UTF-8", "1.0" ); //$NON-NLS-1$ //$NON-NLS-2$
+      writer.writeStartElement( rootElement );
+      started = true;
+    }
+
+    private void marshal( final String element, final RepositoryFileDto file ) throws JAXBException {
+      marshaller.marshal( new JAXBElement<RepositoryFileDto>( new QName( element ), RepositoryFileDto.class, file ),
+          writer );
+    }
+  }
+}
@@ -38,6 +38,8 @@ import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -65,8 +67,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class SchedulerService {
 
@@ -542,6 +546,22 @@ public class SchedulerService {
     return jobs;
   }
 
+  /**
+   * Lists one page of the jobs visible to the current user: all jobs except blockouts for administrators, otherwise
+   * only the user's own jobs.
+   */
+  public JobPage getJobs( JobQuery query ) throws SchedulerException {
+    IPentahoSession session = getSession();
+    if ( canAdminister( session ) ) {
+      Set<String> excludedJobNames = new HashSet<String>( query.getExcludedJobNames() );
+      excludedJobNames.add( IBlockoutManager.BLOCK_OUT_JOB_NAME );
+      query.setExcludedJobNames( excludedJobNames );
+    } else {
+      query.setUserName( session.getName() );
+    }
+    return getScheduler().queryJobs( query );
+  }
+
   protected Boolean canAdminister() {
     return canAdminister( null );
   }
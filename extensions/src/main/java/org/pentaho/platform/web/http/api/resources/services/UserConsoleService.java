@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -56,6 +56,33 @@ public class UserConsoleService {
     return UserConsoleService.getPentahoSession() != null && UserConsoleService.getPentahoSession().isAuthenticated();
   }
 
+  /**
+   * Returns whether the current user can create content in the repository
+   *
+   * @return boolean value depending on the current user being allowed to create content
+   */
+  public boolean canCreate() {
+    return Boolean.parseBoolean( new FileService().doGetCanCreate() );
+  }
+
+  /**
+   * Returns whether the current user can schedule content
+   *
+   * @return boolean value depending on the current user being allowed to schedule
+   */
+  public boolean canSchedule() {
+    return Boolean.parseBoolean( new SchedulerService().doGetCanSchedule() );
+  }
+
+  /**
+   * Returns the characters that are reserved by the repository
+   *
+   * @return String of the reserved characters
+   */
+  public String getReservedCharacters() {
+    return new FileService().doGetReservedChars().toString();
+  }
+
   /**
    * Returns a List of plugins registered to the pentaho system
    *
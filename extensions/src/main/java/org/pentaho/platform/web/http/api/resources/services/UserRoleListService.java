@@ -66,7 +66,7 @@ public class UserRoleListService {
 
   public UserListWrapper getUsers() {
     IUserRoleListService service = getUserRoleListService();
-    List<String> allUsers = service.getAllUsers();
+    List<String> allUsers = new ArrayList<>( service.getAllUsers() );
     if ( null != userComparator ) {
       Collections.sort( allUsers, userComparator );
     }
@@ -78,7 +78,7 @@ public class UserRoleListService {
   }
 
   public RoleListWrapper getRoles( boolean includeExtraRoles ) {
-    List<String> roles = getUserRoleListService().getAllRoles();
+    List<String> roles = new ArrayList<>( getUserRoleListService().getAllRoles() );
     /* If we need to exclude extra roles from the list of roles, we will remove it here.
     /  One thing to note that if a user has a role which is same as the extra role, that
     /  role will be removed as well. So we do not recommend user having same roles as the
@@ -113,7 +113,7 @@ public class UserRoleListService {
 
   public RoleListWrapper getPermissionRoles( String adminRole ) {
     IUserRoleListService userRoleListService = getUserRoleListService();
-    List<String> allRoles = userRoleListService.getAllRoles();
+    List<String> allRoles = new ArrayList<>( userRoleListService.getAllRoles() );
     // We will not allow user to update permission for Administrator
     if ( allRoles.contains( adminRole ) ) {
       allRoles.remove( adminRole );
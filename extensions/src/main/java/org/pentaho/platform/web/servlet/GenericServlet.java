@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -25,7 +25,6 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.owasp.encoder.Encode;
-import org.pentaho.platform.api.engine.ICacheManager;
 import org.pentaho.platform.api.engine.IContentGenerator;
 import org.pentaho.platform.api.engine.IMimeTypeListener;
 import org.pentaho.platform.api.engine.IOutputHandler;
@@ -48,7 +47,6 @@ import org.pentaho.platform.web.servlet.messages.Messages;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -64,17 +62,9 @@ public class GenericServlet extends ServletBase {
   private static final long serialVersionUID = 6713118348911206464L;
 
   private static final Log logger = LogFactory.getLog( GenericServlet.class );
-  private static final String CACHE_FILE = "file"; //$NON-NLS-1$
-  private static ICacheManager cache = PentahoSystem.getCacheManager( null );
 
   private boolean showDeprecationMessage;
 
-  static {
-    if ( cache != null ) {
-      cache.addCacheRegion( CACHE_FILE );
-    }
-  }
-
   @Override
   public Log getLogger() {
     return GenericServlet.logger;
@@ -188,35 +178,39 @@ public class GenericServlet extends ServletBase {
         if ( mimeType != null ) {
           response.setContentType( mimeType );
         }
-        OutputStream out = response.getOutputStream();
-
-        // do we have this resource cached?
-        ByteArrayOutputStream byteStream = null;
 
+        StaticResourceCache staticResources = StaticResourceCache.getInstance();
         if ( cacheOn ) {
-          byteStream = (ByteArrayOutputStream) cache.getFromRegionCache( CACHE_FILE, pathInfo );
-        }
-
-        if ( byteStream != null ) {
-          IOUtils.write( byteStream.toByteArray(), out );
-          return;
-        }
-        InputStream resourceStream = pluginManager.getStaticResource( pathInfo );
-        if ( resourceStream != null ) {
-          try {
-            byteStream = new ByteArrayOutputStream();
-            IOUtils.copy( resourceStream, byteStream );
-
-            // if cache is enabled, drop file in cache
-            if ( cacheOn ) {
-              cache.putInRegionCache( CACHE_FILE, pathInfo, byteStream );
+          // do we have this resource cached?
+          StaticResourceCache.CachedResource resource = staticResources.get( pathInfo );
+          if ( resource == null ) {
+            InputStream resourceStream = pluginManager.getStaticResource( pathInfo );
+            if ( resourceStream != null ) {
+              try {
+                resource = staticResources.load( pathInfo, resourceStream, mimeType, true );
+              } finally {
+                IOUtils.closeQuietly( resourceStream );
+              }
+            }
+          }
+          if ( resource != null ) {
+            staticResources.serve( request, response, resource );
+            return;
+          }
+        } else {
+          // not cached: validate by modification date before opening the resource, then stream it as it is read
+          long lastModified = pluginManager.getStaticResourceLastModified( pathInfo );
+          if ( staticResources.checkNotModified( request, response, lastModified ) ) {
+            return;
+          }
+          InputStream resourceStream = pluginManager.getStaticResource( pathInfo );
+          if ( resourceStream != null ) {
+            try {
+              staticResources.stream( response, resourceStream );
+            } finally {
+              IOUtils.closeQuietly( resourceStream );
             }
-
-            // write it out
-            IOUtils.write( byteStream.toByteArray(), out );
             return;
-          } finally {
-            IOUtils.closeQuietly( resourceStream );
           }
         }
         logger.error( Messages.getInstance().getErrorString(
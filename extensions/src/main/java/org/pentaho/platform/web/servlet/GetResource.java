@@ -14,12 +14,13 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.web.servlet;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IActionSequenceResource;
@@ -39,7 +40,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 
 public class GetResource extends ServletBase {
   private static final long serialVersionUID = 1L;
@@ -61,7 +61,6 @@ public class GetResource extends ServletBase {
   protected void doPost( final HttpServletRequest request, final HttpServletResponse response )
     throws ServletException, IOException {
     // TODO perform any authorization here...
-    // TODO support caching
     PentahoSystem.systemEntryPoint();
     try {
       IPentahoSession session = getPentahoSession( request );
@@ -101,6 +100,18 @@ public class GetResource extends ServletBase {
       IActionSequenceResource asqr =
           new ActionSequenceResource( "", IActionSequenceResource.SOLUTION_FILE_RESOURCE, "", //$NON-NLS-1$ //$NON-NLS-2$
               resourcePath );
+      // repository files can change and are access controlled, so they are not kept; instead clients revalidate
+      // their copy on every use against the file's modification date, and are answered with 304 Not Modified
+      // without the file being read while it is still current
+      response.setHeader( "Cache-Control", "private, no-cache" ); //$NON-NLS-1$ //$NON-NLS-2$
+      long lastModified = asqr.getLastModifiedDate( LocaleHelper.getLocale() );
+      if ( lastModified > 0 ) {
+        response.setDateHeader( "Last-Modified", lastModified ); //$NON-NLS-1$
+        if ( StaticResourceCache.isNotModifiedSince( request, lastModified ) ) {
+          response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+          return;
+        }
+      }
       InputStream in = asqr.getInputStream( RepositoryFilePermission.READ, LocaleHelper.getLocale() );
       if ( in == null ) {
         error( Messages.getInstance().getErrorString( "GetResource.ERROR_0003_RESOURCE_MISSING", resourcePath ) ); //$NON-NLS-1$
@@ -121,22 +132,10 @@ public class GetResource extends ServletBase {
         response.setContentType( mimeType );
       }
       response.setCharacterEncoding( LocaleHelper.getSystemEncoding() );
-      response.setHeader( "expires", "0" ); //$NON-NLS-1$ //$NON-NLS-2$
-      // Open the input and output streams
-      OutputStream out = response.getOutputStream();
       try {
-        // Copy the contents of the file to the output stream
-        byte[] buf = new byte[1024];
-        int count = 0;
-        int totalBytes = 0;
-        while ( ( count = in.read( buf ) ) >= 0 ) {
-          out.write( buf, 0, count );
-          totalBytes += count;
-        }
-        response.setContentLength( totalBytes );
+        IOUtils.copy( in, response.getOutputStream() );
       } finally {
         in.close();
-        out.close();
       }
     } finally {
       PentahoSystem.systemExitPoint();
@@ -0,0 +1,315 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves plugin static resources and other read-only files over HTTP. Resources are held as immutable
+ * {@link CachedResource}s in the {@value #CACHE_REGION} cache region and written straight from their content, without
+ * copying it per request. Each resource carries a strong ETag and a Last-Modified date; conditional requests that
+ * match are answered with <code>304 Not Modified</code>. Compressible resources can also be kept gzipped, and are
+ * served that way to clients that accept it.
+ * <p/>
+ * Resources that are not cached are streamed as they are read instead, see {@link #checkNotModified} and
+ * {@link #stream}. Their modification date is the only validator, so they are neither hashed nor compressed.
+ * <p/>
+ * Gzip variants are built when the {@value #GZIP_SETTING} system setting is <code>true</code>.
+ */
+public class StaticResourceCache {
+
+  public static final String CACHE_REGION = "file"; //$NON-NLS-1$
+
+  public static final String GZIP_SETTING = "static-resource-cache/gzip"; //$NON-NLS-1$
+
+  /**
+   * Resources smaller than this are not worth compressing.
+   */
+  static final int GZIP_MIN_LENGTH = 256;
+
+  private static final Log logger = LogFactory.getLog( StaticResourceCache.class );
+
+  private static StaticResourceCache instance;
+
+  private final ICacheManager cacheManager;
+
+  private final boolean gzip;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong notModifiedCount = new AtomicLong();
+  private final AtomicLong bytesServed = new AtomicLong();
+
+  StaticResourceCache( ICacheManager cacheManager, boolean gzip ) {
+    this.cacheManager = cacheManager;
+    this.gzip = gzip;
+    if ( cacheManager != null ) {
+      cacheManager.addCacheRegion( CACHE_REGION );
+    }
+  }
+
+  public static synchronized StaticResourceCache getInstance() {
+    if ( instance == null ) {
+      instance = new StaticResourceCache( PentahoSystem.getCacheManager( null ),
+        Boolean.parseBoolean( PentahoSystem.getSystemSetting( GZIP_SETTING, "false" ) ) ); //$NON-NLS-1$
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the cached resource stored under <code>key</code>, or <code>null</code> if it is not cached.
+   */
+  public CachedResource get( String key ) {
+    if ( cacheManager == null ) {
+      return null;
+    }
+    Object cached = cacheManager.getFromRegionCache( CACHE_REGION, key );
+    if ( cached instanceof CachedResource ) {
+      hitCount.incrementAndGet();
+      return (CachedResource) cached;
+    }
+    return null;
+  }
+
+  /**
+   * Reads a resource and, if <code>cache</code> is set, stores it under <code>key</code>. The stream is not closed.
+   *
+   * @param key      the key to cache the resource under, usually its request path
+   * @param in       the content of the resource
+   * @param mimeType the mime type of the resource, used to decide whether to compress it; may be <code>null</code>
+   * @param cache    <code>true</code> to keep the resource for later requests
+   * @return the resource
+   */
+  public CachedResource load( String key, InputStream in, String mimeType, boolean cache ) throws IOException {
+    missCount.incrementAndGet();
+    byte[] content = IOUtils.toByteArray( in );
+    byte[] gzipContent = gzip && isCompressible( mimeType ) ? compress( content ) : null;
+    CachedResource resource = new CachedResource( content, gzipContent, System.currentTimeMillis() );
+    if ( cache && cacheManager != null ) {
+      cacheManager.putInRegionCache( CACHE_REGION, key, resource );
+    }
+    return resource;
+  }
+
+  /**
+   * Writes a resource to the response. Sets the ETag and Last-Modified headers, and answers with
+   * <code>304 Not Modified</code> instead of the content if the request's If-None-Match or If-Modified-Since header
+   * shows that the client already has it. The content type and any caching headers are left to the caller.
+   */
+  public void serve( HttpServletRequest request, HttpServletResponse response, CachedResource resource )
+    throws IOException {
+    boolean gzipped = resource.hasGzipContent() && acceptsGzip( request );
+    if ( resource.hasGzipContent() ) {
+      response.setHeader( "Vary", "Accept-Encoding" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    response.setHeader( "ETag", gzipped ? resource.getGzipETag() : resource.getETag() ); //$NON-NLS-1$
+    response.setDateHeader( "Last-Modified", resource.getLastModified() ); //$NON-NLS-1$
+
+    if ( isNotModified( request, resource ) ) {
+      notModifiedCount.incrementAndGet();
+      response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+      return;
+    }
+
+    if ( gzipped ) {
+      response.setHeader( "Content-Encoding", "gzip" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    int length = resource.getLength( gzipped );
+    response.setContentLength( length );
+    resource.writeTo( response.getOutputStream(), gzipped );
+    bytesServed.addAndGet( length );
+  }
+
+  /**
+   * Sets the Last-Modified header of a resource that is not cached, and answers with <code>304 Not Modified</code> if
+   * the request's If-Modified-Since header shows that the client already has it. Call this before opening the
+   * resource, so that it is not read when the client's copy is still valid.
+   *
+   * @param lastModified the modification time of the resource, or 0 if it is not known
+   * @return <code>true</code> if the response is complete and the resource must not be written
+   */
+  public boolean checkNotModified( HttpServletRequest request, HttpServletResponse response, long lastModified ) {
+    if ( lastModified <= 0 ) {
+      return false;
+    }
+    response.setDateHeader( "Last-Modified", lastModified ); //$NON-NLS-1$
+    if ( isNotModifiedSince( request, lastModified ) ) {
+      notModifiedCount.incrementAndGet();
+      response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Copies a resource that is not cached to the response as it is read. The stream is not closed.
+   */
+  public void stream( HttpServletResponse response, InputStream in ) throws IOException {
+    bytesServed.addAndGet( IOUtils.copyLarge( in, response.getOutputStream() ) );
+  }
+
+  public StaticResourceCacheStatistics getStatistics() {
+    StaticResourceCacheStatistics statistics = new StaticResourceCacheStatistics();
+    statistics.setHitCount( hitCount.get() );
+    statistics.setMissCount( missCount.get() );
+    statistics.setNotModifiedCount( notModifiedCount.get() );
+    statistics.setBytesServed( bytesServed.get() );
+    return statistics;
+  }
+
+  static boolean isNotModified( HttpServletRequest request, CachedResource resource ) {
+    String ifNoneMatch = request.getHeader( "If-None-Match" ); //$NON-NLS-1$
+    if ( ifNoneMatch != null ) {
+      // If-None-Match takes precedence over If-Modified-Since
+      for ( String tag : ifNoneMatch.split( "," ) ) { //$NON-NLS-1$
+        tag = tag.trim();
+        if ( tag.startsWith( "W/" ) ) { //$NON-NLS-1$
+          tag = tag.substring( 2 );
+        }
+        if ( "*".equals( tag ) || tag.equals( resource.getETag() ) || tag.equals( resource.getGzipETag() ) ) { //$NON-NLS-1$
+          return true;
+        }
+      }
+      return false;
+    }
+    return isNotModifiedSince( request, resource.getLastModified() );
+  }
+
+  /**
+   * Tells whether the request's If-Modified-Since header shows that the client has the version of a resource last
+   * modified at <code>lastModified</code>.
+   */
+  static boolean isNotModifiedSince( HttpServletRequest request, long lastModified ) {
+    long ifModifiedSince;
+    try {
+      ifModifiedSince = request.getDateHeader( "If-Modified-Since" ); //$NON-NLS-1$
+    } catch ( IllegalArgumentException e ) {
+      return false;
+    }
+    // http dates have a resolution of one second
+    return ifModifiedSince >= 0 && lastModified / 1000 * 1000 <= ifModifiedSince;
+  }
+
+  static boolean acceptsGzip( HttpServletRequest request ) {
+    String acceptEncoding = request.getHeader( "Accept-Encoding" ); //$NON-NLS-1$
+    if ( acceptEncoding == null ) {
+      return false;
+    }
+    for ( String coding : acceptEncoding.split( "," ) ) { //$NON-NLS-1$
+      String[] parts = coding.split( ";" ); //$NON-NLS-1$
+      String name = parts[ 0 ].trim();
+      if ( "gzip".equalsIgnoreCase( name ) || "*".equals( name ) ) { //$NON-NLS-1$ //$NON-NLS-2$
+        return parts.length < 2 || !parts[ 1 ].trim().matches( "q\\s*=\\s*0(\\.0*)?" ); //$NON-NLS-1$
+      }
+    }
+    return false;
+  }
+
+  static boolean isCompressible( String mimeType ) {
+    if ( mimeType == null ) {
+      return false;
+    }
+    String type = mimeType.toLowerCase();
+    return type.startsWith( "text/" ) || type.contains( "javascript" ) || type.contains( "json" ) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      || type.contains( "xml" ); //$NON-NLS-1$
+  }
+
+  /**
+   * Returns the gzipped content, or <code>null</code> if compressing does not make it smaller.
+   */
+  private static byte[] compress( byte[] content ) {
+    if ( content.length < GZIP_MIN_LENGTH ) {
+      return null;
+    }
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream( content.length / 2 );
+    try ( GZIPOutputStream out = new GZIPOutputStream( compressed ) ) {
+      out.write( content );
+    } catch ( IOException e ) {
+      logger.warn( "Unable to compress static resource", e ); //$NON-NLS-1$
+      return null;
+    }
+    return compressed.size() < content.length ? compressed.toByteArray() : null;
+  }
+
+  /**
+   * The content of a resource together with its validators. Instances are immutable; the content is never handed out,
+   * only written to a stream.
+   */
+  public static final class CachedResource implements Serializable {
+
+    private static final long serialVersionUID = 3851529641807335642L;
+
+    private final byte[] content;
+    private final byte[] gzipContent;
+    private final String etag;
+    private final String gzipETag;
+    private final long lastModified;
+
+    CachedResource( byte[] content, byte[] gzipContent, long lastModified ) {
+      this.content = content;
+      this.gzipContent = gzipContent;
+      String hash = DigestUtils.md5Hex( content );
+      this.etag = '"' + hash + '"';
+      // a strong ETag identifies one representation, so the gzipped variant needs its own
+      this.gzipETag = '"' + hash + "-gzip" + '"'; //$NON-NLS-1$
+      this.lastModified = lastModified;
+    }
+
+    public String getETag() {
+      return etag;
+    }
+
+    public String getGzipETag() {
+      return gzipETag;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public boolean hasGzipContent() {
+      return gzipContent != null;
+    }
+
+    public int getLength( boolean gzipped ) {
+      return gzipped ? gzipContent.length : content.length;
+    }
+
+    public void writeTo( OutputStream out, boolean gzipped ) throws IOException {
+      out.write( gzipped ? gzipContent : content );
+    }
+  }
+}
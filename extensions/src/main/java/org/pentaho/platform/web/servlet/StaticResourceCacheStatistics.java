@@ -0,0 +1,82 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * A snapshot of the usage of the {@link StaticResourceCache}. Counters are cumulative since server start.
+ */
+@XmlRootElement
+public class StaticResourceCacheStatistics implements Serializable {
+
+  private static final long serialVersionUID = 6160946512337215805L;
+
+  private long hitCount;
+  private long missCount;
+  private long notModifiedCount;
+  private long bytesServed;
+
+  /**
+   * @return the number of resources served from the cache
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public void setHitCount( long hitCount ) {
+    this.hitCount = hitCount;
+  }
+
+  /**
+   * @return the number of resources that had to be read because they were not cached
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void setMissCount( long missCount ) {
+    this.missCount = missCount;
+  }
+
+  /**
+   * @return the number of requests answered with <code>304 Not Modified</code>
+   */
+  public long getNotModifiedCount() {
+    return notModifiedCount;
+  }
+
+  public void setNotModifiedCount( long notModifiedCount ) {
+    this.notModifiedCount = notModifiedCount;
+  }
+
+  /**
+   * @return the number of content bytes written to clients, after compression
+   */
+  public long getBytesServed() {
+    return bytesServed;
+  }
+
+  public void setBytesServed( long bytesServed ) {
+    this.bytesServed = bytesServed;
+  }
+}
@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.pentaho.platform.api.repository2.unified.IGeneratedContentIndex;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
@@ -96,4 +97,19 @@ public class GeneratedContentCleanerTest {
     verify( repo ).deleteFile( eq( FILE_ID ), eq( true ), anyString() );
     assertEquals( 0, generatedContentCleaner.getAge() );
   }
+
+  @Test
+  public void testExecute_oldFilesFoundThroughIndexDeleted() throws Exception {
+    final Date fixedDate = new SimpleDateFormat( "d/m/yyyy" ).parse( "1/1/2015" );
+    RepositoryFile file =
+      new RepositoryFile.Builder( FILE_ID, DEFAULT_STRING ).folder( false ).createdDate( fixedDate ).build();
+    IGeneratedContentIndex index = mock( IGeneratedContentIndex.class );
+    when( index.getAllGeneratedContent( anyString(), eq( QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID ) ) )
+      .thenReturn( Collections.singletonList( file ) );
+    generatedContentCleaner.setGeneratedContentIndex( index );
+
+    generatedContentCleaner.execute();
+    verify( repo ).deleteFile( eq( FILE_ID ), eq( true ), anyString() );
+    verify( repo, never() ).getTree( anyString(), anyInt(), anyString(), anyBoolean() );
+  }
 }
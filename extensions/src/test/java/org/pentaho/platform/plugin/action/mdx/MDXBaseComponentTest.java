@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -707,6 +707,97 @@ public class MDXBaseComponentTest {
     assertFalse( fileBad );
   }
 
+  @Test
+  public void testResultCacheConnectionInfo_dynamicSchemaProcessor() throws Exception {
+    stubConnectionAction( "SteelWheels" );
+    doReturn( mondrianCatalog ).when( mdxBaseComponent ).getMondrianCatalog( "SteelWheels" );
+    when( mondrianCatalog.getDataSourceInfo() )
+      .thenReturn( "DataSource=SampleData;DynamicSchemaProcessor=\"org.example.UserSchemaProcessor\"" );
+
+    doReturn( session ).when( mdxBaseComponent ).getSession();
+    when( session.getName() ).thenReturn( "suzy" );
+    String suzy = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+    when( session.getName() ).thenReturn( "tiffany" );
+    String tiffany = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+
+    assertTrue( suzy.endsWith( "\nsuzy" ) );
+    assertNotEquals( suzy, tiffany );
+  }
+
+  @Test
+  public void testResultCacheConnectionInfo_staticSchema() throws Exception {
+    stubConnectionAction( "SteelWheels" );
+    doReturn( mondrianCatalog ).when( mdxBaseComponent ).getMondrianCatalog( "SteelWheels" );
+    when( mondrianCatalog.getDataSourceInfo() ).thenReturn( "DataSource=SampleData" );
+
+    doReturn( session ).when( mdxBaseComponent ).getSession();
+    when( session.getName() ).thenReturn( "suzy" );
+    String suzy = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+    when( session.getName() ).thenReturn( "tiffany" );
+    String tiffany = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+
+    assertFalse( suzy.contains( "suzy" ) );
+    assertEquals( suzy, tiffany );
+  }
+
+  @Test
+  public void testResultCacheConnectionInfo_mappedRoles() throws Exception {
+    stubConnectionAction( "SteelWheels" );
+    doReturn( mondrianCatalog ).when( mdxBaseComponent ).getMondrianCatalog( "SteelWheels" );
+    when( mondrianCatalog.getDataSourceInfo() ).thenReturn( "DataSource=SampleData" );
+    doReturn( session ).when( mdxBaseComponent ).getSession();
+
+    // both users have the same platform roles, the mapper reads their Mondrian roles from their sessions
+    when( session.getName() ).thenReturn( "suzy" );
+    when( mdxConnection.getMondrianRoles() ).thenReturn( "Sales" );
+    String suzy = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+    when( session.getName() ).thenReturn( "tiffany" );
+    when( mdxConnection.getMondrianRoles() ).thenReturn( "Sales,Finance" );
+    String tiffany = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+    when( session.getName() ).thenReturn( "pat" );
+    when( mdxConnection.getMondrianRoles() ).thenReturn( "Sales" );
+    String pat = mdxBaseComponent.getResultCacheConnectionInfo( connAction, mdxConnection );
+
+    assertNotEquals( suzy, tiffany );
+    assertEquals( suzy, pat );
+  }
+
+  @Test
+  public void testResultCacheConnectionInfo_mapperWithoutMdxConnection() throws Exception {
+    stubConnectionAction( "SteelWheels" );
+    doReturn( mondrianCatalog ).when( mdxBaseComponent ).getMondrianCatalog( "SteelWheels" );
+    when( mondrianCatalog.getDataSourceInfo() ).thenReturn( "DataSource=SampleData" );
+    PentahoSystem.registerPrimaryObjectFactory( objFactory );
+    when( objFactory.objectDefined( MDXConnection.MDX_CONNECTION_MAPPER_KEY ) ).thenReturn( true );
+
+    doReturn( session ).when( mdxBaseComponent ).getSession();
+    when( session.getName() ).thenReturn( "suzy" );
+    String suzy = mdxBaseComponent.getResultCacheConnectionInfo( connAction, conn );
+    when( session.getName() ).thenReturn( "tiffany" );
+    String tiffany = mdxBaseComponent.getResultCacheConnectionInfo( connAction, conn );
+
+    assertTrue( suzy.endsWith( "\nsuzy" ) );
+    assertNotEquals( suzy, tiffany );
+  }
+
+  private void stubConnectionAction( String catalogName ) {
+    mdxBaseComponent.setRuntimeContext( runtimeContext );
+    HashSet<String> inputs = new HashSet<>();
+    inputs.add( MDXBaseComponent.FORMATTED_CELL_VALUES );
+    when( runtimeContext.getInputNames() ).thenReturn( inputs );
+    when( connAction.getCatalog() ).thenReturn( catalog );
+    when( catalog.getStringValue() ).thenReturn( catalogName );
+    when( connAction.getJndi() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getConnection() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getMdxConnectionString() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getConnectionProps() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getRole() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getLocation() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getUserId() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getPassword() ).thenReturn( ActionInputConstant.NULL_INPUT );
+    when( connAction.getExtendedColumnNames() ).thenReturn( ActionInputConstant.NULL_INPUT );
+  }
+
   @After
   public void tearDown() throws Exception {
     PentahoSystem.clearObjectFactory();
@@ -0,0 +1,201 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.cache.CacheRegionStatistics;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class CacheManagerTest {
+
+  private CacheManager cacheManager;
+  private IPentahoSession sessionA;
+  private IPentahoSession sessionB;
+
+  @Before
+  public void setUp() {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    doReturn( "org.hibernate.cache.HashtableCacheProvider" ).when( settings )
+      .getSystemSetting( "cache-provider/class", null );
+    doReturn( Collections.emptyList() ).when( settings ).getSystemSettings( anyString() );
+    PentahoSystem.setSystemSettingsService( settings );
+
+    cacheManager = new CacheManager();
+    sessionA = new StandaloneSession( "userA", "session-a" );
+    sessionB = new StandaloneSession( "userB", "session-b" );
+  }
+
+  @After
+  public void tearDown() {
+    cacheManager.cacheStop();
+    PentahoSystem.setSystemSettingsService( null );
+  }
+
+  @Test
+  public void testKillSessionCacheOnlyRemovesThatSession() {
+    cacheManager.putInSessionCache( sessionA, "one", "a1" );
+    cacheManager.putInSessionCache( sessionA, "two", "a2" );
+    cacheManager.putInSessionCache( sessionB, "one", "b1" );
+
+    cacheManager.killSessionCache( sessionA );
+
+    assertNull( cacheManager.getFromSessionCache( sessionA, "one" ) );
+    assertNull( cacheManager.getFromSessionCache( sessionA, "two" ) );
+    assertEquals( "b1", cacheManager.getFromSessionCache( sessionB, "one" ) );
+    assertEquals( 1, cacheManager.getElementCountInSessionCache() );
+  }
+
+  @Test
+  public void testKillSessionCacheRemovesStringKeysOfThatSession() {
+    cacheManager.putInRegionCache( ICacheManager.SESSION, "session-a-report", "a" );
+    cacheManager.putInRegionCache( ICacheManager.SESSION, "session-b-report", "b" );
+    cacheManager.putInSessionCache( sessionA, "one", "a1" );
+
+    cacheManager.killSessionCache( sessionA );
+
+    assertNull( cacheManager.getFromRegionCache( ICacheManager.SESSION, "session-a-report" ) );
+    assertNull( cacheManager.getFromSessionCache( sessionA, "one" ) );
+    assertEquals( "b", cacheManager.getFromRegionCache( ICacheManager.SESSION, "session-b-report" ) );
+  }
+
+  @Test
+  public void testSessionKeysKeepStringForm() {
+    cacheManager.putInSessionCache( sessionA, "key", "value" );
+
+    Set<?> keys = cacheManager.getAllKeysFromRegionCache( ICacheManager.SESSION );
+    assertEquals( 1, keys.size() );
+    Object key = keys.iterator().next();
+    assertTrue( key instanceof SessionCacheKey );
+    assertEquals( "session-a\tkey", key.toString() );
+    assertEquals( "value", cacheManager.getFromRegionCache( ICacheManager.SESSION, key ) );
+  }
+
+  @Test
+  public void testRemovedKeyIsNotRemovedAgainOnKill() {
+    cacheManager.putInSessionCache( sessionA, "key", "value" );
+    cacheManager.removeFromSessionCache( sessionA, "key" );
+    assertNull( cacheManager.getFromSessionCache( sessionA, "key" ) );
+
+    cacheManager.putInSessionCache( sessionA, "other", "value" );
+    cacheManager.killSessionCache( sessionA );
+    assertEquals( 0, cacheManager.getElementCountInSessionCache() );
+  }
+
+  @Test
+  public void testLogoutKillsSessionCache() {
+    cacheManager.putInSessionCache( sessionA, "key", "a" );
+    cacheManager.putInSessionCache( sessionB, "key", "b" );
+
+    cacheManager.onLogout( sessionA );
+
+    assertNull( cacheManager.getFromSessionCache( sessionA, "key" ) );
+    assertEquals( "b", cacheManager.getFromSessionCache( sessionB, "key" ) );
+  }
+
+  @Test
+  public void testKillSessionCachesClearsIndex() {
+    cacheManager.putInSessionCache( sessionA, "key", "a" );
+    cacheManager.killSessionCaches();
+    assertEquals( 0, cacheManager.getElementCountInSessionCache() );
+
+    cacheManager.putInSessionCache( sessionA, "key", "again" );
+    assertEquals( "again", cacheManager.getFromSessionCache( sessionA, "key" ) );
+  }
+
+  @Test
+  public void testRegionStatistics() {
+    assertTrue( cacheManager.addCacheRegion( "stats" ) );
+    cacheManager.putInRegionCache( "stats", "a", "1" );
+    cacheManager.putInRegionCache( "stats", "b", "2" );
+    cacheManager.getFromRegionCache( "stats", "a" );
+    cacheManager.getFromRegionCache( "stats", "a" );
+    cacheManager.getFromRegionCache( "stats", "missing" );
+    cacheManager.removeFromRegionCache( "stats", "b" );
+
+    CacheRegionStatistics statistics = cacheManager.getRegionStatistics( "stats" );
+    assertEquals( "stats", statistics.getRegionName() );
+    assertEquals( 2, statistics.getHitCount() );
+    assertEquals( 1, statistics.getMissCount() );
+    assertEquals( 2, statistics.getPutCount() );
+    assertEquals( 1, statistics.getRemoveCount() );
+    assertEquals( 1, statistics.getElementCountInMemory() );
+
+    cacheManager.clearRegionCache( "stats" );
+    assertEquals( 1, cacheManager.getRegionStatistics( "stats" ).getClearCount() );
+
+    assertNull( cacheManager.getRegionStatistics( "unknown" ) );
+    List<CacheRegionStatistics> all = cacheManager.getAllRegionStatistics();
+    assertEquals( 3, all.size() );
+  }
+
+  @Test
+  public void testConcurrentAddCacheRegion() throws Exception {
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch( 1 );
+    ExecutorService executor = Executors.newFixedThreadPool( threads );
+    try {
+      for ( int i = 0; i < threads; i++ ) {
+        final int n = i;
+        executor.submit( () -> {
+          start.await();
+          for ( int r = 0; r < 50; r++ ) {
+            cacheManager.addCacheRegion( "region" + r );
+            cacheManager.putInRegionCache( "region" + r, "key" + n, n );
+          }
+          return null;
+        } );
+      }
+      start.countDown();
+      executor.shutdown();
+      assertTrue( executor.awaitTermination( 30, TimeUnit.SECONDS ) );
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for ( int r = 0; r < 50; r++ ) {
+      assertTrue( cacheManager.cacheEnabled( "region" + r ) );
+      assertEquals( threads, cacheManager.getElementCountInRegionCache( "region" + r ) );
+    }
+    assertFalse( cacheManager.cacheEnabled( "region50" ) );
+  }
+}
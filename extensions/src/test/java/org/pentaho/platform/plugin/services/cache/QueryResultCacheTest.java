@@ -0,0 +1,284 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class QueryResultCacheTest {
+
+  private CacheManager cacheManager;
+  private QueryResultCache cache;
+  private AtomicInteger queryCount;
+
+  @Before
+  public void setUp() {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    doReturn( "org.hibernate.cache.HashtableCacheProvider" ).when( settings )
+      .getSystemSetting( "cache-provider/class", null );
+    doReturn( Collections.emptyList() ).when( settings ).getSystemSettings( anyString() );
+    PentahoSystem.setSystemSettingsService( settings );
+
+    cacheManager = new CacheManager();
+    cache = new QueryResultCache( cacheManager, 3 );
+    queryCount = new AtomicInteger();
+  }
+
+  @After
+  public void tearDown() {
+    cacheManager.cacheStop();
+    PentahoSystem.setSystemSettingsService( null );
+    SecurityContextHolder.clearContext();
+  }
+
+  private static QueryResultCache.QueryKey key( String datasource, String query ) {
+    return new QueryResultCache.QueryKey( datasource, query, null, "scope" );
+  }
+
+  private Callable<IPentahoResultSet> query( final int rows ) {
+    return new Callable<IPentahoResultSet>() {
+      @Override
+      public IPentahoResultSet call() {
+        queryCount.incrementAndGet();
+        MemoryResultSet resultSet =
+          new MemoryResultSet( new MemoryMetaData( new Object[][] { { "region" } }, null ) );
+        for ( int i = 0; i < rows; i++ ) {
+          resultSet.addRow( new Object[] { "region" + i } );
+        }
+        return resultSet;
+      }
+    };
+  }
+
+  @Test
+  public void testSecondQueryIsServedFromCache() throws Exception {
+    IPentahoResultSet first = cache.get( key( "SampleData", "select region from regions" ), query( 2 ) );
+    IPentahoResultSet second = cache.get( key( "SampleData", "select region from regions" ), query( 2 ) );
+
+    assertEquals( 1, queryCount.get() );
+    assertNotSame( first, second );
+    assertEquals( 2, second.getRowCount() );
+    assertArrayEquals( new Object[] { "region0" }, second.next() );
+    // callers have their own cursor and rows
+    assertArrayEquals( new Object[] { "region0" }, first.next() );
+    first.getDataRow( 1 )[ 0 ] = "changed";
+    assertEquals( "region1", cache.get( key( "SampleData", "select region from regions" ), query( 2 ) )
+      .getValueAt( 1, 0 ) );
+
+    QueryResultCacheStatistics statistics = cache.getStatistics();
+    assertEquals( 2, statistics.getHitCount() );
+    assertEquals( 1, statistics.getMissCount() );
+    assertEquals( 1, statistics.getEntryCount() );
+    assertTrue( statistics.isEnabled() );
+  }
+
+  @Test
+  public void testKeys() {
+    assertEquals( key( "SampleData", "select 1" ), key( "SampleData", "select 1" ) );
+    assertNotEquals( key( "SampleData", "select 1" ), key( "Other", "select 1" ) );
+    assertNotEquals( key( "SampleData", "select 1" ), new QueryResultCache.QueryKey( "SampleData", "select 1", null,
+      "other scope" ) );
+    assertEquals( new QueryResultCache.QueryKey( "SampleData", "select ?", Arrays.asList( 1, "a" ), "scope" ),
+      new QueryResultCache.QueryKey( "SampleData", "select ?", Arrays.asList( 1, "a" ), "scope" ) );
+    assertNotEquals( new QueryResultCache.QueryKey( "SampleData", "select ?", Arrays.asList( 1 ), "scope" ),
+      new QueryResultCache.QueryKey( "SampleData", "select ?", Arrays.asList( 2 ), "scope" ) );
+    assertNotEquals( new QueryResultCache.QueryKey( "SampleData", "select ?", Arrays.asList( new java.util.Date( 1 ) ),
+      "scope" ), new QueryResultCache.QueryKey( "SampleData", "select ?", Arrays.asList( new java.util.Date( 2 ) ),
+      "scope" ) );
+  }
+
+  @Test
+  public void testNormalize() {
+    assertEquals( "select a, b from t where c = 'x  y'",
+      QueryResultCache.normalize( "  select a,\n\tb\n  from t   where c = 'x  y'  " ) );
+    assertEquals( "select {[Region].[East  Coast]} on columns from [Sales  Cube]",
+      QueryResultCache.normalize( "select {[Region].[East  Coast]}\n  on columns\nfrom [Sales  Cube]" ) );
+    assertEquals( "select a -- comment\n from t", QueryResultCache.normalize( "select a -- comment\nfrom t" ) );
+    assertEquals( "select \"a  b\" from t", QueryResultCache.normalize( "select   \"a  b\"  from t" ) );
+  }
+
+  @Test
+  public void testRolesArePartOfTheKey() {
+    SecurityContextHolder.getContext().setAuthentication( new UsernamePasswordAuthenticationToken( "suzy", null,
+      Arrays.asList( new SimpleGrantedAuthority( "Power User" ), new SimpleGrantedAuthority( "Authenticated" ) ) ) );
+    QueryResultCache.QueryKey suzy = QueryResultCache.createKey( "SampleData", "jdbc", "select 1", null );
+
+    SecurityContextHolder.getContext().setAuthentication( new UsernamePasswordAuthenticationToken( "tiffany", null,
+      Arrays.asList( new SimpleGrantedAuthority( "Authenticated" ), new SimpleGrantedAuthority( "Power User" ) ) ) );
+    assertEquals( suzy, QueryResultCache.createKey( "SampleData", "jdbc", "select  1", null ) );
+    assertNotEquals( suzy, QueryResultCache.createKey( "SampleData", "other", "select 1", null ) );
+
+    SecurityContextHolder.getContext().setAuthentication( new UsernamePasswordAuthenticationToken( "pat", null,
+      Arrays.asList( new SimpleGrantedAuthority( "Authenticated" ) ) ) );
+    assertNotEquals( suzy, QueryResultCache.createKey( "SampleData", "jdbc", "select 1", null ) );
+  }
+
+  @Test
+  public void testConcurrentQueriesRunOnce() throws Exception {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final Callable<IPentahoResultSet> slowQuery = new Callable<IPentahoResultSet>() {
+      @Override
+      public IPentahoResultSet call() throws Exception {
+        started.countDown();
+        release.await( 10, TimeUnit.SECONDS );
+        return query( 1 ).call();
+      }
+    };
+    ExecutorService executor = Executors.newFixedThreadPool( 2 );
+    try {
+      Future<IPentahoResultSet> first = executor.submit( new Callable<IPentahoResultSet>() {
+        @Override
+        public IPentahoResultSet call() throws Exception {
+          return cache.get( key( "SampleData", "select 1" ), slowQuery );
+        }
+      } );
+      assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+      Future<IPentahoResultSet> second = executor.submit( new Callable<IPentahoResultSet>() {
+        @Override
+        public IPentahoResultSet call() throws Exception {
+          return cache.get( key( "SampleData", "select 1" ), query( 1 ) );
+        }
+      } );
+      long deadline = System.currentTimeMillis() + 10000;
+      while ( cache.getStatistics().getCoalescedCount() == 0 && System.currentTimeMillis() < deadline ) {
+        Thread.sleep( 10 );
+      }
+      release.countDown();
+
+      assertEquals( 1, first.get( 10, TimeUnit.SECONDS ).getRowCount() );
+      assertEquals( 1, second.get( 10, TimeUnit.SECONDS ).getRowCount() );
+      assertEquals( 1, queryCount.get() );
+      assertEquals( 1, cache.getStatistics().getCoalescedCount() );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFailedQueryIsNotCached() throws Exception {
+    try {
+      cache.get( key( "SampleData", "select 1" ), new Callable<IPentahoResultSet>() {
+        @Override
+        public IPentahoResultSet call() throws Exception {
+          throw new IllegalStateException( "database down" );
+        }
+      } );
+      fail();
+    } catch ( IllegalStateException e ) {
+      assertEquals( "database down", e.getMessage() );
+    }
+    cache.get( key( "SampleData", "select 1" ), query( 1 ) );
+    assertEquals( 1, queryCount.get() );
+    assertEquals( 1, cache.getStatistics().getErrorCount() );
+  }
+
+  @Test
+  public void testLargeResultsAreNotCached() throws Exception {
+    cache.get( key( "SampleData", "select 1" ), query( 4 ) );
+    cache.get( key( "SampleData", "select 1" ), query( 4 ) );
+    assertEquals( 2, queryCount.get() );
+    assertEquals( 2, cache.getStatistics().getOversizedCount() );
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    cache.get( key( "SampleData", "select 1" ), query( 1 ) );
+    cache.get( key( "Other", "select 1" ), query( 1 ) );
+
+    cache.invalidate( "SampleData" );
+    cache.get( key( "SampleData", "select 1" ), query( 1 ) );
+    cache.get( key( "Other", "select 1" ), query( 1 ) );
+    assertEquals( 3, queryCount.get() );
+
+    cache.invalidate();
+    cache.get( key( "SampleData", "select 1" ), query( 1 ) );
+    cache.get( key( "Other", "select 1" ), query( 1 ) );
+    assertEquals( 5, queryCount.get() );
+    assertEquals( 2, cache.getStatistics().getInvalidationCount() );
+  }
+
+  @Test
+  public void testResultOfQueryRunningDuringInvalidationIsNotCached() throws Exception {
+    cache.get( key( "SampleData", "select 1" ), new Callable<IPentahoResultSet>() {
+      @Override
+      public IPentahoResultSet call() throws Exception {
+        cache.invalidate();
+        return query( 1 ).call();
+      }
+    } );
+    cache.get( key( "SampleData", "select 1" ), query( 1 ) );
+    assertEquals( 2, queryCount.get() );
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    QueryResultCache disabled = new QueryResultCache( null, 3 );
+    assertFalse( disabled.isEnabled() );
+    IPentahoResultSet resultSet = disabled.get( key( "SampleData", "select 1" ), query( 1 ) );
+    disabled.get( key( "SampleData", "select 1" ), query( 1 ) );
+    assertEquals( 2, queryCount.get() );
+    assertTrue( resultSet instanceof MemoryResultSet );
+    assertFalse( disabled.getStatistics().isEnabled() );
+  }
+
+  @Test
+  public void testNullResultIsNotCached() throws Exception {
+    assertNull( cache.get( key( "SampleData", "select 1" ), new Callable<IPentahoResultSet>() {
+      @Override
+      public IPentahoResultSet call() {
+        return null;
+      }
+    } ) );
+    assertEquals( 0, cache.getStatistics().getEntryCount() );
+  }
+}
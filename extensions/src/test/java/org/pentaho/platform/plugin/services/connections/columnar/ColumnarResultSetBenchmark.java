@@ -0,0 +1,128 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.columnar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+
+import java.sql.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building and scanning a {@link ColumnarResultSet} against the row-oriented {@link MemoryResultSet} that
+ * {@link IPentahoResultSet#memoryCopy()} produces. The allocation rate reported by the gc profiler that {@link #main}
+ * adds shows the footprint difference.
+ * <p/>
+ * Not run as part of the unit tests. After {@code mvn test-compile} run it from the IDE through {@link #main} or with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main ColumnarResultSetBenchmark -prof gc}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ColumnarResultSetBenchmark {
+
+  private static final String[] REGIONS = { "north", "south", "east", "west", "central" };
+
+  @Param( { "100000" } )
+  public int rowCount;
+
+  private IPentahoMetaData metaData;
+  private Object[][] rows;
+  private MemoryResultSet memoryResultSet;
+  private ColumnarResultSet columnarResultSet;
+
+  @Setup
+  public void setUp() {
+    metaData = new MemoryMetaData( new Object[][] { { "id", "region", "amount", "day" } }, null );
+    rows = new Object[ rowCount ][];
+    Random random = new Random( 42 );
+    for ( int i = 0; i < rowCount; i++ ) {
+      rows[ i ] = new Object[] { i, REGIONS[ random.nextInt( REGIONS.length ) ], random.nextDouble() * 1000,
+        new Date( 1500000000000L + i * 86400000L ) };
+    }
+    memoryResultSet = buildMemory();
+    columnarResultSet = buildColumnar();
+  }
+
+  @Benchmark
+  public MemoryResultSet buildMemory() {
+    MemoryResultSet resultSet = new MemoryResultSet( metaData );
+    for ( Object[] row : rows ) {
+      resultSet.addRow( row.clone() );
+    }
+    return resultSet;
+  }
+
+  @Benchmark
+  public ColumnarResultSet buildColumnar() {
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( metaData, 0 );
+    for ( Object[] row : rows ) {
+      builder.addRow( row );
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public double scanMemory() {
+    return sumAmounts( memoryResultSet );
+  }
+
+  @Benchmark
+  public double scanColumnar() {
+    return sumAmounts( columnarResultSet );
+  }
+
+  private static double sumAmounts( IPentahoResultSet resultSet ) {
+    double sum = 0;
+    for ( int i = 0, count = resultSet.getRowCount(); i < count; i++ ) {
+      sum += (Double) resultSet.getValueAt( i, 2 );
+    }
+    return sum;
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    Options options = new OptionsBuilder().include( ColumnarResultSetBenchmark.class.getSimpleName() )
+      .addProfiler( GCProfiler.class ).build();
+    new Runner( options ).run();
+  }
+}
@@ -0,0 +1,173 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.connections.columnar;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IPentahoMetaData;
+import org.pentaho.commons.connection.IPentahoResultSet;
+import org.pentaho.commons.connection.memory.MemoryMetaData;
+import org.pentaho.commons.connection.memory.MemoryResultSet;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ColumnarResultSetTest {
+
+  private static final Object[][] HEADERS = { { "id", "region", "amount", "created", "note" } };
+
+  private static IPentahoMetaData metaData() {
+    return new MemoryMetaData( HEADERS, null );
+  }
+
+  private static Object[][] rows() {
+    Timestamp timestamp = new Timestamp( 1500000000123L );
+    timestamp.setNanos( 123456789 );
+    return new Object[][] {
+      { 1, "east", 10.5d, timestamp, new BigDecimal( "1.10" ) },
+      { 2, "west", null, new Timestamp( 0L ), null },
+      { null, "east", 3.25d, null, new BigDecimal( "2" ) },
+      { 4, null, -1d, new Timestamp( 253402214400000L ), new BigDecimal( "3.333" ) } };
+  }
+
+  @Test
+  public void testValuesReadBackUnchanged() {
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( metaData(), 0 );
+    for ( Object[] row : rows() ) {
+      builder.addRow( row );
+    }
+    ColumnarResultSet resultSet = builder.build();
+
+    assertEquals( 4, resultSet.getRowCount() );
+    assertEquals( 5, resultSet.getColumnCount() );
+    Object[][] expected = rows();
+    for ( int row = 0; row < expected.length; row++ ) {
+      assertArrayEquals( expected[row], resultSet.next() );
+    }
+    assertNull( resultSet.next() );
+    assertEquals( Integer.valueOf( 4 ), resultSet.getValueAt( 3, 0 ) );
+    assertFalse( resultSet.isMapped() );
+  }
+
+  @Test
+  public void testPrimitiveTypesKeepTheirClass() {
+    Object[][] headers = { { "short", "byte", "boolean", "long", "float", "date", "sqlDate", "time" } };
+    Object[] row = { (short) 3, (byte) 4, Boolean.TRUE, 5L, 1.5f, new Date( 1000L ), new java.sql.Date( 2000L ),
+      new Time( 3000L ) };
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( new MemoryMetaData( headers, null ), 0 );
+    builder.addRow( row );
+
+    Object[] copy = builder.build().getDataRow( 0 );
+    assertArrayEquals( row, copy );
+    for ( int column = 0; column < row.length; column++ ) {
+      assertEquals( row[column].getClass(), copy[column].getClass() );
+    }
+  }
+
+  @Test
+  public void testMixedTypesFallBackToObjects() {
+    Object[][] headers = { { "value" } };
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( new MemoryMetaData( headers, null ), 0 );
+    builder.addRow( new Object[] { null } );
+    builder.addRow( new Object[] { 1 } );
+    builder.addRow( new Object[] { 2L } );
+    builder.addRow( new Object[] { "three" } );
+
+    assertArrayEquals( new Object[] { null, 1, 2L, "three" }, builder.build().getDataColumn( 0 ) );
+  }
+
+  @Test
+  public void testSpilledValuesReadBackUnchanged() {
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( metaData(), 1 );
+    for ( int i = 0; i < 100; i++ ) {
+      for ( Object[] row : rows() ) {
+        builder.addRow( row );
+      }
+    }
+    ColumnarResultSet resultSet = builder.build();
+
+    assertTrue( resultSet.isMapped() );
+    Object[][] expected = rows();
+    for ( int row = 0; row < resultSet.getRowCount(); row++ ) {
+      assertArrayEquals( expected[row % expected.length], resultSet.getDataRow( row ) );
+    }
+  }
+
+  @Test
+  public void testCopyOfMatchesMemoryResultSet() {
+    MemoryResultSet memoryResultSet = new MemoryResultSet( metaData() );
+    for ( Object[] row : rows() ) {
+      memoryResultSet.addRow( row );
+    }
+    ColumnarResultSet resultSet = ColumnarResultSetBuilder.copyOf( memoryResultSet );
+
+    memoryResultSet.beforeFirst();
+    for ( Object[] row = memoryResultSet.next(); row != null; row = memoryResultSet.next() ) {
+      assertArrayEquals( row, resultSet.next() );
+    }
+    assertNull( resultSet.next() );
+  }
+
+  @Test
+  public void testJdbcRowsAreReadWithGetObject() throws Exception {
+    ResultSet jdbcResultSet = mock( ResultSet.class );
+    when( jdbcResultSet.next() ).thenReturn( true, true, false );
+    when( jdbcResultSet.getObject( 1 ) ).thenReturn( 1, 2 );
+    when( jdbcResultSet.getObject( 2 ) ).thenReturn( "east", null );
+
+    Object[][] headers = { { "id", "region" } };
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( new MemoryMetaData( headers, null ), 0 );
+    builder.addRows( jdbcResultSet );
+    ColumnarResultSet resultSet = builder.build();
+
+    assertEquals( 2, resultSet.getRowCount() );
+    assertArrayEquals( new Object[] { 1, "east" }, resultSet.getDataRow( 0 ) );
+    assertArrayEquals( new Object[] { 2, null }, resultSet.getDataRow( 1 ) );
+  }
+
+  @Test
+  public void testCursor() {
+    ColumnarResultSetBuilder builder = new ColumnarResultSetBuilder( metaData(), 0 );
+    for ( Object[] row : rows() ) {
+      builder.addRow( row );
+    }
+    ColumnarResultSet resultSet = builder.build();
+
+    assertArrayEquals( rows()[0], resultSet.peek() );
+    assertArrayEquals( rows()[0], resultSet.next() );
+    IPentahoResultSet copy = resultSet.memoryCopy();
+    assertArrayEquals( rows()[1], resultSet.next() );
+    assertArrayEquals( rows()[0], copy.next() );
+
+    resultSet.beforeFirst();
+    assertArrayEquals( rows()[0], resultSet.next() );
+  }
+}
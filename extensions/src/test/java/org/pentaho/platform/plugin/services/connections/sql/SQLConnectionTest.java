@@ -21,7 +21,10 @@
 package org.pentaho.platform.plugin.services.connections.sql;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -39,6 +42,7 @@ import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -107,4 +111,26 @@ public class SQLConnectionTest {
     props.put( IPentahoConnection.CONNECTION_NAME, "test" );
     assertTrue( "Pool Test", sqlc.connect( props ) );
   }
+
+  @Test
+  public void testCountRows() throws Exception {
+    PreparedStatement statement = mock( PreparedStatement.class );
+    ResultSet resultSet = mock( ResultSet.class );
+    when( nativeConnection.prepareStatement( anyString() ) ).thenReturn( statement );
+    when( statement.executeQuery() ).thenReturn( resultSet );
+    when( resultSet.next() ).thenReturn( true );
+    when( resultSet.getInt( 1 ) ).thenReturn( 1500 );
+
+    SQLConnection sqlc = new SQLConnection();
+    sqlc.nativeConnection = nativeConnection;
+    assertEquals( 1500, sqlc.countRows( "select * from orders where status = ?;", Arrays.asList( "SHIPPED" ) ) );
+    verify( nativeConnection ).prepareStatement(
+        "SELECT COUNT(*) FROM ( select * from orders where status = ? ) PENTAHO_ROW_COUNT" );
+    verify( statement ).setObject( 1, "SHIPPED" );
+    verify( resultSet ).close();
+    verify( statement ).close();
+
+    sqlc.setMaxRows( 1000 );
+    assertEquals( 1000, sqlc.countRows( "select * from orders", null ) );
+  }
 }
@@ -27,7 +27,9 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.List;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
@@ -36,6 +38,8 @@ import org.pentaho.commons.connection.IPentahoMetaData;
 import org.pentaho.commons.connection.IPentahoResultSet;
 import org.pentaho.commons.connection.memory.MemoryMetaData;
 import org.pentaho.metadata.query.model.util.QueryModelMetaData;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 public class SQLResultSetTest {
 
@@ -65,6 +69,11 @@ public class SQLResultSetTest {
     when( nativeResultSet.getMetaData() ).thenReturn( metaData );
   }
 
+  @After
+  public void tearDown() {
+    PentahoSystem.setSystemSettingsService( null );
+  }
+
   @Test
   public void testGetValueAt() throws SQLException {
     Object value = "testObject";
@@ -213,4 +222,59 @@ public class SQLResultSetTest {
     assertEquals( metadata.getClass(), memoryCopyResultSet.getMetaData().getClass() );
   }
 
+  @Test
+  public void testGetRowCountForwardOnlyCountedWhileReading() throws SQLException {
+    when( nativeResultSet.getType() ).thenReturn( ResultSet.TYPE_FORWARD_ONLY );
+    when( nativeResultSet.next() ).thenReturn( true, true, true, false );
+    SQLResultSet resultSet = new SQLResultSet( nativeResultSet, nativeConnection );
+    resultSet.setQuery( "select * from customers", null );
+
+    assertEquals( -1, resultSet.getRowCount() );
+    while ( resultSet.next() != null ) {
+      assertEquals( -1, resultSet.getRowCount() );
+    }
+    assertEquals( 3, resultSet.getRowCount() );
+
+    verify( nativeResultSet, never() ).last();
+    verify( nativeResultSet, never() ).absolute( anyInt() );
+    verify( nativeConnection, never() ).countRows( anyString(), anyList() );
+  }
+
+  @Test
+  public void testGetRowCountForwardOnlyProbe() throws SQLException {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    when( settings.getSystemSetting( anyString(), anyString() ) ).thenAnswer( new Answer<String>() {
+      @Override
+      public String answer( InvocationOnMock invocation ) throws Throwable {
+        return SQLResultSet.ROW_COUNT_PROBE_SETTING.equals( invocation.getArguments()[0] ) ? "true"
+            : (String) invocation.getArguments()[1];
+      }
+    } );
+    PentahoSystem.setSystemSettingsService( settings );
+
+    List<Object> parameters = Arrays.<Object>asList( "USA" );
+    when( nativeResultSet.getType() ).thenReturn( ResultSet.TYPE_FORWARD_ONLY );
+    when( nativeConnection.countRows( "select * from customers where country = ?", parameters ) ).thenReturn( 42 );
+    SQLResultSet resultSet = new SQLResultSet( nativeResultSet, nativeConnection );
+    resultSet.setQuery( "select * from customers where country = ?", parameters );
+
+    assertEquals( 42, resultSet.getRowCount() );
+    assertEquals( 42, resultSet.getRowCount() );
+    verify( nativeConnection, times( 1 ) ).countRows( anyString(), anyList() );
+  }
+
+  @Test
+  public void testGetRowCountForwardOnlyProbeFails() throws SQLException {
+    ISystemSettings settings = mock( ISystemSettings.class );
+    when( settings.getSystemSetting( SQLResultSet.ROW_COUNT_PROBE_SETTING, "false" ) ).thenReturn( "true" );
+    PentahoSystem.setSystemSettingsService( settings );
+
+    when( nativeResultSet.getType() ).thenReturn( ResultSet.TYPE_FORWARD_ONLY );
+    when( nativeConnection.countRows( anyString(), anyList() ) ).thenThrow( new SQLException( "streaming" ) );
+    SQLResultSet resultSet = new SQLResultSet( nativeResultSet, nativeConnection );
+    resultSet.setQuery( "select * from customers", null );
+
+    assertEquals( -1, resultSet.getRowCount() );
+  }
+
 }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -23,17 +23,34 @@ package org.pentaho.platform.plugin.services.metadata;
 import org.junit.Test;
 
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.concept.Concept;
+import org.pentaho.metadata.model.concept.security.Security;
+import org.pentaho.metadata.model.concept.security.SecurityOwner;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.test.platform.plugin.services.metadata.MockSessionAwareMetadataDomainRepository;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -119,4 +136,83 @@ public class SessionCachingMetadataDomainRepositoryTest {
     verify( mock, times( 0 ) ).reloadDomains();
     verify( manager, times( 1 ) ).getFromRegionCache( "metadata-domain-repository", "domain-id-cache-for-session:1" );
   }
+
+  @Test
+  public void shouldShareDomainsBetweenSessionsWithSameRoles() throws Exception {
+    MockSessionAwareMetadataDomainRepository mock = new MockSessionAwareMetadataDomainRepository();
+    Domain domain = new Domain();
+    domain.setId( "id" );
+    mock.storeDomain( domain, false );
+    SessionCachingMetadataDomainRepository repo = newSharingRepository( mock );
+
+    StandaloneSession joe = newSession( "joe", "1", "Authenticated", "Power User" );
+    PentahoSessionHolder.setSession( joe );
+    Domain joesDomain = repo.getDomain( "id" );
+
+    PentahoSessionHolder.setSession( newSession( "suzy", "2", "Power User", "Authenticated" ) );
+    assertSame( joesDomain, repo.getDomain( "id" ) );
+    assertEquals( 1, mock.getInvocationCount( "getDomain" ) );
+
+    PentahoSessionHolder.setSession( newSession( "admin", "3", "Administrator", "Authenticated" ) );
+    assertNotSame( joesDomain, repo.getDomain( "id" ) );
+    assertEquals( 2, repo.getCachedDomainCount( "id" ) );
+    assertEquals( 1, repo.getHitCount() );
+    assertEquals( 2, repo.getMissCount() );
+
+    // shared domains outlive the sessions using them
+    repo.onLogout( joe );
+    assertEquals( 2, repo.getCachedDomainCount() );
+
+    repo.removeDomain( "id" );
+    assertEquals( 0, repo.getCachedDomainCount( "id" ) );
+    assertEquals( 0, repo.getCachedConceptCount() );
+  }
+
+  @Test
+  public void shouldNotShareDomainsWithUserAclsBetweenUsers() throws Exception {
+    MockSessionAwareMetadataDomainRepository mock = new MockSessionAwareMetadataDomainRepository();
+    Domain domain = new Domain();
+    domain.setId( "id" );
+    LogicalModel model = new LogicalModel();
+    model.setId( "model" );
+    Map<SecurityOwner, Integer> acl = new HashMap<SecurityOwner, Integer>();
+    acl.put( new SecurityOwner( SecurityOwner.OwnerType.USER, "joe" ), 31 );
+    model.setProperty( Concept.SECURITY_PROPERTY, new Security( acl ) );
+    domain.addLogicalModel( model );
+    mock.storeDomain( domain, false );
+    SessionCachingMetadataDomainRepository repo = newSharingRepository( mock );
+
+    PentahoSessionHolder.setSession( newSession( "joe", "1", "Authenticated" ) );
+    Domain joesDomain = repo.getDomain( "id" );
+    assertSame( joesDomain, repo.getDomain( "id" ) );
+
+    PentahoSessionHolder.setSession( newSession( "suzy", "2", "Authenticated" ) );
+    assertNotSame( joesDomain, repo.getDomain( "id" ) );
+    assertEquals( 2, repo.getCachedDomainCount( "id" ) );
+  }
+
+  private SessionCachingMetadataDomainRepository newSharingRepository( MockSessionAwareMetadataDomainRepository mock ) {
+    SessionCachingMetadataDomainRepository repo = new SessionCachingMetadataDomainRepository( mock );
+    final Map<Object, Object> cache = new HashMap<Object, Object>();
+    ICacheManager manager = mock( ICacheManager.class );
+    doAnswer( invocation -> cache.put( invocation.getArguments()[ 1 ], invocation.getArguments()[ 2 ] ) )
+      .when( manager ).putInRegionCache( anyString(), any(), any() );
+    doAnswer( invocation -> cache.get( invocation.getArguments()[ 1 ] ) )
+      .when( manager ).getFromRegionCache( anyString(), any() );
+    doAnswer( invocation -> cache.remove( invocation.getArguments()[ 1 ] ) )
+      .when( manager ).removeFromRegionCache( anyString(), any() );
+    repo.cacheManager = manager;
+    repo.shareDomainsBySecurityContext = true;
+    return repo;
+  }
+
+  private static StandaloneSession newSession( String name, String id, String... roles ) {
+    StandaloneSession session = new StandaloneSession( name, id );
+    List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>();
+    for ( String role : roles ) {
+      authorities.add( new SimpleGrantedAuthority( role ) );
+    }
+    session.setAttribute( IPentahoSession.SESSION_ROLES, Collections.unmodifiableList( authorities ) );
+    return session;
+  }
 }
@@ -0,0 +1,136 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.platform.api.engine.IContentGeneratorInfo;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+import org.pentaho.platform.engine.core.solution.ContentGeneratorInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resolving a request path through {@link PluginPathIndex} against the scan over every static url and
+ * content generator of every plugin that {@link DefaultPluginManager#getServicePlugin(String)} used to do.
+ * <p/>
+ * Not run as part of the unit tests. After {@code mvn test-compile} run it from the IDE through {@link #main} or with
+ * {@code java -cp <test classpath> org.openjdk.jmh.Main PluginPathIndexBenchmark}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PluginPathIndexBenchmark {
+
+  @Param( { "10", "50" } )
+  public int pluginCount;
+
+  /**
+   * Static urls and content generators per plugin.
+   */
+  @Param( { "5" } )
+  public int urlsPerPlugin;
+
+  private List<IPlatformPlugin> plugins;
+  private PluginPathIndex index;
+  private DefaultPluginManager manager;
+  private String lastPluginPath;
+  private String unknownPath;
+
+  @Setup
+  public void setUp() {
+    plugins = new ArrayList<IPlatformPlugin>( pluginCount );
+    for ( int i = 0; i < pluginCount; i++ ) {
+      PlatformPlugin plugin = new PlatformPlugin();
+      plugin.setId( "plugin" + i );
+      for ( int j = 0; j < urlsPerPlugin; j++ ) {
+        plugin.addStaticResourcePath( "/plugin" + i + "/resources" + j, "resources" + j );
+        ContentGeneratorInfo contentGenerator = new ContentGeneratorInfo();
+        contentGenerator.setId( "plugin" + i + "-generator" + j );
+        plugin.addContentGenerator( contentGenerator );
+      }
+      plugins.add( plugin );
+    }
+    index = new PluginPathIndex( plugins );
+    manager = new DefaultPluginManager();
+    lastPluginPath = "/plugin" + ( pluginCount - 1 ) + "/resources" + ( urlsPerPlugin - 1 ) + "/js/app/main.js";
+    unknownPath = "/api/repos/public/report.prpt/viewer";
+  }
+
+  @Benchmark
+  public String indexLastPlugin() {
+    return index.getPluginId( lastPluginPath );
+  }
+
+  @Benchmark
+  public String indexUnknown() {
+    return index.getPluginId( unknownPath );
+  }
+
+  @Benchmark
+  public String scanLastPlugin() {
+    return scan( lastPluginPath );
+  }
+
+  @Benchmark
+  public String scanUnknown() {
+    return scan( unknownPath );
+  }
+
+  private String scan( String path ) {
+    for ( IPlatformPlugin plugin : plugins ) {
+      for ( String url : plugin.getStaticResourceMap().keySet() ) {
+        if ( manager.isRequested( url, path ) ) {
+          return plugin.getId();
+        }
+      }
+      for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
+        if ( manager.isRequested( contentGenerator.getId(), path ) ) {
+          return plugin.getId();
+        }
+      }
+    }
+    return null;
+  }
+
+  public static void main( String[] args ) throws RunnerException {
+    Options options = new OptionsBuilder().include( PluginPathIndexBenchmark.class.getSimpleName() ).build();
+    new Runner( options ).run();
+  }
+}
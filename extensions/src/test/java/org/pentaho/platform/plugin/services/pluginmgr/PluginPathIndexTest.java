@@ -0,0 +1,147 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IContentGeneratorInfo;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+import org.pentaho.platform.engine.core.solution.ContentGeneratorInfo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PluginPathIndexTest {
+
+  private List<IPlatformPlugin> plugins;
+  private PluginPathIndex index;
+
+  @Before
+  public void setUp() {
+    PlatformPlugin analyzer = plugin( "analyzer" );
+    analyzer.addStaticResourcePath( "/analyzer/resources", "resources" );
+    analyzer.addStaticResourcePath( "/analyzer/scripts/", "scripts" );
+    analyzer.addContentGenerator( contentGenerator( "analyzer" ) );
+
+    PlatformPlugin reporting = plugin( "reporting" );
+    reporting.addStaticResourcePath( "/reporting/reportviewer", "reportviewer" );
+    reporting.addContentGenerator( contentGenerator( "reporting" ) );
+    reporting.addContentGenerator( contentGenerator( "/prpt/viewer" ) );
+
+    // shadows part of the reporting url space; reporting was registered first so it keeps it
+    PlatformPlugin shadow = plugin( "shadow" );
+    shadow.addStaticResourcePath( "/reporting/reportviewer/shadow", "shadow" );
+    shadow.addContentGenerator( contentGenerator( "shadow" ) );
+
+    plugins = Arrays.<IPlatformPlugin>asList( analyzer, reporting, shadow );
+    index = new PluginPathIndex( plugins );
+  }
+
+  @Test
+  public void testGetPluginId() {
+    assertEquals( "analyzer", index.getPluginId( "/analyzer/resources/style.css" ) );
+    assertEquals( "analyzer", index.getPluginId( "analyzer/scripts/main.js" ) );
+    assertEquals( "analyzer", index.getPluginId( "/analyzer" ) );
+    assertEquals( "reporting", index.getPluginId( "/prpt/viewer/report.prpt" ) );
+    assertEquals( "reporting", index.getPluginId( "/reporting/reportviewer/shadow/x.js" ) );
+    assertEquals( "shadow", index.getPluginId( "/shadow/content" ) );
+    assertNull( index.getPluginId( "/prpt" ) );
+    assertNull( index.getPluginId( "/analyzerx/resources" ) );
+    assertNull( index.getPluginId( null ) );
+  }
+
+  @Test
+  public void testIsStaticResource() {
+    assertTrue( index.isStaticResource( "/analyzer/resources/style.css" ) );
+    assertTrue( index.isStaticResource( "/reporting/reportviewer" ) );
+    assertFalse( index.isStaticResource( "/analyzer/content" ) );
+    assertFalse( index.isStaticResource( "/reporting/other" ) );
+    assertFalse( index.isStaticResource( "/shadow" ) );
+  }
+
+  @Test
+  public void testMatchesIsRequested() {
+    DefaultPluginManager manager = new DefaultPluginManager();
+    String[] paths = { "", "/", "//", "analyzer", "/analyzer/", "/analyzer//resources", "/analyzer/resources",
+      "/analyzer/resources/", "/analyzer/scripts", "/reporting/reportviewer/shadow", "/prpt/viewer",
+      "/prpt/viewer/", "/prpt/viewer/a/b/c", "/shadow/", "/unknown/path" };
+    for ( String path : paths ) {
+      assertEquals( path, scanForPluginId( manager, path, false ), index.getPluginId( path ) );
+      assertEquals( path, scanForPluginId( manager, path, true ) != null, index.isStaticResource( path ) );
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull( PluginPathIndex.EMPTY.getPluginId( "/analyzer" ) );
+    assertFalse( PluginPathIndex.EMPTY.isStaticResource( "/analyzer" ) );
+    assertNull( new PluginPathIndex( Collections.<IPlatformPlugin>emptyList() ).getPluginId( "" ) );
+  }
+
+  /**
+   * The lookup the index replaces: every url of every plugin checked in registration order.
+   */
+  private String scanForPluginId( DefaultPluginManager manager, String path, boolean staticOnly ) {
+    for ( IPlatformPlugin plugin : plugins ) {
+      for ( String url : plugin.getStaticResourceMap().keySet() ) {
+        if ( manager.isRequested( url, path ) ) {
+          return plugin.getId();
+        }
+      }
+      if ( !staticOnly ) {
+        for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
+          if ( manager.isRequested( contentGenerator.getId(), path ) ) {
+            return plugin.getId();
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  @Test
+  public void testIsBuiltFrom() {
+    assertTrue( index.isBuiltFrom( plugins ) );
+    assertFalse( index.isBuiltFrom( plugins.subList( 0, 2 ) ) );
+    assertFalse( index.isBuiltFrom( Arrays.asList( plugins.get( 1 ), plugins.get( 0 ), plugins.get( 2 ) ) ) );
+    assertFalse( index.isBuiltFrom( Arrays.<IPlatformPlugin>asList( plugins.get( 0 ), plugins.get( 1 ),
+      plugin( "shadow" ) ) ) );
+    assertTrue( PluginPathIndex.EMPTY.isBuiltFrom( Collections.<IPlatformPlugin>emptyList() ) );
+  }
+
+  private static PlatformPlugin plugin( String id ) {
+    PlatformPlugin plugin = new PlatformPlugin();
+    plugin.setId( id );
+    return plugin;
+  }
+
+  private static ContentGeneratorInfo contentGenerator( String id ) {
+    ContentGeneratorInfo info = new ContentGeneratorInfo();
+    info.setId( id );
+    return info;
+  }
+}
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -23,9 +23,20 @@ package org.pentaho.platform.plugin.services.security.userrole;
 import org.junit.Test;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.SimpleMapCacheManager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 
@@ -166,4 +177,152 @@ public class CachingUserRoleListServiceDecoratorTest {
 
     verify( mockService, times( 1 ) ).getAllUsers( tenant );
   }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testResultsAreUnmodifiable() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getAllRoles() ).thenReturn( new ArrayList<String>( Arrays.asList( "foo", "bar" ) ) );
+
+    CachingUserRoleListServiceDecorator decorator =
+      new CachingUserRoleListServiceDecorator( mockService, new SimpleMapCacheManager() );
+    List<String> allRoles = decorator.getAllRoles();
+    assertSame( allRoles, decorator.getAllRoles() );
+    allRoles.add( "baz" );
+  }
+
+  @Test
+  public void testConcurrentCallsLoadOnce() throws Exception {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AtomicInteger calls = new AtomicInteger();
+    IUserRoleListService slowService = mock( IUserRoleListService.class );
+    when( slowService.getAllUsers() ).then( invocation -> {
+      calls.incrementAndGet();
+      release.await( 10, TimeUnit.SECONDS );
+      return Arrays.asList( "joe", "suzy" );
+    } );
+
+    final CachingUserRoleListServiceDecorator decorator =
+      new CachingUserRoleListServiceDecorator( slowService, new SimpleMapCacheManager() );
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<List<String>>> results = new ArrayList<>();
+      for ( int i = 0; i < 8; i++ ) {
+        results.add( executor.submit( (Callable<List<String>>) decorator::getAllUsers ) );
+      }
+      while ( calls.get() == 0 ) {
+        Thread.sleep( 10 );
+      }
+      // give the other callers time to line up behind the first load
+      Thread.sleep( 100 );
+      release.countDown();
+      for ( Future<List<String>> result : results ) {
+        assertEquals( Arrays.asList( "joe", "suzy" ), result.get( 10, TimeUnit.SECONDS ) );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals( 1, calls.get() );
+    assertEquals( 1, decorator.getLoadCount() );
+  }
+
+  @Test
+  public void testRefreshAheadServesCachedValue() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getRolesForUser( tenant, "suzy" ) ).thenReturn( Arrays.asList( "Power User" ),
+      Arrays.asList( "Power User", "Report Author" ) );
+
+    final AtomicLong now = new AtomicLong();
+    List<Runnable> refreshes = new ArrayList<>();
+    CachingUserRoleListServiceDecorator decorator = newDecorator( mockService, now, refreshes );
+
+    assertEquals( Arrays.asList( "Power User" ), decorator.getRolesForUser( tenant, "suzy" ) );
+
+    // within the refresh-ahead window the cached list is returned and only one reload is queued
+    now.set( 9000 );
+    assertEquals( Arrays.asList( "Power User" ), decorator.getRolesForUser( tenant, "suzy" ) );
+    assertEquals( Arrays.asList( "Power User" ), decorator.getRolesForUser( tenant, "suzy" ) );
+    assertEquals( 1, refreshes.size() );
+    verify( mockService, times( 1 ) ).getRolesForUser( tenant, "suzy" );
+
+    refreshes.get( 0 ).run();
+    assertEquals( Arrays.asList( "Power User", "Report Author" ), decorator.getRolesForUser( tenant, "suzy" ) );
+    verify( mockService, times( 2 ) ).getRolesForUser( tenant, "suzy" );
+    assertEquals( 1, decorator.getRefreshCount() );
+    assertEquals( 3, decorator.getHitCount() );
+    assertEquals( 1, decorator.getMissCount() );
+  }
+
+  @Test
+  public void testExpiredEntryIsReloaded() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getSystemRoles() ).thenReturn( Arrays.asList( "Authenticated" ),
+      Arrays.asList( "Authenticated", "Anonymous" ) );
+
+    final AtomicLong now = new AtomicLong();
+    List<Runnable> refreshes = new ArrayList<>();
+    CachingUserRoleListServiceDecorator decorator = newDecorator( mockService, now, refreshes );
+    decorator.setSystemRolesTtl( 60 );
+
+    assertEquals( Arrays.asList( "Authenticated" ), decorator.getSystemRoles() );
+    now.set( 20000 );
+    assertEquals( Arrays.asList( "Authenticated" ), decorator.getSystemRoles() );
+    now.set( 60000 );
+    assertEquals( Arrays.asList( "Authenticated", "Anonymous" ), decorator.getSystemRoles() );
+
+    assertTrue( refreshes.isEmpty() );
+    verify( mockService, times( 2 ) ).getSystemRoles();
+    assertEquals( 2, decorator.getLoadCount() );
+  }
+
+  @Test
+  public void testFailedRefreshKeepsCachedValue() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getAllRoles( tenant ) ).thenReturn( Arrays.asList( "Administrator" ) )
+      .thenThrow( new IllegalStateException( "directory unavailable" ) );
+
+    final AtomicLong now = new AtomicLong();
+    List<Runnable> refreshes = new ArrayList<>();
+    CachingUserRoleListServiceDecorator decorator = newDecorator( mockService, now, refreshes );
+
+    decorator.getAllRoles( tenant );
+    now.set( 9000 );
+    decorator.getAllRoles( tenant );
+    refreshes.get( 0 ).run();
+
+    assertEquals( Arrays.asList( "Administrator" ), decorator.getAllRoles( tenant ) );
+    assertEquals( 1, decorator.getLoadFailureCount() );
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getUsersInRole( tenant, "cto" ) ).thenThrow( new IllegalStateException( "directory unavailable" ) )
+      .thenReturn( Collections.singletonList( "admin" ) );
+
+    CachingUserRoleListServiceDecorator decorator =
+      new CachingUserRoleListServiceDecorator( mockService, new SimpleMapCacheManager() );
+    try {
+      decorator.getUsersInRole( tenant, "cto" );
+      fail( "expected the delegate failure" );
+    } catch ( IllegalStateException e ) {
+      // expected
+    }
+    assertEquals( Collections.singletonList( "admin" ), decorator.getUsersInRole( tenant, "cto" ) );
+    verify( mockService, times( 2 ) ).getUsersInRole( tenant, "cto" );
+  }
+
+  private CachingUserRoleListServiceDecorator newDecorator( IUserRoleListService service, final AtomicLong now,
+                                                            List<Runnable> refreshes ) {
+    CachingUserRoleListServiceDecorator decorator =
+      new CachingUserRoleListServiceDecorator( service, new SimpleMapCacheManager() ) {
+        @Override protected long currentTimeMillis() {
+          return now.get();
+        }
+      };
+    decorator.setAllRolesTtl( 10 );
+    decorator.setRolesForUserTtl( 10 );
+    decorator.setRefreshExecutor( refreshes::add );
+    return decorator;
+  }
 }
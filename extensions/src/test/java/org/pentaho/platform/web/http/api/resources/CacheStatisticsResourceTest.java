@@ -0,0 +1,121 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.cache.CacheRegionStatistics;
+import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
+import org.pentaho.platform.plugin.services.cache.QueryResultCacheStatistics;
+import org.pentaho.platform.web.servlet.StaticResourceCache;
+import org.pentaho.platform.web.servlet.StaticResourceCacheStatistics;
+
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class CacheStatisticsResourceTest {
+
+  private ICacheManager cacheManager;
+  private CacheStatisticsResource resource;
+
+  @Before
+  public void setUp() {
+    cacheManager = mock( ICacheManager.class );
+    resource = spy( new CacheStatisticsResource() );
+    doReturn( cacheManager ).when( resource ).getCacheManager();
+  }
+
+  @Test
+  public void testNotAdmin() {
+    doReturn( false ).when( resource ).canAdminister();
+
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.getRegionStatistics().getStatus() );
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.getRegionStatistics( "GLOBAL" ).getStatus() );
+    verifyZeroInteractions( cacheManager );
+  }
+
+  @Test
+  public void testAllRegions() {
+    doReturn( true ).when( resource ).canAdminister();
+    CacheRegionStatistics global = new CacheRegionStatistics( "GLOBAL" );
+    doReturn( Arrays.asList( global ) ).when( cacheManager ).getAllRegionStatistics();
+
+    Response response = resource.getRegionStatistics();
+    assertEquals( OK.getStatusCode(), response.getStatus() );
+    assertEquals( Arrays.asList( global ), ( (CacheRegionStatisticsList) response.getEntity() ).getRegions() );
+  }
+
+  @Test
+  public void testSingleRegion() {
+    doReturn( true ).when( resource ).canAdminister();
+    CacheRegionStatistics global = new CacheRegionStatistics( "GLOBAL" );
+    doReturn( global ).when( cacheManager ).getRegionStatistics( "GLOBAL" );
+
+    Response response = resource.getRegionStatistics( "GLOBAL" );
+    assertEquals( OK.getStatusCode(), response.getStatus() );
+    assertSame( global, response.getEntity() );
+
+    assertEquals( NOT_FOUND.getStatusCode(), resource.getRegionStatistics( "unknown" ).getStatus() );
+  }
+
+  @Test
+  public void testStaticResources() {
+    StaticResourceCache staticResourceCache = mock( StaticResourceCache.class );
+    StaticResourceCacheStatistics statistics = new StaticResourceCacheStatistics();
+    doReturn( statistics ).when( staticResourceCache ).getStatistics();
+    doReturn( staticResourceCache ).when( resource ).getStaticResourceCache();
+
+    doReturn( false ).when( resource ).canAdminister();
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.getStaticResourceStatistics().getStatus() );
+
+    doReturn( true ).when( resource ).canAdminister();
+    Response response = resource.getStaticResourceStatistics();
+    assertEquals( OK.getStatusCode(), response.getStatus() );
+    assertSame( statistics, response.getEntity() );
+  }
+
+  @Test
+  public void testQueryResults() {
+    QueryResultCache queryResultCache = mock( QueryResultCache.class );
+    QueryResultCacheStatistics statistics = new QueryResultCacheStatistics();
+    doReturn( statistics ).when( queryResultCache ).getStatistics();
+    doReturn( queryResultCache ).when( resource ).getQueryResultCache();
+
+    doReturn( false ).when( resource ).canAdminister();
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.getQueryResultStatistics().getStatus() );
+
+    doReturn( true ).when( resource ).canAdminister();
+    Response response = resource.getQueryResultStatistics();
+    assertEquals( OK.getStatusCode(), response.getStatus() );
+    assertSame( statistics, response.getEntity() );
+  }
+}
@@ -0,0 +1,88 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.data.ConnectionPoolStatistics;
+import org.pentaho.platform.engine.services.connection.datasource.dbcp.ConnectionPoolMetrics;
+
+import javax.ws.rs.core.Response;
+import java.util.Arrays;
+
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class ConnectionPoolResourceTest {
+
+  private ConnectionPoolResource resource;
+
+  @Before
+  public void setUp() {
+    resource = spy( new ConnectionPoolResource() );
+  }
+
+  @Test
+  public void testNotAdmin() {
+    doReturn( false ).when( resource ).canAdminister();
+
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.getPoolStatistics().getStatus() );
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.getPoolStatistics( "SampleData" ).getStatus() );
+    verify( resource, never() ).getAllPoolStatistics();
+    verify( resource, never() ).getPoolMetrics( anyString() );
+  }
+
+  @Test
+  public void testAllPools() {
+    doReturn( true ).when( resource ).canAdminister();
+    ConnectionPoolStatistics sampleData = new ConnectionPoolStatistics( "SampleData" );
+    doReturn( Arrays.asList( sampleData ) ).when( resource ).getAllPoolStatistics();
+
+    Response response = resource.getPoolStatistics();
+    assertEquals( OK.getStatusCode(), response.getStatus() );
+    assertEquals( Arrays.asList( sampleData ), ( (ConnectionPoolStatisticsList) response.getEntity() ).getPools() );
+  }
+
+  @Test
+  public void testSinglePool() {
+    doReturn( true ).when( resource ).canAdminister();
+    ConnectionPoolStatistics statistics = new ConnectionPoolStatistics( "SampleData" );
+    ConnectionPoolMetrics metrics = mock( ConnectionPoolMetrics.class );
+    doReturn( statistics ).when( metrics ).getStatistics();
+    doReturn( metrics ).when( resource ).getPoolMetrics( "SampleData" );
+    doReturn( null ).when( resource ).getPoolMetrics( "unknown" );
+
+    Response response = resource.getPoolStatistics( "SampleData" );
+    assertEquals( OK.getStatusCode(), response.getStatus() );
+    assertSame( statistics, response.getEntity() );
+
+    assertEquals( NOT_FOUND.getStatusCode(), resource.getPoolStatistics( "unknown" ).getStatus() );
+  }
+}
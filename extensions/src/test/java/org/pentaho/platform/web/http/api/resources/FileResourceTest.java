@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -47,12 +47,15 @@ import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileTr
 import org.pentaho.platform.api.repository2.unified.webservices.StringKeyStringValueDto;
 import org.pentaho.platform.security.policy.rolebased.actions.PublishAction;
 import org.pentaho.platform.web.http.api.resources.services.FileService;
+import org.pentaho.platform.web.http.api.resources.services.RepositoryFileTreeStreamingOutput;
 import org.pentaho.platform.web.http.api.resources.utils.FileUtils;
 import org.pentaho.platform.web.http.messages.Messages;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -1326,6 +1329,68 @@ public class FileResourceTest {
       includeAcls );
   }
 
+  @Test
+  public void testDoGetChildrenStream() {
+    String filter = "filter";
+    fileResource.acceptableMediaTypes = new ArrayList<MediaType>();
+    fileResource.acceptableMediaTypes.add( MediaType.APPLICATION_JSON_TYPE );
+
+    RepositoryFileTreeStreamingOutput mockOutput = mock( RepositoryFileTreeStreamingOutput.class );
+    doReturn( mockOutput ).when( fileResource.fileService )
+      .doGetChildrenStream( PATH_ID, filter, true, false, 10, 5, true );
+
+    Response testResponse = fileResource.doGetChildrenStream( PATH_ID, filter, true, false, 10, 5 );
+    assertEquals( Status.OK.getStatusCode(), testResponse.getStatus() );
+    assertEquals( mockOutput, testResponse.getEntity() );
+    assertEquals( MediaType.APPLICATION_JSON_TYPE, testResponse.getMetadata().getFirst( "Content-Type" ) );
+
+    // XML unless JSON is asked for
+    fileResource.acceptableMediaTypes.set( 0, MediaType.WILDCARD_TYPE );
+    doReturn( null ).when( fileResource.fileService )
+      .doGetChildrenStream( PATH_ID, filter, true, false, 10, 5, false );
+
+    testResponse = fileResource.doGetChildrenStream( PATH_ID, filter, true, false, 10, 5 );
+    assertEquals( Status.NOT_FOUND.getStatusCode(), testResponse.getStatus() );
+  }
+
+  @Test
+  public void testDoGetTreeLevel() {
+    String filter = "filter";
+    RepositoryFileTreeDto mockTree = mock( RepositoryFileTreeDto.class );
+    doReturn( mockTree ).when( fileResource.fileService ).doGetTreeLevel( PATH_ID, filter, true, false );
+    doReturn( "0123abcd" ).when( fileResource.fileService ).getTreeLevelETag( mockTree );
+
+    Response testResponse = fileResource.doGetTreeLevel( PATH_ID, filter, true, false );
+    assertEquals( Status.OK.getStatusCode(), testResponse.getStatus() );
+    assertEquals( mockTree, testResponse.getEntity() );
+    assertEquals( new EntityTag( "0123abcd" ), testResponse.getMetadata().getFirst( "ETag" ) );
+    assertEquals( "Accept", testResponse.getMetadata().getFirst( "Vary" ) );
+
+    // unchanged levels are revalidated without content
+    doReturn( "\"ffff\", W/\"0123abcd\"" ).when( fileResource.httpServletRequest ).getHeader( "If-None-Match" );
+    testResponse = fileResource.doGetTreeLevel( PATH_ID, filter, true, false );
+    assertEquals( Status.NOT_MODIFIED.getStatusCode(), testResponse.getStatus() );
+    assertNull( testResponse.getEntity() );
+    assertEquals( "Accept", testResponse.getMetadata().getFirst( "Vary" ) );
+
+    doReturn( "\"ffff\"" ).when( fileResource.httpServletRequest ).getHeader( "If-None-Match" );
+    testResponse = fileResource.doGetTreeLevel( PATH_ID, filter, true, false );
+    assertEquals( Status.OK.getStatusCode(), testResponse.getStatus() );
+
+    doReturn( null ).when( fileResource.fileService ).doGetTreeLevel( PATH_ID, filter, true, false );
+    testResponse = fileResource.doGetTreeLevel( PATH_ID, filter, true, false );
+    assertEquals( Status.NOT_FOUND.getStatusCode(), testResponse.getStatus() );
+  }
+
+  @Test
+  public void testDoGetTreeChanges() {
+    List<Setting> levels = new ArrayList<Setting>();
+    List<Setting> changes = new ArrayList<Setting>();
+    doReturn( changes ).when( fileResource.fileService ).doGetTreeLevelChanges( levels, null, false, false );
+
+    assertEquals( changes, fileResource.doGetTreeChanges( levels, null, false, false ) );
+  }
+
   @Test
   public void testDoGetDeletedFiles() {
     List<RepositoryFileDto> mockList = mock( List.class );
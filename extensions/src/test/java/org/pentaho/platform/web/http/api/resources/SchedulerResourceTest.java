@@ -23,9 +23,13 @@ package org.pentaho.platform.web.http.api.resources;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.web.http.api.resources.proxies.BlockStatusProxy;
 import org.pentaho.platform.web.http.api.resources.services.SchedulerService;
@@ -33,6 +37,7 @@ import org.pentaho.platform.web.http.api.resources.services.SchedulerService;
 import javax.ws.rs.core.Response;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
@@ -250,6 +255,39 @@ public class SchedulerResourceTest {
     verify( schedulerResource.schedulerService, times( 1 ) ).getJobs();
   }
 
+  @Test
+  public void testGetJobsPage() throws Exception {
+    JobPage mockPage = mock( JobPage.class );
+    doReturn( mockPage ).when( schedulerResource.schedulerService ).getJobs( any( JobQuery.class ) );
+    Response mockResponse = mock( Response.class );
+    doReturn( mockResponse ).when( schedulerResource ).buildOkResponse( mockPage );
+
+    Response testResponse =
+      schedulerResource.getJobsPage( 20, 10, "next_run", false, null, "report", Arrays.asList( "PAUSED" ) );
+    assertEquals( mockResponse, testResponse );
+
+    ArgumentCaptor<JobQuery> queryCaptor = ArgumentCaptor.forClass( JobQuery.class );
+    verify( schedulerResource.schedulerService ).getJobs( queryCaptor.capture() );
+    JobQuery query = queryCaptor.getValue();
+    assertEquals( 20, query.getOffset() );
+    assertEquals( 10, query.getLimit() );
+    assertEquals( JobQuery.SortField.NEXT_RUN, query.getSortField() );
+    assertFalse( query.isAscending() );
+    assertEquals( "report", query.getJobName() );
+    assertTrue( query.getStates().contains( JobState.PAUSED ) );
+  }
+
+  @Test
+  public void testGetJobsPageInvalidSortField() throws Exception {
+    Response mockResponse = mock( Response.class );
+    doReturn( mockResponse ).when( schedulerResource ).buildStatusResponse( Response.Status.BAD_REQUEST );
+
+    Response testResponse = schedulerResource.getJobsPage( 0, -1, "color", true, null, null, null );
+    assertEquals( mockResponse, testResponse );
+
+    verify( schedulerResource.schedulerService, never() ).getJobs( any( JobQuery.class ) );
+  }
+
   @Test
   public void testIsScheduleAllowed() {
     String id = "id";
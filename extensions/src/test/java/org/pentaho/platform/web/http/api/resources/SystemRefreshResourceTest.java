@@ -25,6 +25,7 @@ import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
 import org.pentaho.platform.plugin.action.olap.IOlapServiceException;
+import org.pentaho.platform.plugin.services.cache.QueryResultCache;
 
 import javax.ws.rs.core.Response;
 
@@ -48,12 +49,13 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
 @RunWith( PowerMockRunner.class )
-@PrepareForTest( { PentahoSessionHolder.class, PentahoSystem.class, SystemUtils.class } )
+@PrepareForTest( { PentahoSessionHolder.class, PentahoSystem.class, SystemUtils.class, QueryResultCache.class } )
 public class SystemRefreshResourceTest {
 
   private IOlapService olapService = mock( IOlapService.class );
@@ -100,4 +102,21 @@ public class SystemRefreshResourceTest {
       verify( olapService, times( 1 ) ).flush( session, "schemaX" );
     }
   }
+
+  @Test
+  public void flushQueryResultCache() {
+    QueryResultCache queryResultCache = mock( QueryResultCache.class );
+    mockStatic( QueryResultCache.class );
+    when( QueryResultCache.getInstance() ).thenReturn( queryResultCache );
+
+    when( SystemUtils.canAdminister() ).thenReturn( false );
+    assertEquals( UNAUTHORIZED.getStatusCode(), resource.flushQueryResultCache( null ).getStatus() );
+    verifyZeroInteractions( queryResultCache );
+
+    when( SystemUtils.canAdminister() ).thenReturn( true );
+    assertEquals( OK.getStatusCode(), resource.flushQueryResultCache( null ).getStatus() );
+    verify( queryResultCache ).invalidate();
+    assertEquals( OK.getStatusCode(), resource.flushQueryResultCache( "SampleData" ).getStatus() );
+    verify( queryResultCache ).invalidate( "SampleData" );
+  }
 }
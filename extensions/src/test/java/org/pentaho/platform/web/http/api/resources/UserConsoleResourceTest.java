@@ -14,19 +14,28 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.web.http.api.resources;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.web.http.api.resources.services.UserConsoleService;
 
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 import static org.junit.Assert.*;
 
@@ -41,6 +50,8 @@ public class UserConsoleResourceTest {
     userConsoleResource = mock( UserConsoleResource.class );
     doCallRealMethod().when( userConsoleResource ).isAdministrator();
     doCallRealMethod().when( userConsoleResource ).isAuthenticated();
+    doCallRealMethod().when( userConsoleResource ).getBootstrap();
+    doCallRealMethod().when( userConsoleResource ).getSessionBootstrap();
 
     userConsoleResource.userConsoleService = mock( UserConsoleService.class );
   }
@@ -48,6 +59,7 @@ public class UserConsoleResourceTest {
   @After
   public void teardown() {
     userConsoleResource = null;
+    PentahoSessionHolder.removeSession();
   }
 
   @Test
@@ -79,4 +91,48 @@ public class UserConsoleResourceTest {
     verify( userConsoleResource.userConsoleService, times( 1 ) ).isAuthenticated();
     verify( userConsoleResource, times( 1 ) ).buildOkResponse( String.valueOf( isAuthenticated ) );
   }
+
+  @Test
+  public void testGetBootstrap() throws Exception {
+    PentahoSessionHolder.setSession( new StandaloneSession( "joe" ) );
+
+    UserConsoleBootstrap sessionBootstrap = new UserConsoleBootstrap();
+    sessionBootstrap.setAdministrator( true );
+    sessionBootstrap.setCanSchedule( true );
+    sessionBootstrap.setReservedCharacters( "/\\" );
+    sessionBootstrap.setMantleSettings( Arrays.asList( new Setting( "num-startup-urls", "0" ) ) );
+    sessionBootstrap.setThemes( Arrays.asList( new Theme( "ruby", "Ruby" ) ) );
+    doReturn( sessionBootstrap ).when( userConsoleResource ).createSessionBootstrap();
+    doReturn( Arrays.asList( new Setting( "MANTLE_SHOW_HIDDEN_FILES", "true" ) ) )
+        .doReturn( Collections.<Setting>emptyList() ).when( userConsoleResource ).getCurrentUserSettings();
+    doReturn( "ruby" ).doReturn( "crystal" ).when( userConsoleResource ).getCurrentTheme();
+    Response mockResponse = mock( Response.class );
+    doReturn( mockResponse ).when( userConsoleResource ).buildOkResponse( any() );
+    ArgumentCaptor<Object> entity = ArgumentCaptor.forClass( Object.class );
+
+    assertEquals( mockResponse, userConsoleResource.getBootstrap() );
+    verify( userConsoleResource ).buildOkResponse( entity.capture() );
+    JsonNode first = new ObjectMapper().readTree( (String) entity.getValue() );
+    assertTrue( first.get( "administrator" ).asBoolean() );
+    assertFalse( first.get( "canCreate" ).asBoolean() );
+    assertTrue( first.get( "canSchedule" ).asBoolean() );
+    assertEquals( "/\\", first.get( "reservedCharacters" ).asText() );
+    assertEquals( "ruby", first.get( "activeTheme" ).asText() );
+    assertEquals( "num-startup-urls", first.get( "mantleSettings" ).get( 0 ).get( "name" ).asText() );
+    assertEquals( "MANTLE_SHOW_HIDDEN_FILES", first.get( "userSettings" ).get( 0 ).get( "name" ).asText() );
+    assertEquals( "Ruby", first.get( "themes" ).get( 0 ).get( "name" ).asText() );
+    assertTrue( first.get( "perspectives" ).isArray() );
+
+    // the session state is reused, the user settings and the active theme are read again
+    userConsoleResource.getBootstrap();
+    verify( userConsoleResource, times( 2 ) ).buildOkResponse( entity.capture() );
+    JsonNode second = new ObjectMapper().readTree( (String) entity.getValue() );
+    assertEquals( "crystal", second.get( "activeTheme" ).asText() );
+    assertEquals( 0, second.get( "userSettings" ).size() );
+    assertEquals( 1, second.get( "themes" ).size() );
+    assertEquals( new ArrayList<Setting>(), sessionBootstrap.getUserSettings() );
+
+    verify( userConsoleResource, times( 1 ) ).createSessionBootstrap();
+    verify( userConsoleResource, times( 2 ) ).getCurrentUserSettings();
+  }
 }
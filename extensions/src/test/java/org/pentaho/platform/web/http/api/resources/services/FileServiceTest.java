@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -23,6 +23,7 @@ package org.pentaho.platform.web.http.api.resources.services;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
@@ -56,6 +57,7 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -84,6 +86,7 @@ import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.api.engine.PentahoAccessControlException;
 import org.pentaho.platform.api.mt.ITenant;
 import org.pentaho.platform.api.mt.ITenantedPrincipleNameResolver;
+import org.pentaho.platform.api.repository2.unified.IGeneratedContentIndex;
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
@@ -1601,6 +1604,32 @@ public class FileServiceTest {
     }
   }
 
+  @Test
+  public void testSearchGeneratedContentIndexed() throws FileNotFoundException {
+    String lineageId = "test.prpt",
+      userFolder = "public/admin";
+
+    RepositoryFile workspaceFolder = mock( RepositoryFile.class );
+    doReturn( "/public/admin" ).when( workspaceFolder ).getPath();
+    doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
+
+    RepositoryFile generatedFile = mock( RepositoryFile.class );
+    fileService.generatedContentIndex = mock( IGeneratedContentIndex.class );
+    doReturn( Collections.singletonList( generatedFile ) ).when( fileService.generatedContentIndex )
+      .getGeneratedContent( "/public/admin", QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID, lineageId );
+    RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
+    doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( generatedFile, null, false );
+
+    List<RepositoryFileDto> list =
+      fileService.searchGeneratedContent( userFolder, lineageId, QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID );
+
+    assertEquals( 1, list.size() );
+    assertEquals( mockedRepositoryFileDto, list.get( 0 ) );
+    // the metadata of the files in the folder is not read
+    verify( fileService.repository, never() ).getChildren( any( Serializable.class ) );
+    verify( fileService.repository, never() ).getFileMetadata( any( Serializable.class ) );
+  }
+
   @Test
   public void doGetDeletedFiles() {
     RepositoryFileDto repositoryFileDto = mock( RepositoryFileDto.class );
@@ -2076,6 +2105,81 @@ public class FileServiceTest {
     doReturn( mockTreeDto ).when( fileService.defaultUnifiedRepositoryWebService ).getTreeFromRequest( mockRequest );
   }
 
+  @Test
+  public void testDoGetTreeStream() {
+    String pathId = ":path:to:folder";
+    doReturn( null ).when( fileService.repository ).getFile( "/path/to/folder" );
+
+    assertNull( fileService.doGetTreeStream( pathId, -1, null, false, false, true, null, null, true ) );
+
+    doReturn( mock( RepositoryFile.class ) ).when( fileService.repository ).getFile( "/path/to/folder" );
+    doReturn( false ).when( fileService.policy ).isAllowed( AdministerSecurityAction.NAME );
+    RepositoryFileTreeStreamingOutput mockOutput = mock( RepositoryFileTreeStreamingOutput.class );
+    ArgumentCaptor<RepositoryRequest> request = ArgumentCaptor.forClass( RepositoryRequest.class );
+    doReturn( mockOutput ).when( fileService )
+      .getTreeStreamingOutput( request.capture(), eq( false ), eq( 10 ), eq( 5 ), eq( true ) );
+
+    assertEquals( mockOutput, fileService.doGetTreeStream( pathId, -1, null, false, false, true, 10, 5, true ) );
+    assertEquals( "/path/to/folder", request.getValue().getPath() );
+    // system folders are never returned to non admin users
+    assertFalse( request.getValue().isIncludeSystemFolders() );
+  }
+
+  @Test
+  public void testDoGetTreeLevelChanges() {
+    RepositoryFile folder = mock( RepositoryFile.class );
+    doReturn( true ).when( folder ).isFolder();
+    doReturn( folder ).when( fileService.repository ).getFile( "/public" );
+    doReturn( null ).when( fileService.repository ).getFile( "/removed" );
+    doReturn( false ).when( fileService ).isShowingTitle( any( RepositoryRequest.class ) );
+
+    RepositoryFileTreeDto child = createTreeLevel( "/public/reports", "1.0" );
+    RepositoryFileTreeDto level = createTreeLevel( "/public", "1.0" );
+    level.getChildren().add( child );
+    ArgumentCaptor<RepositoryRequest> request = ArgumentCaptor.forClass( RepositoryRequest.class );
+    doReturn( level ).when( fileService.defaultUnifiedRepositoryWebService ).getTreeFromRequest( request.capture() );
+
+    assertEquals( level, fileService.doGetTreeLevel( ":public", null, false, false ) );
+    assertEquals( "/public", request.getValue().getPath() );
+    assertEquals( Integer.valueOf( 1 ), request.getValue().getDepth() );
+
+    String eTag = fileService.getTreeLevelETag( level );
+    List<Setting> levels = new ArrayList<Setting>();
+    levels.add( new Setting( "/public", '"' + eTag + '"' ) );
+    levels.add( new Setting( "/removed", "\"0\"" ) );
+
+    List<Setting> changes = fileService.doGetTreeLevelChanges( levels, null, false, false );
+    assertEquals( 1, changes.size() );
+    assertEquals( "/removed", changes.get( 0 ).getName() );
+    assertEquals( "", changes.get( 0 ).getValue() );
+
+    // the children of the children are not part of a level
+    child.getChildren().add( createTreeLevel( "/public/reports/sales", "1.0" ) );
+    assertEquals( eTag, fileService.getTreeLevelETag( level ) );
+
+    child.getFile().setVersionId( "1.1" );
+    changes = fileService.doGetTreeLevelChanges( levels.subList( 0, 1 ), null, false, false );
+    assertEquals( 1, changes.size() );
+    assertEquals( "/public", changes.get( 0 ).getName() );
+    assertFalse( eTag.equals( changes.get( 0 ).getValue() ) );
+
+    levels.set( 0, new Setting( "/public", "W/\"" + changes.get( 0 ).getValue() + '"' ) );
+    assertTrue( fileService.doGetTreeLevelChanges( levels.subList( 0, 1 ), null, false, false ).isEmpty() );
+  }
+
+  private RepositoryFileTreeDto createTreeLevel( String path, String versionId ) {
+    RepositoryFileDto file = new RepositoryFileDto();
+    file.setId( path );
+    file.setPath( path );
+    file.setName( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+    file.setFolder( true );
+    file.setVersionId( versionId );
+    RepositoryFileTreeDto tree = new RepositoryFileTreeDto();
+    tree.setFile( file );
+    tree.setChildren( new ArrayList<RepositoryFileTreeDto>() );
+    return tree;
+  }
+
   @Test
   public void testDoRename() throws Exception {
     RepositoryFile repositoryFile = mock( RepositoryFile.class );
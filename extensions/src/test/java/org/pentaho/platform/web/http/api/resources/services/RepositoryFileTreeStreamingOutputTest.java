@@ -0,0 +1,168 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.http.api.resources.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+
+public class RepositoryFileTreeStreamingOutputTest {
+
+  private IUnifiedRepository repository;
+  private Map<String, List<RepositoryFile>> folders;
+  private Collator collator;
+
+  @Before
+  public void setUp() {
+    folders = new HashMap<String, List<RepositoryFile>>();
+    folders.put( "/", Arrays.asList( file( "/b", true ), file( "/a.prpt", false ), file( "/C", true ) ) );
+    folders.put( "/b", Arrays.asList( file( "/b/z.prpt", false ), file( "/b/A.prpt", false ) ) );
+    folders.put( "/C", Collections.<RepositoryFile>emptyList() );
+
+    repository = mock( IUnifiedRepository.class );
+    when( repository.getTree( any( RepositoryRequest.class ) ) ).thenAnswer( new Answer<RepositoryFileTree>() {
+      @Override
+      public RepositoryFileTree answer( InvocationOnMock invocation ) throws Throwable {
+        RepositoryRequest request = (RepositoryRequest) invocation.getArguments()[ 0 ];
+        return tree( request.getPath(), request.getDepth() );
+      }
+    } );
+    when( repository.getChildren( any( RepositoryRequest.class ) ) ).thenAnswer( new Answer<List<RepositoryFile>>() {
+      @Override
+      public List<RepositoryFile> answer( InvocationOnMock invocation ) throws Throwable {
+        return folders.get( ( (RepositoryRequest) invocation.getArguments()[ 0 ] ).getPath() );
+      }
+    } );
+
+    collator = Collator.getInstance( Locale.ENGLISH );
+    collator.setStrength( Collator.PRIMARY );
+  }
+
+  @Test
+  public void testTreeReadOneLevelAtATime() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/", false, -1, null );
+    JsonNode tree = readJson( new RepositoryFileTreeStreamingOutput( repository, request, collator, false, true ) );
+
+    assertEquals( "/", tree.get( "file" ).get( "path" ).asText() );
+    JsonNode children = tree.get( "children" );
+    assertEquals( 3, children.size() );
+    assertEquals( "a.prpt", children.get( 0 ).get( "file" ).get( "title" ).asText() );
+    assertFalse( children.get( 0 ).has( "children" ) );
+    assertEquals( "b", children.get( 1 ).get( "file" ).get( "title" ).asText() );
+    assertEquals( "A.prpt", children.get( 1 ).get( "children" ).get( 0 ).get( "file" ).get( "title" ).asText() );
+    assertEquals( "z.prpt", children.get( 1 ).get( "children" ).get( 1 ).get( "file" ).get( "title" ).asText() );
+    assertEquals( "C", children.get( 2 ).get( "file" ).get( "title" ).asText() );
+    assertEquals( 0, children.get( 2 ).get( "children" ).size() );
+    // the root and the two folders below it, files are not asked for children
+    verify( repository, times( 3 ) ).getTree( any( RepositoryRequest.class ) );
+  }
+
+  @Test
+  public void testTreeDepthAndPage() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/", false, 1, null );
+    RepositoryFileTreeStreamingOutput output =
+        new RepositoryFileTreeStreamingOutput( repository, request, null, false, true );
+    output.setPage( 1, 1 );
+    JsonNode children = readJson( output ).get( "children" );
+
+    assertEquals( 1, children.size() );
+    assertEquals( "a.prpt", children.get( 0 ).get( "file" ).get( "title" ).asText() );
+    assertFalse( children.get( 0 ).has( "children" ) );
+    verify( repository, times( 1 ) ).getTree( any( RepositoryRequest.class ) );
+  }
+
+  @Test
+  public void testNameFilteredTreeReadAtOnce() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/", false, -1, "*.prpt" );
+    write( new RepositoryFileTreeStreamingOutput( repository, request, collator, false, true ) );
+
+    verify( repository, times( 1 ) ).getTree( request );
+  }
+
+  @Test
+  public void testChildrenAsXml() throws Exception {
+    RepositoryRequest request = new RepositoryRequest( "/", false, 0, null );
+    RepositoryFileTreeStreamingOutput output =
+        new RepositoryFileTreeStreamingOutput( repository, request, collator, true, false );
+    output.setPage( 0, 2 );
+    String xml = write( output );
+
+    assertTrue( xml, xml.contains( "<repositoryFileDtoes><repositoryFileDto>" ) );
+    assertTrue( xml, xml.indexOf( "<title>a.prpt</title>" ) < xml.indexOf( "<title>b</title>" ) );
+    assertFalse( xml, xml.contains( "<title>C</title>" ) );
+    assertTrue( xml, xml.endsWith( "</repositoryFileDto></repositoryFileDtoes>" ) );
+  }
+
+  private JsonNode readJson( RepositoryFileTreeStreamingOutput output ) throws Exception {
+    return new ObjectMapper().readTree( write( output ) );
+  }
+
+  private String write( RepositoryFileTreeStreamingOutput output ) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    output.write( out );
+    return out.toString( "UTF-8" );
+  }
+
+  private RepositoryFileTree tree( String path, int depth ) {
+    RepositoryFile file = file( path, folders.containsKey( path ) );
+    if ( depth == 0 ) {
+      return new RepositoryFileTree( file, null );
+    }
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    if ( folders.containsKey( path ) ) {
+      for ( RepositoryFile child : folders.get( path ) ) {
+        children.add( tree( child.getPath(), depth - 1 ) );
+      }
+    }
+    return new RepositoryFileTree( file, children );
+  }
+
+  private static RepositoryFile file( String path, boolean folder ) {
+    String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+    return new RepositoryFile.Builder( name ).path( path ).title( name ).folder( folder ).build();
+  }
+}
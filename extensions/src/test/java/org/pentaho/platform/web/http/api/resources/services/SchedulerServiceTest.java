@@ -63,6 +63,8 @@ import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.api.repository2.unified.webservices.RepositoryFileDto;
@@ -647,6 +649,31 @@ public class SchedulerServiceTest {
     verify( schedulerService.scheduler, times( 1 ) ).getJobs( any( IJobFilter.class ) );
   }
 
+  @Test
+  public void testGetJobsPage() throws Exception {
+    IPentahoSession mockPentahoSession = mock( IPentahoSession.class );
+    doReturn( mockPentahoSession ).when( schedulerService ).getSession();
+    doReturn( "suzy" ).when( mockPentahoSession ).getName();
+    JobPage mockPage = new JobPage();
+    doReturn( mockPage ).when( schedulerService.scheduler ).queryJobs( any( JobQuery.class ) );
+
+    doReturn( false ).when( schedulerService ).canAdminister( mockPentahoSession );
+    JobQuery query = new JobQuery();
+    query.setUserName( "admin" );
+    assertEquals( mockPage, schedulerService.getJobs( query ) );
+    assertEquals( "suzy", query.getUserName() );
+    assertFalse( query.getExcludedJobNames().contains( IBlockoutManager.BLOCK_OUT_JOB_NAME ) );
+
+    doReturn( true ).when( schedulerService ).canAdminister( mockPentahoSession );
+    query = new JobQuery();
+    query.setUserName( "admin" );
+    assertEquals( mockPage, schedulerService.getJobs( query ) );
+    assertEquals( "admin", query.getUserName() );
+    assertTrue( query.getExcludedJobNames().contains( IBlockoutManager.BLOCK_OUT_JOB_NAME ) );
+
+    verify( schedulerService.scheduler, times( 2 ) ).queryJobs( any( JobQuery.class ) );
+  }
+
   @Test
   public void testDoGetGeneratedContentForSchedule() throws Exception {
     String lineageId = "test.prpt";
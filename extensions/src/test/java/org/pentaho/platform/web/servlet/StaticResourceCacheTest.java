@@ -0,0 +1,250 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.web.servlet;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.ICacheManager;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StaticResourceCacheTest {
+
+  private static final String PATH = "/plugin/resources/script.js";
+
+  private ICacheManager cacheManager;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private ByteArrayOutputStream written;
+  private byte[] content;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheManager = mock( ICacheManager.class );
+    request = mock( HttpServletRequest.class );
+    response = mock( HttpServletResponse.class );
+    written = new ByteArrayOutputStream();
+    when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+      @Override
+      public void write( int b ) throws IOException {
+        written.write( b );
+      }
+    } );
+    StringBuilder script = new StringBuilder();
+    for ( int i = 0; i < 100; i++ ) {
+      script.append( "var x" ).append( i ).append( " = " ).append( i ).append( ";\n" );
+    }
+    content = script.toString().getBytes( "UTF-8" );
+  }
+
+  @Test
+  public void testLoadAndGet() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, false );
+    verify( cacheManager ).addCacheRegion( StaticResourceCache.CACHE_REGION );
+
+    assertNull( cache.get( PATH ) );
+    StaticResourceCache.CachedResource resource =
+      cache.load( PATH, new ByteArrayInputStream( content ), "text/javascript", true );
+    verify( cacheManager ).putInRegionCache( StaticResourceCache.CACHE_REGION, PATH, resource );
+
+    doReturn( resource ).when( cacheManager ).getFromRegionCache( StaticResourceCache.CACHE_REGION, PATH );
+    assertSame( resource, cache.get( PATH ) );
+
+    cache.load( "/other", new ByteArrayInputStream( content ), "text/javascript", false );
+    verify( cacheManager, never() ).putInRegionCache( StaticResourceCache.CACHE_REGION, "/other", resource );
+
+    StaticResourceCacheStatistics statistics = cache.getStatistics();
+    assertEquals( 1, statistics.getHitCount() );
+    assertEquals( 2, statistics.getMissCount() );
+  }
+
+  @Test
+  public void testServe() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, false );
+    StaticResourceCache.CachedResource resource =
+      cache.load( PATH, new ByteArrayInputStream( content ), "text/javascript", true );
+
+    cache.serve( request, response, resource );
+
+    assertArrayEquals( content, written.toByteArray() );
+    verify( response ).setHeader( "ETag", resource.getETag() );
+    verify( response ).setDateHeader( "Last-Modified", resource.getLastModified() );
+    verify( response ).setContentLength( content.length );
+    verify( response, never() ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+    assertEquals( content.length, cache.getStatistics().getBytesServed() );
+  }
+
+  @Test
+  public void testIfNoneMatch() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, false );
+    StaticResourceCache.CachedResource resource =
+      cache.load( PATH, new ByteArrayInputStream( content ), "text/javascript", true );
+    when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"other\", " + resource.getETag() );
+
+    cache.serve( request, response, resource );
+
+    verify( response ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+    verify( response, never() ).getOutputStream();
+    assertEquals( 1, cache.getStatistics().getNotModifiedCount() );
+    assertEquals( 0, cache.getStatistics().getBytesServed() );
+  }
+
+  @Test
+  public void testIfNoneMatchTakesPrecedence() throws IOException {
+    StaticResourceCache.CachedResource resource =
+      new StaticResourceCache.CachedResource( content, null, System.currentTimeMillis() );
+    when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"stale\"" );
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( resource.getLastModified() + 1000 );
+    assertFalse( StaticResourceCache.isNotModified( request, resource ) );
+
+    when( request.getHeader( "If-None-Match" ) ).thenReturn( "*" );
+    assertTrue( StaticResourceCache.isNotModified( request, resource ) );
+  }
+
+  @Test
+  public void testIfModifiedSince() {
+    StaticResourceCache.CachedResource resource = new StaticResourceCache.CachedResource( content, null, 1500500L );
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( -1L );
+    assertFalse( StaticResourceCache.isNotModified( request, resource ) );
+
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( 1500000L );
+    assertTrue( StaticResourceCache.isNotModified( request, resource ) );
+
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( 1499000L );
+    assertFalse( StaticResourceCache.isNotModified( request, resource ) );
+
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenThrow( new IllegalArgumentException() );
+    assertFalse( StaticResourceCache.isNotModified( request, resource ) );
+  }
+
+  @Test
+  public void testStreamUncached() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, true );
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( -1L );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "gzip" );
+
+    assertFalse( cache.checkNotModified( request, response, 1500500L ) );
+    cache.stream( response, new ByteArrayInputStream( content ) );
+
+    assertArrayEquals( content, written.toByteArray() );
+    verify( response ).setDateHeader( "Last-Modified", 1500500L );
+    verify( response, never() ).setHeader( eq( "ETag" ), anyString() );
+    verify( response, never() ).setHeader( "Content-Encoding", "gzip" );
+    verify( cacheManager, never() ).putInRegionCache( anyString(), any(), any() );
+    assertEquals( 0, cache.getStatistics().getMissCount() );
+    assertEquals( content.length, cache.getStatistics().getBytesServed() );
+  }
+
+  @Test
+  public void testCheckNotModifiedUncached() {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, false );
+    when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( 1500000L );
+
+    assertTrue( cache.checkNotModified( request, response, 1500500L ) );
+    verify( response ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+    assertEquals( 1, cache.getStatistics().getNotModifiedCount() );
+
+    // without a modification date there is nothing to validate against
+    response = mock( HttpServletResponse.class );
+    assertFalse( cache.checkNotModified( request, response, 0L ) );
+    verify( response, never() ).setDateHeader( anyString(), anyLong() );
+    verify( response, never() ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, true );
+    StaticResourceCache.CachedResource resource =
+      cache.load( PATH, new ByteArrayInputStream( content ), "text/javascript", true );
+    assertTrue( resource.hasGzipContent() );
+    assertNotEquals( resource.getETag(), resource.getGzipETag() );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "gzip, deflate" );
+
+    cache.serve( request, response, resource );
+
+    verify( response ).setHeader( "Content-Encoding", "gzip" );
+    verify( response ).setHeader( "Vary", "Accept-Encoding" );
+    verify( response ).setHeader( "ETag", resource.getGzipETag() );
+    verify( response ).setContentLength( resource.getLength( true ) );
+    byte[] unzipped = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( written.toByteArray() ) ) );
+    assertArrayEquals( content, unzipped );
+  }
+
+  @Test
+  public void testGzipNotAccepted() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, true );
+    StaticResourceCache.CachedResource resource =
+      cache.load( PATH, new ByteArrayInputStream( content ), "text/javascript", true );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "gzip;q=0, deflate" );
+
+    cache.serve( request, response, resource );
+
+    verify( response, never() ).setHeader( "Content-Encoding", "gzip" );
+    verify( response ).setContentLength( content.length );
+    assertArrayEquals( content, written.toByteArray() );
+  }
+
+  @Test
+  public void testNotCompressed() throws IOException {
+    StaticResourceCache cache = new StaticResourceCache( cacheManager, true );
+    assertFalse( cache.load( "/image.png", new ByteArrayInputStream( content ), "image/png", false )
+      .hasGzipContent() );
+    assertFalse( cache.load( PATH, new ByteArrayInputStream( "var x;".getBytes( "UTF-8" ) ), "text/javascript",
+      false ).hasGzipContent() );
+  }
+
+  @Test
+  public void testAcceptsGzip() {
+    assertFalse( StaticResourceCache.acceptsGzip( request ) );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "deflate, GZIP;q=0.5" );
+    assertTrue( StaticResourceCache.acceptsGzip( request ) );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "*" );
+    assertTrue( StaticResourceCache.acceptsGzip( request ) );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "gzip; q=0.0" );
+    assertFalse( StaticResourceCache.acceptsGzip( request ) );
+    when( request.getHeader( "Accept-Encoding" ) ).thenReturn( "identity" );
+    assertFalse( StaticResourceCache.acceptsGzip( request ) );
+  }
+}
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -96,6 +96,18 @@ public class PluginResourceLoaderTest {
     assertNull( "InputStream should have been null indicating resource not found", s );
   }
 
+  @Test
+  public void testGetResourceLastModified() {
+    File file = new File( "./" + TEST_RES + "PluginResourceLoaderTest/pluginResourceTest.properties" );
+    assertEquals( file.lastModified(),
+        resLoader.getResourceLastModified( classLoader, "pluginResourceTest.properties" ) );
+
+    // resources which are not on the filesystem are not dated
+    assertEquals( 0L, resLoader.getResourceLastModified( classLoader, "pluginResourceTest-injar.properties" ) );
+    assertEquals( 0L, resLoader.getResourceLastModified( classLoader, "non-existent-file" ) );
+    assertEquals( 0L, resLoader.getResourceLastModified( classLoader, "resources" ) );
+  }
+
   @Test( expected = UnsupportedEncodingException.class )
   public void testBadStringEncoding() throws UnsupportedEncodingException {
     @SuppressWarnings( "unused" )
@@ -61,8 +61,7 @@ public class RepositoryAccessVoterManager implements IRepositoryAccessVoterManag
   @Override
   public boolean hasAccess( RepositoryFile file, RepositoryFilePermission operation,
       RepositoryFileAcl repositoryFileAcl, IPentahoSession session ) {
-    if ( voters != null && !authorizationPolicy.isAllowed( AdministerSecurityAction.NAME )
-        && ( session.getName() != null && !session.getName().equals( repositoryAdminUsername ) ) ) {
+    if ( isVotingRequired( session ) ) {
       for ( IRepositoryAccessVoter voter : voters ) {
         if ( !voter.hasAccess( file, operation, repositoryFileAcl, session ) ) {
           return false;
@@ -72,4 +71,13 @@ public class RepositoryAccessVoterManager implements IRepositoryAccessVoterManag
     return true;
   }
 
+  /**
+   * Tells whether {@link #hasAccess} consults the registered voters for the given session. When it does not, access
+   * is granted regardless of the file and ACL passed in, so callers checking many files may skip loading the ACLs.
+   */
+  public boolean isVotingRequired( IPentahoSession session ) {
+    return voters != null && !voters.isEmpty() && !authorizationPolicy.isAllowed( AdministerSecurityAction.NAME )
+        && ( session.getName() != null && !session.getName().equals( repositoryAdminUsername ) );
+  }
+
 }
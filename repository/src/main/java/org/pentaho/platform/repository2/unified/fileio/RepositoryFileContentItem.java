@@ -40,7 +40,7 @@ public class RepositoryFileContentItem implements IContentItem {
   RepositoryFileOutputStream outputStream;
 
   public RepositoryFileContentItem( String filePath ) {
-    outputStream = new RepositoryFileOutputStream( filePath, true, true, null, false );
+    outputStream = new SpillingRepositoryFileOutputStream( filePath, true, true, null, false );
   }
 
   RepositoryFileContentItem( RepositoryFileOutputStream outputStream ) {
@@ -36,6 +36,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -166,8 +167,25 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
     super.flush();
 
-    ByteArrayInputStream bis = new ByteArrayInputStream( toByteArray() );
+    InputStream is = getContentStream();
+    try {
+      writeToRepository( is );
+    } finally {
+      is.close();
+    }
+    flushed = true;
+  }
 
+  /**
+   * Returns a stream over the bytes written so far. The default implementation wraps the internal buffer directly
+   * rather than copying it; subclasses that keep the content elsewhere (see
+   * {@link SpillingRepositoryFileOutputStream}) override this to read from their own storage.
+   */
+  protected InputStream getContentStream() throws IOException {
+    return new ByteArrayInputStream( buf, 0, count );
+  }
+
+  private void writeToRepository( InputStream is ) throws IOException {
     // make an effort to determine the correct mime type, default to application/octet-stream
     String extension = RepositoryFilenameUtils.getExtension( path );
     String mimeType = "application/octet-stream"; //$NON-NLS-1$
@@ -198,7 +216,7 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     } else {
       converter = null;
     }
-    payload = convert( converter, bis, mimeType );
+    payload = convert( converter, is, mimeType );
     if ( !flushed ) {
       RepositoryFile file = repository.getFile( path );
       RepositoryFile parentFolder = getParent( path );
@@ -284,15 +302,14 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
       RepositoryFile file = repository.getFile( path );
       repository.updateFile( file, payload, "New File" ); //$NON-NLS-1$
     }
-    flushed = true;
   }
 
-  IRepositoryFileData convert( Converter converter, ByteArrayInputStream bis, String mimeType ) {
+  IRepositoryFileData convert( Converter converter, InputStream is, String mimeType ) {
     final IRepositoryFileData payload;
     if ( converter != null ) {
-      payload = converter.convert( bis, charsetName, mimeType );
+      payload = converter.convert( is, charsetName, mimeType );
     } else {
-      payload = new SimpleRepositoryFileData( bis, charsetName, mimeType );
+      payload = new SimpleRepositoryFileData( is, charsetName, mimeType );
     }
     return payload;
   }
@@ -0,0 +1,231 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fileio;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A {@link RepositoryFileOutputStream} that keeps content in memory only up to a threshold. Once more than
+ * {@code spillThreshold} bytes have been written the buffered content is moved to a temporary file and all further
+ * writes go there, so that large generated content (scheduled report output, exports) never has to be held on heap.
+ * On flush the repository reads the content straight from the temporary file. The temporary file is removed when the
+ * stream is reset or closed.
+ * <p>
+ * The default threshold is read from the {@value #SPILL_THRESHOLD_SETTING} system setting; a value of zero or less
+ * disables spilling and the stream behaves exactly like {@link RepositoryFileOutputStream}.
+ */
+public class SpillingRepositoryFileOutputStream extends RepositoryFileOutputStream {
+
+  public static final String SPILL_THRESHOLD_SETTING = "solution-repository/output-spill-threshold"; //$NON-NLS-1$
+
+  public static final int DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
+  private static final Log logger = LogFactory.getLog( SpillingRepositoryFileOutputStream.class );
+
+  private final int spillThreshold;
+  private File spillFile;
+  private OutputStream spillStream;
+  private long spilledBytes;
+
+  public SpillingRepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
+      final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden,
+      final int spillThreshold ) {
+    super( path, autoCreateUniqueFileName, autoCreateDirStructure, repository, hidden );
+    this.spillThreshold = spillThreshold;
+  }
+
+  public SpillingRepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
+      final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden ) {
+    this( path, autoCreateUniqueFileName, autoCreateDirStructure, repository, hidden, getDefaultSpillThreshold() );
+  }
+
+  public SpillingRepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
+      final boolean autoCreateDirStructure ) {
+    this( path, autoCreateUniqueFileName, autoCreateDirStructure, null, false );
+  }
+
+  public static int getDefaultSpillThreshold() {
+    String threshold = PentahoSystem.getSystemSetting( SPILL_THRESHOLD_SETTING, null );
+    if ( threshold != null && !threshold.trim().isEmpty() ) {
+      try {
+        return Integer.parseInt( threshold.trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Invalid value for " + SPILL_THRESHOLD_SETTING + ": " + threshold ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return DEFAULT_SPILL_THRESHOLD;
+  }
+
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  public boolean isSpilled() {
+    return spillStream != null;
+  }
+
+  @Override
+  public synchronized void write( int b ) {
+    if ( !isSpilled() && shouldSpill( 1 ) ) {
+      spill();
+    }
+    if ( isSpilled() ) {
+      try {
+        spillStream.write( b );
+        spilledBytes++;
+      } catch ( IOException e ) {
+        throw new SpillException( e );
+      }
+    } else {
+      super.write( b );
+    }
+  }
+
+  @Override
+  public synchronized void write( byte[] b, int off, int len ) {
+    if ( !isSpilled() && shouldSpill( len ) ) {
+      spill();
+    }
+    if ( isSpilled() ) {
+      try {
+        spillStream.write( b, off, len );
+        spilledBytes += len;
+      } catch ( IOException e ) {
+        throw new SpillException( e );
+      }
+    } else {
+      super.write( b, off, len );
+    }
+  }
+
+  @Override
+  public synchronized int size() {
+    return isSpilled() ? (int) Math.min( spilledBytes, Integer.MAX_VALUE ) : super.size();
+  }
+
+  @Override
+  public synchronized byte[] toByteArray() {
+    if ( !isSpilled() ) {
+      return super.toByteArray();
+    }
+    try {
+      spillStream.flush();
+      return FileUtils.readFileToByteArray( spillFile );
+    } catch ( IOException e ) {
+      throw new SpillException( e );
+    }
+  }
+
+  @Override
+  public synchronized void writeTo( OutputStream out ) throws IOException {
+    if ( !isSpilled() ) {
+      super.writeTo( out );
+      return;
+    }
+    try ( InputStream in = getContentStream() ) {
+      IOUtils.copy( in, out );
+    }
+  }
+
+  @Override
+  public synchronized void reset() {
+    super.reset();
+    discardSpillFile();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      discardSpillFile();
+    }
+  }
+
+  @Override
+  protected InputStream getContentStream() throws IOException {
+    if ( !isSpilled() ) {
+      return super.getContentStream();
+    }
+    spillStream.flush();
+    return new BufferedInputStream( new FileInputStream( spillFile ) );
+  }
+
+  private boolean shouldSpill( int len ) {
+    return spillThreshold > 0 && (long) count + len > spillThreshold;
+  }
+
+  /**
+   * Moves the in-memory content to a temporary file and releases the in-memory buffer.
+   */
+  private void spill() {
+    try {
+      spillFile = File.createTempFile( "repo-output-", ".tmp" ); //$NON-NLS-1$ //$NON-NLS-2$
+      spillStream = new BufferedOutputStream( new FileOutputStream( spillFile ) );
+      spillStream.write( buf, 0, count );
+      spilledBytes = count;
+      count = 0;
+      buf = new byte[ 32 ];
+    } catch ( IOException e ) {
+      discardSpillFile();
+      throw new SpillException( e );
+    }
+  }
+
+  private void discardSpillFile() {
+    IOUtils.closeQuietly( spillStream );
+    spillStream = null;
+    spilledBytes = 0;
+    if ( spillFile != null ) {
+      if ( !spillFile.delete() && spillFile.exists() ) {
+        logger.warn( "Unable to delete temporary file " + spillFile.getAbsolutePath() ); //$NON-NLS-1$
+      }
+      spillFile = null;
+    }
+  }
+
+  /**
+   * {@link java.io.ByteArrayOutputStream#write(int)} does not declare {@link IOException}, so failures writing the
+   * temporary file are reported unchecked.
+   */
+  public static class SpillException extends RuntimeException {
+
+    private static final long serialVersionUID = -2468436574212744218L;
+
+    public SpillException( IOException cause ) {
+      super( cause );
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IGeneratedContentIndex;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.springframework.extensions.jcr.JcrCallback;
+import org.springframework.extensions.jcr.JcrTemplate;
+import org.springframework.util.Assert;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.QueryObjectModelConstants;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link IGeneratedContentIndex} on top of the Jackrabbit search index. The metadata of a file is kept in its
+ * {@code pho:metadata} child node, whose properties are indexed by Jackrabbit like all others, so the metadata nodes
+ * with a given {@code contentCreator} or {@code lineage-id} are found with a query. The search index is persistent
+ * and Jackrabbit keeps it up to date as files are created, moved and deleted, which includes the content generated
+ * before this class existed.
+ * <p>
+ * Should the index of a workspace ever be out of date, Jackrabbit rebuilds it on start up when the {@code index}
+ * folder of the workspace has been removed, see the {@code SearchIndex} of {@code jackrabbit/repository.xml}.
+ */
+public class JcrGeneratedContentIndex implements IGeneratedContentIndex {
+
+  private static final String SELECTOR_NAME = "selector"; //$NON-NLS-1$
+
+  private final JcrTemplate jcrTemplate;
+  private final IPathConversionHelper pathConversionHelper;
+  private final ILockHelper lockHelper;
+  private final IRepositoryAccessVoterManager accessVoterManager;
+
+  public JcrGeneratedContentIndex( final JcrTemplate jcrTemplate, final IPathConversionHelper pathConversionHelper,
+      final ILockHelper lockHelper, final IRepositoryAccessVoterManager accessVoterManager ) {
+    Assert.notNull( jcrTemplate );
+    this.jcrTemplate = jcrTemplate;
+    this.pathConversionHelper = pathConversionHelper;
+    this.lockHelper = lockHelper;
+    this.accessVoterManager = accessVoterManager;
+  }
+
+  @Override
+  public List<RepositoryFile> getGeneratedContent( final String folderPath, final String metadataKey,
+      final String value ) {
+    Assert.hasText( metadataKey );
+    Assert.notNull( value );
+    List<RepositoryFile> files = find( folderPath, metadataKey, value, true );
+    Collections.sort( files );
+    return files;
+  }
+
+  @Override
+  public List<RepositoryFile> getAllGeneratedContent( final String folderPath, final String metadataKey ) {
+    Assert.hasText( metadataKey );
+    return find( folderPath, metadataKey, null, false );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private List<RepositoryFile> find( final String folderPath, final String metadataKey, final String value,
+      final boolean childrenOnly ) {
+    Assert.hasText( folderPath );
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+        String absPath = JcrStringHelper.pathEncode( pathConversionHelper.relToAbs( folderPath ) );
+        if ( !session.itemExists( absPath ) ) {
+          return files;
+        }
+        Node folderNode = (Node) session.getItem( absPath );
+        PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+        IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+
+        NodeIterator metadataNodes = query( session, absPath, metadataKey, value ).getNodes();
+        while ( metadataNodes.hasNext() ) {
+          Node metadataNode = metadataNodes.nextNode();
+          if ( !metadataNode.getName().equals( pentahoJcrConstants.getPHO_METADATA() ) ) {
+            continue;
+          }
+          Node fileNode = metadataNode.getParent();
+          Node parentNode = fileNode.getParent();
+          // files in the trash are below internal folders rather than pentaho folders
+          if ( !JcrRepositoryFileUtils.isPentahoFile( pentahoJcrConstants, fileNode )
+              || !JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, parentNode )
+              || childrenOnly && !parentNode.isSame( folderNode ) ) {
+            continue;
+          }
+          RepositoryFile file =
+              JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+                  fileNode );
+          if ( isReadable( session, pentahoJcrConstants, file, pentahoSession ) ) {
+            files.add( file );
+          }
+        }
+        return files;
+      }
+    } );
+  }
+
+  private boolean isReadable( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final RepositoryFile file, final IPentahoSession pentahoSession ) throws RepositoryException {
+    if ( accessVoterManager == null ) {
+      return true;
+    }
+    RepositoryFileAcl fileAcl;
+    try {
+      fileAcl = JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, file.getId() );
+    } catch ( AccessDeniedException e ) {
+      return false;
+    }
+    return accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, fileAcl, pentahoSession );
+  }
+
+  /**
+   * Queries the nodes below <code>absPath</code> which have the metadata property, with the given value unless it is
+   * null.
+   */
+  private QueryResult query( final Session session, final String absPath, final String metadataKey,
+      final String value ) throws RepositoryException {
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    String propertyName = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":" + metadataKey; //$NON-NLS-1$
+
+    Selector selector = fac.selector( "nt:base", SELECTOR_NAME ); //$NON-NLS-1$
+    Constraint metadataConstraint;
+    if ( value != null ) {
+      metadataConstraint =
+          fac.comparison( fac.propertyValue( SELECTOR_NAME, propertyName ),
+              QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, fac.literal( session.getValueFactory().createValue(
+                  value ) ) );
+    } else {
+      metadataConstraint = fac.propertyExistence( SELECTOR_NAME, propertyName );
+    }
+    Constraint folderConstraint = fac.descendantNode( SELECTOR_NAME, absPath );
+
+    Query query = fac.createQuery( selector, fac.and( metadataConstraint, folderConstraint ), null, null );
+    return session.getWorkspace().getQueryManager().createQuery( query.getStatement(), Query.JCR_JQOM ).execute();
+  }
+}
@@ -0,0 +1,261 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import org.apache.commons.lang.mutable.MutableBoolean;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.jackrabbit.util.ChildrenCollectorFilter;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.locale.IPentahoLocale;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.repository2.locale.PentahoLocale;
+import org.pentaho.platform.repository2.unified.RepositoryAccessVoterManager;
+import org.pentaho.platform.util.messages.LocaleHelper;
+
+import javax.jcr.AccessDeniedException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.security.AccessControlManager;
+import javax.jcr.security.Privilege;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the {@link RepositoryFileTree} returned by {@link JcrRepositoryFileUtils#getTree}. One instance serves a
+ * single request and holds what is shared by all nodes of that request: the Pentaho session, the locale, and whether
+ * access voters have to be consulted at all.
+ * <p>
+ * Every node is read and checked for read access exactly once, and only the summary of its file is read (see
+ * {@link JcrRepositoryFileUtils#nodeToFileSummary}). Children are read in a single pass: when a
+ * <code>childNodeFilter</code> is given, all children of a folder are iterated once and matched against the filter
+ * here, rather than asking JCR for the matching children and then again for all folders.
+ * <p>
+ * The ACL of a node is only loaded when there are access voters that need it. Otherwise a node is readable when the
+ * user may read its access control, which is the condition under which loading the ACL would have succeeded.
+ */
+class JcrRepositoryFileTreeBuilder {
+
+  private static final Log logger = LogFactory.getLog( JcrRepositoryFileTreeBuilder.class );
+
+  private final Session session;
+  private final PentahoJcrConstants pentahoJcrConstants;
+  private final IPathConversionHelper pathConversionHelper;
+  private final IRepositoryAccessVoterManager accessVoterManager;
+  private final String childNodeFilter;
+  private final boolean showHidden;
+  private final RepositoryRequest.FILES_TYPE_FILTER types;
+  private final boolean includeSystemFolders;
+  private final String rootPath;
+
+  private final IPentahoSession pentahoSession;
+  private final IPentahoLocale pentahoLocale;
+  private final boolean votingRequired;
+  private Privilege[] readAccessControl;
+  private String systemFolderPropertyName;
+
+  private int nodeCount;
+  private int aclCount;
+
+  JcrRepositoryFileTreeBuilder( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final IRepositoryAccessVoterManager accessVoterManager,
+      final String childNodeFilter, final boolean showHidden, final RepositoryRequest.FILES_TYPE_FILTER types,
+      final boolean includeSystemFolders, final String rootPath ) {
+    this.session = session;
+    this.pentahoJcrConstants = pentahoJcrConstants;
+    this.pathConversionHelper = pathConversionHelper;
+    this.accessVoterManager = accessVoterManager;
+    this.childNodeFilter = childNodeFilter;
+    this.showHidden = showHidden;
+    this.types = types;
+    this.includeSystemFolders = includeSystemFolders;
+    this.rootPath = rootPath;
+
+    this.pentahoSession = PentahoSessionHolder.getSession();
+    Locale currentLocale = LocaleHelper.getLocale();
+    this.pentahoLocale = currentLocale != null ? new PentahoLocale( currentLocale ) : new PentahoLocale();
+    // voters are skipped for administrators, decide that once instead of once per node
+    this.votingRequired = !( accessVoterManager instanceof RepositoryAccessVoterManager )
+        || ( (RepositoryAccessVoterManager) accessVoterManager ).isVotingRequired( pentahoSession );
+  }
+
+  /**
+   * @param fileNode
+   *          the node at the root of the tree
+   * @param depth
+   *          how many levels to go down, negative for unlimited
+   * @return the tree, or null if the root node is hidden or not readable
+   */
+  RepositoryFileTree build( final Node fileNode, final int depth ) throws RepositoryException {
+    long start = System.currentTimeMillis();
+    RepositoryFileTree tree = null;
+
+    RepositoryFile rootFile =
+        JcrRepositoryFileUtils.nodeToFileSummary( session, pentahoJcrConstants, pathConversionHelper, fileNode,
+            pentahoLocale );
+    nodeCount++;
+    aclCount++;
+    if ( ( showHidden || !rootFile.isHidden() ) && !rootFile.isAclNode() && accessVoterManager.hasAccess( rootFile,
+        RepositoryFilePermission.READ, JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, rootFile
+            .getId() ), pentahoSession ) ) {
+      tree = buildTree( fileNode, rootFile, depth, new MutableBoolean( false ) );
+    }
+
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( String.format( "tree for '%s' built in %d ms: %d nodes read, %d ACLs loaded", rootPath, //$NON-NLS-1$
+          System.currentTimeMillis() - start, nodeCount, aclCount ) );
+    }
+    return tree;
+  }
+
+  /**
+   * @return the number of nodes read so far
+   */
+  int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * @return the number of ACLs loaded so far
+   */
+  int getAclCount() {
+    return aclCount;
+  }
+
+  /**
+   * Just because a folder node is processed does not mean it will be reported in the tree. A file satisfying the
+   * <code>childNodeFilter</code> must be found somewhere below it; <code>foundFiltered</code> tells the caller whether
+   * that was the case.
+   */
+  private RepositoryFileTree buildTree( final Node fileNode, final RepositoryFile file, final int depth,
+      final MutableBoolean foundFiltered ) throws RepositoryException {
+    // if depth is neither negative (indicating unlimited depth) nor positive (indicating at least one more level
+    // to go)
+    if ( depth == 0 ) {
+      return new RepositoryFileTree( file, null );
+    }
+
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>();
+    boolean filtered = childNodeFilter != null && !childNodeFilter.equals( "*" ); //$NON-NLS-1$
+    // folders are traversed whether or not their name matches, a matching file may be found further down
+    boolean allFolders = filtered && JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, fileNode );
+    // system folders are only left out directly below the requested path
+    boolean skipSystemFolders = !includeSystemFolders && rootPath.equals( fileNode.getPath() );
+
+    NodeIterator childNodes = allFolders ? fileNode.getNodes() : fileNode.getNodes( childNodeFilter );
+    while ( childNodes.hasNext() ) {
+      Node childNode = childNodes.nextNode();
+      boolean pentahoFolder = JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, childNode );
+      boolean matches = !allFolders || ChildrenCollectorFilter.matches( childNode.getName(), childNodeFilter );
+
+      if ( matches && isTypeIncluded( pentahoFolder ) && !( skipSystemFolders && isSystemFolder( childNode ) ) ) {
+        foundFiltered.setValue( true );
+        addChild( childNode, children, depth, foundFiltered, true );
+      } else if ( allFolders && pentahoFolder ) {
+        addChild( childNode, children, depth, foundFiltered, false );
+      }
+    }
+
+    Collections.sort( children );
+    return new RepositoryFileTree( file, children );
+  }
+
+  /**
+   * Adds the tree below <code>childNode</code> to <code>children</code> if the node is readable and, unless it was
+   * matched by the filter itself, a file matching the filter was found below it.
+   */
+  private void addChild( final Node childNode, final List<RepositoryFileTree> children, final int depth,
+      final MutableBoolean foundFiltered, final boolean isRootFiltered ) throws RepositoryException {
+    if ( !JcrRepositoryFileUtils.isSupportedNodeType( pentahoJcrConstants, childNode ) ) {
+      return;
+    }
+    RepositoryFile file =
+        JcrRepositoryFileUtils.nodeToFileSummary( session, pentahoJcrConstants, pathConversionHelper, childNode,
+            pentahoLocale );
+    nodeCount++;
+    if ( ( !showHidden && file.isHidden() ) || file.isAclNode() || !isReadable( childNode, file ) ) {
+      return;
+    }
+    MutableBoolean foundFilteredAtomic =
+        new MutableBoolean( !JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, childNode ) );
+    RepositoryFileTree repositoryFileTree = buildTree( childNode, file, depth - 1, foundFilteredAtomic );
+    if ( foundFilteredAtomic.booleanValue() || isRootFiltered ) {
+      foundFiltered.setValue( true );
+      children.add( repositoryFileTree );
+    }
+  }
+
+  private boolean isReadable( final Node node, final RepositoryFile file ) throws RepositoryException {
+    if ( votingRequired ) {
+      RepositoryFileAcl fileAcl;
+      try {
+        aclCount++;
+        fileAcl = JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, file.getId() );
+      } catch ( AccessDeniedException e ) {
+        return false;
+      }
+      return accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, fileAcl, pentahoSession );
+    }
+    AccessControlManager acMgr = session.getAccessControlManager();
+    if ( readAccessControl == null ) {
+      readAccessControl = new Privilege[] { acMgr.privilegeFromName( Privilege.JCR_READ_ACCESS_CONTROL ) };
+    }
+    return acMgr.hasPrivileges( node.getPath(), readAccessControl );
+  }
+
+  private boolean isTypeIncluded( final boolean pentahoFolder ) {
+    return !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS
+        || pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FILES );
+  }
+
+  /**
+   * Reads the system folder flag straight from the metadata node instead of loading all metadata of the file.
+   */
+  private boolean isSystemFolder( final Node node ) throws RepositoryException {
+    String metadataNodeName = pentahoJcrConstants.getPHO_METADATA();
+    if ( !node.hasNode( metadataNodeName ) ) {
+      return false;
+    }
+    if ( systemFolderPropertyName == null ) {
+      systemFolderPropertyName =
+          session.getNamespacePrefix( PentahoJcrConstants.PHO_NS ) + ":" + IUnifiedRepository.SYSTEM_FOLDER; //$NON-NLS-1$
+    }
+    Node metadataNode = node.getNode( metadataNodeName );
+    if ( !metadataNode.hasProperty( systemFolderPropertyName ) ) {
+      return false;
+    }
+    Property property = metadataNode.getProperty( systemFolderPropertyName );
+    return property.getType() == PropertyType.BOOLEAN && property.getBoolean();
+  }
+}
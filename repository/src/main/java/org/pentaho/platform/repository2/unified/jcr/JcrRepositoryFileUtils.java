@@ -14,7 +14,7 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -27,7 +27,6 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -35,7 +34,6 @@ import java.util.Objects;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
-import javax.jcr.AccessDeniedException;
 import javax.jcr.Item;
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
@@ -53,11 +51,9 @@ import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
 
 import org.apache.commons.lang.BooleanUtils;
-import org.apache.commons.lang.mutable.MutableBoolean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.jackrabbit.JcrConstants;
-import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.VersionManagerImpl;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.locale.IPentahoLocale;
@@ -67,7 +63,6 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
-import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
@@ -327,6 +322,92 @@ public class JcrRepositoryFileUtils {
     return getRepositoryFileProxyFactory().getProxy( node, pentahoLocale );
   }
 
+  /**
+   * Reads the summary of a file that trees are built from: its id, name, path, folder, hidden and ACL node flags,
+   * dates, size, and its title and description in <code>pentahoLocale</code>. Unlike {@link #nodeToFile}, these
+   * properties are read right away, and the metadata, version and lock of the file are not read at all.
+   */
+  public static RepositoryFile nodeToFileSummary( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper, final Node node,
+      final IPentahoLocale pentahoLocale ) throws RepositoryException {
+
+    if ( session.getRootNode().isSame( node ) ) {
+      return getRootFolder( session );
+    }
+
+    Serializable id = getNodeId( session, pentahoJcrConstants, node );
+    String path = pathConversionHelper.absToRel( ( getAbsolutePath( session, pentahoJcrConstants, node ) ) );
+    // if the rel path is / then name the folder empty string instead of its true name (this hides the tenant name)
+    String name =
+        RepositoryFile.SEPARATOR.equals( path ) ? "" : getNodeName( session, pentahoJcrConstants, node ); //$NON-NLS-1$
+
+    Date created = null;
+    if ( node.hasProperty( pentahoJcrConstants.getJCR_CREATED() ) ) {
+      Calendar tmpCal = node.getProperty( pentahoJcrConstants.getJCR_CREATED() ).getDate();
+      if ( tmpCal != null ) {
+        created = tmpCal.getTime();
+      }
+    }
+    Date lastModified = null;
+    // pho:lastModified nodes have OnParentVersion values of IGNORE; i.e. they don't exist in frozen nodes
+    if ( isPentahoFile( pentahoJcrConstants, node ) && !node.isNodeType( pentahoJcrConstants.getNT_FROZENNODE() ) ) {
+      Calendar tmpCal = node.getProperty( pentahoJcrConstants.getPHO_LASTMODIFIED() ).getDate();
+      if ( tmpCal != null ) {
+        lastModified = tmpCal.getTime();
+      }
+    }
+    Boolean hidden = RepositoryFile.HIDDEN_BY_DEFAULT;
+    if ( node.hasProperty( pentahoJcrConstants.getPHO_HIDDEN() ) ) {
+      hidden = node.getProperty( pentahoJcrConstants.getPHO_HIDDEN() ).getBoolean();
+    }
+    long fileSize = 0;
+    if ( node.hasProperty( pentahoJcrConstants.getPHO_FILESIZE() ) ) {
+      fileSize = node.getProperty( pentahoJcrConstants.getPHO_FILESIZE() ).getLong();
+    }
+    boolean aclNode = false;
+    if ( node.hasProperty( pentahoJcrConstants.getPHO_ACLNODE() ) ) {
+      aclNode = node.getProperty( pentahoJcrConstants.getPHO_ACLNODE() ).getBoolean();
+    }
+
+    String title = null;
+    String description = null;
+    if ( isPentahoHierarchyNode( session, pentahoJcrConstants, node ) ) {
+      if ( node.hasNode( pentahoJcrConstants.getPHO_LOCALES() ) ) {
+        // [BISERVER-8337] localize title and description
+        LocalePropertyResolver lpr = new LocalePropertyResolver( name );
+        LocalizationUtil localizationUtil = new LocalizationUtil( getLocalePropertiesMap( session,
+            pentahoJcrConstants, node.getNode( pentahoJcrConstants.getPHO_LOCALES() ) ), pentahoLocale.getLocale() );
+        title = localizationUtil.resolveLocalizedString( lpr.resolveDefaultTitleKey(), null );
+        if ( org.apache.commons.lang.StringUtils.isBlank( title ) ) {
+          title = localizationUtil.resolveLocalizedString( lpr.resolveTitleKey(), null );
+          if ( org.apache.commons.lang.StringUtils.isBlank( title ) ) {
+            title = localizationUtil.resolveLocalizedString( lpr.resolveNameKey(), title );
+          }
+        }
+        description = localizationUtil.resolveLocalizedString( lpr.resolveDefaultDescriptionKey(), null );
+        if ( org.apache.commons.lang.StringUtils.isBlank( description ) ) {
+          description = localizationUtil.resolveLocalizedString( lpr.resolveDescriptionKey(), description );
+        }
+      }
+      // BISERVER-8609 - Backwards compatibility. Fallback to the old data structure if title/description are not
+      // found
+      if ( title == null && node.hasNode( pentahoJcrConstants.getPHO_TITLE() ) ) {
+        title =
+            getLocalizedString( session, pentahoJcrConstants, node.getNode( pentahoJcrConstants.getPHO_TITLE() ),
+                pentahoLocale );
+      }
+      if ( description == null && node.hasNode( pentahoJcrConstants.getPHO_DESCRIPTION() ) ) {
+        description =
+            getLocalizedString( session, pentahoJcrConstants, node.getNode( pentahoJcrConstants.getPHO_DESCRIPTION() ),
+                pentahoLocale );
+      }
+    }
+
+    return new RepositoryFile.Builder( id, name ).path( path ).folder( isPentahoFolder( pentahoJcrConstants, node ) )
+        .hidden( hidden ).aclNode( aclNode ).createdDate( created ).lastModificationDate( lastModified ).fileSize(
+            fileSize ).title( title ).description( description ).locale( pentahoLocale.toString() ).build();
+  }
+
   private static RepositoryFileProxyFactory fileProxyFactory;
 
   private static RepositoryFileProxyFactory getRepositoryFileProxyFactory() {
@@ -1151,170 +1232,9 @@ public class JcrRepositoryFileUtils {
     Assert.isTrue( fileItem.isNode() );
     Node fileNode = (Node) fileItem;
 
-    return getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, repositoryRequest
-        .getDepth(), repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden(), accessVoterManager,
-        repositoryRequest.getTypes(), new MutableBoolean( false ), repositoryRequest.isIncludeSystemFolders(),
-        absPath );
-
-  }
-
-  /**
-   * Returns a RepositoryFileTree for a given node. This method will be called recursively for each folder it processes.
-   * The childNodeFilter is a filter used directly by the JCR jar to filter node names. Since JCR does not know a folder
-   * from a file (that is our construct), it is not capable of filtering out filenames but not folder names. Therefore,
-   * this logic will create two sets of children nodes. The <code>filteredChildrenSet</code> keeps the child nodes that
-   * satisfied the childNodeFilter. The <code> childrenFolderSet</code> keeps a set of all child folder nodes regardless
-   * of the value of the filter. We use the <code>childrenFolderSet</code> to know what folders to traverse, but we use
-   * the <code>filteredChildrenSet </code> to determine what actual files to include in the returned tree.
-   * <p>
-   * Just because we process a folder node does not necessarily mean the folder will be reported in the tree. It must
-   * first find a file that satisfies the criteria of the <code>childNodeFilter</code> mask. A file meeting the criteria
-   * may be any number of folders down the repository structure, so the <code>foundFiltered</code> MutableBoolean tells
-   * the caller if a file was found, at any level, meeting that criteria.
-   * 
-   * @param session
-   *          The current session in progress
-   * @param pentahoJcrConstants
-   * @param pathConversionHelper
-   * @param lockHelper
-   * @param fileNode
-   *          The node which will serve as the root of the tree
-   * @param depth
-   *          how many levels do we go down.
-   * @param childNodeFilter
-   *          The filter sent to JCR to retrieve defining which files are in scope
-   * @param showHidden
-   *          Whether to return hidden files
-   * @param accessVoterManager
-   *          See IRepositoryAccessVoterManager
-   * @param types
-   *          <code>FILE_TYPE_FILTERS</code> Types of files to return including FILES, FOLDERS, FILES_FOLDERS
-   * @param foundFiltered
-   *          This <code>MutableBoolean</code> will tell the caller if there was a file encountered, (at any level up to
-   *          the depth), that was compliant with the childNodeFilter. This will determine if this node, (and its
-   *          children), should be discarded because there are no relevant files.
-   * @return A RepositoryFileTree representing the entire tree at and below the given node that complies with file
-   *         filtering and other parameters of the tree request.
-   * @throws RepositoryException
-   */
-  private static RepositoryFileTree getTreeByNode( final Session session, final PentahoJcrConstants pentahoJcrConstants,
-      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Node fileNode,
-      final int depth, final String childNodeFilter, final boolean showHidden,
-      IRepositoryAccessVoterManager accessVoterManager, RepositoryRequest.FILES_TYPE_FILTER types,
-      MutableBoolean foundFiltered, final boolean includeSystemFolders, final String rootPath )
-      throws RepositoryException {
-
-    RepositoryFile rootFile =
-        nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, false, null );
-    if ( ( !showHidden && rootFile.isHidden() ) || rootFile.isAclNode() || ( !accessVoterManager.hasAccess( rootFile,
-        RepositoryFilePermission.READ, JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, rootFile
-            .getId() ), PentahoSessionHolder.getSession() ) ) ) {
-      return null;
-    }
-    List<RepositoryFileTree> children;
-    HashSet<Node> childrenFolderSet;
-    // if depth is neither negative (indicating unlimited depth) nor positive (indicating at least one more level
-    // to go)
-    if ( depth != 0 ) {
-      children = new ArrayList<RepositoryFileTree>();
-      int numberOfPasses = childNodeFilter != null && !childNodeFilter.equals( "*" ) ? 2 : 1;
-
-      // get Filtered Children set
-      HashSet<Node> filteredChildrenSet;
-      filteredChildrenSet = new HashSet<Node>();
-      NodeIterator childNodes = fileNode.getNodes( childNodeFilter );
-      while ( childNodes.hasNext() ) {
-        Node childNode = childNodes.nextNode();
-
-        boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
-        if ( !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS || pentahoFolder
-            && types == RepositoryRequest.FILES_TYPE_FILTER.FILES ) ) {
-          // do not to include (skip) system_folder children that are at root level if includeSystemFolders is false
-          if ( !( !includeSystemFolders && ( rootPath.equals( childNode.getParent().getPath() ) && isSystemFolder(
-            session, childNode ) ) ) ) {
-            filteredChildrenSet.add( childNode );
-          }
-        }
-      }
-
-      // Now get the unfiltered folder set not already in Filtered Set
-      childrenFolderSet = new HashSet<Node>();
-      if ( numberOfPasses == 2 ) {
-        if ( isPentahoFolder( pentahoJcrConstants, fileNode ) ) {
-          childNodes = fileNode.getNodes();
-          while ( childNodes.hasNext() ) {
-            Node childNode = childNodes.nextNode();
-            boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
-            if ( pentahoFolder ) {
-              childrenFolderSet.add( childNode );
-            }
-          }
-        }
-      }
-
-      // Now work on the unfiltered set of folders, if any, add them only if file have been found somewhere down the
-      // tree
-      for ( Node childNode : childrenFolderSet ) {
-        checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
-            lockHelper, depth, showHidden, accessVoterManager, types, foundFiltered, false, includeSystemFolders, rootPath );
-      }
-
-      // And finally, add Children in filtered
-      for ( Node childNode : filteredChildrenSet ) {
-        foundFiltered.setValue( true );
-        checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
-            lockHelper, depth, showHidden, accessVoterManager, types, foundFiltered, true, includeSystemFolders, rootPath );
-      }
-
-      children.removeIf( Objects::isNull );
-      Collections.sort( children );
-    } else {
-      children = null;
-    }
-    return new RepositoryFileTree( rootFile, children );
-  }
-
-  private static boolean isSystemFolder( Session session, Node childNode ) throws RepositoryException {
-    Map<String, Serializable> fileMeta = getFileMetadata( session, ( (NodeImpl) childNode ).getNodeId() );
-    boolean isSystemFolder = fileMeta.containsKey( IUnifiedRepository.SYSTEM_FOLDER ) ? (Boolean) fileMeta
-        .get( IUnifiedRepository.SYSTEM_FOLDER ) : false;
-    return isSystemFolder;
-  }
-
-  /**
-   * This method is called twice by <code>getTreeNode</code>. It's job is to determine whether the current child node
-   * should be added to the list of children for the node being processed. It is a separate method simply because it is
-   * too much code to appear twice in the above <code>getTreeNode</code> method. It also makes the recursive call back
-   * to getTreeByNode to process the next lower level of folder node (it must process the lower levels to know if the
-   * folder should be added). Finally, it returns the foundFiltered boolean to let the caller know if a file was found
-   * that satisfied the childNodeFilter.
-   */
-  static void checkNodeForTree( final Node childNode, List<RepositoryFileTree> children, final Session session,
-      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
-      final String childNodeFilter, final ILockHelper lockHelper, final int depth, final boolean showHidden,
-      final IRepositoryAccessVoterManager accessVoterManager, RepositoryRequest.FILES_TYPE_FILTER types,
-      MutableBoolean foundFiltered, boolean isRootFiltered, final boolean includeSystemFolders,
-      final String rootPath ) throws RepositoryException {
-
-    RepositoryFile file = nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, childNode );
-    if ( isSupportedNodeType( pentahoJcrConstants, childNode ) ) {
-      RepositoryFileAcl fileAcl;
-      try {
-        fileAcl = JcrRepositoryFileAclUtils.getAcl( session, pentahoJcrConstants, file.getId() );
-      } catch ( AccessDeniedException e ) {
-        return;
-      }
-      if ( accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, fileAcl, PentahoSessionHolder.getSession() ) ) {
-        MutableBoolean foundFilteredAtomic = new MutableBoolean( !isPentahoFolder( pentahoJcrConstants, childNode ) );
-        RepositoryFileTree repositoryFileTree =
-            getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, childNode, depth - 1,
-                childNodeFilter, showHidden, accessVoterManager, types, foundFilteredAtomic, includeSystemFolders, rootPath );
-        if ( repositoryFileTree != null && ( foundFilteredAtomic.booleanValue() || isRootFiltered ) ) {
-          foundFiltered.setValue( true );
-          children.add( repositoryFileTree );
-        }
-      }
-    }
+    return new JcrRepositoryFileTreeBuilder( session, pentahoJcrConstants, pathConversionHelper, accessVoterManager,
+        repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden(), repositoryRequest.getTypes(),
+        repositoryRequest.isIncludeSystemFolders(), absPath ).build( fileNode, repositoryRequest.getDepth() );
   }
 
   public static Node updateFileLocaleProperties( final Session session, final Serializable fileId, String locale,
@@ -57,6 +57,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Copy-and-paste of {@link JcrSessionFactory} except that this implementation delegates to a {@link
@@ -164,7 +165,7 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
   public PentahoJcrSessionFactory getSessionFactory() {
     if ( sessionFactory == null ) {
       // use default
-      sessionFactory = new GuavaCachePoolPentahoJcrSessionFactory( this.repository, this.workspaceName, null );
+      sessionFactory = new PooledPentahoJcrSessionFactory( this.repository, this.workspaceName, null );
     }
     return sessionFactory;
   }
@@ -313,6 +314,9 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
       unregisterNamespaces();
       unregisterNodeTypes();
     }
+    if ( sessionFactory instanceof DisposableBean ) {
+      ( (DisposableBean) sessionFactory ).destroy();
+    }
   }
 
   /**
@@ -361,8 +365,13 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
     if ( LOG.isDebugEnabled() ) {
       LOG.debug( "using credentials:" + creds );
     }
-    Session session = getSessionFactory().getSession( creds );
-    session = createSessionProxy( session );
+    PentahoJcrSessionFactory factory = getSessionFactory();
+    Session session = factory.getSession( creds );
+    if ( factory instanceof PentahoJcrSessionPool ) {
+      session = createSessionProxy( session, (PentahoJcrSessionPool) factory );
+    } else {
+      session = createSessionProxy( session );
+    }
     return addListeners( session );
   }
 
@@ -379,6 +388,19 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
             new LogoutSuppressingInvocationHandler( session ) );
   }
 
+  /**
+   * Wraps a session obtained from a pool. Logging out of the proxy returns the session to the pool.
+   *
+   * @param session
+   * @param pool
+   * @return
+   */
+  public Session createSessionProxy( Session session, PentahoJcrSessionPool pool ) {
+    return (Session) Proxy
+        .newProxyInstance( this.getClass().getClassLoader(), new Class[] { Session.class, XASession.class },
+            new LogoutSuppressingInvocationHandler( session, pool ) );
+  }
+
 
   /**
    * @see org.springframework.extensions.jcr.SessionFactory#getSessionHolder(javax.jcr.Session)
@@ -632,9 +654,20 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
 
     private LogoutDelegate logoutDelegate = LogoutDelegate.DefaultLogoutDelegate;
     private final Session target;
+    private final PentahoJcrSessionPool pool;
+    private final AtomicBoolean released = new AtomicBoolean();
 
     public LogoutSuppressingInvocationHandler( Session target ) {
+      this( target, null );
+    }
+
+    /**
+     * @param target the session to wrap
+     * @param pool   the pool the session came from; logout hands the session back to it, once
+     */
+    public LogoutSuppressingInvocationHandler( Session target, PentahoJcrSessionPool pool ) {
       this.target = target;
+      this.pool = pool;
     }
 
     public void setLogoutDelegate(
@@ -648,7 +681,11 @@ public class CredentialsStrategySessionFactory implements InitializingBean, Disp
       } else if ( method.getName().equals( "hashCode" ) ) {
         return this.hashCode();
       } else if ( method.getName().equals( "logout" ) ) {
-        if ( logoutDelegate.shouldLogout() ) {
+        if ( pool != null ) {
+          if ( released.compareAndSet( false, true ) ) {
+            pool.release( target );
+          }
+        } else if ( logoutDelegate.shouldLogout() ) {
           target.logout();
         }
         return null;
@@ -0,0 +1,38 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import javax.jcr.Session;
+
+/**
+ * A {@link PentahoJcrSessionFactory} which hands out sessions on loan. Every session obtained from
+ * {@link #getSession(javax.jcr.Credentials)} must be handed back exactly once through {@link #release(Session)}
+ * instead of being logged out.
+ */
+public interface PentahoJcrSessionPool extends PentahoJcrSessionFactory {
+
+  /**
+   * Returns a session obtained from this pool. Sessions which were not obtained from this pool are logged out.
+   *
+   * @param session the session to return
+   */
+  void release( Session session );
+}
@@ -0,0 +1,514 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.pentaho.platform.api.engine.ISystemConfig;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.io.IOException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JCR Session Factory which pools Sessions per user. A session is checked out for exclusive use and goes back to the
+ * pool once every reference to it has been released, after which any thread may reuse it for the same user. Nested
+ * requests from the thread already holding a session for a user share that session and increase its reference count.
+ * <p>
+ * Idle sessions are logged out once they have not been used for <code>cache-ttl</code> seconds, and at most
+ * <code>cache-size</code> of them are kept. <code>session-pool-max-active</code> limits the number of sessions checked
+ * out at the same time (0 for no limit); a request waits up to <code>session-pool-max-wait</code> milliseconds for a
+ * session to be released and is then served an unpooled session. <code>session-refresh</code> decides when sessions
+ * are refreshed: on <code>checkout</code> from the pool, on every request (<code>always</code>) or <code>never</code>.
+ * All are read from repository.spring.properties.
+ * <p>
+ * Sessions created while a transaction is being started are not pooled.
+ */
+public class PooledPentahoJcrSessionFactory extends NoCachePentahoJcrSessionFactory
+  implements PentahoJcrSessionPool, DisposableBean {
+
+  /**
+   * When pooled sessions are refreshed, discarding their transient changes and picking up changes made by other
+   * sessions.
+   */
+  public enum RefreshPolicy {
+    /** Every time the session is handed out, including to a thread already holding it. */
+    ALWAYS,
+    /** When the session is taken from the pool. */
+    CHECKOUT,
+    /** Never. */
+    NEVER
+  }
+
+  private static final Logger logger = LoggerFactory.getLogger( PooledPentahoJcrSessionFactory.class );
+
+  private final PentahoTransactionManager transactionManager;
+  private final int maxIdle;
+  private final long idleTimeoutMillis;
+  private final int maxActive;
+  private final long maxWaitMillis;
+  private final RefreshPolicy refreshPolicy;
+  private final Semaphore permits;
+
+  private final ConcurrentMap<String, Deque<IdleSession>> idleSessions =
+    new ConcurrentHashMap<String, Deque<IdleSession>>();
+  private final ConcurrentMap<Session, Lease> leases = new ConcurrentHashMap<Session, Lease>();
+  private final ThreadLocal<Map<String, Lease>> threadLeases = new ThreadLocal<Map<String, Lease>>() {
+    @Override protected Map<String, Lease> initialValue() {
+      return new ConcurrentHashMap<String, Lease>();
+    }
+  };
+  private final AtomicLong lastEviction = new AtomicLong( System.currentTimeMillis() );
+  private volatile boolean closed;
+
+  private final AtomicInteger activeCount = new AtomicInteger();
+  private final AtomicInteger idleCount = new AtomicInteger();
+  private final AtomicLong createdCount = new AtomicLong();
+  private final AtomicLong reusedCount = new AtomicLong();
+  private final AtomicLong destroyedCount = new AtomicLong();
+  private final AtomicLong waitCount = new AtomicLong();
+  private final AtomicLong waitTimeoutCount = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace ) {
+    this( repository, workspace, null );
+  }
+
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace,
+                                         PentahoTransactionManager transactionManager ) {
+    this( repository, workspace, transactionManager, getRepositoryProperties() );
+  }
+
+  private PooledPentahoJcrSessionFactory( Repository repository, String workspace,
+                                          PentahoTransactionManager transactionManager, Properties properties ) {
+    this( repository, workspace, transactionManager,
+      getInt( properties, "cache-size", 100 ),
+      getInt( properties, "cache-ttl", 300 ),
+      getInt( properties, "session-pool-max-active", 0 ),
+      getInt( properties, "session-pool-max-wait", 5000 ),
+      getRefreshPolicy( properties.getProperty( "session-refresh" ) ) );
+  }
+
+  /**
+   * @param maxIdle            maximum number of idle sessions kept, across all users
+   * @param idleTimeoutSeconds seconds after which an idle session is logged out, 0 or less to keep them
+   * @param maxActive          maximum number of sessions checked out at the same time, 0 or less for no limit
+   * @param maxWaitMillis      how long to wait for a session when <code>maxActive</code> is reached
+   * @param refreshPolicy      when sessions are refreshed
+   */
+  public PooledPentahoJcrSessionFactory( Repository repository, String workspace,
+                                         PentahoTransactionManager transactionManager, int maxIdle,
+                                         int idleTimeoutSeconds, int maxActive, long maxWaitMillis,
+                                         RefreshPolicy refreshPolicy ) {
+    super( repository, workspace );
+    this.transactionManager = transactionManager;
+    this.maxIdle = maxIdle;
+    this.idleTimeoutMillis = TimeUnit.SECONDS.toMillis( idleTimeoutSeconds );
+    this.maxActive = maxActive;
+    this.maxWaitMillis = maxWaitMillis;
+    this.refreshPolicy = refreshPolicy;
+    this.permits = maxActive > 0 ? new Semaphore( maxActive ) : null;
+  }
+
+  @Override public Session getSession( Credentials creds ) throws RepositoryException {
+    if ( closed || !( creds instanceof SimpleCredentials )
+      || ( transactionManager != null && transactionManager.isCreatingTransaction() ) ) {
+      if ( logger.isDebugEnabled() ) {
+        logger.debug( "Not pooling session, obtaining it directly: " + creds );
+      }
+      return super.getSession( creds );
+    }
+    String userId = ( (SimpleCredentials) creds ).getUserID();
+    Map<String, Lease> heldLeases = threadLeases.get();
+
+    Lease lease = heldLeases.get( userId );
+    if ( lease != null ) {
+      if ( lease.session.isLive() && lease.retain() ) {
+        if ( refreshPolicy == RefreshPolicy.ALWAYS ) {
+          lease.session.refresh( false );
+        }
+        return lease.session;
+      }
+      // logged out behind our back
+      endLease( lease );
+    }
+
+    if ( !acquirePermit() ) {
+      logger.warn( "No JCR session became available within " + maxWaitMillis + " ms, creating an unpooled session: "
+        + creds );
+      return super.getSession( creds );
+    }
+    Session session;
+    try {
+      session = checkout( userId );
+      if ( session == null ) {
+        session = super.getSession( creds );
+        createdCount.incrementAndGet();
+      } else {
+        reusedCount.incrementAndGet();
+        if ( refreshPolicy != RefreshPolicy.NEVER ) {
+          session.refresh( false );
+        }
+      }
+    } catch ( RepositoryException | RuntimeException e ) {
+      releasePermit();
+      throw e;
+    }
+
+    lease = new Lease( userId, session, heldLeases );
+    leases.put( session, lease );
+    heldLeases.put( userId, lease );
+    activeCount.incrementAndGet();
+    return session;
+  }
+
+  @Override public void release( Session session ) {
+    Lease lease = leases.get( session );
+    if ( lease == null ) {
+      // unpooled
+      destroy( session );
+      return;
+    }
+    if ( lease.references.decrementAndGet() > 0 ) {
+      return;
+    }
+    if ( endLease( lease ) ) {
+      checkin( lease.userId, session );
+    }
+    evictExpiredIfDue();
+  }
+
+  /**
+   * Logs out all idle sessions. Sessions still checked out are logged out when they are released.
+   */
+  @Override public void destroy() {
+    closed = true;
+    for ( Deque<IdleSession> deque : idleSessions.values() ) {
+      IdleSession idle;
+      while ( ( idle = deque.pollFirst() ) != null ) {
+        if ( idle.claim() ) {
+          idleCount.decrementAndGet();
+          destroy( idle.session );
+        }
+      }
+    }
+  }
+
+  private boolean acquirePermit() {
+    if ( permits == null || permits.tryAcquire() ) {
+      return true;
+    }
+    waitCount.incrementAndGet();
+    long start = System.nanoTime();
+    boolean acquired = false;
+    try {
+      acquired = permits.tryAcquire( maxWaitMillis, TimeUnit.MILLISECONDS );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+    totalWaitNanos.addAndGet( System.nanoTime() - start );
+    if ( !acquired ) {
+      waitTimeoutCount.incrementAndGet();
+    }
+    return acquired;
+  }
+
+  private void releasePermit() {
+    if ( permits != null ) {
+      permits.release();
+    }
+  }
+
+  /**
+   * Ends the lease once, however often it is called.
+   *
+   * @return whether this call ended the lease
+   */
+  private boolean endLease( Lease lease ) {
+    if ( !leases.remove( lease.session, lease ) ) {
+      return false;
+    }
+    lease.owner.remove( lease.userId, lease );
+    activeCount.decrementAndGet();
+    releasePermit();
+    return true;
+  }
+
+  private Session checkout( String userId ) {
+    Deque<IdleSession> deque = idleSessions.get( userId );
+    if ( deque == null ) {
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    IdleSession idle;
+    while ( ( idle = deque.pollFirst() ) != null ) {
+      if ( !idle.claim() ) {
+        continue;
+      }
+      idleCount.decrementAndGet();
+      if ( idle.isExpired( now ) || !idle.session.isLive() ) {
+        destroy( idle.session );
+        continue;
+      }
+      return idle.session;
+    }
+    return null;
+  }
+
+  private void checkin( String userId, Session session ) {
+    if ( closed || !session.isLive() || idleCount.get() >= maxIdle ) {
+      destroy( session );
+      return;
+    }
+    try {
+      if ( session.hasPendingChanges() ) {
+        session.refresh( false );
+      }
+    } catch ( RepositoryException e ) {
+      logger.warn( "Could not discard pending changes, not pooling session of " + userId, e );
+      destroy( session );
+      return;
+    }
+    Deque<IdleSession> deque = idleSessions.get( userId );
+    if ( deque == null ) {
+      Deque<IdleSession> newDeque = new ConcurrentLinkedDeque<IdleSession>();
+      deque = idleSessions.putIfAbsent( userId, newDeque );
+      if ( deque == null ) {
+        deque = newDeque;
+      }
+    }
+    idleCount.incrementAndGet();
+    // most recently used first, so the others can expire
+    deque.addFirst( new IdleSession( session, System.currentTimeMillis() + idleTimeoutMillis ) );
+  }
+
+  private void evictExpiredIfDue() {
+    if ( idleTimeoutMillis <= 0 ) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    long last = lastEviction.get();
+    if ( now - last < idleTimeoutMillis / 2 || !lastEviction.compareAndSet( last, now ) ) {
+      return;
+    }
+    for ( Deque<IdleSession> deque : idleSessions.values() ) {
+      for ( Iterator<IdleSession> iterator = deque.iterator(); iterator.hasNext(); ) {
+        IdleSession idle = iterator.next();
+        if ( idle.isExpired( now ) && idle.claim() ) {
+          deque.removeFirstOccurrence( idle );
+          idleCount.decrementAndGet();
+          destroy( idle.session );
+        }
+      }
+    }
+  }
+
+  private void destroy( Session session ) {
+    try {
+      if ( session.isLive() ) {
+        session.logout();
+      }
+    } catch ( RuntimeException e ) {
+      logger.warn( "Error logging out session", e );
+    }
+    destroyedCount.incrementAndGet();
+  }
+
+  /**
+   * @return the number of sessions currently checked out
+   */
+  public int getActiveCount() {
+    return activeCount.get();
+  }
+
+  /**
+   * @return the number of sessions waiting in the pool
+   */
+  public int getIdleCount() {
+    return idleCount.get();
+  }
+
+  /**
+   * @return the number of sessions created for the pool
+   */
+  public long getCreatedCount() {
+    return createdCount.get();
+  }
+
+  /**
+   * @return the number of times a session was taken from the pool instead of being created
+   */
+  public long getReusedCount() {
+    return reusedCount.get();
+  }
+
+  /**
+   * @return the number of sessions logged out by the pool
+   */
+  public long getDestroyedCount() {
+    return destroyedCount.get();
+  }
+
+  /**
+   * @return the number of requests which had to wait because <code>maxActive</code> sessions were checked out
+   */
+  public long getWaitCount() {
+    return waitCount.get();
+  }
+
+  /**
+   * @return the number of requests which gave up waiting and were served an unpooled session
+   */
+  public long getWaitTimeoutCount() {
+    return waitTimeoutCount.get();
+  }
+
+  /**
+   * @return the total time spent waiting for sessions, in milliseconds
+   */
+  public long getTotalWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( totalWaitNanos.get() );
+  }
+
+  public int getMaxIdle() {
+    return maxIdle;
+  }
+
+  public int getMaxActive() {
+    return maxActive;
+  }
+
+  public RefreshPolicy getRefreshPolicy() {
+    return refreshPolicy;
+  }
+
+  @Override public String toString() {
+    return "PooledPentahoJcrSessionFactory[active=" + getActiveCount() + ", idle=" + getIdleCount() + ", created="
+      + getCreatedCount() + ", reused=" + getReusedCount() + ", destroyed=" + getDestroyedCount() + ", waits="
+      + getWaitCount() + ", waitTimeouts=" + getWaitTimeoutCount() + ", waitMillis=" + getTotalWaitMillis() + "]";
+  }
+
+  private static Properties getRepositoryProperties() {
+    ISystemConfig systemConfig = PentahoSystem.get( ISystemConfig.class );
+    if ( systemConfig != null && systemConfig.getConfiguration( "repository" ) != null ) {
+      try {
+        return systemConfig.getConfiguration( "repository" ).getProperties();
+      } catch ( IOException e ) {
+        logger.info( "Could not read repository configuration, using default session pool settings" );
+      }
+    }
+    return new Properties();
+  }
+
+  private static int getInt( Properties properties, String name, int defaultValue ) {
+    String value = properties.getProperty( name );
+    if ( value == null || value.trim().isEmpty() ) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt( value.trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Invalid value for repository." + name + ": " + value );
+      return defaultValue;
+    }
+  }
+
+  private static RefreshPolicy getRefreshPolicy( String value ) {
+    if ( value == null || value.trim().isEmpty() ) {
+      return RefreshPolicy.CHECKOUT;
+    }
+    try {
+      return RefreshPolicy.valueOf( value.trim().toUpperCase() );
+    } catch ( IllegalArgumentException e ) {
+      logger.warn( "Invalid value for repository.session-refresh: " + value );
+      return RefreshPolicy.CHECKOUT;
+    }
+  }
+
+  /**
+   * A checked out session and the number of references handed out for it.
+   */
+  private static class Lease {
+    final String userId;
+    final Session session;
+    final Map<String, Lease> owner;
+    final AtomicInteger references = new AtomicInteger( 1 );
+
+    Lease( String userId, Session session, Map<String, Lease> owner ) {
+      this.userId = userId;
+      this.session = session;
+      this.owner = owner;
+    }
+
+    /**
+     * Adds a reference unless the last one is already gone.
+     */
+    boolean retain() {
+      int current;
+      do {
+        current = references.get();
+        if ( current <= 0 ) {
+          return false;
+        }
+      } while ( !references.compareAndSet( current, current + 1 ) );
+      return true;
+    }
+  }
+
+  /**
+   * A session waiting in the pool. Whoever claims it first, a checkout or the eviction, owns it.
+   */
+  private class IdleSession {
+    final Session session;
+    final long expires;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    IdleSession( Session session, long expires ) {
+      this.session = session;
+      this.expires = expires;
+    }
+
+    boolean claim() {
+      return claimed.compareAndSet( false, true );
+    }
+
+    boolean isExpired( long now ) {
+      return idleTimeoutMillis > 0 && now >= expires;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.fileio;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.IStreamListener;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SpillingRepositoryFileOutputStreamTest {
+
+  private static final String PATH = "/home/admin/report.pdf";
+
+  private IUnifiedRepository repository;
+  private ByteArrayOutputStream stored;
+
+  @Before
+  public void setUp() {
+    repository = mock( IUnifiedRepository.class );
+    stored = new ByteArrayOutputStream();
+    RepositoryFile parent = new RepositoryFile.Builder( "admin" ).id( "parentId" ).path( "/home/admin" )
+      .folder( true ).build();
+    doReturn( parent ).when( repository ).getFile( "/home/admin" );
+    doAnswer( new Answer<RepositoryFile>() {
+      @Override
+      public RepositoryFile answer( InvocationOnMock invocation ) throws Throwable {
+        IRepositoryFileData data = (IRepositoryFileData) invocation.getArguments()[ 2 ];
+        IOUtils.copy( ( (SimpleRepositoryFileData) data ).getInputStream(), stored );
+        return (RepositoryFile) invocation.getArguments()[ 1 ];
+      }
+    } ).when( repository ).createFile( any(), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+      anyString() );
+  }
+
+  @Test
+  public void testContentBelowThresholdStaysInMemory() throws Exception {
+    SpillingRepositoryFileOutputStream out =
+      new SpillingRepositoryFileOutputStream( PATH, false, false, repository, false, 16 );
+    byte[] content = "small".getBytes( "UTF-8" );
+    out.write( content );
+
+    assertFalse( out.isSpilled() );
+    assertEquals( content.length, out.size() );
+
+    out.close();
+    assertArrayEquals( content, stored.toByteArray() );
+  }
+
+  @Test
+  public void testContentAboveThresholdSpillsToDisk() throws Exception {
+    SpillingRepositoryFileOutputStream out =
+      new SpillingRepositoryFileOutputStream( PATH, false, false, repository, false, 16 );
+    IStreamListener listener = mock( IStreamListener.class );
+    out.addListener( listener );
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for ( int i = 0; i < 100; i++ ) {
+      byte[] chunk = ( "line " + i + "\n" ).getBytes( "UTF-8" );
+      out.write( chunk );
+      expected.write( chunk );
+    }
+    out.write( '!' );
+    expected.write( '!' );
+
+    assertTrue( out.isSpilled() );
+    assertEquals( expected.size(), out.size() );
+    assertArrayEquals( expected.toByteArray(), out.toByteArray() );
+
+    out.close();
+    assertFalse( out.isSpilled() );
+    assertArrayEquals( expected.toByteArray(), stored.toByteArray() );
+    verify( listener ).fileCreated( PATH );
+  }
+
+  @Test
+  public void testNonPositiveThresholdDisablesSpilling() throws Exception {
+    SpillingRepositoryFileOutputStream out =
+      new SpillingRepositoryFileOutputStream( PATH, false, false, repository, false, 0 );
+    out.write( new byte[ 1024 ] );
+    assertFalse( out.isSpilled() );
+
+    out.close();
+    verify( repository ).createFile( eq( "parentId" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+      anyString() );
+  }
+
+  @Test
+  public void testResetDiscardsSpilledContent() throws Exception {
+    SpillingRepositoryFileOutputStream out =
+      new SpillingRepositoryFileOutputStream( PATH, false, false, repository, false, 4 );
+    out.write( new byte[ 64 ] );
+    assertTrue( out.isSpilled() );
+
+    out.reset();
+    assertFalse( out.isSpilled() );
+    assertEquals( 0, out.size() );
+  }
+}
@@ -14,28 +14,37 @@
  * See the GNU General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.platform.repository2.unified.jcr;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Locale;
 
 import javax.jcr.AccessDeniedException;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.UnsupportedRepositoryOperationException;
@@ -44,21 +53,26 @@ import javax.jcr.version.Version;
 import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
 
-import org.apache.commons.lang.mutable.MutableBoolean;
 import org.apache.jackrabbit.core.VersionManagerImpl;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.locale.IPentahoLocale;
 import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
 import org.pentaho.platform.api.repository2.unified.IRepositoryVersionManager;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.repository2.locale.PentahoLocale;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -270,32 +284,162 @@ public class JcrRepositoryFileUtilsTest {
   }
 
   @Test
-  public void testCheckNodeForTree() throws Exception {
-    List<RepositoryFileTree> children = new ArrayList<>();
+  public void testBuildTreeSkipsChildWithUnreadableAcl() throws Exception {
     IPathConversionHelper pathConversionHelper = new DefaultPathConversionHelper();
-    ILockHelper lockHelperMock = mock( ILockHelper.class );
     IRepositoryAccessVoterManager repositoryAccessVoterManagerMock = mock( IRepositoryAccessVoterManager.class );
-    MutableBoolean foundFiltered = new MutableBoolean();
+    Node childNodeMock = mock( Node.class );
+    RepositoryFile rootFileMock = mock( RepositoryFile.class );
     RepositoryFile fileMock = mock( RepositoryFile.class );
+    NodeIterator childNodes = mockChildNodes( childNodeMock );
 
+    when( rootFileMock.getId() ).thenReturn( 0 );
     when( fileMock.getId() ).thenReturn( 1 );
+    when( nodeMock.getNodes( "*" ) ).thenReturn( childNodes );
+    when( repositoryAccessVoterManagerMock.hasAccess( any( RepositoryFile.class ), any( RepositoryFilePermission.class ),
+      any( RepositoryFileAcl.class ), any( IPentahoSession.class ) ) ).thenReturn( true );
 
     PowerMockito.mockStatic( JcrRepositoryFileUtils.class );
     PowerMockito.mockStatic( JcrRepositoryFileAclUtils.class );
 
-    PowerMockito.doCallRealMethod().when( JcrRepositoryFileUtils.class, "checkNodeForTree", nodeMock,
-      children, sessionMock, pJcrConstMock, pathConversionHelper, "childNodeFilter", lockHelperMock, 0, false, repositoryAccessVoterManagerMock, RepositoryRequest.FILES_TYPE_FILTER.FOLDERS, foundFiltered, true, false, "/" );
-    when( JcrRepositoryFileUtils.nodeToFile( sessionMock, pJcrConstMock, pathConversionHelper, lockHelperMock, nodeMock ) ).thenReturn( fileMock );
-    when( JcrRepositoryFileUtils.isSupportedNodeType( pJcrConstMock, nodeMock ) ).thenReturn( true );
+    when( JcrRepositoryFileUtils.nodeToFileSummary( eq( sessionMock ), eq( pJcrConstMock ), eq( pathConversionHelper ),
+      eq( nodeMock ), any( IPentahoLocale.class ) ) ).thenReturn( rootFileMock );
+    when( JcrRepositoryFileUtils.nodeToFileSummary( eq( sessionMock ), eq( pJcrConstMock ), eq( pathConversionHelper ),
+      eq( childNodeMock ), any( IPentahoLocale.class ) ) ).thenReturn( fileMock );
+    when( JcrRepositoryFileUtils.isSupportedNodeType( pJcrConstMock, childNodeMock ) ).thenReturn( true );
+    when( JcrRepositoryFileAclUtils.getAcl( sessionMock, pJcrConstMock, 0 ) ).thenReturn( mock( RepositoryFileAcl.class ) );
     when( JcrRepositoryFileAclUtils.getAcl( sessionMock, pJcrConstMock, 1 ) ).thenThrow( new AccessDeniedException() );
 
-    try {
-      JcrRepositoryFileUtils.checkNodeForTree( nodeMock, children, sessionMock, pJcrConstMock, pathConversionHelper,
-        "childNodeFilter", lockHelperMock, 0, false, repositoryAccessVoterManagerMock,
-        RepositoryRequest.FILES_TYPE_FILTER.FOLDERS, foundFiltered, true, false, "/" );
-    } catch ( Exception e ) {
-      fail();
-    }
+    JcrRepositoryFileTreeBuilder builder =
+      new JcrRepositoryFileTreeBuilder( sessionMock, pJcrConstMock, pathConversionHelper,
+        repositoryAccessVoterManagerMock, "*", false, RepositoryRequest.FILES_TYPE_FILTER.FILES_FOLDERS, true, "/" );
+    RepositoryFileTree tree = builder.build( nodeMock, -1 );
+
+    assertSame( rootFileMock, tree.getFile() );
+    assertTrue( tree.getChildren().isEmpty() );
+    assertEquals( 2, builder.getNodeCount() );
+    assertEquals( 2, builder.getAclCount() );
+  }
+
+  @Test
+  public void testBuildTreeEvaluatesMatchingFolderOnce() throws Exception {
+    IPathConversionHelper pathConversionHelper = new DefaultPathConversionHelper();
+    IRepositoryAccessVoterManager repositoryAccessVoterManagerMock = mock( IRepositoryAccessVoterManager.class );
+    Node folderNodeMock = mock( Node.class );
+    Node otherNodeMock = mock( Node.class );
+    RepositoryFile rootFileMock = mock( RepositoryFile.class );
+    RepositoryFile folderMock = mock( RepositoryFile.class );
+    NodeIterator childNodes = mockChildNodes( folderNodeMock, otherNodeMock );
+
+    when( folderNodeMock.getName() ).thenReturn( "public" );
+    when( otherNodeMock.getName() ).thenReturn( "home" );
+    when( folderMock.getName() ).thenReturn( "public" );
+    when( nodeMock.getNodes() ).thenReturn( childNodes );
+    when( repositoryAccessVoterManagerMock.hasAccess( any( RepositoryFile.class ), any( RepositoryFilePermission.class ),
+      any( RepositoryFileAcl.class ), any( IPentahoSession.class ) ) ).thenReturn( true );
+
+    PowerMockito.mockStatic( JcrRepositoryFileUtils.class );
+    PowerMockito.mockStatic( JcrRepositoryFileAclUtils.class );
+
+    when( JcrRepositoryFileUtils.nodeToFileSummary( eq( sessionMock ), eq( pJcrConstMock ), eq( pathConversionHelper ),
+      eq( nodeMock ), any( IPentahoLocale.class ) ) ).thenReturn( rootFileMock );
+    when( JcrRepositoryFileUtils.nodeToFileSummary( eq( sessionMock ), eq( pJcrConstMock ), eq( pathConversionHelper ),
+      eq( folderNodeMock ), any( IPentahoLocale.class ) ) ).thenReturn( folderMock );
+    when( JcrRepositoryFileUtils.isPentahoFolder( pJcrConstMock, nodeMock ) ).thenReturn( true );
+    when( JcrRepositoryFileUtils.isPentahoFolder( pJcrConstMock, folderNodeMock ) ).thenReturn( true );
+    when( JcrRepositoryFileUtils.isSupportedNodeType( pJcrConstMock, folderNodeMock ) ).thenReturn( true );
+
+    JcrRepositoryFileTreeBuilder builder =
+      new JcrRepositoryFileTreeBuilder( sessionMock, pJcrConstMock, pathConversionHelper,
+        repositoryAccessVoterManagerMock, "pub*", false, RepositoryRequest.FILES_TYPE_FILTER.FILES_FOLDERS, true, "/" );
+    RepositoryFileTree tree = builder.build( nodeMock, 1 );
+
+    // the folder matches the filter and would also be traversed as a folder, it must show up only once
+    assertEquals( 1, tree.getChildren().size() );
+    assertSame( folderMock, tree.getChildren().get( 0 ).getFile() );
+    assertNull( tree.getChildren().get( 0 ).getChildren() );
+    assertEquals( 2, builder.getNodeCount() );
+    verify( nodeMock, never() ).getNodes( anyString() );
+  }
+
+  @Test
+  public void testNodeToFileSummaryReadsNoLockOrVersion() throws Exception {
+    IPathConversionHelper pathConversionHelper = mock( IPathConversionHelper.class );
+    Node fileNode = mock( Node.class );
+    Property createdProperty = mock( Property.class );
+    Property lastModifiedProperty = mock( Property.class );
+    Property hiddenProperty = mock( Property.class );
+    Property fileSizeProperty = mock( Property.class );
+    Calendar created = Calendar.getInstance();
+    created.setTimeInMillis( 1000L );
+    Calendar lastModified = Calendar.getInstance();
+    lastModified.setTimeInMillis( 2000L );
+
+    when( pJcrConstMock.getNT_FROZENNODE() ).thenReturn( "nt:frozenNode" );
+    when( pJcrConstMock.getPHO_NT_PENTAHOFILE() ).thenReturn( "pho_nt:pentahoFile" );
+    when( pJcrConstMock.getPHO_NT_PENTAHOFOLDER() ).thenReturn( "pho_nt:pentahoFolder" );
+    when( pJcrConstMock.getPHO_NT_PENTAHOHIERARCHYNODE() ).thenReturn( "pho_nt:pentahoHierarchyNode" );
+    when( pJcrConstMock.getJCR_CREATED() ).thenReturn( "jcr:created" );
+    when( pJcrConstMock.getPHO_LASTMODIFIED() ).thenReturn( "pho:lastModified" );
+    when( pJcrConstMock.getPHO_HIDDEN() ).thenReturn( "pho:hidden" );
+    when( pJcrConstMock.getPHO_ACLNODE() ).thenReturn( "pho:aclNode" );
+    when( pJcrConstMock.getPHO_FILESIZE() ).thenReturn( "pho:fileSize" );
+    when( pJcrConstMock.getPHO_LOCALES() ).thenReturn( "pho:locales" );
+    when( pJcrConstMock.getPHO_TITLE() ).thenReturn( "pho:title" );
+    when( pJcrConstMock.getPHO_DESCRIPTION() ).thenReturn( "pho:description" );
+    when( sessionMock.getRootNode() ).thenReturn( nodeMock );
+    when( pathConversionHelper.absToRel( "/pentaho/tenant0/public/report.prpt" ) ).thenReturn( "/public/report.prpt" );
+    when( fileNode.getIdentifier() ).thenReturn( "fileId" );
+    when( fileNode.getPath() ).thenReturn( "/pentaho/tenant0/public/report.prpt" );
+    when( fileNode.getName() ).thenReturn( "report.prpt" );
+    when( fileNode.isNodeType( "pho_nt:pentahoFile" ) ).thenReturn( true );
+    when( fileNode.isNodeType( "pho_nt:pentahoHierarchyNode" ) ).thenReturn( true );
+    when( fileNode.hasProperty( "jcr:created" ) ).thenReturn( true );
+    when( fileNode.getProperty( "jcr:created" ) ).thenReturn( createdProperty );
+    when( createdProperty.getDate() ).thenReturn( created );
+    when( fileNode.getProperty( "pho:lastModified" ) ).thenReturn( lastModifiedProperty );
+    when( lastModifiedProperty.getDate() ).thenReturn( lastModified );
+    when( fileNode.hasProperty( "pho:hidden" ) ).thenReturn( true );
+    when( fileNode.getProperty( "pho:hidden" ) ).thenReturn( hiddenProperty );
+    when( hiddenProperty.getBoolean() ).thenReturn( true );
+    when( fileNode.hasProperty( "pho:fileSize" ) ).thenReturn( true );
+    when( fileNode.getProperty( "pho:fileSize" ) ).thenReturn( fileSizeProperty );
+    when( fileSizeProperty.getLong() ).thenReturn( 42L );
+
+    RepositoryFile file =
+      JcrRepositoryFileUtils.nodeToFileSummary( sessionMock, pJcrConstMock, pathConversionHelper, fileNode,
+        new PentahoLocale( Locale.US ) );
+
+    assertEquals( "fileId", file.getId() );
+    assertEquals( "report.prpt", file.getName() );
+    assertEquals( "report.prpt", file.getTitle() );
+    assertEquals( "/public/report.prpt", file.getPath() );
+    assertFalse( file.isFolder() );
+    assertTrue( file.isHidden() );
+    assertFalse( file.isAclNode() );
+    assertEquals( new Date( 1000L ), file.getCreatedDate() );
+    assertEquals( new Date( 2000L ), file.getLastModifiedDate() );
+    assertEquals( Long.valueOf( 42L ), file.getFileSize() );
+    verify( pJcrConstMock, never() ).getPHO_METADATA();
+    verify( pJcrConstMock, never() ).getPHO_MIX_VERSIONABLE();
+    verify( pJcrConstMock, never() ).getMIX_LOCKABLE();
+  }
+
+  private static NodeIterator mockChildNodes( final Node... nodes ) {
+    final Iterator<Node> iterator = Arrays.asList( nodes ).iterator();
+    NodeIterator nodeIterator = mock( NodeIterator.class );
+    when( nodeIterator.hasNext() ).thenAnswer( new Answer<Boolean>() {
+      @Override
+      public Boolean answer( InvocationOnMock invocation ) {
+        return iterator.hasNext();
+      }
+    } );
+    when( nodeIterator.nextNode() ).thenAnswer( new Answer<Node>() {
+      @Override
+      public Node answer( InvocationOnMock invocation ) {
+        return iterator.next();
+      }
+    } );
+    return nodeIterator;
   }
 
 }
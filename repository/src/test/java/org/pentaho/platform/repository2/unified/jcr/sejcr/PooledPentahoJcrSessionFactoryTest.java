@@ -0,0 +1,235 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.repository2.unified.jcr.sejcr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.repository2.unified.jcr.sejcr.PooledPentahoJcrSessionFactory.RefreshPolicy;
+
+import javax.jcr.Credentials;
+import javax.jcr.Repository;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PooledPentahoJcrSessionFactoryTest {
+
+  private Repository repository;
+  private Credentials joe = new SimpleCredentials( "joe", new char[ 0 ] );
+  private Credentials suzy = new SimpleCredentials( "suzy", new char[ 0 ] );
+
+  @Before
+  public void setUp() throws Exception {
+    repository = mock( Repository.class );
+    when( repository.login( any( Credentials.class ), anyString() ) ).then( invocation -> newSession() );
+  }
+
+  @Test
+  public void testNestedRequestsShareSessionUntilLastRelease() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 10, 300, 0, RefreshPolicy.CHECKOUT );
+
+    Session outer = pool.getSession( joe );
+    Session inner = pool.getSession( joe );
+    assertSame( outer, inner );
+    assertEquals( 1, pool.getActiveCount() );
+
+    pool.release( inner );
+    assertEquals( 1, pool.getActiveCount() );
+    assertEquals( 0, pool.getIdleCount() );
+
+    pool.release( outer );
+    assertEquals( 0, pool.getActiveCount() );
+    assertEquals( 1, pool.getIdleCount() );
+    assertTrue( outer.isLive() );
+    verify( outer, never() ).refresh( false );
+  }
+
+  @Test
+  public void testReleasedSessionIsReusedByOtherThreadsOfSameUser() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 10, 300, 0, RefreshPolicy.CHECKOUT );
+
+    Session session = pool.getSession( joe );
+    pool.release( session );
+
+    AtomicReference<Session> reused = new AtomicReference<>();
+    Thread thread = new Thread( () -> {
+      try {
+        reused.set( pool.getSession( joe ) );
+      } catch ( Exception e ) {
+        throw new RuntimeException( e );
+      }
+    } );
+    thread.start();
+    thread.join();
+
+    assertSame( session, reused.get() );
+    assertEquals( 1, pool.getCreatedCount() );
+    assertEquals( 1, pool.getReusedCount() );
+    verify( session ).refresh( false );
+
+    // other users get their own session
+    Session other = pool.getSession( suzy );
+    assertNotSame( session, other );
+    assertEquals( 2, pool.getCreatedCount() );
+  }
+
+  @Test
+  public void testConcurrentRequestsGetDistinctSessions() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 10, 300, 0, RefreshPolicy.CHECKOUT );
+
+    Session session = pool.getSession( joe );
+    AtomicReference<Session> concurrent = new AtomicReference<>();
+    Thread thread = new Thread( () -> {
+      try {
+        concurrent.set( pool.getSession( joe ) );
+      } catch ( Exception e ) {
+        throw new RuntimeException( e );
+      }
+    } );
+    thread.start();
+    thread.join();
+
+    assertNotSame( session, concurrent.get() );
+    assertEquals( 2, pool.getActiveCount() );
+  }
+
+  @Test
+  public void testRefreshPolicies() throws Exception {
+    PooledPentahoJcrSessionFactory always = newPool( 10, 300, 0, RefreshPolicy.ALWAYS );
+    Session session = always.getSession( joe );
+    always.getSession( joe );
+    verify( session ).refresh( false );
+
+    PooledPentahoJcrSessionFactory never = newPool( 10, 300, 0, RefreshPolicy.NEVER );
+    session = never.getSession( joe );
+    never.release( session );
+    assertSame( session, never.getSession( joe ) );
+    verify( session, never() ).refresh( false );
+  }
+
+  @Test
+  public void testSessionsBeyondMaxIdleAreLoggedOut() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 1, 300, 0, RefreshPolicy.CHECKOUT );
+
+    Session first = pool.getSession( joe );
+    Session second = pool.getSession( suzy );
+    pool.release( first );
+    pool.release( second );
+
+    assertTrue( first.isLive() );
+    assertFalse( second.isLive() );
+    assertEquals( 1, pool.getIdleCount() );
+    assertEquals( 1, pool.getDestroyedCount() );
+
+    pool.destroy();
+    assertFalse( first.isLive() );
+    assertEquals( 0, pool.getIdleCount() );
+  }
+
+  @Test
+  public void testLoggedOutSessionIsNotReused() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 10, 0, 0, RefreshPolicy.CHECKOUT );
+    Session session = pool.getSession( joe );
+    pool.release( session );
+
+    // a session which has been logged out behind the pool's back is not handed out again
+    session.logout();
+    Session next = pool.getSession( joe );
+    assertNotSame( session, next );
+    assertEquals( 0, pool.getIdleCount() );
+  }
+
+  @Test
+  public void testWaitsForSessionWhenMaxActiveIsReached() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 10, 300, 1, RefreshPolicy.CHECKOUT );
+    pool.getSession( joe );
+
+    AtomicReference<Session> unpooled = new AtomicReference<>();
+    Thread thread = new Thread( () -> {
+      try {
+        unpooled.set( pool.getSession( suzy ) );
+      } catch ( Exception e ) {
+        throw new RuntimeException( e );
+      }
+    } );
+    thread.start();
+    thread.join();
+
+    assertEquals( 1, pool.getWaitCount() );
+    assertEquals( 1, pool.getWaitTimeoutCount() );
+    assertEquals( 1, pool.getActiveCount() );
+
+    // not pooled, so released by logging out
+    pool.release( unpooled.get() );
+    assertFalse( unpooled.get().isLive() );
+    assertEquals( 0, pool.getIdleCount() );
+  }
+
+  @Test
+  public void testProxyReleasesOnlyOnce() throws Exception {
+    PooledPentahoJcrSessionFactory pool = newPool( 10, 300, 0, RefreshPolicy.CHECKOUT );
+    CredentialsStrategySessionFactory factory = new CredentialsStrategySessionFactory( repository, () -> joe );
+    factory.setSessionFactory( pool );
+
+    Session outer = factory.getSession();
+    Session inner = factory.getSession();
+    inner.logout();
+    inner.logout();
+    assertEquals( 1, pool.getActiveCount() );
+
+    outer.logout();
+    assertEquals( 0, pool.getActiveCount() );
+    assertEquals( 1, pool.getIdleCount() );
+    verify( repository, times( 1 ) ).login( any( Credentials.class ), anyString() );
+  }
+
+  private PooledPentahoJcrSessionFactory newPool( int maxIdle, int idleTimeoutSeconds, int maxActive,
+                                                  RefreshPolicy refreshPolicy ) {
+    return new PooledPentahoJcrSessionFactory( repository, "default", null, maxIdle, idleTimeoutSeconds, maxActive,
+      10, refreshPolicy );
+  }
+
+  private static Session newSession() throws Exception {
+    AtomicBoolean live = new AtomicBoolean( true );
+    Session session = mock( Session.class );
+    doAnswer( invocation -> live.get() ).when( session ).isLive();
+    doAnswer( invocation -> {
+      live.set( false );
+      return null;
+    } ).when( session ).logout();
+    return session;
+  }
+}
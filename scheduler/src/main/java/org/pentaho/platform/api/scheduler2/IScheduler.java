@@ -251,6 +251,18 @@ public interface IScheduler {
    */
   public List<Job> getJobs( IJobFilter filter ) throws SchedulerException;
 
+  /**
+   * Lists one page of the currently scheduled jobs. This default implementation loads all jobs and then applies the
+   * query, implementations should skip jobs the query excludes before loading them.
+   * 
+   * @param query
+   *          the criteria, order and page of the jobs to return
+   * @return the requested page of jobs and the number of jobs matching the query
+   */
+  default JobPage queryJobs( final JobQuery query ) throws SchedulerException {
+    return query.page( getJobs( query::accepts ) );
+  }
+
   /**
    * Returns a history of the runs for a particular job.
    * 
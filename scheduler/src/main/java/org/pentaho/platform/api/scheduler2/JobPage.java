@@ -0,0 +1,89 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * One page of the jobs listed by {@link IScheduler#queryJobs(JobQuery)}.
+ */
+@XmlRootElement
+public class JobPage {
+
+  List<Job> jobs = new ArrayList<Job>();
+
+  int totalCount;
+
+  int offset;
+
+  int limit;
+
+  public JobPage() {
+  }
+
+  public JobPage( List<Job> jobs, int totalCount, int offset, int limit ) {
+    this.jobs = jobs;
+    this.totalCount = totalCount;
+    this.offset = offset;
+    this.limit = limit;
+  }
+
+  /**
+   * @return the jobs on this page
+   */
+  public List<Job> getJobs() {
+    return jobs;
+  }
+
+  public void setJobs( List<Job> jobs ) {
+    this.jobs = jobs;
+  }
+
+  /**
+   * @return the number of jobs matching the query across all pages
+   */
+  public int getTotalCount() {
+    return totalCount;
+  }
+
+  public void setTotalCount( int totalCount ) {
+    this.totalCount = totalCount;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit( int limit ) {
+    this.limit = limit;
+  }
+}
@@ -0,0 +1,223 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+
+/**
+ * Describes which jobs to list with {@link IScheduler#queryJobs(JobQuery)}, in what order and which page of them. The
+ * owner, job name and state criteria only need what a scheduler knows about a job before loading its parameters and
+ * trigger, so an implementation can skip non matching jobs cheaply. The optional {@link IJobFilter} is applied to fully
+ * loaded jobs.
+ */
+public class JobQuery {
+
+  public enum SortField {
+    JOB_NAME, USER_NAME, STATE, NEXT_RUN, LAST_RUN
+  }
+
+  private String userName;
+
+  private String jobName;
+
+  private Set<String> excludedJobNames = new HashSet<String>();
+
+  private Set<JobState> states = EnumSet.noneOf( JobState.class );
+
+  private IJobFilter filter;
+
+  private SortField sortField;
+
+  private boolean ascending = true;
+
+  private int offset;
+
+  private int limit = -1;
+
+  /**
+   * @return the owner of the jobs to list, or null for jobs of all users
+   */
+  public String getUserName() {
+    return userName;
+  }
+
+  public void setUserName( String userName ) {
+    this.userName = userName;
+  }
+
+  /**
+   * @return the name the listed jobs must have, or null for any name
+   */
+  public String getJobName() {
+    return jobName;
+  }
+
+  public void setJobName( String jobName ) {
+    this.jobName = jobName;
+  }
+
+  /**
+   * @return names of jobs which are never listed, blockouts for example
+   */
+  public Set<String> getExcludedJobNames() {
+    return excludedJobNames;
+  }
+
+  public void setExcludedJobNames( Collection<String> excludedJobNames ) {
+    this.excludedJobNames = new HashSet<String>( excludedJobNames );
+  }
+
+  /**
+   * @return the states the listed jobs must be in, empty for any state
+   */
+  public Set<JobState> getStates() {
+    return states;
+  }
+
+  public void setStates( Collection<JobState> states ) {
+    this.states = states.isEmpty() ? EnumSet.noneOf( JobState.class ) : EnumSet.copyOf( states );
+  }
+
+  public IJobFilter getFilter() {
+    return filter;
+  }
+
+  public void setFilter( IJobFilter filter ) {
+    this.filter = filter;
+  }
+
+  /**
+   * @return the field to sort by, or null to keep the order of the scheduler
+   */
+  public SortField getSortField() {
+    return sortField;
+  }
+
+  public void setSortField( SortField sortField ) {
+    this.sortField = sortField;
+  }
+
+  public boolean isAscending() {
+    return ascending;
+  }
+
+  public void setAscending( boolean ascending ) {
+    this.ascending = ascending;
+  }
+
+  /**
+   * @return the number of matching jobs to skip
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = Math.max( 0, offset );
+  }
+
+  /**
+   * @return the maximum number of jobs to list, negative for no limit
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit( int limit ) {
+    this.limit = limit;
+  }
+
+  public boolean acceptsUserName( String userName ) {
+    return this.userName == null || this.userName.equals( userName );
+  }
+
+  public boolean acceptsJobName( String jobName ) {
+    return ( this.jobName == null || this.jobName.equals( jobName ) ) && !excludedJobNames.contains( jobName );
+  }
+
+  public boolean acceptsState( JobState state ) {
+    return states.isEmpty() || states.contains( state );
+  }
+
+  /**
+   * @return whether the state of a job is needed before its page is known
+   */
+  public boolean needsState() {
+    return !states.isEmpty() || sortField == SortField.STATE;
+  }
+
+  /**
+   * @return whether the job matches all criteria of this query, including the filter
+   */
+  public boolean accepts( Job job ) {
+    return acceptsUserName( job.getUserName() ) && acceptsJobName( job.getJobName() ) && acceptsState( job.getState() )
+        && ( filter == null || filter.accept( job ) );
+  }
+
+  /**
+   * Sorts the matching jobs and cuts out the requested page.
+   * 
+   * @param jobs
+   *          all jobs matching this query, this list is sorted in place
+   */
+  public JobPage page( List<Job> jobs ) {
+    if ( sortField != null ) {
+      Collections.sort( jobs, getComparator() );
+    }
+    int from = Math.min( offset, jobs.size() );
+    int to = limit < 0 ? jobs.size() : (int) Math.min( (long) from + limit, jobs.size() );
+    return new JobPage( new ArrayList<Job>( jobs.subList( from, to ) ), jobs.size(), offset, limit );
+  }
+
+  private Comparator<Job> getComparator() {
+    Comparator<Job> comparator;
+    switch ( sortField ) {
+      case USER_NAME:
+        comparator = Comparator.comparing( Job::getUserName, Comparator.nullsLast( String::compareTo ) );
+        break;
+      case STATE:
+        comparator = Comparator.comparing( Job::getState, Comparator.nullsLast( JobState::compareTo ) );
+        break;
+      case NEXT_RUN:
+        comparator = Comparator.comparing( Job::getNextRun, Comparator.nullsLast( Date::compareTo ) );
+        break;
+      case LAST_RUN:
+        comparator = Comparator.comparing( Job::getLastRun, Comparator.nullsLast( Date::compareTo ) );
+        break;
+      default:
+        comparator = Comparator.comparing( Job::getJobName, Comparator.nullsLast( String::compareTo ) );
+        break;
+    }
+    // ties are broken by job id so that pages do not overlap
+    comparator = comparator.thenComparing( Job::getJobId, Comparator.nullsLast( String::compareTo ) );
+    return ascending ? comparator : comparator.reversed();
+  }
+}
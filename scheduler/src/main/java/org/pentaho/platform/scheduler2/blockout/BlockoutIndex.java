@@ -0,0 +1,394 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.api.engine.ISystemSettings;
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
+import org.pentaho.platform.api.scheduler2.IJobFilter;
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.IScheduler;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+import org.pentaho.platform.scheduler2.quartz.QuartzJobKey;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
+import org.quartz.Trigger;
+
+/**
+ * An in-memory index of the blockout jobs registered with the scheduler. Every scheduled job asks the
+ * {@link IBlockoutManager} whether it may fire, and answering that from the job store means a scan of all jobs on every
+ * fire. The index loads the blockouts once, is updated in place by {@link QuartzScheduler} whenever a blockout is
+ * created, updated or removed, and precomputes the upcoming blocked windows of cron based blockouts so that checking a
+ * point in time is a binary search rather than a recalculation of up to a thousand fire times.
+ * <p>
+ * Blockouts changed by another node sharing a clustered job store are picked up when the index is resynchronized with
+ * the store, at the interval in seconds configured by the {@value #RESYNC_INTERVAL_SETTING} system setting (default
+ * {@value #DEFAULT_RESYNC_INTERVAL}).
+ */
+public class BlockoutIndex {
+
+  public static final String RESYNC_INTERVAL_SETTING = "scheduler/blockout-resync-interval"; //$NON-NLS-1$
+
+  public static final long DEFAULT_RESYNC_INTERVAL = 60;
+
+  /**
+   * Same limits {@link BlockoutManagerUtil#getFireTimes(IJobTrigger, IScheduler)} applies
+   */
+  private static final int MAX_WINDOWS = 1000;
+
+  private static final long WINDOW_HORIZON = 4 * TIME.YEAR.time;
+
+  private static final Log logger = LogFactory.getLog( BlockoutIndex.class );
+
+  private static final BlockoutIndex instance = new BlockoutIndex( -1 );
+
+  private final Object lock = new Object();
+
+  private final Object loadLock = new Object();
+
+  private final AtomicBoolean reloading = new AtomicBoolean();
+
+  private long resyncIntervalMillis;
+
+  private volatile Map<String, Entry> entries = Collections.emptyMap();
+
+  private volatile IScheduler loadedFrom;
+
+  private volatile long loadedAt = -1;
+
+  private long modifications;
+
+  /**
+   * @param resyncIntervalMillis
+   *          how long a loaded index is trusted before it is resynchronized with the job store; a negative value
+   *          reads the interval from the system settings
+   */
+  BlockoutIndex( long resyncIntervalMillis ) {
+    this.resyncIntervalMillis = resyncIntervalMillis;
+  }
+
+  public static BlockoutIndex getInstance() {
+    return instance;
+  }
+
+  /**
+   * @return the triggers of all blockouts, with their durations set
+   */
+  public List<IJobTrigger> getBlockOutTriggers( IScheduler scheduler ) {
+    Map<String, Entry> current = getEntries( scheduler );
+    List<IJobTrigger> triggers = new ArrayList<IJobTrigger>( current.size() );
+    for ( Entry entry : current.values() ) {
+      triggers.add( entry.trigger );
+    }
+    return triggers;
+  }
+
+  /**
+   * @return the start of the most recent window of every blockout, these might still be active
+   */
+  public List<Date> getPreviousFireTimes( IScheduler scheduler ) {
+    long now = System.currentTimeMillis();
+    List<Date> fireTimes = new ArrayList<Date>();
+    for ( Entry entry : getEntries( scheduler ).values() ) {
+      long previous = getCurrentEntry( entry, now ).getPreviousWindowStart( now );
+      if ( previous >= 0 ) {
+        fireTimes.add( new Date( previous ) );
+      } else if ( entry.job.getLastRun() != null ) {
+        fireTimes.add( entry.job.getLastRun() );
+      }
+    }
+    return fireTimes;
+  }
+
+  /**
+   * @return whether any blockout is active at the given time
+   */
+  public boolean isBlocked( IScheduler scheduler, long time ) {
+    for ( Entry entry : getEntries( scheduler ).values() ) {
+      if ( getCurrentEntry( entry, time ).blocks( time ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records a blockout job that has been created or updated.
+   */
+  public void blockoutScheduled( IScheduler scheduler, Job blockOutJob ) {
+    Entry entry = loadedFrom == scheduler ? createEntry( blockOutJob, System.currentTimeMillis() ) : null;
+    synchronized ( lock ) {
+      modifications++;
+      if ( entry != null && loadedFrom == scheduler ) {
+        Map<String, Entry> updated = new LinkedHashMap<String, Entry>( entries );
+        updated.put( blockOutJob.getJobId(), entry );
+        entries = Collections.unmodifiableMap( updated );
+      }
+    }
+  }
+
+  /**
+   * Forgets a blockout job that has been removed.
+   */
+  public void blockoutRemoved( IScheduler scheduler, String jobId ) {
+    synchronized ( lock ) {
+      modifications++;
+      if ( loadedFrom == scheduler && entries.containsKey( jobId ) ) {
+        Map<String, Entry> updated = new LinkedHashMap<String, Entry>( entries );
+        updated.remove( jobId );
+        entries = Collections.unmodifiableMap( updated );
+      }
+    }
+  }
+
+  /**
+   * Forces the index to be reloaded from the job store on next use.
+   */
+  public void invalidate() {
+    synchronized ( lock ) {
+      modifications++;
+      loadedAt = -1;
+    }
+  }
+
+  /**
+   * @return the number of blockouts currently indexed
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private Map<String, Entry> getEntries( IScheduler scheduler ) {
+    if ( isStale( scheduler ) ) {
+      if ( loadedFrom == scheduler ) {
+        // a usable snapshot exists: let one caller refresh it while the others keep reading the old one
+        if ( reloading.compareAndSet( false, true ) ) {
+          try {
+            reload( scheduler );
+          } finally {
+            reloading.set( false );
+          }
+        }
+      } else {
+        synchronized ( loadLock ) {
+          if ( isStale( scheduler ) ) {
+            reload( scheduler );
+          }
+        }
+      }
+    }
+    return entries;
+  }
+
+  private boolean isStale( IScheduler scheduler ) {
+    long loaded = loadedAt;
+    return loadedFrom != scheduler || loaded < 0 || System.currentTimeMillis() - loaded > getResyncIntervalMillis();
+  }
+
+  private void reload( IScheduler scheduler ) {
+    long modificationsBefore;
+    synchronized ( lock ) {
+      modificationsBefore = modifications;
+    }
+
+    List<Job> blockOutJobs;
+    try {
+      blockOutJobs = scheduler.getJobs( new IJobFilter() {
+        public boolean accept( Job job ) {
+          return IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
+        }
+      } );
+    } catch ( SchedulerException e ) {
+      throw new RuntimeException( e );
+    }
+
+    long now = System.currentTimeMillis();
+    Map<String, Entry> loaded = new LinkedHashMap<String, Entry>();
+    for ( Job blockOutJob : blockOutJobs ) {
+      loaded.put( blockOutJob.getJobId(), createEntry( blockOutJob, now ) );
+    }
+
+    synchronized ( lock ) {
+      if ( loadedFrom == scheduler && modifications != modificationsBefore ) {
+        // a blockout changed while the store was read, the result may already be out of date
+        loadedAt = -1;
+        return;
+      }
+      entries = Collections.unmodifiableMap( loaded );
+      loadedFrom = scheduler;
+      loadedAt = now;
+    }
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Loaded " + loaded.size() + " blockouts in " + ( System.currentTimeMillis() - now ) + " ms" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+  }
+
+  /**
+   * Replaces an entry whose precomputed windows no longer reach the given time.
+   */
+  private Entry getCurrentEntry( Entry entry, long time ) {
+    if ( time <= entry.coveredUntil ) {
+      return entry;
+    }
+    Entry recomputed = createEntry( entry.job, time );
+    synchronized ( lock ) {
+      if ( entries.get( entry.job.getJobId() ) == entry ) {
+        Map<String, Entry> updated = new LinkedHashMap<String, Entry>( entries );
+        updated.put( entry.job.getJobId(), recomputed );
+        entries = Collections.unmodifiableMap( updated );
+      }
+    }
+    return recomputed;
+  }
+
+  private long getResyncIntervalMillis() {
+    if ( resyncIntervalMillis < 0 ) {
+      long seconds = DEFAULT_RESYNC_INTERVAL;
+      try {
+        ISystemSettings settings = PentahoSystem.getSystemSettings();
+        String value = settings != null ? settings.getSystemSetting( RESYNC_INTERVAL_SETTING, null ) : null;
+        if ( value != null && !value.trim().isEmpty() ) {
+          seconds = Long.parseLong( value.trim() );
+        }
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Invalid value for " + RESYNC_INTERVAL_SETTING + ": " + e.getMessage() ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      resyncIntervalMillis = seconds * TIME.SECOND.time;
+    }
+    return resyncIntervalMillis;
+  }
+
+  static Entry createEntry( Job blockOutJob, long now ) {
+    IJobTrigger trigger = blockOutJob.getJobTrigger();
+    Object duration = blockOutJob.getJobParams() != null
+        ? blockOutJob.getJobParams().get( IBlockoutManager.DURATION_PARAM ) : null;
+    if ( duration instanceof Number ) {
+      trigger.setDuration( ( (Number) duration ).longValue() );
+    }
+
+    if ( !BlockoutManagerUtil.isComplexTrigger( trigger ) ) {
+      return new Entry( blockOutJob, trigger, null, Long.MAX_VALUE );
+    }
+
+    // start far enough back to include a window which opened before now and is still active
+    Date fireTime = new Date( now - trigger.getDuration() - 1 );
+    long horizon = now + WINDOW_HORIZON;
+    long[] windowStarts = new long[ 16 ];
+    int count = 0;
+    long coveredUntil = horizon;
+    try {
+      Trigger quartzTrigger =
+          QuartzScheduler.createQuartzTrigger( trigger, new QuartzJobKey( "blockout", "blockout" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+      // a new quartz trigger starts now and would skip the window in progress
+      quartzTrigger.setStartTime( fireTime );
+      while ( true ) {
+        fireTime = quartzTrigger.getFireTimeAfter( fireTime );
+        if ( fireTime == null || ( trigger.getEndTime() != null && fireTime.after( trigger.getEndTime() ) ) ) {
+          coveredUntil = Long.MAX_VALUE;
+          break;
+        }
+        if ( fireTime.getTime() > horizon ) {
+          break;
+        }
+        if ( count == MAX_WINDOWS ) {
+          coveredUntil = windowStarts[ count - 1 ];
+          break;
+        }
+        if ( count == windowStarts.length ) {
+          windowStarts = Arrays.copyOf( windowStarts, count * 2 );
+        }
+        windowStarts[ count++ ] = fireTime.getTime();
+      }
+    } catch ( SchedulerException e ) {
+      throw new RuntimeException( e );
+    }
+    return new Entry( blockOutJob, trigger, Arrays.copyOf( windowStarts, count ), coveredUntil );
+  }
+
+  /**
+   * A blockout with, for cron based blockouts, the sorted start times of its upcoming windows.
+   */
+  static final class Entry {
+
+    final Job job;
+
+    final IJobTrigger trigger;
+
+    final long[] windowStarts;
+
+    /**
+     * Latest time the precomputed windows are complete for
+     */
+    final long coveredUntil;
+
+    Entry( Job job, IJobTrigger trigger, long[] windowStarts, long coveredUntil ) {
+      this.job = job;
+      this.trigger = trigger;
+      this.windowStarts = windowStarts;
+      this.coveredUntil = coveredUntil;
+    }
+
+    boolean blocks( long time ) {
+      if ( time < trigger.getStartTime().getTime()
+          || ( trigger.getEndTime() != null && time > trigger.getEndTime().getTime() ) ) {
+        return false;
+      }
+      if ( windowStarts == null ) {
+        return BlockoutManagerUtil.willSimpleBlockOutTriggerBlockDate( trigger, new Date( time ) );
+      }
+      long start = getPreviousWindowStart( time );
+      return start >= 0 && time <= start + trigger.getDuration();
+    }
+
+    /**
+     * @return start of the last window opening at or before the given time, or -1 if there is none
+     */
+    long getPreviousWindowStart( long time ) {
+      if ( windowStarts == null ) {
+        long start = trigger.getStartTime().getTime();
+        long interval = ( (SimpleJobTrigger) trigger ).getRepeatInterval() * TIME.SECOND.time;
+        if ( time < start ) {
+          return -1;
+        }
+        return interval > 0 ? start + ( time - start ) / interval * interval : start;
+      }
+      int index = Arrays.binarySearch( windowStarts, time );
+      if ( index >= 0 ) {
+        return windowStarts[ index ];
+      }
+      int insertionPoint = -index - 1;
+      return insertionPoint > 0 ? windowStarts[ insertionPoint - 1 ] : -1;
+    }
+  }
+}
@@ -35,8 +35,15 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   private IScheduler scheduler;
 
+  private BlockoutIndex blockoutIndex;
+
   public PentahoBlockoutManager() {
-    this.scheduler = PentahoSystem.get( IScheduler.class, "IScheduler2", null ); //$NON-NLS-1$
+    this( PentahoSystem.get( IScheduler.class, "IScheduler2", null ), BlockoutIndex.getInstance() ); //$NON-NLS-1$
+  }
+
+  PentahoBlockoutManager( IScheduler scheduler, BlockoutIndex blockoutIndex ) {
+    this.scheduler = scheduler;
+    this.blockoutIndex = blockoutIndex;
   }
 
   @Override
@@ -79,7 +86,7 @@ public class PentahoBlockoutManager implements IBlockoutManager {
 
   @Override
   public boolean shouldFireNow() {
-    return BlockoutManagerUtil.shouldFireNow( getBlockOutJobTriggers(), this.scheduler );
+    return !blockoutIndex.isBlocked( this.scheduler, System.currentTimeMillis() );
   }
 
   @Override
@@ -118,13 +125,7 @@ public class PentahoBlockoutManager implements IBlockoutManager {
   }
 
   private List<IJobTrigger> getBlockOutJobTriggers() {
-    List<IJobTrigger> blockOutJobTriggers = new ArrayList<IJobTrigger>();
-
-    for ( Job blockOutJob : getBlockOutJobs() ) {
-      blockOutJobTriggers.add( blockOutJob.getJobTrigger() );
-    }
-
-    return blockOutJobTriggers;
+    return blockoutIndex.getBlockOutTriggers( this.scheduler );
   }
 
 }
@@ -26,6 +26,7 @@ import org.pentaho.platform.api.scheduler2.IBlockoutManager;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.scheduler2.blockout.BlockoutAction;
 import org.pentaho.platform.scheduler2.blockout.PentahoBlockoutManager;
 import org.quartz.Job;
@@ -81,7 +82,8 @@ public class BlockingQuartzJob implements Job {
   }
 
   IBlockoutManager getBlockoutManager() throws SchedulerException {
-    return new PentahoBlockoutManager();
+    IBlockoutManager blockoutManager = PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$
+    return blockoutManager != null ? blockoutManager : new PentahoBlockoutManager();
   }
 
   Job createUnderlyingJob() {
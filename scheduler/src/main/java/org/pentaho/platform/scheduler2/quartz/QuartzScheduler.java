@@ -30,6 +30,7 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
 import org.pentaho.platform.api.scheduler2.IBackgroundExecutionStreamProvider;
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
 import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobResult;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
@@ -38,6 +39,8 @@ import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.ISchedulerListener;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
@@ -45,6 +48,7 @@ import org.pentaho.platform.api.scheduler2.recur.ITimeRecurrence;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
+import org.pentaho.platform.scheduler2.blockout.BlockoutIndex;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.pentaho.platform.scheduler2.recur.IncrementalRecurrence;
 import org.pentaho.platform.scheduler2.recur.QualifiedDayOfMonth;
@@ -72,9 +76,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -124,6 +130,16 @@ public class QuartzScheduler implements IScheduler {
 
   private static final Pattern lastDayPattern = Pattern.compile( "\\d+L" ); //$NON-NLS-1$
 
+  private static final int MAX_CACHED_CRON_EXPRESSIONS = 1024;
+
+  /**
+   * Cron expressions already converted by {@link #createComplexTrigger(String)}. Listing jobs converts the cron
+   * expression of every job, and most jobs share a handful of expressions. The recurrences of a cached trigger are
+   * shared with the triggers handed out, none of which modify them.
+   */
+  private static final Map<String, ComplexJobTrigger> complexTriggerCache =
+      new ConcurrentHashMap<String, ComplexJobTrigger>();
+
   public QuartzScheduler( SchedulerFactory schedulerFactory ) {
     this.quartzSchedulerFactory = schedulerFactory;
   }
@@ -333,6 +349,10 @@ public class QuartzScheduler implements IScheduler {
     job.setUserName( curUser );
     job.setState( JobState.NORMAL );
 
+    if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobName ) ) {
+      BlockoutIndex.getInstance().blockoutScheduled( this, job );
+    }
+
     return job;
   }
 
@@ -382,6 +402,16 @@ public class QuartzScheduler implements IScheduler {
       // if (triggerState != Trigger.STATE_PAUSED) {
       // scheduler.resumeTrigger(jobId, jobKey.getUserName());
       // }
+      if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobKey.getJobName() ) ) {
+        Job job = new Job();
+        job.setJobParams( jobParams );
+        job.setJobTrigger( (JobTrigger) trigger );
+        job.setNextRun( quartzTrigger.getNextFireTime() );
+        job.setJobId( jobId );
+        job.setJobName( jobKey.getJobName() );
+        job.setUserName( jobKey.getUserName() );
+        BlockoutIndex.getInstance().blockoutScheduled( this, job );
+      }
       logger
           .debug( MessageFormat
               .format(
@@ -461,49 +491,108 @@ public class QuartzScheduler implements IScheduler {
   }
 
   /** {@inheritDoc} */
-  @SuppressWarnings( "unchecked" )
   public List<Job> getJobs( IJobFilter filter ) throws SchedulerException {
-    ArrayList<Job> jobs = new ArrayList<Job>();
+    JobQuery query = new JobQuery();
+    query.setFilter( filter );
+    return queryJobs( query ).getJobs();
+  }
+
+  /**
+   * Walks the job store once, using only job names, trigger times and, when the query needs it, trigger states to
+   * select, sort and page the jobs. Job details and calendars are loaded for the jobs on the requested page only, unless
+   * the query has a filter which needs fully loaded jobs.
+   */
+  @Override
+  public JobPage queryJobs( JobQuery query ) throws SchedulerException {
     try {
       Scheduler scheduler = getQuartzScheduler();
+      Date now = new Date();
+      Map<String, Calendar> calendars = new HashMap<String, Calendar>();
+      Map<Job, Trigger> unloaded = new IdentityHashMap<Job, Trigger>();
+      List<Job> jobs = new ArrayList<Job>();
       for ( String groupName : scheduler.getJobGroupNames() ) {
+        if ( !query.acceptsUserName( groupName ) ) {
+          continue;
+        }
         for ( String jobId : scheduler.getJobNames( groupName ) ) {
+          String jobName = QuartzJobKey.parse( jobId ).getJobName();
+          if ( !query.acceptsJobName( jobName ) ) {
+            continue;
+          }
           for ( Trigger trigger : scheduler.getTriggersOfJob( jobId, groupName ) ) {
             if ( "MANUAL_TRIGGER".equals( trigger.getGroup() ) ) {
               continue;
             }
             Job job = new Job();
             job.setGroupName( groupName );
-            JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
-            if ( jobDetail != null ) {
-              job.setUserName( jobDetail.getGroup() );
-              JobDataMap jobDataMap = jobDetail.getJobDataMap();
-              if ( jobDataMap != null ) {
-                Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
-                job.setJobParams( wrappedMap );
-              }
-            }
-
+            job.setUserName( groupName );
             job.setJobId( jobId );
-            setJobTrigger( scheduler, job, trigger );
-            job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
-            job.setNextRun( trigger.getFireTimeAfter( new Date() ) );
+            job.setJobName( jobName );
+            job.setNextRun( trigger.getFireTimeAfter( now ) );
             job.setLastRun( trigger.getPreviousFireTime() );
-            if ( ( filter == null ) || filter.accept( job ) ) {
-              jobs.add( job );
+            if ( query.needsState() ) {
+              job.setState( getJobState( scheduler.getTriggerState( jobId, groupName ) ) );
+              if ( !query.acceptsState( job.getState() ) ) {
+                continue;
+              }
+            }
+            if ( query.getFilter() != null ) {
+              loadJob( scheduler, job, trigger, calendars, now, query.needsState() );
+              if ( !query.getFilter().accept( job ) ) {
+                continue;
+              }
+            } else {
+              unloaded.put( job, trigger );
             }
+            jobs.add( job );
           }
         }
       }
+
+      JobPage page = query.page( jobs );
+      for ( Job job : page.getJobs() ) {
+        Trigger trigger = unloaded.get( job );
+        if ( trigger != null ) {
+          loadJob( scheduler, job, trigger, calendars, now, query.needsState() );
+        }
+      }
+      return page;
     } catch ( org.quartz.SchedulerException e ) {
       throw new SchedulerException(
           Messages.getInstance().getString( "QuartzScheduler.ERROR_0004_FAILED_TO_LIST_JOBS" ), e ); //$NON-NLS-1$
     }
-    return jobs;
+  }
+
+  private void loadJob( Scheduler scheduler, Job job, Trigger trigger, Map<String, Calendar> calendars, Date now,
+      boolean stateLoaded ) throws SchedulerException, org.quartz.SchedulerException {
+    JobDetail jobDetail = scheduler.getJobDetail( job.getJobId(), job.getGroupName() );
+    if ( jobDetail != null ) {
+      job.setUserName( jobDetail.getGroup() );
+      JobDataMap jobDataMap = jobDetail.getJobDataMap();
+      if ( jobDataMap != null ) {
+        @SuppressWarnings( "unchecked" )
+        Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
+        job.setJobParams( wrappedMap );
+      }
+    }
+    JobState state = job.getState();
+    setJobTrigger( scheduler, job, trigger, calendars, stateLoaded ? state : null );
+    job.setNextRun( trigger.getFireTimeAfter( now ) );
   }
 
   private void setJobTrigger( Scheduler scheduler, Job job, Trigger trigger ) throws SchedulerException,
     org.quartz.SchedulerException {
+    setJobTrigger( scheduler, job, trigger, null, null );
+  }
+
+  /**
+   * @param calendars
+   *          calendars already read while listing jobs, may be null
+   * @param state
+   *          the state of the trigger if it is already known, null to read it from the store
+   */
+  private void setJobTrigger( Scheduler scheduler, Job job, Trigger trigger, Map<String, Calendar> calendars,
+      JobState state ) throws SchedulerException, org.quartz.SchedulerException {
     QuartzJobKey jobKey = QuartzJobKey.parse( job.getJobId() );
     String groupName = jobKey.getUserName();
 
@@ -527,7 +616,7 @@ public class QuartzScheduler implements IScheduler {
       complexJobTrigger.setCronString( ( (CronTrigger) trigger ).getCronExpression() );
       job.setJobTrigger( complexJobTrigger );
       if ( trigger.getCalendarName() != null ) {
-        Calendar calendar = scheduler.getCalendar( trigger.getCalendarName() );
+        Calendar calendar = getCalendar( scheduler, trigger.getCalendarName(), calendars );
         if ( calendar instanceof QuartzSchedulerAvailability ) {
           QuartzSchedulerAvailability quartzSchedulerAvailability = (QuartzSchedulerAvailability) calendar;
           complexJobTrigger.setStartTime( quartzSchedulerAvailability.getStartTime() );
@@ -537,32 +626,40 @@ public class QuartzScheduler implements IScheduler {
       complexJobTrigger.setCronString( ( (CronTrigger) trigger ).getCronExpression() );
     }
 
-    int triggerState = scheduler.getTriggerState( job.getJobId(), groupName );
+    job.setState( state != null ? state : getJobState( scheduler.getTriggerState( job.getJobId(), groupName ) ) );
+
+    job.setJobName( QuartzJobKey.parse( job.getJobId() ).getJobName() );
+    job.setNextRun( trigger.getNextFireTime() );
+    job.setLastRun( trigger.getPreviousFireTime() );
+
+  }
+
+  private Calendar getCalendar( Scheduler scheduler, String calendarName, Map<String, Calendar> calendars )
+    throws org.quartz.SchedulerException {
+    if ( calendars == null ) {
+      return scheduler.getCalendar( calendarName );
+    }
+    if ( !calendars.containsKey( calendarName ) ) {
+      calendars.put( calendarName, scheduler.getCalendar( calendarName ) );
+    }
+    return calendars.get( calendarName );
+  }
+
+  private JobState getJobState( int triggerState ) {
     switch ( triggerState ) {
       case Trigger.STATE_NORMAL:
-        job.setState( JobState.NORMAL );
-        break;
+        return JobState.NORMAL;
       case Trigger.STATE_BLOCKED:
-        job.setState( JobState.BLOCKED );
-        break;
+        return JobState.BLOCKED;
       case Trigger.STATE_COMPLETE:
-        job.setState( JobState.COMPLETE );
-        break;
+        return JobState.COMPLETE;
       case Trigger.STATE_ERROR:
-        job.setState( JobState.ERROR );
-        break;
+        return JobState.ERROR;
       case Trigger.STATE_PAUSED:
-        job.setState( JobState.PAUSED );
-        break;
+        return JobState.PAUSED;
       default:
-        job.setState( JobState.UNKNOWN );
-        break;
+        return JobState.UNKNOWN;
     }
-
-    job.setJobName( QuartzJobKey.parse( job.getJobId() ).getJobName() );
-    job.setNextRun( trigger.getNextFireTime() );
-    job.setLastRun( trigger.getPreviousFireTime() );
-
   }
 
   /** {@inheritDoc} */
@@ -601,7 +698,11 @@ public class QuartzScheduler implements IScheduler {
   public void removeJob( String jobId ) throws SchedulerException {
     try {
       Scheduler scheduler = getQuartzScheduler();
-      scheduler.deleteJob( jobId, QuartzJobKey.parse( jobId ).getUserName() );
+      QuartzJobKey jobKey = QuartzJobKey.parse( jobId );
+      scheduler.deleteJob( jobId, jobKey.getUserName() );
+      if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobKey.getJobName() ) ) {
+        BlockoutIndex.getInstance().blockoutRemoved( this, jobId );
+      }
     } catch ( org.quartz.SchedulerException e ) {
       throw new SchedulerException( Messages.getInstance()
           .getString( "QuartzScheduler.ERROR_0005_FAILED_TO_PAUSE_JOBS" ), e ); //$NON-NLS-1$
@@ -659,6 +760,47 @@ public class QuartzScheduler implements IScheduler {
   }
 
   public static ComplexJobTrigger createComplexTrigger( String cronExpression ) {
+    if ( cronExpression == null ) {
+      return parseComplexTrigger( cronExpression );
+    }
+    ComplexJobTrigger parsed = complexTriggerCache.get( cronExpression );
+    if ( parsed == null ) {
+      parsed = parseComplexTrigger( cronExpression );
+      if ( complexTriggerCache.size() >= MAX_CACHED_CRON_EXPRESSIONS ) {
+        complexTriggerCache.clear();
+      }
+      complexTriggerCache.put( cronExpression, parsed );
+    }
+
+    ComplexJobTrigger complexJobTrigger = new ComplexJobTrigger();
+    complexJobTrigger.setHourlyRecurrence( (ITimeRecurrence) null );
+    complexJobTrigger.setMinuteRecurrence( (ITimeRecurrence) null );
+    complexJobTrigger.setSecondRecurrence( (ITimeRecurrence) null );
+    for ( ITimeRecurrence recurrence : parsed.getYearlyRecurrences().getRecurrences() ) {
+      complexJobTrigger.addYearlyRecurrence( recurrence );
+    }
+    for ( ITimeRecurrence recurrence : parsed.getMonthlyRecurrences().getRecurrences() ) {
+      complexJobTrigger.addMonthlyRecurrence( recurrence );
+    }
+    for ( ITimeRecurrence recurrence : parsed.getDayOfWeekRecurrences().getRecurrences() ) {
+      complexJobTrigger.addDayOfWeekRecurrence( recurrence );
+    }
+    for ( ITimeRecurrence recurrence : parsed.getDayOfMonthRecurrences().getRecurrences() ) {
+      complexJobTrigger.addDayOfMonthRecurrence( recurrence );
+    }
+    for ( ITimeRecurrence recurrence : parsed.getHourlyRecurrences().getRecurrences() ) {
+      complexJobTrigger.addHourlyRecurrence( recurrence );
+    }
+    for ( ITimeRecurrence recurrence : parsed.getMinuteRecurrences().getRecurrences() ) {
+      complexJobTrigger.addMinuteRecurrence( recurrence );
+    }
+    for ( ITimeRecurrence recurrence : parsed.getSecondRecurrences().getRecurrences() ) {
+      complexJobTrigger.addSecondRecurrence( recurrence );
+    }
+    return complexJobTrigger;
+  }
+
+  private static ComplexJobTrigger parseComplexTrigger( String cronExpression ) {
     ComplexJobTrigger complexJobTrigger = new ComplexJobTrigger();
     complexJobTrigger.setHourlyRecurrence( (ITimeRecurrence) null );
     complexJobTrigger.setMinuteRecurrence( (ITimeRecurrence) null );
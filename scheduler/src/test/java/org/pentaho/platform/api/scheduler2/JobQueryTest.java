@@ -0,0 +1,104 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+
+public class JobQueryTest {
+
+  @Test
+  public void testCriteria() {
+    JobQuery query = new JobQuery();
+    query.setUserName( "admin" );
+    query.setExcludedJobNames( Collections.singleton( IBlockoutManager.BLOCK_OUT_JOB_NAME ) );
+    query.setStates( Arrays.asList( JobState.NORMAL, JobState.PAUSED ) );
+
+    assertTrue( query.accepts( createJob( "1", "report", "admin", JobState.PAUSED, null ) ) );
+    assertFalse( query.accepts( createJob( "2", "report", "suzy", JobState.PAUSED, null ) ) );
+    assertFalse( query.accepts( createJob( "3", IBlockoutManager.BLOCK_OUT_JOB_NAME, "admin", JobState.NORMAL, null ) ) );
+    assertFalse( query.accepts( createJob( "4", "report", "admin", JobState.COMPLETE, null ) ) );
+    assertTrue( query.needsState() );
+
+    query.setFilter( new IJobFilter() {
+      public boolean accept( Job job ) {
+        return false;
+      }
+    } );
+    assertFalse( query.accepts( createJob( "1", "report", "admin", JobState.PAUSED, null ) ) );
+  }
+
+  @Test
+  public void testSortAndPage() {
+    List<Job> jobs = new ArrayList<Job>();
+    jobs.add( createJob( "1", "b", "admin", JobState.NORMAL, new Date( 3000 ) ) );
+    jobs.add( createJob( "2", "a", "admin", JobState.NORMAL, null ) );
+    jobs.add( createJob( "3", "c", "admin", JobState.NORMAL, new Date( 1000 ) ) );
+    jobs.add( createJob( "4", "a", "admin", JobState.NORMAL, new Date( 2000 ) ) );
+
+    JobQuery query = new JobQuery();
+    query.setSortField( JobQuery.SortField.JOB_NAME );
+    query.setOffset( 1 );
+    query.setLimit( 2 );
+    JobPage page = query.page( new ArrayList<Job>( jobs ) );
+    assertEquals( 4, page.getTotalCount() );
+    assertEquals( Arrays.asList( "4", "1" ), getIds( page ) );
+
+    query.setSortField( JobQuery.SortField.NEXT_RUN );
+    query.setOffset( 0 );
+    query.setLimit( -1 );
+    assertEquals( Arrays.asList( "3", "4", "1", "2" ), getIds( query.page( new ArrayList<Job>( jobs ) ) ) );
+
+    query.setAscending( false );
+    query.setOffset( 10 );
+    page = query.page( new ArrayList<Job>( jobs ) );
+    assertEquals( 4, page.getTotalCount() );
+    assertTrue( page.getJobs().isEmpty() );
+  }
+
+  private List<String> getIds( JobPage page ) {
+    List<String> ids = new ArrayList<String>();
+    for ( Job job : page.getJobs() ) {
+      ids.add( job.getJobId() );
+    }
+    return ids;
+  }
+
+  private Job createJob( String jobId, String jobName, String userName, JobState state, Date nextRun ) {
+    Job job = new Job();
+    job.setJobId( jobId );
+    job.setJobName( jobName );
+    job.setUserName( userName );
+    job.setState( state );
+    job.setNextRun( nextRun );
+    return job;
+  }
+}
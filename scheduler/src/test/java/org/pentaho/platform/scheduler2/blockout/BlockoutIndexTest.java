@@ -0,0 +1,152 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.platform.scheduler2.blockout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
+import org.pentaho.platform.api.scheduler2.IJobFilter;
+import org.pentaho.platform.api.scheduler2.IScheduler;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobTrigger;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+
+public class BlockoutIndexTest {
+
+  private static final long DURATION = 10 * TIME.MINUTE.time;
+
+  private IScheduler scheduler;
+
+  private List<Job> blockOutJobs;
+
+  private BlockoutIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    scheduler = mock( IScheduler.class );
+    blockOutJobs = new ArrayList<Job>();
+    when( scheduler.getJobs( any( IJobFilter.class ) ) ).thenReturn( blockOutJobs );
+    index = new BlockoutIndex( TIME.HOUR.time );
+  }
+
+  @Test
+  public void testStoreIsReadOnceForRepeatedChecks() throws Exception {
+    long start = System.currentTimeMillis() - TIME.MINUTE.time;
+    blockOutJobs.add( createBlockOutJob( "simple", new SimpleJobTrigger( new Date( start ), null, -1, 3600 ) ) );
+
+    for ( int i = 0; i < 100; i++ ) {
+      assertTrue( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+    }
+    assertFalse( index.isBlocked( scheduler, start + DURATION + TIME.MINUTE.time ) );
+    assertTrue( index.isBlocked( scheduler, start + TIME.HOUR.time + TIME.MINUTE.time ) );
+    assertFalse( index.isBlocked( scheduler, start - TIME.MINUTE.time ) );
+
+    verify( scheduler, times( 1 ) ).getJobs( any( IJobFilter.class ) );
+  }
+
+  @Test
+  public void testCronBlockoutUsesPrecomputedWindows() throws Exception {
+    ComplexJobTrigger trigger = new ComplexJobTrigger();
+    trigger.setCronString( "0 0 * * * ?" ); //$NON-NLS-1$
+    trigger.setStartTime( new Date( System.currentTimeMillis() - TIME.DAY.time ) );
+    blockOutJobs.add( createBlockOutJob( "cron", trigger ) );
+
+    Calendar nextHour = Calendar.getInstance();
+    nextHour.add( Calendar.HOUR_OF_DAY, 1 );
+    nextHour.set( Calendar.MINUTE, 0 );
+    nextHour.set( Calendar.SECOND, 0 );
+    nextHour.set( Calendar.MILLISECOND, 0 );
+    long top = nextHour.getTimeInMillis();
+
+    assertTrue( index.isBlocked( scheduler, top ) );
+    assertTrue( index.isBlocked( scheduler, top + DURATION ) );
+    assertFalse( index.isBlocked( scheduler, top + DURATION + 1 ) );
+    assertFalse( index.isBlocked( scheduler, top - 1 ) );
+    assertTrue( index.isBlocked( scheduler, top + TIME.DAY.time + TIME.MINUTE.time ) );
+  }
+
+  @Test
+  public void testChangesAreAppliedWithoutReadingTheStore() throws Exception {
+    long start = System.currentTimeMillis() - TIME.MINUTE.time;
+    assertFalse( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+    assertEquals( 0, index.size() );
+
+    Job blockOutJob = createBlockOutJob( "added", new SimpleJobTrigger( new Date( start ), null, -1, 3600 ) );
+    index.blockoutScheduled( scheduler, blockOutJob );
+    assertTrue( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+    assertEquals( 1, index.getBlockOutTriggers( scheduler ).size() );
+    assertEquals( DURATION, index.getBlockOutTriggers( scheduler ).get( 0 ).getDuration() );
+
+    index.blockoutRemoved( scheduler, "someOtherJob" ); //$NON-NLS-1$
+    assertEquals( 1, index.size() );
+    index.blockoutRemoved( scheduler, blockOutJob.getJobId() );
+    assertFalse( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+
+    verify( scheduler, times( 1 ) ).getJobs( any( IJobFilter.class ) );
+  }
+
+  @Test
+  public void testInvalidateAndOtherSchedulerReload() throws Exception {
+    long start = System.currentTimeMillis() - TIME.MINUTE.time;
+    assertFalse( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+
+    blockOutJobs.add( createBlockOutJob( "external", new SimpleJobTrigger( new Date( start ), null, -1, 3600 ) ) );
+    assertFalse( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+    index.invalidate();
+    assertTrue( index.isBlocked( scheduler, start + TIME.MINUTE.time ) );
+    verify( scheduler, times( 2 ) ).getJobs( any( IJobFilter.class ) );
+
+    IScheduler otherScheduler = mock( IScheduler.class );
+    when( otherScheduler.getJobs( any( IJobFilter.class ) ) ).thenReturn( new ArrayList<Job>() );
+    assertFalse( index.isBlocked( otherScheduler, start + TIME.MINUTE.time ) );
+    assertTrue( index.getBlockOutTriggers( otherScheduler ).isEmpty() );
+  }
+
+  private Job createBlockOutJob( String id, JobTrigger trigger ) {
+    Map<String, Serializable> jobParams = new HashMap<String, Serializable>();
+    jobParams.put( IBlockoutManager.DURATION_PARAM, DURATION );
+    Job job = new Job();
+    job.setJobId( id );
+    job.setJobName( IBlockoutManager.BLOCK_OUT_JOB_NAME );
+    job.setJobParams( jobParams );
+    job.setJobTrigger( trigger );
+    return job;
+  }
+}
@@ -22,6 +22,7 @@
 package org.pentaho.platform.scheduler2.quartz;
 
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -29,10 +30,22 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.quartz.JobDetail;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerFactory;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
 
 import java.util.Collections;
+import java.util.Date;
 
 public class QuartzSchedulerTest {
 
@@ -123,5 +136,57 @@ public class QuartzSchedulerTest {
         "input = /home/admin/allowed.ktr : output = /home/admin/allowed." ) );
   }
 
+  @Test
+  public void testQueryJobsLoadsDetailsOfRequestedPageOnly() throws Exception {
+    Scheduler quartzScheduler = Mockito.mock( Scheduler.class );
+    SchedulerFactory schedulerFactory = Mockito.mock( SchedulerFactory.class );
+    Mockito.when( schedulerFactory.getScheduler() ).thenReturn( quartzScheduler );
+
+    String adminJobA = "admin\tJobA\t1"; //$NON-NLS-1$
+    String adminJobB = "admin\tJobB\t2"; //$NON-NLS-1$
+    String suzyJob = "suzy\tJobC\t3"; //$NON-NLS-1$
+    Mockito.when( quartzScheduler.getJobGroupNames() ).thenReturn( new String[] { "admin", "suzy" } );
+    Mockito.when( quartzScheduler.getJobNames( "admin" ) ).thenReturn( new String[] { adminJobB, adminJobA } );
+    Mockito.when( quartzScheduler.getJobNames( "suzy" ) ).thenReturn( new String[] { suzyJob } );
+    for ( String jobId : new String[] { adminJobA, adminJobB, suzyJob } ) {
+      String group = QuartzJobKey.parse( jobId ).getUserName();
+      Trigger trigger = new SimpleTrigger( jobId, group, new Date(), null, SimpleTrigger.REPEAT_INDEFINITELY, 60000 );
+      Mockito.when( quartzScheduler.getTriggersOfJob( jobId, group ) ).thenReturn( new Trigger[] { trigger } );
+      Mockito.when( quartzScheduler.getJobDetail( jobId, group ) )
+        .thenReturn( new JobDetail( jobId, group, BlockingQuartzJob.class ) );
+      Mockito.when( quartzScheduler.getTriggerState( jobId, group ) ).thenReturn( Trigger.STATE_NORMAL );
+    }
+
+    JobQuery query = new JobQuery();
+    query.setUserName( "admin" ); //$NON-NLS-1$
+    query.setSortField( JobQuery.SortField.JOB_NAME );
+    query.setLimit( 1 );
+    JobPage page = new QuartzScheduler( schedulerFactory ).queryJobs( query );
+
+    Assert.assertEquals( 2, page.getTotalCount() );
+    Assert.assertEquals( 1, page.getJobs().size() );
+    Job job = page.getJobs().get( 0 );
+    Assert.assertEquals( adminJobA, job.getJobId() );
+    Assert.assertEquals( "JobA", job.getJobName() ); //$NON-NLS-1$
+    Assert.assertEquals( JobState.NORMAL, job.getState() );
+    Assert.assertTrue( job.getJobTrigger() instanceof SimpleJobTrigger );
+
+    Mockito.verify( quartzScheduler ).getJobDetail( adminJobA, "admin" );
+    Mockito.verify( quartzScheduler, Mockito.never() ).getJobDetail( adminJobB, "admin" );
+    Mockito.verify( quartzScheduler, Mockito.never() ).getJobNames( "suzy" );
+    Mockito.verify( quartzScheduler, Mockito.never() ).getTriggerState( adminJobB, "admin" );
+  }
+
+  @Test
+  public void testCreateComplexTriggerReturnsIndependentTriggers() {
+    ComplexJobTrigger first = QuartzScheduler.createComplexTrigger( "0 30 6 ? * 2,4 *" ); //$NON-NLS-1$
+    ComplexJobTrigger second = QuartzScheduler.createComplexTrigger( "0 30 6 ? * 2,4 *" ); //$NON-NLS-1$
+
+    Assert.assertNotSame( first, second );
+    Assert.assertEquals( first.toString(), second.toString() );
+    first.setUiPassParam( "WEEKLY" ); //$NON-NLS-1$
+    Assert.assertNull( second.getUiPassParam() );
+  }
+
 
 }
\ No newline at end of file
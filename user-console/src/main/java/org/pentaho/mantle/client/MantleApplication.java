@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -25,11 +25,6 @@ import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.shared.HandlerRegistration;
-import com.google.gwt.http.client.Request;
-import com.google.gwt.http.client.RequestBuilder;
-import com.google.gwt.http.client.RequestCallback;
-import com.google.gwt.http.client.RequestException;
-import com.google.gwt.http.client.Response;
 import com.google.gwt.http.client.URL;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
@@ -60,7 +55,9 @@ import org.pentaho.mantle.client.ui.PerspectiveManager;
 import org.pentaho.mantle.client.ui.UserDropDown;
 import org.pentaho.mantle.client.ui.xul.MantleXul;
 import org.pentaho.mantle.client.usersettings.JsSetting;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
 import org.pentaho.mantle.client.usersettings.MantleSettingsManager;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 import org.pentaho.mantle.client.usersettings.UserSettingsManager;
 
 import java.util.HashMap;
@@ -377,82 +374,47 @@ public class MantleApplication implements UserSettingsLoadedEventHandler, Mantle
     String submitOnEnterSetting = settings.get( "submit-on-enter-key" );
     submitOnEnter = submitOnEnterSetting == null ? submitOnEnter : Boolean.parseBoolean( submitOnEnterSetting );
 
-    try {
-      String restUrl = GWT.getHostPageBaseURL() + "api/repo/files/canAdminister"; //$NON-NLS-1$
-      RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, restUrl );
-      requestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-      requestBuilder.sendRequest( null, new RequestCallback() {
-
-        @Override
-        public void onError( Request arg0, Throwable arg1 ) {
-          MessageDialogBox dialogBox =
-              new MessageDialogBox( Messages.getString( "error" ), arg1.getLocalizedMessage(), false, false, true ); //$NON-NLS-1$
-          dialogBox.center();
-        }
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
+
+      public void onFailure( Throwable caught ) {
+        MessageDialogBox dialogBox =
+            new MessageDialogBox( Messages.getString( "error" ), caught.getLocalizedMessage(), false, false, true ); //$NON-NLS-1$
+        dialogBox.center();
+      }
 
-        @Override
-        public void onResponseReceived( Request arg0, Response response ) {
-          Boolean isAdministrator = Boolean.parseBoolean( response.getText() );
-          SolutionBrowserPanel.getInstance().setAdministrator( isAdministrator );
-
-          try {
-            String restUrl2 = GWT.getHostPageBaseURL() + "api/scheduler/canSchedule"; //$NON-NLS-1$
-            RequestBuilder requestBuilder2 = new RequestBuilder( RequestBuilder.GET, restUrl2 );
-            requestBuilder2.setHeader( "accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
-            requestBuilder2.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-            requestBuilder2.sendRequest( null, new RequestCallback() {
-              @Override
-              public void onError( Request arg0, Throwable arg1 ) {
-                MessageDialogBox dialogBox =
-                    new MessageDialogBox( Messages.getString( "error" ), arg1.getLocalizedMessage(), false, false, true ); //$NON-NLS-1$
-                dialogBox.center();
-              }
-
-              public void onResponseReceived( Request arg0, Response response ) {
-                Boolean isScheduler = Boolean.parseBoolean( response.getText() );
-                SolutionBrowserPanel.getInstance().setScheduler( isScheduler );
-
-                String numStartupURLsSetting = settings.get( "num-startup-urls" );
-                if ( numStartupURLsSetting != null ) {
-                  int numStartupURLs = Integer.parseInt( numStartupURLsSetting ); //$NON-NLS-1$
-                  for ( int i = 0; i < numStartupURLs; i++ ) {
-                    String url = settings.get( "startup-url-" + ( i + 1 ) ); //$NON-NLS-1$
-                    String name = settings.get( "startup-name-" + ( i + 1 ) ); //$NON-NLS-1$
-                    if ( StringUtils.isEmpty( url ) == false ) { //$NON-NLS-1$
-                      url = URL.decodeQueryString( url );
-                      name = URL.decodeQueryString( name );
-                      SolutionBrowserPanel.getInstance().getContentTabPanel().showNewURLTab( name != null ? name : url,
-                          url, url, false );
-                    }
-                  }
-                }
-                if ( SolutionBrowserPanel.getInstance().getContentTabPanel().getWidgetCount() > 0 ) {
-                  SolutionBrowserPanel.getInstance().getContentTabPanel().selectTab( 0 );
-                }
-
-                // startup-url on the URL for the app, wins over settings
-                String startupURL = Window.Location.getParameter( "startup-url" ); //$NON-NLS-1$
-                if ( startupURL != null && !"".equals( startupURL ) ) { //$NON-NLS-1$
-                  // Spaces were double encoded so that they wouldn't be replaced with '+' when creating a deep
-                  // link so when following a deep link we need to replace '%20' with a space even after decoding
-                  String title = Window.Location.getParameter( "name" ).replaceAll( "%20", " " ); //$NON-NLS-1$
-                  SolutionBrowserPanel.getInstance().getContentTabPanel().showNewURLTab( title, title, startupURL,
-                      false );
-                }
-              }
-            } );
-          } catch ( RequestException e ) {
-            MessageDialogBox dialogBox =
-                new MessageDialogBox( Messages.getString( "error" ), e.getLocalizedMessage(), false, false, true ); //$NON-NLS-1$
-            dialogBox.center();
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        SolutionBrowserPanel.getInstance().setAdministrator( bootstrap.isAdministrator() );
+        SolutionBrowserPanel.getInstance().setScheduler( bootstrap.canSchedule() );
+
+        String numStartupURLsSetting = settings.get( "num-startup-urls" );
+        if ( numStartupURLsSetting != null ) {
+          int numStartupURLs = Integer.parseInt( numStartupURLsSetting ); //$NON-NLS-1$
+          for ( int i = 0; i < numStartupURLs; i++ ) {
+            String url = settings.get( "startup-url-" + ( i + 1 ) ); //$NON-NLS-1$
+            String name = settings.get( "startup-name-" + ( i + 1 ) ); //$NON-NLS-1$
+            if ( StringUtils.isEmpty( url ) == false ) { //$NON-NLS-1$
+              url = URL.decodeQueryString( url );
+              name = URL.decodeQueryString( name );
+              SolutionBrowserPanel.getInstance().getContentTabPanel().showNewURLTab( name != null ? name : url,
+                  url, url, false );
+            }
           }
         }
-      } );
-    } catch ( RequestException e ) {
-      MessageDialogBox dialogBox =
-          new MessageDialogBox( Messages.getString( "error" ), e.getLocalizedMessage(), false, false, true ); //$NON-NLS-1$
-      dialogBox.center();
-    }
+        if ( SolutionBrowserPanel.getInstance().getContentTabPanel().getWidgetCount() > 0 ) {
+          SolutionBrowserPanel.getInstance().getContentTabPanel().selectTab( 0 );
+        }
+
+        // startup-url on the URL for the app, wins over settings
+        String startupURL = Window.Location.getParameter( "startup-url" ); //$NON-NLS-1$
+        if ( startupURL != null && !"".equals( startupURL ) ) { //$NON-NLS-1$
+          // Spaces were double encoded so that they wouldn't be replaced with '+' when creating a deep
+          // link so when following a deep link we need to replace '%20' with a space even after decoding
+          String title = Window.Location.getParameter( "name" ).replaceAll( "%20", " " ); //$NON-NLS-1$
+          SolutionBrowserPanel.getInstance().getContentTabPanel().showNewURLTab( title, title, startupURL,
+              false );
+        }
+      }
+    } );
 
     if ( !StringUtils.isEmpty( startupPerspective ) ) {
       if ( PerspectiveManager.getInstance().isLoaded() ) {
@@ -14,28 +14,24 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.mantle.client.admin;
 
-import org.pentaho.gwt.widgets.client.dialogs.MessageDialogBox;
 import org.pentaho.gwt.widgets.client.utils.string.StringUtils;
 import org.pentaho.mantle.client.messages.Messages;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 import org.pentaho.ui.xul.gwt.tags.GwtDialog;
 import org.pentaho.ui.xul.gwt.tags.GwtMessageBox;
 
-import com.google.gwt.core.client.GWT;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.event.dom.client.KeyUpEvent;
 import com.google.gwt.event.dom.client.KeyUpHandler;
-import com.google.gwt.http.client.Request;
-import com.google.gwt.http.client.RequestBuilder;
-import com.google.gwt.http.client.RequestCallback;
-import com.google.gwt.http.client.RequestException;
-import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.HorizontalPanel;
 import com.google.gwt.user.client.ui.Label;
@@ -132,16 +128,14 @@ public class UserDialog extends GwtDialog {
     messageBox.show();
   }
 
-  private void performSave() throws RequestException {
-    String url = GWT.getHostPageBaseURL() + "api/repo/files/reservedCharacters";
-    RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-    requestBuilder.sendRequest( "", new RequestCallback() {
+  private void performSave() {
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
 
       @Override
-      public void onResponseReceived( Request request, Response response ) {
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
         String userName = nameTextBox.getText();
         String password = passwordTextBox.getText();
-        String reservedCharacters = response.getText();
+        String reservedCharacters = bootstrap.getReservedCharacters();
 
         if ( isValidName( userName, reservedCharacters ) ) {
           controller.saveUser( userName, password );
@@ -152,7 +146,7 @@ public class UserDialog extends GwtDialog {
       }
 
       @Override
-      public void onError( Request request, Throwable exception ) {
+      public void onFailure( Throwable caught ) {
         hide();
       }
 
@@ -161,13 +155,7 @@ public class UserDialog extends GwtDialog {
 
   class AcceptListener implements ClickHandler {
     public void onClick( ClickEvent event ) {
-      try {
-        performSave();
-      } catch ( RequestException e ) {
-        MessageDialogBox dialogBox = new MessageDialogBox( Messages.getString( "error" ), e.toString(), //$NON-NLS-1$
-            false, false, true );
-        dialogBox.center();
-      }
+      performSave();
     }
   }
 
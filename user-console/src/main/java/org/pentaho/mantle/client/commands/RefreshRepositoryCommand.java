@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -36,14 +36,10 @@ public class RefreshRepositoryCommand extends AbstractCommand {
     setupNativeHooks( this );
   }
 
-  public void execute() {
-    super.execute();
-    RepositoryFileTreeManager.getInstance().beforeFetchRepositoryFileTree();
-  }
-
   protected void performOperation( final boolean feedback ) {
-    RepositoryFileTreeManager.getInstance().fetchRepositoryFileTree( true, null, null,
-        SolutionBrowserPanel.getInstance().getSolutionTree().isShowHiddenFiles() );
+    // only the folders which changed are read again, the dialogs read the whole tree again when they are opened
+    RepositoryFileTreeManager.getInstance().invalidateRepositoryFileTree();
+    SolutionBrowserPanel.getInstance().getSolutionTree().refresh();
   }
 
   protected void performOperation() {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -22,12 +22,6 @@ package org.pentaho.mantle.client.commands;
 
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.RunAsyncCallback;
-import com.google.gwt.http.client.Request;
-import com.google.gwt.http.client.RequestBuilder;
-import com.google.gwt.http.client.RequestCallback;
-import com.google.gwt.http.client.RequestException;
-import com.google.gwt.http.client.Response;
-import com.google.gwt.user.client.Window;
 import org.pentaho.mantle.client.workspace.SchedulesPerspectivePanel;
 
 public class RefreshSchedulesCommand extends AbstractCommand {
@@ -40,41 +34,15 @@ public class RefreshSchedulesCommand extends AbstractCommand {
   }
 
   protected void performOperation( boolean feedback ) {
-    try {
-      final String url = GWT.getHostPageBaseURL() + "api/repo/files/canAdminister"; //$NON-NLS-1$
-      RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-      requestBuilder.setHeader( "accept", "text/plain" );
-      requestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-      requestBuilder.sendRequest( null, new RequestCallback() {
+    GWT.runAsync( new RunAsyncCallback() {
 
-        public void onError( Request request, Throwable caught ) {
-          GWT.runAsync( new RunAsyncCallback() {
+      public void onSuccess() {
+        SchedulesPerspectivePanel.getInstance().refresh();
+      }
 
-            public void onSuccess() {
-              SchedulesPerspectivePanel.getInstance().refresh();
-            }
-
-            public void onFailure( Throwable reason ) {
-            }
-          } );
-        }
-
-        public void onResponseReceived( Request request, final Response response ) {
-          GWT.runAsync( new RunAsyncCallback() {
-
-            public void onSuccess() {
-              SchedulesPerspectivePanel.getInstance().refresh();
-            }
-
-            public void onFailure( Throwable reason ) {
-            }
-          } );
-        }
-
-      } );
-    } catch ( RequestException e ) {
-      Window.alert( e.getMessage() );
-    }
+      public void onFailure( Throwable reason ) {
+      }
+    } );
   }
 
 }
@@ -14,34 +14,49 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.mantle.client.solutionbrowser;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.RequestException;
 import com.google.gwt.http.client.Response;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONString;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import org.pentaho.gwt.widgets.client.filechooser.JsonToRepositoryFileTreeConverter;
 import org.pentaho.gwt.widgets.client.filechooser.RepositoryFile;
 import org.pentaho.gwt.widgets.client.filechooser.RepositoryFileTree;
+import org.pentaho.mantle.client.usersettings.JsSetting;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Reads the repository for the solution browser. The tree given to listeners holds the root folder and its children
+ * only, further levels are read with {@link #fetchRepositoryFileTreeLevel} as folders are opened. Each level comes with
+ * an ETag, so that the browser can revalidate the levels it has cached and an open tree can be refreshed with
+ * {@link #fetchChangedRepositoryFileTreeLevels}. The whole tree is only read for the file chooser dialogs, when they
+ * are opened.
+ */
 public class RepositoryFileTreeManager {
   public static final String SEPARATOR = "/"; //$NON-NLS-1$
   public static final String FOLDER_HOME = "home"; //$NON-NLS-1$
   private ArrayList<IRepositoryFileTreeListener> listeners = new ArrayList<IRepositoryFileTreeListener>();
 
   private RepositoryFileTree fileTree;
-  private List<RepositoryFile> trashItems;
+  private RepositoryFileTree rootLevel;
+  private Map<String, String> levelETags = new HashMap<String, String>();
   private static RepositoryFileTreeManager instance;
 
   private static boolean fetching = false;
@@ -66,12 +81,15 @@ public class RepositoryFileTreeManager {
       Boolean showHidden ) {
     listeners.add( listener );
     synchronized ( RepositoryFileTreeManager.class ) {
-      if ( !fetching && fileTree == null ) {
+      if ( !fetching && rootLevel == null ) {
         fetching = true;
         fetchRepositoryFileTree( true, depth, filter, showHidden );
       } else {
         listener.beforeFetchRepositoryFileTree();
-        listener.onFetchRepositoryFileTree( fileTree, trashItems );
+        // a listener added while the root level is read is given it when it arrives
+        if ( !fetching ) {
+          listener.onFetchRepositoryFileTree( rootLevel, null );
+        }
       }
     }
   }
@@ -80,13 +98,17 @@ public class RepositoryFileTreeManager {
     listeners.remove( listener );
   }
 
+  /**
+   * Hands the root level to the listeners; the trash is not read with the tree. After a failed read they are given the
+   * level read before, or <code>null</code> if there is none, so that they stop showing that it is being read.
+   */
   private void fireRepositoryFileTreeFetched() {
     fetching = false;
     for ( IRepositoryFileTreeListener listener : listeners ) {
-      listener.onFetchRepositoryFileTree( fileTree, trashItems );
+      listener.onFetchRepositoryFileTree( rootLevel, null );
     }
     // flag that we have the document so that other things might start to use it (PDB-500)
-    flagRepositoryFileTreeLoaded( true );
+    flagRepositoryFileTreeLoaded( rootLevel != null );
   }
 
   public void beforeFetchRepositoryFileTree() {
@@ -95,9 +117,18 @@ public class RepositoryFileTreeManager {
     }
   }
 
+  /**
+   * Reads the root level of the repository again and hands it to the listeners. The whole tree is read again by the
+   * next dialog which needs it.
+   *
+   * @param depth ignored, listeners are given one level which they extend as folders are opened
+   */
   public void fetchRepositoryFileTree( final boolean forceReload, Integer depth, String filter, Boolean showHidden ) {
-    if ( forceReload || fileTree == null ) {
-      fetchRepositoryFileTree( null, depth, filter, showHidden );
+    if ( forceReload ) {
+      fileTree = null;
+    }
+    if ( forceReload || rootLevel == null ) {
+      fetchRootLevel( showHidden );
     }
   }
 
@@ -110,11 +141,19 @@ public class RepositoryFileTreeManager {
     }
   }
 
+  /**
+   * Forgets the whole tree, so that it is read again by the next dialog which needs it.
+   */
+  public void invalidateRepositoryFileTree() {
+    fileTree = null;
+  }
+
+  /**
+   * Reads the whole tree below the root folder, for the file chooser dialogs. Listeners are not notified, they are
+   * given a single level.
+   */
   public void fetchRepositoryFileTree( final AsyncCallback<RepositoryFileTree> callback, Integer depth, String filter,
       Boolean showHidden ) {
-    // notify listeners that we are about to talk to the server (in case there's anything they want to do
-    // such as busy cursor or tree loading indicators)
-    beforeFetchRepositoryFileTree();
     RequestBuilder builder = null;
     String url = GWT.getHostPageBaseURL() + "api/repo/files/:/tree?"; //$NON-NLS-1$
     if ( depth == null ) {
@@ -141,42 +180,9 @@ public class RepositoryFileTreeManager {
 
       public void onResponseReceived( Request request, Response response ) {
         if ( response.getStatusCode() == Response.SC_OK ) {
-          String json = response.getText();
-          System.out.println( json );
-
           final JsonToRepositoryFileTreeConverter converter =
               new JsonToRepositoryFileTreeConverter( response.getText() );
           fileTree = converter.getTree();
-
-          String deletedFilesUrl = GWT.getHostPageBaseURL() + "api/repo/files/deleted?ts=" + System.currentTimeMillis();
-          RequestBuilder deletedFilesRequestBuilder = new RequestBuilder( RequestBuilder.GET, deletedFilesUrl );
-          deletedFilesRequestBuilder.setHeader( "Accept", "application/json" );
-          deletedFilesRequestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-          try {
-            deletedFilesRequestBuilder.sendRequest( null, new RequestCallback() {
-
-              public void onError( Request request, Throwable exception ) {
-                fireRepositoryFileTreeFetched();
-                Window.alert( exception.toString() );
-              }
-
-              public void onResponseReceived( Request delRequest, Response delResponse ) {
-                if ( delResponse.getStatusCode() == Response.SC_OK ) {
-                  try {
-                    trashItems = JsonToRepositoryFileTreeConverter.getTrashFiles( delResponse.getText() );
-                  } catch ( Throwable t ) {
-                    // apparently this happens when you have no trash
-                  }
-                  fireRepositoryFileTreeFetched();
-                } else {
-                  fireRepositoryFileTreeFetched();
-                }
-              }
-
-            } );
-          } catch ( Exception e ) {
-            fireRepositoryFileTreeFetched();
-          }
           if ( callback != null ) {
             callback.onSuccess( fileTree );
           }
@@ -198,4 +204,118 @@ public class RepositoryFileTreeManager {
     }
   }
 
+  private void fetchRootLevel( Boolean showHidden ) {
+    // notify listeners that we are about to talk to the server (in case there's anything they want to do
+    // such as busy cursor or tree loading indicators)
+    beforeFetchRepositoryFileTree();
+    // the levels read so far may have been read with other settings
+    levelETags.clear();
+    fetchRepositoryFileTreeLevel( SEPARATOR, showHidden, new AsyncCallback<RepositoryFileTree>() {
+
+      public void onSuccess( RepositoryFileTree tree ) {
+        rootLevel = tree;
+        fireRepositoryFileTreeFetched();
+      }
+
+      public void onFailure( Throwable caught ) {
+        fireRepositoryFileTreeFetched();
+        Window.alert( caught.toString() );
+      }
+    } );
+  }
+
+  /**
+   * Reads a folder and its children, without the children of those. The request has no cache busters: the server
+   * answers with an ETag and asks for revalidation, so an unchanged level is served from the browser cache.
+   */
+  public void fetchRepositoryFileTreeLevel( final String path, Boolean showHidden,
+      final AsyncCallback<RepositoryFileTree> callback ) {
+    if ( showHidden == null ) {
+      showHidden = Boolean.FALSE;
+    }
+    String url = GWT.getHostPageBaseURL() + "api/repo/files/" + SolutionBrowserPanel.pathToId( path ) //$NON-NLS-1$
+        + "/treeLevel?showHidden=" + showHidden; //$NON-NLS-1$
+    RequestBuilder builder = new RequestBuilder( RequestBuilder.GET, url );
+    builder.setHeader( "Accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
+    try {
+      builder.sendRequest( null, new RequestCallback() {
+
+        public void onError( Request request, Throwable exception ) {
+          callback.onFailure( exception );
+        }
+
+        public void onResponseReceived( Request request, Response response ) {
+          if ( response.getStatusCode() == Response.SC_OK ) {
+            String eTag = response.getHeader( "ETag" ); //$NON-NLS-1$
+            if ( eTag != null ) {
+              levelETags.put( path, eTag );
+            }
+            callback.onSuccess( new JsonToRepositoryFileTreeConverter( response.getText() ).getTree() );
+          } else {
+            levelETags.remove( path );
+            callback.onFailure( new Exception( response.getStatusText() ) );
+          }
+        }
+      } );
+    } catch ( RequestException e ) {
+      callback.onFailure( e );
+    }
+  }
+
+  /**
+   * Asks the server which of the levels read so far changed, in a single request. The levels which changed have to be
+   * read again, the folders which no longer exist are forgotten.
+   *
+   * @param callback given the paths of the folders which changed or no longer exist
+   */
+  public void fetchChangedRepositoryFileTreeLevels( Boolean showHidden, final AsyncCallback<List<String>> callback ) {
+    if ( levelETags.isEmpty() ) {
+      callback.onSuccess( new ArrayList<String>() );
+      return;
+    }
+    if ( showHidden == null ) {
+      showHidden = Boolean.FALSE;
+    }
+    JSONArray levels = new JSONArray();
+    for ( Map.Entry<String, String> levelETag : levelETags.entrySet() ) {
+      JSONObject level = new JSONObject();
+      level.put( "name", new JSONString( levelETag.getKey() ) ); //$NON-NLS-1$
+      level.put( "value", new JSONString( levelETag.getValue() ) ); //$NON-NLS-1$
+      levels.set( levels.size(), level );
+    }
+    JSONObject body = new JSONObject();
+    body.put( "setting", levels ); //$NON-NLS-1$
+
+    String url = GWT.getHostPageBaseURL() + "api/repo/files/treeChanges?showHidden=" + showHidden; //$NON-NLS-1$
+    RequestBuilder builder = new RequestBuilder( RequestBuilder.POST, url );
+    builder.setHeader( "Accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
+    builder.setHeader( "Content-Type", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
+    try {
+      builder.sendRequest( body.toString(), new RequestCallback() {
+
+        public void onError( Request request, Throwable exception ) {
+          callback.onFailure( exception );
+        }
+
+        public void onResponseReceived( Request request, Response response ) {
+          if ( response.getStatusCode() != Response.SC_OK ) {
+            callback.onFailure( new Exception( response.getStatusText() ) );
+            return;
+          }
+          List<String> changedPaths = new ArrayList<String>();
+          JsArray<JsSetting> changes = JsSetting.parseSettingsJson( response.getText() );
+          for ( int i = 0; changes != null && i < changes.length(); i++ ) {
+            String path = changes.get( i ).getName();
+            // the new ETag is recorded when the level is read again
+            levelETags.remove( path );
+            changedPaths.add( path );
+          }
+          callback.onSuccess( changedPaths );
+        }
+      } );
+    } catch ( RequestException e ) {
+      callback.onFailure( e );
+    }
+  }
+
 }
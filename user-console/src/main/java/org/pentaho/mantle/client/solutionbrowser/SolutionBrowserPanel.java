@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -176,10 +176,17 @@ public class SolutionBrowserPanel extends HorizontalPanel {
 
   private TreeListener treeListener = new TreeListener() {
 
-    public void onTreeItemSelected( TreeItem item ) {
+    public void onTreeItemSelected( final TreeItem item ) {
       filesListPanel.setShowHiddenFiles( solutionTree.isShowHiddenFiles() );
-      filesListPanel.populateFilesList( SolutionBrowserPanel.this, solutionTree, item, filters );
-      filesListPanel.getToolbar().setEnabled( false );
+      // the files of a folder are read with its children
+      solutionTree.loadTreeItem( item, new Command() {
+        public void execute() {
+          if ( item == solutionTree.getSelectedItem() ) {
+            filesListPanel.populateFilesList( SolutionBrowserPanel.this, solutionTree, item, filters );
+            filesListPanel.getToolbar().setEnabled( false );
+          }
+        }
+      } );
     }
 
     public void onTreeItemStateChanged( TreeItem item ) {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -183,7 +183,8 @@ public class FilesListPanel extends FlowPanel implements IRepositoryFileTreeList
       // Get the user object.
       RepositoryFileTree tree = (RepositoryFileTree) item.getUserObject();
       // Since we are only listing the files here. Get to each item of the tree and get the file from it
-      for ( RepositoryFileTree treeItem : tree.getChildren() ) {
+      // (there is no tree for the item shown while a folder is read)
+      for ( RepositoryFileTree treeItem : tree != null ? tree.getChildren() : new ArrayList<RepositoryFileTree>() ) {
         String fileName = treeItem.getFile().getName();
         if ( filters != null ) {
           for ( int i = 0; i < filters.length(); i++ ) {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -28,6 +28,7 @@ import com.google.gwt.http.client.RequestBuilder;
 import com.google.gwt.http.client.RequestCallback;
 import com.google.gwt.http.client.RequestException;
 import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.CheckBox;
 import com.google.gwt.user.client.ui.FlexTable;
@@ -48,6 +49,8 @@ import org.pentaho.gwt.widgets.client.dialogs.PromptDialogBox;
 import org.pentaho.gwt.widgets.client.filechooser.RepositoryFile;
 import org.pentaho.mantle.client.messages.Messages;
 import org.pentaho.mantle.client.solutionbrowser.SolutionBrowserPanel;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -834,23 +837,15 @@ public class PermissionsPanel extends FlexTable implements IFileModifier {
   }
 
   private void setAdmin() {
-    try {
-      final String url = GWT.getHostPageBaseURL() + "api/repo/files/canAdminister"; //$NON-NLS-1$
-      RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-      requestBuilder.setHeader( "accept", "text/plain" ); //$NON-NLS-1$ //$NON-NLS-2$
-      requestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" ); //$NON-NLS-1$ //$NON-NLS-2$
-      requestBuilder.sendRequest( null, new RequestCallback() {
-
-        public void onError( Request request, Throwable caught ) {
-          isAdmin = false;
-        }
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
 
-        public void onResponseReceived( Request request, Response response ) {
-          isAdmin = "true".equalsIgnoreCase( response.getText() ); //$NON-NLS-1$
-        }
-      } );
-    } catch ( RequestException e ) {
-      isAdmin = false;
-    }
+      public void onFailure( Throwable caught ) {
+        isAdmin = false;
+      }
+
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        isAdmin = bootstrap.isAdministrator();
+      }
+    } );
   }
 }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -29,6 +29,7 @@ public class FileTreeItem extends TreeItem {
   public String fileName;
   public String url;
   private RepositoryFile repositoryFile;
+  private boolean loaded;
 
   public FileTreeItem() {
     super();
@@ -69,4 +70,15 @@ public class FileTreeItem extends TreeItem {
   public void setRepositoryFile( RepositoryFile repositoryFile ) {
     this.repositoryFile = repositoryFile;
   }
+
+  /**
+   * Tells whether the children of the folder were read, folders are read as they are opened.
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  public void setLoaded( boolean loaded ) {
+    this.loaded = loaded;
+  }
 }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -28,6 +28,7 @@ import com.google.gwt.event.logical.shared.OpenEvent;
 import com.google.gwt.event.logical.shared.OpenHandler;
 import com.google.gwt.event.logical.shared.SelectionEvent;
 import com.google.gwt.event.logical.shared.SelectionHandler;
+import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.rpc.AsyncCallback;
@@ -56,7 +57,9 @@ import org.pentaho.mantle.client.usersettings.UserSettingsManager;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SolutionTree extends Tree implements IRepositoryFileTreeListener, UserSettingsLoadedEventHandler,
     IRepositoryFileProvider {
@@ -74,6 +77,9 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
 
   private FocusPanel focusable = new FocusPanel();
 
+  // the commands to run once the folder of an item is read
+  private Map<FileTreeItem, List<Command>> pendingLoads = new HashMap<FileTreeItem, List<Command>>();
+
   public SolutionTree( boolean showTrash ) {
     super();
     setAnimationEnabled( true );
@@ -136,6 +142,7 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
       public void onOpen( OpenEvent<TreeItem> event ) {
         SolutionTree.this.setSelectedItem( event.getTarget() );
         selectedItem.addStyleName( "open" );
+        loadTreeItem( event.getTarget(), null );
       }
     } );
 
@@ -267,13 +274,15 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
       selectedItem = getSelectedItem();
     }
     clear();
-    addItem( new FileTreeItem( Messages.getString( "loadingEllipsis" ) ) ); //$NON-NLS-1$
+    addItem( createLoadingItem() );
     WaitPopup.getInstance().setVisible( false );
   }
 
   public void onFetchRepositoryFileTree( RepositoryFileTree fileTree, List<RepositoryFile> repositoryTrashItems ) {
 
     if ( fileTree == null ) {
+      // the repository could not be read, the loading item is all there is to replace
+      clear();
       WaitPopup.getInstance().setVisible( false );
       return;
     }
@@ -293,6 +302,8 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
         // added so we can traverse the true names
         rootItem.setFileName( "/" ); //$NON-NLS-1$
         rootItem.setRepositoryFile( rootRepositoryFile );
+        rootItem.setUserObject( repositoryFileTree );
+        rootItem.setLoaded( true );
         addItem( rootItem );
         buildSolutionTree( rootItem, repositoryFileTree );
       } else {
@@ -313,14 +324,11 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
 
     if ( selectedPath != null ) {
       select( selectedPath );
-    } else if ( selectedItem != null ) {
-      ArrayList<TreeItem> parents = new ArrayList<TreeItem>();
-      while ( selectedItem != null ) {
-        parents.add( selectedItem );
-        selectedItem = selectedItem.getParentItem();
-      }
-      Collections.reverse( parents );
-      selectFromList( parents );
+    } else if ( selectedItem instanceof FileTreeItem && ( (FileTreeItem) selectedItem ).getRepositoryFile() != null ) {
+      // the items were replaced, find the folder again by its path as the folders along it have to be read again
+      String path = ( (FileTreeItem) selectedItem ).getRepositoryFile().getPath();
+      selectedItem = null;
+      selectTreeItem( null, getPathSegments( path ), 0 );
     } else {
       for ( int i = 0; i < getItemCount(); i++ ) {
         getItem( i ).setState( true );
@@ -333,15 +341,21 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
    * 
    */
   private void fixLeafNodes() {
-    List<FileTreeItem> allNodes = getAllNodes();
-    for ( FileTreeItem treeItem : allNodes ) {
+    fixLeafNodes( getAllNodes() );
+  }
+
+  private void fixLeafNodes( List<FileTreeItem> nodes ) {
+    for ( FileTreeItem treeItem : nodes ) {
       RepositoryFileTree userObject = (RepositoryFileTree) treeItem.getUserObject();
-      if ( userObject != null && userObject.getChildren().size() == 0 ) { // This is a leaf node so change the
-                                                                          // widget
-        treeItem
-            .setWidget( new LeafItemWidget( treeItem.getText(), "icon-tree-node", "icon-tree-leaf", "icon-folder" ) ); //$NON-NLS-1$
-      } else {
-        treeItem.setWidget( new LeafItemWidget( treeItem.getText(), "icon-tree-node", "icon-folder" ) ); //$NON-NLS-1$
+      // the item shown while a folder is read keeps its text
+      if ( treeItem.getRepositoryFile() != null ) {
+        if ( treeItem.isLoaded() && userObject != null && userObject.getChildren().size() == 0 ) {
+          // This is a leaf node so change the widget
+          treeItem
+              .setWidget( new LeafItemWidget( treeItem.getText(), "icon-tree-node", "icon-tree-leaf", "icon-folder" ) ); //$NON-NLS-1$
+        } else {
+          treeItem.setWidget( new LeafItemWidget( treeItem.getText(), "icon-tree-node", "icon-folder" ) ); //$NON-NLS-1$
+        }
       }
 
       DOM.setStyleAttribute( treeItem.getElement(), "paddingLeft", "0px" ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -375,35 +389,159 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
 
   public void select( String path ) {
     this.selectedPath = path;
-    ArrayList<String> pathSegments = new ArrayList<String>();
-    if ( path != null ) {
-      if ( path.startsWith( "/" ) ) { //$NON-NLS-1$
-        path = path.substring( 1 );
+    selectTreeItem( null, getPathSegments( path ), 0 );
+  }
+
+  /**
+   * Walks down to the folder of a path from the given item, reading the folders along the path which were not read
+   * yet, and selects it.
+   */
+  private void selectTreeItem( final FileTreeItem item, final ArrayList<String> pathSegments, final int depth ) {
+    if ( depth == pathSegments.size() ) {
+      if ( item != null ) {
+        selectedItem = item;
+        this.setSelectedItem( item, false );
+        ArrayList<TreeItem> parents = new ArrayList<TreeItem>();
+        for ( TreeItem parent = item; parent != null; parent = parent.getParentItem() ) {
+          parents.add( parent );
+        }
+        Collections.reverse( parents );
+        selectFromList( parents );
       }
-      StringTokenizer st = new StringTokenizer( path, '/' );
-      for ( int i = 0; i < st.countTokens(); i++ ) {
-        String token = st.tokenAt( i );
-        pathSegments.add( token );
+      return;
+    }
+    if ( item != null && !item.isLoaded() ) {
+      loadTreeItem( item, new Command() {
+        public void execute() {
+          selectTreeItem( item, pathSegments, depth );
+        }
+      } );
+      return;
+    }
+    String pathSegment = pathSegments.get( depth );
+    int childCount = item != null ? item.getChildCount() : getItemCount();
+    for ( int i = 0; i < childCount; i++ ) {
+      FileTreeItem childItem = (FileTreeItem) ( item != null ? item.getChild( i ) : getItem( i ) );
+      if ( childItem.getFileName() != null && childItem.getFileName().equalsIgnoreCase( pathSegment ) ) {
+        selectTreeItem( childItem, pathSegments, depth + 1 );
+        return;
       }
     }
-    TreeItem item = getTreeItem( pathSegments );
-    selectedItem = item;
-    ArrayList<TreeItem> parents = new ArrayList<TreeItem>();
-    if ( item != null ) {
-      this.setSelectedItem( item, false );
-      parents.add( item );
-      item = item.getParentItem();
-      while ( item != null ) {
-        parents.add( item );
-        item = item.getParentItem();
+  }
+
+  /**
+   * Reads the children of a folder the first time it is opened or selected, then runs the command. The command runs
+   * right away if they were read already, and not at all if they cannot be read.
+   */
+  public void loadTreeItem( TreeItem treeItem, Command command ) {
+    if ( !( treeItem instanceof FileTreeItem ) || ( (FileTreeItem) treeItem ).isLoaded()
+        || ( (FileTreeItem) treeItem ).getRepositoryFile() == null ) {
+      if ( command != null ) {
+        command.execute();
       }
-      Collections.reverse( parents );
-      selectFromList( parents );
-      // this.setSelectedItem(selectedItem, false);
-      // selectedItem.setSelected(true);
+      return;
+    }
+    final FileTreeItem item = (FileTreeItem) treeItem;
+    List<Command> commands = pendingLoads.get( item );
+    if ( commands == null ) {
+      commands = new ArrayList<Command>();
+      pendingLoads.put( item, commands );
+      RepositoryFileTreeManager.getInstance().fetchRepositoryFileTreeLevel( item.getRepositoryFile().getPath(),
+          isShowHiddenFiles(), new AsyncCallback<RepositoryFileTree>() {
+
+            public void onSuccess( RepositoryFileTree level ) {
+              List<Command> commands = pendingLoads.remove( item );
+              // the item is gone if the whole tree was read again meanwhile
+              if ( item.getTree() != SolutionTree.this ) {
+                return;
+              }
+              fillTreeItem( item, level );
+              for ( Command command : commands ) {
+                command.execute();
+              }
+            }
+
+            public void onFailure( Throwable caught ) {
+              pendingLoads.remove( item );
+            }
+          } );
+    }
+    if ( command != null ) {
+      commands.add( command );
     }
   }
 
+  /**
+   * Reads the folders whose children changed since they were read, in place. The whole tree is read again if the root
+   * folder changed.
+   */
+  public void refresh() {
+    final RepositoryFileTreeManager manager = RepositoryFileTreeManager.getInstance();
+    if ( repositoryFileTree == null ) {
+      manager.fetchRepositoryFileTree( true, null, null, isShowHiddenFiles() );
+      return;
+    }
+    manager.fetchChangedRepositoryFileTreeLevels( isShowHiddenFiles(), new AsyncCallback<List<String>>() {
+
+      public void onSuccess( List<String> changedPaths ) {
+        if ( changedPaths.contains( RepositoryFileTreeManager.SEPARATOR ) ) {
+          manager.fetchRepositoryFileTree( true, null, null, isShowHiddenFiles() );
+          return;
+        }
+        final TreeItem selected = getSelectedItem();
+        for ( String path : changedPaths ) {
+          final FileTreeItem item = getTreeItem( getPathSegments( path ) );
+          if ( item != null && item.isLoaded() ) {
+            item.setLoaded( false );
+            loadTreeItem( item, new Command() {
+              public void execute() {
+                // list the files of the selected folder again if it was read again, or was one of its children
+                if ( selected != null && selected.getTree() == SolutionTree.this
+                    && ( selected == item || getSelectedItem() == null ) ) {
+                  setSelectedItem( selected, true );
+                }
+              }
+            } );
+          }
+        }
+      }
+
+      public void onFailure( Throwable caught ) {
+        manager.fetchRepositoryFileTree( true, null, null, isShowHiddenFiles() );
+      }
+    } );
+  }
+
+  private void fillTreeItem( FileTreeItem item, RepositoryFileTree level ) {
+    // keep the items of the folders which were read already, so that the tree stays open as it was
+    Map<String, FileTreeItem> previousItems = new HashMap<String, FileTreeItem>();
+    for ( int i = 0; i < item.getChildCount(); i++ ) {
+      FileTreeItem childItem = (FileTreeItem) item.getChild( i );
+      if ( childItem.getRepositoryFile() != null ) {
+        previousItems.put( childItem.getRepositoryFile().getPath(), childItem );
+      }
+    }
+    boolean open = item.getState();
+    item.removeItems();
+    item.setUserObject( level );
+    item.setLoaded( true );
+    buildSolutionTree( item, level, previousItems );
+
+    List<FileTreeItem> nodes = new ArrayList<FileTreeItem>();
+    nodes.add( item );
+    for ( int i = 0; i < item.getChildCount(); i++ ) {
+      nodes.add( (FileTreeItem) item.getChild( i ) );
+    }
+    fixLeafNodes( nodes );
+    item.setState( open, false );
+  }
+
+  private FileTreeItem createLoadingItem() {
+    FileTreeItem loadingItem = new FileTreeItem( Messages.getString( "loadingEllipsis" ) ); //$NON-NLS-1$
+    loadingItem.setFileName( "" ); //$NON-NLS-1$
+    return loadingItem;
+  }
+
   public ArrayList<String> getPathSegments( String path ) {
     ArrayList<String> pathSegments = new ArrayList<String>();
     if ( path != null ) {
@@ -499,6 +637,15 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
   }
 
   private void buildSolutionTree( FileTreeItem parentTreeItem, RepositoryFileTree repositoryFileTree ) {
+    buildSolutionTree( parentTreeItem, repositoryFileTree, new HashMap<String, FileTreeItem>() );
+  }
+
+  /**
+   * Adds an item for each child folder of a tree level. The children of those are read when they are opened, unless
+   * one of the previous items, whose children were read already, is for the same folder.
+   */
+  private void buildSolutionTree( FileTreeItem parentTreeItem, RepositoryFileTree repositoryFileTree,
+      Map<String, FileTreeItem> previousItems ) {
     List<RepositoryFileTree> children = repositoryFileTree.getChildren();
 
     // BISERVER-9599 - Custom Sort
@@ -510,32 +657,28 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
       }
     } );
 
+    boolean hasFolders = false;
     for ( RepositoryFileTree treeItem : children ) {
       RepositoryFile file = treeItem.getFile();
-      boolean isDirectory = file.isFolder();
       String fileName = file.getName();
-      if ( ( !file.isHidden() || isShowHiddenFiles() ) && !StringUtils.isEmpty( fileName ) ) {
+      if ( file.isFolder() && ( !file.isHidden() || isShowHiddenFiles() ) && !StringUtils.isEmpty( fileName ) ) {
+        hasFolders = true;
 
         // TODO Mapping Title to LocalizedName
         String localizedName = file.getTitle();
         String description = file.getDescription();
-        FileTreeItem childTreeItem = new FileTreeItem();
-        childTreeItem.setStylePrimaryName( "leaf-widget" );
+        FileTreeItem childTreeItem = previousItems.get( file.getPath() );
+        if ( childTreeItem == null || !childTreeItem.isLoaded() ) {
+          childTreeItem = new FileTreeItem();
+          childTreeItem.setStylePrimaryName( "leaf-widget" );
+          childTreeItem.setUserObject( treeItem );
+          // the folder is shown as a parent until its children are read
+          childTreeItem.addStyleName( "parent-widget" );
+          childTreeItem.addItem( createLoadingItem() );
+        }
         childTreeItem.getElement().setAttribute( "id", file.getPath() ); //$NON-NLS-1$
-        childTreeItem.setUserObject( treeItem );
         childTreeItem.setRepositoryFile( file );
-        if ( file.isHidden() && file.isFolder() ) {
-          childTreeItem.addStyleDependentName( "hidden" );
-        }
-
-        if ( treeItem != null && treeItem.getChildren() != null ) {
-          for ( RepositoryFileTree childItem : treeItem.getChildren() ) {
-            if ( childItem.getFile().isFolder() ) {
-              childTreeItem.addStyleName( "parent-widget" );
-              break;
-            }
-          }
-        }
+        childTreeItem.setStyleDependentName( "hidden", file.isHidden() );
 
         ElementUtils.killAllTextSelection( childTreeItem.getElement() );
         childTreeItem.setURL( fileName );
@@ -555,31 +698,16 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
           }
         }
         childTreeItem.setFileName( fileName );
-        if ( parentTreeItem == null && isDirectory ) {
+        if ( parentTreeItem == null ) {
           addItem( childTreeItem );
-        } else if ( parentTreeItem != null ) {
-          parentTreeItem.addItem( childTreeItem );
-        }
-        FileTreeItem tmpParent = childTreeItem;
-        String pathToChild = tmpParent.getFileName();
-        while ( tmpParent.getParentItem() != null ) {
-          tmpParent = (FileTreeItem) tmpParent.getParentItem();
-          pathToChild = tmpParent.getFileName() + "/" + pathToChild; //$NON-NLS-1$
-        }
-        /*
-         * TODO Not sure what to do here if (parentTreeItem != null) { ArrayList<FileChooserRepositoryFile> files =
-         * (ArrayList<FileChooserRepositoryFile>) parentTreeItem.getUserObject(); if (files == null) { files = new
-         * ArrayList<FileChooserRepositoryFile>(); parentTreeItem.setUserObject(files); } files.add(file); }
-         */
-        if ( isDirectory ) {
-          buildSolutionTree( childTreeItem, treeItem );
         } else {
-          if ( parentTreeItem != null ) {
-            parentTreeItem.removeItem( childTreeItem );
-          }
+          parentTreeItem.addItem( childTreeItem );
         }
       }
     }
+    if ( parentTreeItem != null && !hasFolders ) {
+      parentTreeItem.removeStyleName( "parent-widget" );
+    }
   }
 
   public void setShowLocalizedFileNames( boolean showLocalizedFileNames ) {
@@ -591,10 +719,12 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
   }
 
   private void toggleLocalizedFileNames( FileTreeItem parentTreeItem ) {
-    String title = parentTreeItem.getTitle();
-    String text = parentTreeItem.getText();
-    parentTreeItem.setTitle( text );
-    parentTreeItem.setText( title );
+    if ( parentTreeItem.getRepositoryFile() != null ) {
+      String title = parentTreeItem.getTitle();
+      String text = parentTreeItem.getText();
+      parentTreeItem.setTitle( text );
+      parentTreeItem.setText( title );
+    }
     for ( int i = 0; i < parentTreeItem.getChildCount(); i++ ) {
       toggleLocalizedFileNames( (FileTreeItem) parentTreeItem.getChild( i ) );
     }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -23,14 +23,8 @@ package org.pentaho.mantle.client.ui;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.JsArrayString;
-import com.google.gwt.core.client.JsonUtils;
 import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.core.client.Scheduler.ScheduledCommand;
-import com.google.gwt.http.client.Request;
-import com.google.gwt.http.client.RequestBuilder;
-import com.google.gwt.http.client.RequestCallback;
-import com.google.gwt.http.client.RequestException;
-import com.google.gwt.http.client.Response;
 import com.google.gwt.user.client.Element;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
@@ -54,6 +48,8 @@ import org.pentaho.mantle.client.ui.CustomDropDown.MODE;
 import org.pentaho.mantle.client.ui.xul.JsPerspective;
 import org.pentaho.mantle.client.ui.xul.JsXulOverlay;
 import org.pentaho.mantle.client.ui.xul.MantleXul;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 import org.pentaho.mantle.client.workspace.SchedulesPerspectivePanel;
 import org.pentaho.platform.api.engine.perspective.pojo.IPluginPerspective;
 import org.pentaho.platform.plugin.services.pluginmgr.perspective.pojo.DefaultPluginPerspective;
@@ -103,64 +99,57 @@ public class PerspectiveManager extends SimplePanel {
     getElement().setId( "mantle-perspective-switcher" );
     setStyleName( "mantle-perspective-switcher" );
 
-    final String url = GWT.getHostPageBaseURL() + "api/plugin-manager/perspectives?ts=" + System.currentTimeMillis(); //$NON-NLS-1$
-    RequestBuilder builder = new RequestBuilder( RequestBuilder.GET, url );
-    builder.setHeader( "Content-Type", "application/json" ); //$NON-NLS-1$//$NON-NLS-2$
-    builder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
 
-    try {
-      builder.sendRequest( null, new RequestCallback() {
-
-        public void onError( Request request, Throwable exception ) {
-          Window.alert( "getPluginPerpectives fail: " + exception.getMessage() );
-        }
+      public void onFailure( Throwable caught ) {
+        Window.alert( "getPluginPerpectives fail: " + caught.getMessage() );
+      }
 
-        public void onResponseReceived( Request request, Response response ) {
-
-          JsArray<JsPerspective> jsperspectives =
-              JsPerspective.parseJson( JsonUtils.escapeJsonForEval( response.getText() ) );
-          ArrayList<IPluginPerspective> perspectives = new ArrayList<IPluginPerspective>();
-          for ( int i = 0; i < jsperspectives.length(); i++ ) {
-            JsPerspective jsperspective = jsperspectives.get( i );
-            DefaultPluginPerspective perspective = new DefaultPluginPerspective();
-            perspective.setContentUrl( jsperspective.getContentUrl() );
-            perspective.setId( jsperspective.getId() );
-            perspective.setLayoutPriority( Integer.parseInt( jsperspective.getLayoutPriority() ) );
-
-            ArrayList<String> requiredSecurityActions = new ArrayList<String>();
-            if ( jsperspective.getRequiredSecurityActions() != null ) {
-              for ( int j = 0; j < jsperspective.getRequiredSecurityActions().length(); j++ ) {
-                requiredSecurityActions.add( jsperspective.getRequiredSecurityActions().get( j ) );
-              }
-            }
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        setPluginPerspectives( bootstrap.getPerspectives() );
+      }
 
-            // will need to iterate over jsoverlays and convert to MantleXulOverlay
-            ArrayList<XulOverlay> overlays = new ArrayList<XulOverlay>();
-            if ( jsperspective.getOverlays() != null ) {
-              for ( int j = 0; j < jsperspective.getOverlays().length(); j++ ) {
-                JsXulOverlay o = jsperspective.getOverlays().get( j );
-                MantleXulOverlay overlay =
-                    new MantleXulOverlay( o.getId(), o.getOverlayUri(), o.getSource(), o.getResourceBundleUri() );
-                overlays.add( overlay );
-              }
-            }
-            perspective.setOverlays( overlays );
+    } );
 
-            perspective.setRequiredSecurityActions( requiredSecurityActions );
-            perspective.setResourceBundleUri( jsperspective.getResourceBundleUri() );
-            perspective.setTitle( jsperspective.getTitle() );
+    registerFunctions( this );
+  }
 
-            perspectives.add( perspective );
-          }
+  protected void setPluginPerspectives( final JsArray<JsPerspective> jsperspectives ) {
+    ArrayList<IPluginPerspective> perspectives = new ArrayList<IPluginPerspective>();
+    for ( int i = 0; i < jsperspectives.length(); i++ ) {
+      JsPerspective jsperspective = jsperspectives.get( i );
+      DefaultPluginPerspective perspective = new DefaultPluginPerspective();
+      perspective.setContentUrl( jsperspective.getContentUrl() );
+      perspective.setId( jsperspective.getId() );
+      perspective.setLayoutPriority( Integer.parseInt( jsperspective.getLayoutPriority() ) );
+
+      ArrayList<String> requiredSecurityActions = new ArrayList<String>();
+      if ( jsperspective.getRequiredSecurityActions() != null ) {
+        for ( int j = 0; j < jsperspective.getRequiredSecurityActions().length(); j++ ) {
+          requiredSecurityActions.add( jsperspective.getRequiredSecurityActions().get( j ) );
+        }
+      }
 
-          setPluginPerspectives( perspectives );
+      // will need to iterate over jsoverlays and convert to MantleXulOverlay
+      ArrayList<XulOverlay> overlays = new ArrayList<XulOverlay>();
+      if ( jsperspective.getOverlays() != null ) {
+        for ( int j = 0; j < jsperspective.getOverlays().length(); j++ ) {
+          JsXulOverlay o = jsperspective.getOverlays().get( j );
+          MantleXulOverlay overlay =
+              new MantleXulOverlay( o.getId(), o.getOverlayUri(), o.getSource(), o.getResourceBundleUri() );
+          overlays.add( overlay );
         }
-      } );
-    } catch ( RequestException e ) {
-      // showError(e);
+      }
+      perspective.setOverlays( overlays );
+
+      perspective.setRequiredSecurityActions( requiredSecurityActions );
+      perspective.setResourceBundleUri( jsperspective.getResourceBundleUri() );
+      perspective.setTitle( jsperspective.getTitle() );
+
+      perspectives.add( perspective );
     }
 
-    registerFunctions( this );
+    setPluginPerspectives( perspectives );
   }
 
   protected void setPluginPerspectives( final ArrayList<IPluginPerspective> perspectives ) {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -38,7 +38,10 @@ public class JsPerspective extends JavaScriptObject {
 
   public final native String getContentUrl() /*-{ return this.contentUrl; }-*/; //
 
-  public final native String getLayoutPriority() /*-{ return this.layoutPriority; }-*/; //
+  public final native String getLayoutPriority()
+  /*-{
+    return this.layoutPriority != null ? String(this.layoutPriority) : null;
+  }-*/;
 
   public final native JsArray<JsXulOverlay> getOverlays() /*-{ return this.overlays; }-*/; //
 
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -36,13 +36,15 @@ public class JsTheme extends JavaScriptObject {
   public static final native JsArray<JsTheme> getThemes( String json )
   /*-{
     var obj = JSON.parse(json);
+    return @org.pentaho.mantle.client.ui.xul.JsTheme::sortThemes(Lcom/google/gwt/core/client/JsArray;)(obj.theme);
+  }-*/;
 
+  public static final native JsArray<JsTheme> sortThemes( JsArray<JsTheme> themes )
+  /*-{
     // Sort themes alphabetically
-    obj.theme = obj.theme.sort(function(a, b) {
+    return themes.sort(function(a, b) {
       return (a.name > b.name) ? 1 : (a.name == b.name)? 0 : -1;
     });
-
-    return obj.theme;
   }-*/;
 
 }
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -23,7 +23,6 @@ package org.pentaho.mantle.client.ui.xul;
 import com.google.gwt.core.client.GWT;
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.core.client.JsArray;
-import com.google.gwt.core.client.JsonUtils;
 import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.http.client.Request;
 import com.google.gwt.http.client.RequestBuilder;
@@ -35,7 +34,6 @@ import com.google.gwt.json.client.JSONParser;
 import com.google.gwt.user.client.Command;
 import com.google.gwt.user.client.Element;
 import com.google.gwt.user.client.Timer;
-import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.MenuBar;
 import com.google.gwt.user.client.ui.MenuItem;
@@ -71,6 +69,8 @@ import org.pentaho.mantle.client.solutionbrowser.filepicklist.RecentPickList;
 import org.pentaho.mantle.client.ui.PerspectiveManager;
 import org.pentaho.mantle.client.usersettings.IMantleUserSettingsConstants;
 import org.pentaho.mantle.client.usersettings.JsSetting;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 import org.pentaho.mantle.client.usersettings.UserSettingsManager;
 import org.pentaho.ui.xul.XulComponent;
 import org.pentaho.ui.xul.XulException;
@@ -229,89 +229,45 @@ public class MantleController extends AbstractXulEventHandler {
     } );
 
     // install themes
-    RequestBuilder getActiveThemeRequestBuilder =
-        new RequestBuilder( RequestBuilder.GET, GWT.getHostPageBaseURL() + "api/theme/active" ); //$NON-NLS-1$
-    try {
-      getActiveThemeRequestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-      getActiveThemeRequestBuilder.sendRequest( null, new RequestCallback() {
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
 
-        public void onError( Request request, Throwable exception ) {
-          // showError(exception);
-        }
+      public void onFailure( Throwable caught ) {
+        // showError(caught);
+      }
 
-        public void onResponseReceived( Request request, Response response ) {
-          final String activeTheme = response.getText();
-          RequestBuilder getThemesRequestBuilder =
-              new RequestBuilder( RequestBuilder.GET, GWT.getHostPageBaseURL() + "api/theme/list" ); //$NON-NLS-1$
-          getThemesRequestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-          getThemesRequestBuilder.setHeader( "accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        toolsMenu.setVisible( bootstrap.isAdministrator() );
+        showHiddenFilesMenuItem.setVisible( bootstrap.isAdministrator() );
 
-          try {
-            getThemesRequestBuilder.sendRequest( null, new RequestCallback() {
-              public void onError( Request arg0, Throwable arg1 ) {
-              }
+        final String activeTheme = bootstrap.getActiveTheme();
+        JsArray<JsTheme> themes = JsTheme.sortThemes( bootstrap.getThemes() );
 
-              public void onResponseReceived( Request request, Response response ) {
-                try {
-                  final String url = GWT.getHostPageBaseURL() + "api/repo/files/canAdminister"; //$NON-NLS-1$
-                  RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-                  requestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-                  requestBuilder.setHeader( "accept", "text/plain" ); //$NON-NLS-1$ //$NON-NLS-2$
-                  requestBuilder.sendRequest( null, new RequestCallback() {
-
-                    public void onError( Request request, Throwable caught ) {
-                    }
-
-                    public void onResponseReceived( Request request, Response response ) {
-                      toolsMenu.setVisible( "true".equalsIgnoreCase( response.getText() ) ); //$NON-NLS-1$
-                      showHiddenFilesMenuItem.setVisible( "true".equalsIgnoreCase( response.getText() ) ); //$NON-NLS-1$
-                    }
-
-                  } );
-                } catch ( RequestException e ) {
-                  Window.alert( e.getMessage() );
-                }
-
-                JsArray<JsTheme> themes = JsTheme.getThemes( JsonUtils.escapeJsonForEval( response.getText() ) );
-
-                for ( int i = 0; i < themes.length(); i++ ) {
-                  JsTheme theme = themes.get( i );
-                  PentahoMenuItem themeMenuItem =
-                      new PentahoMenuItem( theme.getName(), new SwitchThemeCommand( theme.getId() ) );
-                  themeMenuItem.getElement().setId( theme.getId() + "_menu_item" ); //$NON-NLS-1$
-                  themeMenuItem.setChecked( theme.getId().equals( activeTheme ) );
-                  ( (MenuBar) themesMenu.getManagedObject() ).addItem( themeMenuItem );
-                }
-
-                bf.createBinding( model, "saveEnabled", saveMenuItem, "!disabled" ); //$NON-NLS-1$ //$NON-NLS-2$
-                bf.createBinding( model, "saveAsEnabled", saveAsMenuItem, "!disabled" ); //$NON-NLS-1$ //$NON-NLS-2$
-
-                if ( PerspectiveManager.getInstance().isLoaded() ) {
-                  executeAdminContent();
-                } else {
-                  EventBusUtil.EVENT_BUS.addHandler( PerspectivesLoadedEvent.TYPE,
-                      new PerspectivesLoadedEventHandler() {
-                        public void onPerspectivesLoaded( PerspectivesLoadedEvent event ) {
-                          executeAdminContent();
-                        }
-                      } );
-                }
-
-                setupNativeHooks( MantleController.this );
-              }
-            } );
+        for ( int i = 0; i < themes.length(); i++ ) {
+          JsTheme theme = themes.get( i );
+          PentahoMenuItem themeMenuItem =
+              new PentahoMenuItem( theme.getName(), new SwitchThemeCommand( theme.getId() ) );
+          themeMenuItem.getElement().setId( theme.getId() + "_menu_item" ); //$NON-NLS-1$
+          themeMenuItem.setChecked( theme.getId().equals( activeTheme ) );
+          ( (MenuBar) themesMenu.getManagedObject() ).addItem( themeMenuItem );
+        }
 
-          } catch ( RequestException e ) {
-            // showError(e);
-          }
+        bf.createBinding( model, "saveEnabled", saveMenuItem, "!disabled" ); //$NON-NLS-1$ //$NON-NLS-2$
+        bf.createBinding( model, "saveAsEnabled", saveAsMenuItem, "!disabled" ); //$NON-NLS-1$ //$NON-NLS-2$
+
+        if ( PerspectiveManager.getInstance().isLoaded() ) {
+          executeAdminContent();
+        } else {
+          EventBusUtil.EVENT_BUS.addHandler( PerspectivesLoadedEvent.TYPE, new PerspectivesLoadedEventHandler() {
+            public void onPerspectivesLoaded( PerspectivesLoadedEvent event ) {
+              executeAdminContent();
+            }
+          } );
         }
 
-      } );
+        setupNativeHooks( MantleController.this );
+      }
 
-    } catch ( RequestException e ) {
-      Window.alert( e.getMessage() );
-      // showError(e);
-    }
+    } );
   }
 
   public void processSettings( JsArray<JsSetting> settings ) {
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -31,6 +31,7 @@ import com.google.gwt.http.client.Response;
 import com.google.gwt.user.client.Element;
 import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.DeckPanel;
 import com.google.gwt.user.client.ui.Panel;
 import com.google.gwt.user.client.ui.SimplePanel;
@@ -54,6 +55,8 @@ import org.pentaho.mantle.client.events.SolutionBrowserSelectEventHandler;
 import org.pentaho.mantle.client.messages.Messages;
 import org.pentaho.mantle.client.objects.MantleXulOverlay;
 import org.pentaho.mantle.client.solutionbrowser.tabs.IFrameTabPanel;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 import org.pentaho.ui.xul.XulException;
 import org.pentaho.ui.xul.XulOverlay;
 import org.pentaho.ui.xul.gwt.GwtXulDomContainer;
@@ -143,32 +146,18 @@ public class MantleXul implements IXulLoaderCallback, SolutionBrowserOpenEventHa
     menubar.setWidget( menu );
 
     // check based on user permissions
-    final String moduleBaseURL = GWT.getModuleBaseURL();
-    final String moduleName = GWT.getModuleName();
-    final String contextURL = moduleBaseURL.substring( 0, moduleBaseURL.lastIndexOf( moduleName ) );
-    final String url = contextURL + "api/repo/files/canCreate"; //$NON-NLS-1$
-    RequestBuilder executableTypesRequestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-    executableTypesRequestBuilder.setHeader( "accept", "text/plain" );
-    executableTypesRequestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
 
-    try {
-      executableTypesRequestBuilder.sendRequest( null, new RequestCallback() {
+      public void onFailure( Throwable caught ) {
+        // showError(caught);
+      }
 
-        public void onError( Request request, Throwable exception ) {
-          // showError(exception);
-        }
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        controller.setMenuBarEnabled( "newmenu", bootstrap.canCreate() );
+        controller.setToolBarButtonEnabled( "newButton", bootstrap.canCreate() );
+      }
 
-        public void onResponseReceived( Request request, Response response ) {
-          if ( response.getStatusCode() == Response.SC_OK ) {
-            Boolean visible = new Boolean( response.getText() );
-            controller.setMenuBarEnabled( "newmenu", visible );
-            controller.setToolBarButtonEnabled( "newButton", visible );
-          }
-        }
-      } );
-    } catch ( RequestException e ) {
-      // showError(e);
-    }
+    } );
 
     // get the admin perspective from the XUL doc
     Widget admin = (Widget) container.getDocumentRoot().getElementById( "adminPerspective" ).getManagedObject(); //$NON-NLS-1$
@@ -0,0 +1,59 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.mantle.client.usersettings;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+import org.pentaho.mantle.client.ui.xul.JsPerspective;
+import org.pentaho.mantle.client.ui.xul.JsTheme;
+
+/**
+ * The start-up state of the user console, as returned by <code>api/mantle/bootstrap</code>.
+ */
+public class JsUserConsoleBootstrap extends JavaScriptObject {
+
+  protected JsUserConsoleBootstrap() {
+  }
+
+  public final native boolean isAdministrator() /*-{ return this.administrator === true; }-*/; //
+
+  public final native boolean canCreate() /*-{ return this.canCreate === true; }-*/; //
+
+  public final native boolean canSchedule() /*-{ return this.canSchedule === true; }-*/; //
+
+  public final native String getReservedCharacters() /*-{ return this.reservedCharacters; }-*/; //
+
+  public final native String getActiveTheme() /*-{ return this.activeTheme; }-*/; //
+
+  public final native JsArray<JsSetting> getMantleSettings() /*-{ return this.mantleSettings || []; }-*/; //
+
+  public final native JsArray<JsSetting> getUserSettings() /*-{ return this.userSettings || []; }-*/; //
+
+  public final native JsArray<JsTheme> getThemes() /*-{ return this.themes || []; }-*/; //
+
+  public final native JsArray<JsPerspective> getPerspectives() /*-{ return this.perspectives || []; }-*/; //
+
+  public static final native JsUserConsoleBootstrap parseJson( String json )
+  /*-{
+    return JSON.parse(json);
+  }-*/;
+
+}
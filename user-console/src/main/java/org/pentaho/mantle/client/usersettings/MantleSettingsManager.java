@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -55,79 +55,63 @@ public class MantleSettingsManager {
 
   public void getMantleSettings( final boolean forceReload ) {
     if ( forceReload || settings.size() == 0 ) {
-      getMantleSettings( null );
+      loadMantleSettings( null, forceReload );
     }
   }
 
   public void getMantleSettings( final AsyncCallback<HashMap<String, String>> callback, final boolean forceReload ) {
     if ( forceReload || settings.size() == 0 ) {
-      getMantleSettings( callback );
+      loadMantleSettings( callback, forceReload );
     } else {
       callback.onSuccess( settings );
     }
   }
 
-  private void getMantleSettings( final AsyncCallback<HashMap<String, String>> callback ) {
-    final RequestCallback internalCallback = new RequestCallback() {
+  private void loadMantleSettings( final AsyncCallback<HashMap<String, String>> callback, final boolean forceReload ) {
+    // the first load comes with the start-up state of the console, reloads ask for the settings alone
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
 
-      public void onError( Request request, Throwable exception ) {
-        MessageDialogBox dialog =
-            new MessageDialogBox(
-                Messages.getString( "error" ), Messages.getString( "couldNotGetUserSettings" ), true, false, true ); //$NON-NLS-1$ //$NON-NLS-2$
-        dialog.center();
-      }
-
-      public void onResponseReceived( Request request, Response response ) {
-
-        JsArray<JsSetting> jsSettings = null;
-        try {
-          jsSettings = JsSetting.parseSettingsJson( response.getText() );
-        } catch ( Throwable t ) {
-          // happens when there are no settings
-        }
-
-        for ( int i = 0; i < jsSettings.length(); i++ ) {
-          settings.put( jsSettings.get( i ).getName(), jsSettings.get( i ).getValue() );
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        isAdministrator = bootstrap.isAdministrator();
+        if ( forceReload ) {
+          fetchMantleSettings( callback );
+        } else {
+          onMantleSettingsLoaded( bootstrap.getMantleSettings(), callback );
         }
+      }
 
-        settings.put( "is-administrator", "" + isAdministrator );
-        if ( callback != null ) {
-          callback.onSuccess( settings );
-        }
-        EventBusUtil.EVENT_BUS.fireEvent( new MantleSettingsLoadedEvent( settings ) );
+      public void onFailure( Throwable caught ) {
+        isAdministrator = false;
+        fetchMantleSettings( callback );
       }
-    };
 
+    } );
+  }
+
+  private void fetchMantleSettings( final AsyncCallback<HashMap<String, String>> callback ) {
     final RequestBuilder builder =
         new RequestBuilder( RequestBuilder.GET, GWT.getHostPageBaseURL() + "api/mantle/settings" );
     builder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
     builder.setHeader( "accept", "application/json" );
 
     try {
-      final String url = GWT.getHostPageBaseURL() + "api/repo/files/canAdminister"; //$NON-NLS-1$
-      RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-      builder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-      requestBuilder.setHeader( "accept", "text/plain" );
-      requestBuilder.sendRequest( null, new RequestCallback() {
+      builder.sendRequest( null, new RequestCallback() {
 
-        public void onError( Request request, Throwable caught ) {
-          try {
-            builder.sendRequest( null, internalCallback );
-          } catch ( RequestException e ) {
-            //ignored
-          }
-          //CHECKSTYLE IGNORE Indentation FOR NEXT 1 LINES
-          MantleSettingsManager.getInstance().isAdministrator = false;
+        public void onError( Request request, Throwable exception ) {
+          MessageDialogBox dialog =
+              new MessageDialogBox(
+                  Messages.getString( "error" ), Messages.getString( "couldNotGetUserSettings" ), true, false, true ); //$NON-NLS-1$ //$NON-NLS-2$
+          dialog.center();
         }
 
         public void onResponseReceived( Request request, Response response ) {
+          JsArray<JsSetting> jsSettings = null;
           try {
-            builder.sendRequest( null, internalCallback );
-          } catch ( RequestException e ) {
-            //ignored
+            jsSettings = JsSetting.parseSettingsJson( response.getText() );
+          } catch ( Throwable t ) {
+            // happens when there are no settings
           }
-          //CHECKSTYLE IGNORE Indentation FOR NEXT 1 LINES
-          MantleSettingsManager.getInstance().isAdministrator = isAdministrator;
+          onMantleSettingsLoaded( jsSettings, callback );
         }
 
       } );
@@ -136,4 +120,19 @@ public class MantleSettingsManager {
     }
   }
 
+  private void onMantleSettingsLoaded( final JsArray<JsSetting> jsSettings,
+                                       final AsyncCallback<HashMap<String, String>> callback ) {
+    if ( jsSettings != null ) {
+      for ( int i = 0; i < jsSettings.length(); i++ ) {
+        settings.put( jsSettings.get( i ).getName(), jsSettings.get( i ).getValue() );
+      }
+    }
+
+    settings.put( "is-administrator", "" + isAdministrator );
+    if ( callback != null ) {
+      callback.onSuccess( settings );
+    }
+    EventBusUtil.EVENT_BUS.fireEvent( new MantleSettingsLoadedEvent( settings ) );
+  }
+
 }
@@ -0,0 +1,111 @@
+/*!
+ *
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ *
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
+ *
+ */
+
+package org.pentaho.mantle.client.usersettings;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+import java.util.ArrayList;
+
+/**
+ * Loads the start-up state of the user console with a single request, shared by everything that needs it while the
+ * console starts. Callers asking while the request is in flight are answered when it completes, and the state is
+ * kept for the life of the page. A failed request is retried by the next caller.
+ */
+public class UserConsoleBootstrapManager {
+
+  private JsUserConsoleBootstrap bootstrap;
+  private ArrayList<AsyncCallback<JsUserConsoleBootstrap>> pendingCallbacks;
+
+  private static UserConsoleBootstrapManager instance;
+
+  private UserConsoleBootstrapManager() {
+  }
+
+  public static UserConsoleBootstrapManager getInstance() {
+    if ( instance == null ) {
+      instance = new UserConsoleBootstrapManager();
+    }
+    return instance;
+  }
+
+  public void getBootstrap( final AsyncCallback<JsUserConsoleBootstrap> callback ) {
+    if ( bootstrap != null ) {
+      callback.onSuccess( bootstrap );
+      return;
+    }
+    if ( pendingCallbacks != null ) {
+      pendingCallbacks.add( callback );
+      return;
+    }
+    pendingCallbacks = new ArrayList<AsyncCallback<JsUserConsoleBootstrap>>();
+    pendingCallbacks.add( callback );
+
+    final String url = GWT.getHostPageBaseURL() + "api/mantle/bootstrap"; //$NON-NLS-1$
+    RequestBuilder builder = new RequestBuilder( RequestBuilder.GET, url );
+    builder.setHeader( "accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
+    builder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
+
+    try {
+      builder.sendRequest( null, new RequestCallback() {
+
+        public void onError( Request request, Throwable exception ) {
+          onBootstrapFailed( exception );
+        }
+
+        public void onResponseReceived( Request request, Response response ) {
+          if ( response.getStatusCode() != Response.SC_OK ) {
+            onBootstrapFailed( new Exception( response.getStatusText() ) );
+            return;
+          }
+          try {
+            bootstrap = JsUserConsoleBootstrap.parseJson( response.getText() );
+          } catch ( Throwable t ) {
+            onBootstrapFailed( t );
+            return;
+          }
+          ArrayList<AsyncCallback<JsUserConsoleBootstrap>> callbacks = pendingCallbacks;
+          pendingCallbacks = null;
+          for ( AsyncCallback<JsUserConsoleBootstrap> pendingCallback : callbacks ) {
+            pendingCallback.onSuccess( bootstrap );
+          }
+        }
+
+      } );
+    } catch ( RequestException e ) {
+      onBootstrapFailed( e );
+    }
+  }
+
+  private void onBootstrapFailed( Throwable caught ) {
+    ArrayList<AsyncCallback<JsUserConsoleBootstrap>> callbacks = pendingCallbacks;
+    pendingCallbacks = null;
+    for ( AsyncCallback<JsUserConsoleBootstrap> pendingCallback : callbacks ) {
+      pendingCallback.onFailure( caught );
+    }
+  }
+
+}
@@ -14,7 +14,7 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
@@ -49,19 +49,47 @@ public class UserSettingsManager {
   }
 
   public void getUserSettings( final boolean forceReload ) {
-    if ( forceReload || settings == null ) {
+    if ( forceReload ) {
       getUserSettings( null );
+    } else if ( settings == null ) {
+      getBootstrapUserSettings( null );
     }
   }
 
   public void getUserSettings( final AsyncCallback<JsArray<JsSetting>> callback, final boolean forceReload ) {
-    if ( forceReload || settings == null ) {
+    if ( forceReload ) {
       getUserSettings( callback );
+    } else if ( settings == null ) {
+      getBootstrapUserSettings( callback );
     } else {
       callback.onSuccess( settings );
     }
   }
 
+  private void getBootstrapUserSettings( final AsyncCallback<JsArray<JsSetting>> callback ) {
+    // the first load comes with the start-up state of the console, reloads ask for the settings alone
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
+
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        onUserSettingsLoaded( bootstrap.getUserSettings(), callback );
+      }
+
+      public void onFailure( Throwable caught ) {
+        getUserSettings( callback );
+      }
+
+    } );
+  }
+
+  private void onUserSettingsLoaded( final JsArray<JsSetting> jsSettings,
+                                     final AsyncCallback<JsArray<JsSetting>> callback ) {
+    settings = jsSettings;
+    if ( callback != null ) {
+      callback.onSuccess( settings );
+    }
+    EventBusUtil.EVENT_BUS.fireEvent( new UserSettingsLoadedEvent( settings ) );
+  }
+
   private void getUserSettings( final AsyncCallback<JsArray<JsSetting>> callback ) {
     final String url = GWT.getHostPageBaseURL() + "api/user-settings/list"; //$NON-NLS-1$
     RequestBuilder builder = new RequestBuilder( RequestBuilder.GET, url );
@@ -85,12 +113,7 @@ public class UserSettingsManager {
           } catch ( Throwable t ) {
             // happens when there are no settings
           }
-          //CHECKSTYLE IGNORE Indentation FOR NEXT 1 LINES
-          getInstance().settings = jsSettings;
-          if ( callback != null ) {
-            callback.onSuccess( settings );
-          }
-          EventBusUtil.EVENT_BUS.fireEvent( new UserSettingsLoadedEvent( settings ) );
+          onUserSettingsLoaded( jsSettings, callback );
         }
 
       } );
@@ -14,25 +14,21 @@
  * See the GNU Lesser General Public License for more details.
  *
  *
- * Copyright (c) 2002-2018 Hitachi Vantara. All rights reserved.
+ * Copyright (c) 2002-2019 Hitachi Vantara. All rights reserved.
  *
  */
 
 package org.pentaho.mantle.client.workspace;
 
-import com.google.gwt.core.client.GWT;
-import com.google.gwt.http.client.Request;
-import com.google.gwt.http.client.RequestBuilder;
-import com.google.gwt.http.client.RequestCallback;
-import com.google.gwt.http.client.RequestException;
-import com.google.gwt.http.client.Response;
 import com.google.gwt.resources.client.ImageResource;
 import com.google.gwt.user.cellview.client.CellTable;
-import com.google.gwt.user.client.Window;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Label;
 import com.google.gwt.user.client.ui.SimplePanel;
 import com.google.gwt.user.client.ui.VerticalPanel;
 import org.pentaho.mantle.client.messages.Messages;
+import org.pentaho.mantle.client.usersettings.JsUserConsoleBootstrap;
+import org.pentaho.mantle.client.usersettings.UserConsoleBootstrapManager;
 
 public class SchedulesPerspectivePanel extends SimplePanel {
   static final int PAGE_SIZE = 25;
@@ -50,49 +46,20 @@ public class SchedulesPerspectivePanel extends SimplePanel {
   }
 
   public SchedulesPerspectivePanel() {
-    try {
-      final String url = GWT.getHostPageBaseURL() + "api/repo/files/canAdminister"; //$NON-NLS-1$
-      RequestBuilder requestBuilder = new RequestBuilder( RequestBuilder.GET, url );
-      requestBuilder.setHeader( "accept", "text/plain" ); //$NON-NLS-1$ //$NON-NLS-2$
-      requestBuilder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" ); //$NON-NLS-1$ //$NON-NLS-2$
-      requestBuilder.sendRequest( null, new RequestCallback() {
-
-        public void onError( Request request, Throwable caught ) {
-          isAdmin = false;
-          isScheduler = false;
-        }
-
-        public void onResponseReceived( Request request, Response response ) {
-          isAdmin = "true".equalsIgnoreCase( response.getText() ); //$NON-NLS-1$
-
-          try {
-            final String url2 = GWT.getHostPageBaseURL() + "api/scheduler/canSchedule"; //$NON-NLS-1$
-            RequestBuilder requestBuilder2 = new RequestBuilder( RequestBuilder.GET, url2 );
-            requestBuilder2.setHeader( "accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
-            requestBuilder2.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
-            requestBuilder2.sendRequest( null, new RequestCallback() {
-
-              public void onError( Request request, Throwable caught ) {
-                isScheduler = false;
-                createUI();
-
-              }
-
-              public void onResponseReceived( Request request, Response response ) {
-                isScheduler = "true".equalsIgnoreCase( response.getText() ); //$NON-NLS-1$
-                createUI();
-              }
-
-            } );
-          } catch ( RequestException e ) {
-            Window.alert( e.getMessage() );
-          }
-        }
-      } );
-    } catch ( RequestException e ) {
-      Window.alert( e.getMessage() );
-    }
+    UserConsoleBootstrapManager.getInstance().getBootstrap( new AsyncCallback<JsUserConsoleBootstrap>() {
+
+      public void onFailure( Throwable caught ) {
+        isAdmin = false;
+        isScheduler = false;
+      }
+
+      public void onSuccess( JsUserConsoleBootstrap bootstrap ) {
+        isAdmin = bootstrap.isAdministrator();
+        isScheduler = bootstrap.canSchedule();
+        createUI();
+      }
 
+    } );
   }
 
   private void createUI() {